@@ -7,10 +7,18 @@ import android.util.Log;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.webrtcdemo.messenger.capture.CaptureController;
+import com.example.webrtcdemo.messenger.capture.CaptureSource;
+import com.example.webrtcdemo.messenger.network.RtcProfile;
+import com.example.webrtcdemo.messenger.service.WebRtcService;
+import com.example.webrtcdemo.messenger.stats.RtcStatsCollector;
+import com.example.webrtcdemo.messenger.utils.DtlsCertificateManager;
+import com.example.webrtcdemo.messenger.utils.EglContextManager;
+import com.example.webrtcdemo.messenger.utils.PeerConnectionFactoryManager;
+
 import org.webrtc.*;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
 
 /**
  * WebRTC 本地回环测试（Local Loopback），模拟了真实的 WebRTC 通话流程，包括 PeerConnection 协商、ICE 候选交换、视频轨道传输 等核心流程
@@ -57,8 +65,10 @@ public class LoopBackActivity extends AppCompatActivity {
     private PeerConnectionFactory factory;
     private PeerConnection pc1;
     private PeerConnection pc2;
-    private EglBase eglBase;
+    private EglBase.Context eglContext;
     private VideoCapturer capturer;
+    private CaptureController captureController;
+    private RtcStatsCollector statsCollector;
     private VideoTrack localVideoTrack;
     private VideoTrack dummyTrack;
 
@@ -100,71 +110,54 @@ public class LoopBackActivity extends AppCompatActivity {
         localView = findViewById(R.id.local_view);
         remoteView = findViewById(R.id.remote_view);
 
-        eglBase = EglBase.create();
+        // 与共享工厂的编解码器使用同一个根上下文，纹理帧才能互通；渲染器在自己的线程上基于它建共享上下文
+        eglContext = EglContextManager.acquire(TAG);
 
-        localView.init(eglBase.getEglBaseContext(), null);
-        remoteView.init(eglBase.getEglBaseContext(), null);
+        localView.init(eglContext, null);
+        remoteView.init(eglContext, null);
 
         initPeerConnectionFactory();
         startCamera();
         createPeerConnections();
         startCall();
+
+        // pc1 的编码统计驱动采集自适应
+        if (captureController != null) {
+            statsCollector = new RtcStatsCollector("pc1", pc1, 1000, 60);
+            statsCollector.setSampleListener(captureController);
+            statsCollector.start();
+        }
     }
 
     private void initPeerConnectionFactory() {
-        PeerConnectionFactory.InitializationOptions options =
-                PeerConnectionFactory.InitializationOptions.builder(this)
-                        .createInitializationOptions();
-        PeerConnectionFactory.initialize(options);
-
-        factory = PeerConnectionFactory.builder()
-                .setVideoEncoderFactory(
-                        new DefaultVideoEncoderFactory(
-                                eglBase.getEglBaseContext(),
-                                true,
-                                true))
-                .setVideoDecoderFactory(
-                        new DefaultVideoDecoderFactory(eglBase.getEglBaseContext()))
-                .createPeerConnectionFactory();
+        factory = PeerConnectionFactoryManager.acquire(this);
     }
 
     private void startCamera() {
-        Camera2Enumerator enumerator = new Camera2Enumerator(this);
-        String frontCamera = null;
-        for (String name : enumerator.getDeviceNames()) {
-            if (enumerator.isFrontFacing(name)) {
-                frontCamera = name;
-                break;
-            }
-        }
-        if (frontCamera == null) {
-            Log.e(TAG, "No front camera found");
-            return;
-        }
-
-        capturer = enumerator.createCapturer(frontCamera, null);
-        if (capturer == null) {
-            Log.e(TAG, "Failed to create camera capturer");
+        // 启动 Intent 可以用 capture_source 换成合成画面或 Y4M 回放，见 CaptureSource
+        CaptureSource source = CaptureSource.open(this, getIntent().getStringExtra(WebRtcService.EXTRA_CAPTURE_SOURCE));
+        if (source == null) {
+            Log.e(TAG, "Failed to create capturer");
             return;
         }
+        capturer = source.capturer;
 
         SurfaceTextureHelper surfaceTextureHelper = SurfaceTextureHelper.create(
-                "CaptureThread", eglBase.getEglBaseContext());
+                "CaptureThread", eglContext);
         VideoSource videoSource = factory.createVideoSource(false);
         capturer.initialize(surfaceTextureHelper, this, videoSource.getCapturerObserver());
-        capturer.startCapture(640, 480, 30);
+        captureController = new CaptureController(this, source.formats, capturer, videoSource);
+        captureController.start();
 
         localVideoTrack = factory.createVideoTrack("localTrack", videoSource);
         localVideoTrack.addSink(localView);
     }
 
     private void createPeerConnections() {
-        List<PeerConnection.IceServer> iceServers = new ArrayList<>();
-        iceServers.add(PeerConnection.IceServer.builder("stun:stun.l.google.com:19302").createIceServer());
-
-        PeerConnection.RTCConfiguration config = new PeerConnection.RTCConfiguration(iceServers);
+        // 两条连接都在本机，用 loopback 配置：不连 STUN，只收集一次
+        PeerConnection.RTCConfiguration config = RtcProfile.LOOPBACK.createConfiguration(Collections.emptyList());
         config.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
-        config.continualGatheringPolicy = PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY;
+        config.certificate = DtlsCertificateManager.get();
 
         pc1 = factory.createPeerConnection(config, new PeerObserver("pc1"));
         pc2 = factory.createPeerConnection(config, new PeerObserver("pc2"));
@@ -332,8 +325,10 @@ public class LoopBackActivity extends AppCompatActivity {
 
     @Override
     protected void onDestroy() {
-        if (pc1 != null) pc1.close();
-        if (pc2 != null) pc2.close();
+        if (statsCollector != null) statsCollector.stop();
+        if (captureController != null) captureController.stop();
+        if (pc1 != null) pc1.dispose();
+        if (pc2 != null) pc2.dispose();
         if (capturer != null) {
             try {
                 capturer.stopCapture();
@@ -342,7 +337,10 @@ public class LoopBackActivity extends AppCompatActivity {
                 Log.e(TAG, "Failed to stop capturer", e);
             }
         }
-        if (eglBase != null) eglBase.release();
+        if (factory != null) PeerConnectionFactoryManager.release();
+        if (localView != null) localView.release();
+        if (remoteView != null) remoteView.release();
+        if (eglContext != null) EglContextManager.release(TAG);
         super.onDestroy();
     }
 }
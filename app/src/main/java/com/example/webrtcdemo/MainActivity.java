@@ -7,9 +7,12 @@ import android.util.Log;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import org.webrtc.Camera2Enumerator;
-import org.webrtc.DefaultVideoDecoderFactory;
-import org.webrtc.DefaultVideoEncoderFactory;
+import com.example.webrtcdemo.messenger.capture.CaptureController;
+import com.example.webrtcdemo.messenger.capture.CaptureSource;
+import com.example.webrtcdemo.messenger.service.WebRtcService;
+import com.example.webrtcdemo.messenger.utils.EglContextManager;
+import com.example.webrtcdemo.messenger.utils.PeerConnectionFactoryManager;
+
 import org.webrtc.EglBase;
 import org.webrtc.PeerConnectionFactory;
 import org.webrtc.SurfaceTextureHelper;
@@ -36,7 +39,7 @@ import org.webrtc.VideoTrack;
  * 使用Camera2 API枚举设备
  * 查找并创建前置摄像头捕获器
  * 初始化视频源和SurfaceTextureHelper
- * 开始捕获视频（640x480分辨率，30fps）
+ * 由 CaptureController 按摄像头支持的格式和设备档次选择起始分辨率和帧率
  *
  * 5. 视频回环实现
  * 创建本地视频轨道
@@ -50,7 +53,7 @@ import org.webrtc.VideoTrack;
  *
  * 技术亮点
  * 视频回环：通过将同一视频源绑定到两个渲染器，模拟了本地+远程的视频通话效果
- * 硬件加速：使用DefaultVideoEncoderFactory启用了硬件编解码
+ * 硬件加速：共享工厂按编解码器探测缓存优先使用硬件编解码（见 PreferredVideoEncoderFactory）
  * 镜像处理：远程视图设置了setMirror(true)使其显示为镜像效果
  *
  * 注意点
@@ -66,7 +69,7 @@ public class MainActivity extends AppCompatActivity {
     private SurfaceViewRenderer localView;
     private SurfaceViewRenderer remoteView;
     private PeerConnectionFactory factory;
-    private EglBase eglBase;
+    private EglBase.Context eglContext;
     private VideoCapturer capturer;
     private VideoTrack localVideoTrack;
 
@@ -108,10 +111,11 @@ public class MainActivity extends AppCompatActivity {
         localView = findViewById(R.id.local_view);
         remoteView = findViewById(R.id.remote_view);
 
-        eglBase = EglBase.create();
+        // 与共享工厂的编解码器使用同一个根上下文，纹理帧才能互通；渲染器在自己的线程上基于它建共享上下文
+        eglContext = EglContextManager.acquire(TAG);
 
-        localView.init(eglBase.getEglBaseContext(), null);
-        remoteView.init(eglBase.getEglBaseContext(), null);
+        localView.init(eglContext, null);
+        remoteView.init(eglContext, null);
         remoteView.setMirror(true);//设置了镜像
 
         initPeerConnectionFactory();
@@ -119,47 +123,23 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void initPeerConnectionFactory() {
-        PeerConnectionFactory.InitializationOptions options =
-                PeerConnectionFactory.InitializationOptions.builder(this)
-                        .createInitializationOptions();
-        PeerConnectionFactory.initialize(options);
-
-        factory = PeerConnectionFactory.builder()
-                .setVideoEncoderFactory(
-                        new DefaultVideoEncoderFactory(
-                                eglBase.getEglBaseContext(),
-                                true,
-                                true
-                        ))
-                .setVideoDecoderFactory(
-                        new DefaultVideoDecoderFactory(eglBase.getEglBaseContext()))
-                .createPeerConnectionFactory();
+        factory = PeerConnectionFactoryManager.acquire(this);
     }
 
     private void startCamera() {
-        Camera2Enumerator enumerator = new Camera2Enumerator(this);
-        String frontCameraName = null;
-        for (String name : enumerator.getDeviceNames()) {
-            if (enumerator.isFrontFacing(name)) {
-                frontCameraName = name;
-                break;
-            }
-        }
-        if (frontCameraName == null) {
-            Log.e(TAG, "No front camera found");
-            return;
-        }
-
-        capturer = enumerator.createCapturer(frontCameraName, null);
-        if (capturer == null) {
-            Log.e(TAG, "Failed to create camera capturer");
+        // 启动 Intent 可以用 capture_source 换成合成画面或 Y4M 回放，见 CaptureSource
+        CaptureSource source = CaptureSource.open(this, getIntent().getStringExtra(WebRtcService.EXTRA_CAPTURE_SOURCE));
+        if (source == null) {
+            Log.e(TAG, "Failed to create capturer");
             return;
         }
+        capturer = source.capturer;
 
-        SurfaceTextureHelper surfaceTextureHelper = SurfaceTextureHelper.create("CaptureThread", eglBase.getEglBaseContext());
+        SurfaceTextureHelper surfaceTextureHelper = SurfaceTextureHelper.create("CaptureThread", eglContext);
         VideoSource videoSource = factory.createVideoSource(false);
         capturer.initialize(surfaceTextureHelper, this, videoSource.getCapturerObserver());
-        capturer.startCapture(640, 480, 30);
+        // 本地回环没有编码统计，只用起始格式，不做运行时自适应
+        new CaptureController(this, source.formats, capturer, videoSource).start();
 
         localVideoTrack = factory.createVideoTrack("localVideoTrack", videoSource);
 
@@ -180,8 +160,10 @@ public class MainActivity extends AppCompatActivity {
                 Log.e(TAG, "Error stopping camera", e);
             }
         }
-        if (factory != null) factory.dispose();
-        if (eglBase != null) eglBase.release();
+        if (factory != null) PeerConnectionFactoryManager.release();
+        if (localView != null) localView.release();
+        if (remoteView != null) remoteView.release();
+        if (eglContext != null) EglContextManager.release(TAG);
         super.onDestroy();
     }
 }
@@ -0,0 +1,19 @@
+package com.example.webrtcdemo;
+
+import android.app.Application;
+
+import com.example.webrtcdemo.messenger.utils.DtlsCertificateManager;
+import com.example.webrtcdemo.messenger.utils.PeerConnectionFactoryManager;
+
+/**
+ * 应用启动时在后台预热 PeerConnectionFactory 和 DTLS 证书，缩短首次通话的出图时间和建立时间
+ */
+public class WebRtcApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        PeerConnectionFactoryManager.warmUp(this);
+        DtlsCertificateManager.warmUp(this);
+    }
+}
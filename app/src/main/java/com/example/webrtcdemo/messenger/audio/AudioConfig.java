@@ -0,0 +1,95 @@
+package com.example.webrtcdemo.messenger.audio;
+
+/**
+ * 音频设备和处理的配置，用逗号分隔的字符串描述，例如 "low_latency,sw_aec,hw_ns,rate=48000"，未写的项取默认值
+ */
+public final class AudioConfig {
+
+    public static final AudioConfig DEFAULT = new AudioConfig(true, true, true, 0);
+
+    public final boolean lowLatency;
+    public final boolean hardwareAec;
+    public final boolean hardwareNs;
+    /** 0 表示自动 */
+    public final int sampleRate;
+
+    public AudioConfig(boolean lowLatency, boolean hardwareAec, boolean hardwareNs, int sampleRate) {
+        this.lowLatency = lowLatency;
+        this.hardwareAec = hardwareAec;
+        this.hardwareNs = hardwareNs;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * @param spec 空串或 null 时返回 {@link #DEFAULT}
+     * @throws IllegalArgumentException 配置写错时
+     */
+    public static AudioConfig fromSpec(String spec) {
+        if (spec == null || spec.isEmpty()) {
+            return DEFAULT;
+        }
+        boolean lowLatency = DEFAULT.lowLatency;
+        boolean hardwareAec = DEFAULT.hardwareAec;
+        boolean hardwareNs = DEFAULT.hardwareNs;
+        int sampleRate = DEFAULT.sampleRate;
+        for (String item : spec.split(",")) {
+            String option = item.trim();
+            switch (option) {
+                case "low_latency":
+                    lowLatency = true;
+                    break;
+                case "normal_latency":
+                    lowLatency = false;
+                    break;
+                case "hw_aec":
+                    hardwareAec = true;
+                    break;
+                case "sw_aec":
+                    hardwareAec = false;
+                    break;
+                case "hw_ns":
+                    hardwareNs = true;
+                    break;
+                case "sw_ns":
+                    hardwareNs = false;
+                    break;
+                default:
+                    if (!option.startsWith("rate=")) {
+                        throw new IllegalArgumentException("unknown audio option: " + option);
+                    }
+                    sampleRate = Integer.parseInt(option.substring("rate=".length()));
+                    if (sampleRate < 0) {
+                        throw new IllegalArgumentException("bad sample rate: " + option);
+                    }
+                    break;
+            }
+        }
+        return new AudioConfig(lowLatency, hardwareAec, hardwareNs, sampleRate);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AudioConfig)) {
+            return false;
+        }
+        AudioConfig other = (AudioConfig) o;
+        return lowLatency == other.lowLatency && hardwareAec == other.hardwareAec
+                && hardwareNs == other.hardwareNs && sampleRate == other.sampleRate;
+    }
+
+    @Override
+    public int hashCode() {
+        return (lowLatency ? 8 : 0) | (hardwareAec ? 4 : 0) | (hardwareNs ? 2 : 0) | sampleRate << 4;
+    }
+
+    @Override
+    public String toString() {
+        return (lowLatency ? "low_latency" : "normal_latency")
+                + (hardwareAec ? ",hw_aec" : ",sw_aec")
+                + (hardwareNs ? ",hw_ns" : ",sw_ns")
+                + ",rate=" + sampleRate;
+    }
+}
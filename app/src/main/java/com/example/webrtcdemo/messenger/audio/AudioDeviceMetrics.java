@@ -0,0 +1,178 @@
+package com.example.webrtcdemo.messenger.audio;
+
+import android.media.AudioFormat;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+/**
+ * JavaAudioDeviceModule 的采集 / 播放回调统计：采集电平、断流、启停和错误次数
+ */
+public class AudioDeviceMetrics implements JavaAudioDeviceModule.SamplesReadyCallback,
+        JavaAudioDeviceModule.AudioRecordErrorCallback, JavaAudioDeviceModule.AudioTrackErrorCallback,
+        JavaAudioDeviceModule.AudioRecordStateCallback, JavaAudioDeviceModule.AudioTrackStateCallback {
+
+    private static final String TAG = "AudioDeviceMetrics";
+
+    /** WebRTC 每次读 10ms，间隔超过 3 块算一次断流 */
+    private static final long CAPTURE_GAP_MS = 30;
+    /** 电平平滑系数，约 300ms 的时间常数 */
+    private static final double LEVEL_SMOOTHING = 1.0 / 32;
+    /** 静音时的电平下限 */
+    private static final double SILENCE_DBFS = -127;
+
+    // 以下字段只在采集线程上写
+    private long lastCaptureMs;
+    private volatile long captureFrames;
+    private volatile long captureGaps;
+    private volatile long captureGapMs;
+    private volatile double levelDbfs = SILENCE_DBFS;
+    private volatile double peakDbfs = SILENCE_DBFS;
+    private volatile int captureSampleRate;
+    private volatile int captureChannels;
+
+    private volatile boolean recording;
+    private volatile boolean playing;
+    private volatile long recordStarts;
+    private volatile long playoutStarts;
+    private volatile long recordErrors;
+    private volatile long playoutErrors;
+    private volatile String lastError;
+
+    @Override
+    public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples samples) {
+        long now = SystemClock.elapsedRealtime();
+        if (lastCaptureMs != 0 && now - lastCaptureMs > CAPTURE_GAP_MS) {
+            captureGaps++;
+            captureGapMs += now - lastCaptureMs;
+        }
+        lastCaptureMs = now;
+        captureFrames++;
+        captureSampleRate = samples.getSampleRate();
+        captureChannels = samples.getChannelCount();
+        if (samples.getAudioFormat() != AudioFormat.ENCODING_PCM_16BIT) {
+            return;
+        }
+        double db = rmsDbfs(samples.getData());
+        levelDbfs += (db - levelDbfs) * LEVEL_SMOOTHING;
+        if (db > peakDbfs) {
+            peakDbfs = db;
+        }
+    }
+
+    /**
+     * 16bit 小端 PCM 的 RMS，满幅正弦约 -3dBFS
+     */
+    static double rmsDbfs(byte[] pcm) {
+        int samples = pcm.length / 2;
+        if (samples == 0) {
+            return SILENCE_DBFS;
+        }
+        long sumSquares = 0;
+        for (int i = 0; i < samples * 2; i += 2) {
+            int s = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+            sumSquares += (long) s * s;
+        }
+        double rms = Math.sqrt((double) sumSquares / samples) / 32768.0;
+        return rms > 0 ? Math.max(SILENCE_DBFS, 20 * Math.log10(rms)) : SILENCE_DBFS;
+    }
+
+    // ---------------- 状态 ----------------
+
+    @Override
+    public void onWebRtcAudioRecordStart() {
+        recording = true;
+        recordStarts++;
+        lastCaptureMs = 0;
+    }
+
+    @Override
+    public void onWebRtcAudioRecordStop() {
+        recording = false;
+    }
+
+    @Override
+    public void onWebRtcAudioTrackStart() {
+        playing = true;
+        playoutStarts++;
+    }
+
+    @Override
+    public void onWebRtcAudioTrackStop() {
+        playing = false;
+    }
+
+    // ---------------- 错误 ----------------
+
+    @Override
+    public void onWebRtcAudioRecordInitError(String errorMessage) {
+        recordError("record init: " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioRecordStartError(JavaAudioDeviceModule.AudioRecordStartErrorCode errorCode,
+                                              String errorMessage) {
+        recordError("record start " + errorCode + ": " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioRecordError(String errorMessage) {
+        recordError("record: " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioTrackInitError(String errorMessage) {
+        playoutError("playout init: " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioTrackStartError(JavaAudioDeviceModule.AudioTrackStartErrorCode errorCode,
+                                             String errorMessage) {
+        playoutError("playout start " + errorCode + ": " + errorMessage);
+    }
+
+    @Override
+    public void onWebRtcAudioTrackError(String errorMessage) {
+        playoutError("playout: " + errorMessage);
+    }
+
+    private synchronized void recordError(String message) {
+        recordErrors++;
+        lastError = message;
+        Log.e(TAG, message);
+    }
+
+    private synchronized void playoutError(String message) {
+        playoutErrors++;
+        lastError = message;
+        Log.e(TAG, message);
+    }
+
+    /**
+     * key 为 recording / playing / capture_sample_rate / capture_channels / capture_frames / capture_gaps /
+     * capture_gap_ms / level_dbfs / peak_dbfs（取出后清零）/ record_starts / playout_starts /
+     * record_errors / playout_errors / last_error
+     */
+    public Bundle snapshot() {
+        Bundle bundle = new Bundle();
+        bundle.putBoolean("recording", recording);
+        bundle.putBoolean("playing", playing);
+        bundle.putInt("capture_sample_rate", captureSampleRate);
+        bundle.putInt("capture_channels", captureChannels);
+        bundle.putLong("capture_frames", captureFrames);
+        bundle.putLong("capture_gaps", captureGaps);
+        bundle.putLong("capture_gap_ms", captureGapMs);
+        bundle.putDouble("level_dbfs", levelDbfs);
+        bundle.putDouble("peak_dbfs", peakDbfs);
+        // 峰值按两次查询之间统计；和采集线程的竞争最多丢一次峰值，不加锁
+        peakDbfs = SILENCE_DBFS;
+        bundle.putLong("record_starts", recordStarts);
+        bundle.putLong("playout_starts", playoutStarts);
+        bundle.putLong("record_errors", recordErrors);
+        bundle.putLong("playout_errors", playoutErrors);
+        bundle.putString("last_error", lastError);
+        return bundle;
+    }
+}
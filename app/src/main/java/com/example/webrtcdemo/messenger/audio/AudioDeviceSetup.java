@@ -0,0 +1,153 @@
+package com.example.webrtcdemo.messenger.audio;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioRecord;
+import android.media.AudioTrack;
+import android.media.MediaRecorder;
+import android.os.Bundle;
+import android.util.Log;
+
+import org.webrtc.MediaConstraints;
+import org.webrtc.PeerConnection;
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+/**
+ * 按 {@link AudioConfig} 创建 JavaAudioDeviceModule、AudioSource 约束和接收端抖动缓冲参数，并估计设备侧延迟
+ */
+public final class AudioDeviceSetup {
+
+    private static final String TAG = "AudioDeviceSetup";
+
+    /** WebRTC 每次采集 / 播放 10ms */
+    private static final int AUDIO_FRAME_MS = 10;
+    /** 低延迟时 NetEq 最多缓存的包数（默认 200，20ms 一包即 4s） */
+    private static final int LOW_LATENCY_JITTER_BUFFER_PACKETS = 25;
+    private static final int FALLBACK_SAMPLE_RATE = 48000;
+
+    private AudioDeviceSetup() {
+    }
+
+    public static JavaAudioDeviceModule createAudioDeviceModule(Context context, AudioConfig config,
+                                                                AudioDeviceMetrics metrics) {
+        int sampleRate = sampleRate(context, config);
+        boolean hardwareAec = useHardwareAec(config);
+        boolean hardwareNs = useHardwareNs(config);
+        Log.d(TAG, "audio device " + config + " -> " + sampleRate + "Hz hwAec=" + hardwareAec + " hwNs=" + hardwareNs);
+        JavaAudioDeviceModule.Builder builder = JavaAudioDeviceModule.builder(context)
+                // VOICE_COMMUNICATION 才会挂上系统的 AEC / NS，也是通话场景下 HAL 延迟最低的输入路径
+                .setAudioSource(MediaRecorder.AudioSource.VOICE_COMMUNICATION)
+                .setUseHardwareAcousticEchoCanceler(hardwareAec)
+                .setUseHardwareNoiseSuppressor(hardwareNs)
+                .setSamplesReadyCallback(metrics)
+                .setAudioRecordErrorCallback(metrics)
+                .setAudioTrackErrorCallback(metrics)
+                .setAudioRecordStateCallback(metrics)
+                .setAudioTrackStateCallback(metrics);
+        if (sampleRate > 0) {
+            builder.setSampleRate(sampleRate);
+        }
+        return builder.createAudioDeviceModule();
+    }
+
+    /**
+     * 硬件 AEC / NS 生效时关掉对应的软件实现，避免处理两遍；AGC 和高通滤波始终用软件的
+     */
+    public static MediaConstraints sourceConstraints(AudioConfig config) {
+        MediaConstraints constraints = new MediaConstraints();
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("googEchoCancellation",
+                String.valueOf(!useHardwareAec(config))));
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("googNoiseSuppression",
+                String.valueOf(!useHardwareNs(config))));
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("googAutoGainControl", "true"));
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("googHighpassFilter", "true"));
+        return constraints;
+    }
+
+    /**
+     * 低延迟时缩小 NetEq 抖动缓冲上限，并允许它在缓冲过多时快速加速追上
+     */
+    public static void applyJitterBuffer(PeerConnection.RTCConfiguration rtcConfig, AudioConfig config) {
+        if (config.lowLatency) {
+            rtcConfig.audioJitterBufferMaxPackets = LOW_LATENCY_JITTER_BUFFER_PACKETS;
+            rtcConfig.audioJitterBufferFastAccelerate = true;
+        }
+    }
+
+    public static boolean useHardwareAec(AudioConfig config) {
+        return config.hardwareAec && JavaAudioDeviceModule.isBuiltInAcousticEchoCancelerSupported();
+    }
+
+    public static boolean useHardwareNs(AudioConfig config) {
+        return config.hardwareNs && JavaAudioDeviceModule.isBuiltInNoiseSuppressorSupported();
+    }
+
+    /**
+     * 指定了采样率就用指定的；低延迟时用设备原生输出采样率；否则交给 WebRTC 自己选（返回 0）
+     */
+    static int sampleRate(Context context, AudioConfig config) {
+        if (config.sampleRate > 0) {
+            return config.sampleRate;
+        }
+        if (!config.lowLatency) {
+            return 0;
+        }
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        return parseInt(audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE), FALLBACK_SAMPLE_RATE);
+    }
+
+    /**
+     * 设备能力和按 M84 缓冲策略估算的采集 / 播放延迟：native_sample_rate / frames_per_buffer / low_latency_feature /
+     * pro_audio_feature / hw_aec_supported / hw_ns_supported / hw_aec / hw_ns / sample_rate /
+     * input_buffer_ms / output_buffer_ms / capture_latency_ms / playout_latency_ms
+     */
+    public static Bundle deviceInfo(Context context, AudioConfig config) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        PackageManager pm = context.getPackageManager();
+        int nativeRate = parseInt(audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE),
+                FALLBACK_SAMPLE_RATE);
+        int framesPerBuffer = parseInt(audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER), 0);
+        int rate = sampleRate(context, config);
+        if (rate <= 0) {
+            rate = nativeRate;
+        }
+        int bytesPerMs = rate * 2 / 1000;
+        int minRecord = AudioRecord.getMinBufferSize(rate, AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        int minTrack = AudioTrack.getMinBufferSize(rate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        // M84：AudioRecord 用 2 倍最小缓冲，AudioTrack 用最小缓冲
+        double inputBufferMs = minRecord > 0 ? 2.0 * minRecord / bytesPerMs : Double.NaN;
+        double outputBufferMs = minTrack > 0 ? (double) minTrack / bytesPerMs : Double.NaN;
+        double halBufferMs = framesPerBuffer > 0 ? framesPerBuffer * 1000.0 / nativeRate : 0;
+
+        Bundle bundle = new Bundle();
+        bundle.putInt("native_sample_rate", nativeRate);
+        bundle.putInt("frames_per_buffer", framesPerBuffer);
+        bundle.putBoolean("low_latency_feature", pm.hasSystemFeature(PackageManager.FEATURE_AUDIO_LOW_LATENCY));
+        bundle.putBoolean("pro_audio_feature", pm.hasSystemFeature(PackageManager.FEATURE_AUDIO_PRO));
+        bundle.putBoolean("hw_aec_supported", JavaAudioDeviceModule.isBuiltInAcousticEchoCancelerSupported());
+        bundle.putBoolean("hw_ns_supported", JavaAudioDeviceModule.isBuiltInNoiseSuppressorSupported());
+        bundle.putBoolean("hw_aec", useHardwareAec(config));
+        bundle.putBoolean("hw_ns", useHardwareNs(config));
+        bundle.putInt("sample_rate", rate);
+        bundle.putDouble("input_buffer_ms", inputBufferMs);
+        bundle.putDouble("output_buffer_ms", outputBufferMs);
+        // 采集：一次读 10ms 加 HAL 一个周期；缓冲不会积压，读线程一直在等数据
+        bundle.putDouble("capture_latency_ms", AUDIO_FRAME_MS + halBufferMs);
+        // 播放：AudioTrack 缓冲是写满的，整个缓冲都是延迟，再加 HAL 一个周期
+        bundle.putDouble("playout_latency_ms", outputBufferMs + halBufferMs);
+        return bundle;
+    }
+
+    private static int parseInt(String value, int fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
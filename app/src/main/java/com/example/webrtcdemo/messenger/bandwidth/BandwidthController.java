@@ -0,0 +1,120 @@
+package com.example.webrtcdemo.messenger.bandwidth;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import com.example.webrtcdemo.messenger.simulcast.SimulcastController;
+
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtpParameters;
+import org.webrtc.RtpSender;
+
+/**
+ * 把 {@link BandwidthLimits} 下发到一条 PeerConnection（setBitrate + 视频 sender 的 RtpParameters），不需要重新协商
+ */
+public final class BandwidthController {
+
+    private static final String TAG = "BandwidthController";
+
+    private BandwidthController() {
+    }
+
+    /**
+     * 设置整条连接带宽估计的上下限。起始值只在这条连接第一次设置时下发：之后每次都带上它会把带宽估计拉回起始值，
+     * 连通后已经收敛的估计就白费了；上下限都没变时整个跳过
+     *
+     * @param applied 这条连接上一次成功调用本方法时的 limits，第一次为 null
+     * @return 设置成功或不需要设置时返回 true，调用方这时应把 limits 记为新的 applied
+     */
+    public static boolean applyBitrate(PeerConnection peerConnection, BandwidthLimits limits, BandwidthLimits applied) {
+        if (applied != null && applied.minBitrateBps == limits.minBitrateBps
+                && applied.maxBitrateBps == limits.maxBitrateBps) {
+            return true;
+        }
+        Integer start = applied == null ? orNull(limits.startBitrateBps) : null;
+        boolean ok = peerConnection.setBitrate(orNull(limits.minBitrateBps), start, orNull(limits.maxBitrateBps));
+        Log.d(TAG, "setBitrate min=" + limits.minBitrateBps + " start=" + start + " max=" + limits.maxBitrateBps
+                + " ok=" + ok);
+        return ok;
+    }
+
+    /**
+     * 下发各视频 sender 的编码参数，每次都整体覆盖
+     *
+     * @param simulcast 没开 simulcast 时为 null
+     * @return 全部下发成功时返回 true
+     */
+    public static boolean applyEncodings(PeerConnection peerConnection, BandwidthLimits limits,
+                                         SimulcastController simulcast) {
+        boolean ok = true;
+        for (RtpSender sender : peerConnection.getSenders()) {
+            MediaStreamTrack track = sender.track();
+            if (track == null || !MediaStreamTrack.VIDEO_TRACK_KIND.equals(track.kind())) {
+                continue;
+            }
+            RtpParameters parameters = sender.getParameters();
+            parameters.degradationPreference = limits.degradation;
+            for (RtpParameters.Encoding encoding : parameters.encodings) {
+                SimulcastController.Layer layer = simulcast != null ? simulcast.getLayer(encoding.rid) : null;
+                encoding.maxBitrateBps = orNull(lower(layer != null ? layer.maxBitrateBps : 0, limits.maxBitrateBps));
+                encoding.maxFramerate = orNull(lower(layer != null ? layer.maxFramerate : 0, limits.maxFramerate));
+                if (layer == null) {
+                    // simulcast 的各层本来就有高低之分，下限只给单路编码
+                    encoding.minBitrateBps = orNull(limits.minBitrateBps);
+                }
+            }
+            ok &= sender.setParameters(parameters);
+        }
+        Log.d(TAG, "apply encodings " + limits + " ok=" + ok);
+        return ok;
+    }
+
+    /**
+     * 各视频 sender 实际生效的参数：key 为 track id，value 里有 degradation 和 encodings
+     * （每路编码一个 Bundle，key 为 rid，单路时为 "0"：active / max_bitrate_bps / min_bitrate_bps / max_framerate，未设置的为 0）
+     */
+    public static Bundle snapshot(PeerConnection peerConnection) {
+        Bundle bundle = new Bundle();
+        for (RtpSender sender : peerConnection.getSenders()) {
+            MediaStreamTrack track = sender.track();
+            if (track == null || !MediaStreamTrack.VIDEO_TRACK_KIND.equals(track.kind())) {
+                continue;
+            }
+            RtpParameters parameters = sender.getParameters();
+            Bundle senderBundle = new Bundle();
+            senderBundle.putString(BandwidthLimits.DEGRADATION, BandwidthLimits.nameOf(parameters.degradationPreference));
+            Bundle encodings = new Bundle();
+            for (int i = 0; i < parameters.encodings.size(); i++) {
+                RtpParameters.Encoding encoding = parameters.encodings.get(i);
+                Bundle encodingBundle = new Bundle();
+                encodingBundle.putBoolean("active", encoding.active);
+                encodingBundle.putInt(BandwidthLimits.MAX_BITRATE_BPS, orZero(encoding.maxBitrateBps));
+                encodingBundle.putInt(BandwidthLimits.MIN_BITRATE_BPS, orZero(encoding.minBitrateBps));
+                encodingBundle.putInt(BandwidthLimits.MAX_FRAMERATE, orZero(encoding.maxFramerate));
+                encodings.putBundle(encoding.rid != null ? encoding.rid : String.valueOf(i), encodingBundle);
+            }
+            senderBundle.putBundle("encodings", encodings);
+            bundle.putBundle(track.id(), senderBundle);
+        }
+        return bundle;
+    }
+
+    /**
+     * 两个上限取小，0 表示不限
+     */
+    static int lower(int a, int b) {
+        if (a == 0) {
+            return b;
+        }
+        return b == 0 ? a : Math.min(a, b);
+    }
+
+    private static Integer orNull(int value) {
+        return value > 0 ? value : null;
+    }
+
+    private static int orZero(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.webrtcdemo.messenger.bandwidth;
+
+import android.os.Bundle;
+
+import org.webrtc.RtpParameters;
+
+import java.util.Locale;
+
+/**
+ * 一条发送连接的码率、帧率和退化策略，对应 IWebRtcService.setBandwidthLimits 的 Bundle；数值 0 表示不限
+ */
+public final class BandwidthLimits {
+
+    public static final BandwidthLimits DEFAULT =
+            new BandwidthLimits(0, 0, 0, 0, RtpParameters.DegradationPreference.MAINTAIN_FRAMERATE);
+
+    public static final String MIN_BITRATE_BPS = "min_bitrate_bps";
+    public static final String START_BITRATE_BPS = "start_bitrate_bps";
+    public static final String MAX_BITRATE_BPS = "max_bitrate_bps";
+    public static final String MAX_FRAMERATE = "max_framerate";
+    public static final String DEGRADATION = "degradation";
+
+    public final int minBitrateBps;
+    public final int startBitrateBps;
+    public final int maxBitrateBps;
+    public final int maxFramerate;
+    public final RtpParameters.DegradationPreference degradation;
+
+    public BandwidthLimits(int minBitrateBps, int startBitrateBps, int maxBitrateBps, int maxFramerate,
+                           RtpParameters.DegradationPreference degradation) {
+        this.minBitrateBps = minBitrateBps;
+        this.startBitrateBps = startBitrateBps;
+        this.maxBitrateBps = maxBitrateBps;
+        this.maxFramerate = maxFramerate;
+        this.degradation = degradation;
+    }
+
+    /**
+     * 在当前值上覆盖 Bundle 里给出的项
+     *
+     * @throws IllegalArgumentException 数值为负、min / start / max 大小关系不对或退化策略不认识时
+     */
+    public BandwidthLimits merge(Bundle spec) {
+        return merge(valueOf(spec, MIN_BITRATE_BPS), valueOf(spec, START_BITRATE_BPS), valueOf(spec, MAX_BITRATE_BPS),
+                valueOf(spec, MAX_FRAMERATE),
+                spec.containsKey(DEGRADATION) ? String.valueOf(spec.getString(DEGRADATION)) : null);
+    }
+
+    /**
+     * 同 {@link #merge(Bundle)}，为 null 的项保持当前值
+     */
+    BandwidthLimits merge(Integer minBps, Integer startBps, Integer maxBps, Integer maxFps, String degradationName) {
+        int min = nonNegative(MIN_BITRATE_BPS, minBps, minBitrateBps);
+        int start = nonNegative(START_BITRATE_BPS, startBps, startBitrateBps);
+        int max = nonNegative(MAX_BITRATE_BPS, maxBps, maxBitrateBps);
+        int framerate = nonNegative(MAX_FRAMERATE, maxFps, maxFramerate);
+        RtpParameters.DegradationPreference preference = degradationName != null
+                ? parseDegradation(degradationName) : degradation;
+        if (max > 0 && min > max) {
+            throw new IllegalArgumentException("min bitrate " + min + " > max bitrate " + max);
+        }
+        if (start > 0 && (start < min || (max > 0 && start > max))) {
+            throw new IllegalArgumentException("start bitrate " + start + " outside [" + min + ", " + max + "]");
+        }
+        return new BandwidthLimits(min, start, max, framerate, preference);
+    }
+
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putInt(MIN_BITRATE_BPS, minBitrateBps);
+        bundle.putInt(START_BITRATE_BPS, startBitrateBps);
+        bundle.putInt(MAX_BITRATE_BPS, maxBitrateBps);
+        bundle.putInt(MAX_FRAMERATE, maxFramerate);
+        bundle.putString(DEGRADATION, nameOf(degradation));
+        return bundle;
+    }
+
+    static String nameOf(RtpParameters.DegradationPreference preference) {
+        return preference != null ? preference.name().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static RtpParameters.DegradationPreference parseDegradation(String name) {
+        if (name != null) {
+            for (RtpParameters.DegradationPreference preference : RtpParameters.DegradationPreference.values()) {
+                if (preference.name().equalsIgnoreCase(name)) {
+                    return preference;
+                }
+            }
+        }
+        throw new IllegalArgumentException("unknown degradation preference: " + name);
+    }
+
+    private static Integer valueOf(Bundle spec, String key) {
+        return spec.containsKey(key) ? spec.getInt(key) : null;
+    }
+
+    private static int nonNegative(String key, Integer value, int fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        if (value < 0) {
+            throw new IllegalArgumentException("bad " + key + ": " + value);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "min=" + minBitrateBps + " start=" + startBitrateBps + " max=" + maxBitrateBps
+                + " fps=" + maxFramerate + " degradation=" + nameOf(degradation);
+    }
+}
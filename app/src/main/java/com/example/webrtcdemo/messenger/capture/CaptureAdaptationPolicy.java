@@ -0,0 +1,216 @@
+package com.example.webrtcdemo.messenger.capture;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 采集分辨率 / 帧率的档位自适应：连续过载降一档，连续空闲升一档，带滞回和冷却期
+ */
+public final class CaptureAdaptationPolicy {
+
+    /** 与 StatsRingBuffer.COL_QUALITY_LIMITATION 的编码一致 */
+    public static final int LIMITATION_NONE = 0;
+    public static final int LIMITATION_OTHER = 1;
+    public static final int LIMITATION_BANDWIDTH = 2;
+    public static final int LIMITATION_CPU = 3;
+
+    static final int DOWN_TICKS = 2;
+    static final int INITIAL_UP_HOLD_TICKS = 10;
+    static final int MAX_UP_HOLD_TICKS = 80;
+    static final int COOLDOWN_TICKS = 3;
+    /** 升档后这么多个周期内又降回来，判定为震荡 */
+    static final int OSCILLATION_WINDOW_TICKS = 20;
+    /** 在同一档稳定这么久后，惩罚清零 */
+    static final int STABLE_RESET_TICKS = 120;
+
+    static final double CPU_HIGH = 0.85;
+    static final double CPU_LOW = 0.50;
+    /** 编码耗时占帧间隔的比例 */
+    static final double ENCODE_HIGH = 0.70;
+    static final double ENCODE_LOW = 0.35;
+    /** 实际编码帧率占目标帧率的比例 */
+    static final double FPS_LOW = 0.70;
+    static final double FPS_OK = 0.90;
+
+    /** 候选档位，过滤掉超出摄像头能力的部分 */
+    private static final int[][] CANDIDATES = {
+            {1920, 1080, 30},
+            {1280, 720, 30},
+            {960, 540, 30},
+            {640, 480, 30},
+            {640, 480, 20},
+            {480, 360, 15},
+            {320, 240, 15},
+    };
+
+    public static final class Level {
+        public final int width;
+        public final int height;
+        public final int fps;
+
+        public Level(int width, int height, int fps) {
+            this.width = width;
+            this.height = height;
+            this.fps = fps;
+        }
+
+        public long pixelRate() {
+            return (long) width * height * fps;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "@" + fps;
+        }
+    }
+
+    /**
+     * 一个统计周期的输入，缺失的指标用 NaN
+     */
+    public static final class Sample {
+        /** 进程 CPU 占用，0~1（已除以核数） */
+        public double cpuLoad = Double.NaN;
+        /** 平均每帧编码耗时 */
+        public double encodeMsPerFrame = Double.NaN;
+        /** 实际编码帧率 */
+        public double encodedFps = Double.NaN;
+        public int limitation = LIMITATION_NONE;
+
+        public void clear() {
+            cpuLoad = Double.NaN;
+            encodeMsPerFrame = Double.NaN;
+            encodedFps = Double.NaN;
+            limitation = LIMITATION_NONE;
+        }
+    }
+
+    private final List<Level> ladder;
+    private int index;
+    private int overuseStreak;
+    private int underuseStreak;
+    private int cooldown;
+    private int upHoldTicks = INITIAL_UP_HOLD_TICKS;
+    private int ticksSinceUpgrade = Integer.MAX_VALUE;
+    private int ticksAtLevel;
+
+    public CaptureAdaptationPolicy(List<Level> ladder, int startIndex) {
+        if (ladder.isEmpty()) {
+            throw new IllegalArgumentException("empty ladder");
+        }
+        this.ladder = Collections.unmodifiableList(new ArrayList<>(ladder));
+        this.index = Math.max(0, Math.min(startIndex, ladder.size() - 1));
+    }
+
+    /**
+     * 由摄像头支持的格式生成档位表
+     *
+     * @param formats 每项为 {宽, 高, 最大帧率}，宽高按横屏
+     */
+    public static List<Level> buildLadder(int[][] formats) {
+        List<Level> ladder = new ArrayList<>();
+        for (int[] candidate : CANDIDATES) {
+            for (int[] format : formats) {
+                if (format[0] >= candidate[0] && format[1] >= candidate[1] && format[2] >= candidate[2]) {
+                    ladder.add(new Level(candidate[0], candidate[1], candidate[2]));
+                    break;
+                }
+            }
+        }
+        if (ladder.isEmpty() && formats.length > 0) {
+            // 摄像头比最低档还小，只能用它自己最小的格式
+            int[] smallest = formats[0];
+            for (int[] format : formats) {
+                if ((long) format[0] * format[1] < (long) smallest[0] * smallest[1]) {
+                    smallest = format;
+                }
+            }
+            ladder.add(new Level(smallest[0], smallest[1], Math.min(30, smallest[2])));
+        }
+        return ladder;
+    }
+
+    /**
+     * 像素率不超过 maxPixelRate 的最高档，全部超出时取最低档
+     */
+    public static int startIndexFor(List<Level> ladder, long maxPixelRate) {
+        for (int i = 0; i < ladder.size(); i++) {
+            if (ladder.get(i).pixelRate() <= maxPixelRate) {
+                return i;
+            }
+        }
+        return ladder.size() - 1;
+    }
+
+    public List<Level> getLadder() {
+        return ladder;
+    }
+
+    public Level current() {
+        return ladder.get(index);
+    }
+
+    /**
+     * 输入一个统计周期的样本
+     *
+     * @return 档位变化时返回新档位，否则返回 null
+     */
+    public Level onSample(Sample sample) {
+        if (ticksSinceUpgrade != Integer.MAX_VALUE) {
+            ticksSinceUpgrade++;
+        }
+        ticksAtLevel++;
+        if (ticksAtLevel >= STABLE_RESET_TICKS) {
+            upHoldTicks = INITIAL_UP_HOLD_TICKS;
+        }
+        if (cooldown > 0) {
+            cooldown--;
+            return null;
+        }
+        Level level = current();
+        double frameIntervalMs = 1000.0 / level.fps;
+
+        boolean bandwidthLimited = sample.limitation == LIMITATION_BANDWIDTH;
+        // 带宽受限时编码器会主动丢帧，帧率偏低不能算到采集头上
+        boolean overuse = sample.limitation == LIMITATION_CPU
+                || sample.cpuLoad > CPU_HIGH
+                || sample.encodeMsPerFrame > ENCODE_HIGH * frameIntervalMs
+                || (!bandwidthLimited && sample.encodedFps < FPS_LOW * level.fps);
+        // 缺失的指标不阻止升档，但至少要有一个指标表明确实空闲
+        boolean underuse = !overuse
+                && sample.limitation == LIMITATION_NONE
+                && !(sample.cpuLoad >= CPU_LOW)
+                && !(sample.encodeMsPerFrame >= ENCODE_LOW * frameIntervalMs)
+                && !(sample.encodedFps < FPS_OK * level.fps)
+                && (sample.cpuLoad < CPU_LOW || sample.encodeMsPerFrame < ENCODE_LOW * frameIntervalMs);
+
+        if (overuse) {
+            underuseStreak = 0;
+            if (++overuseStreak >= DOWN_TICKS && index < ladder.size() - 1) {
+                if (ticksSinceUpgrade <= OSCILLATION_WINDOW_TICKS) {
+                    upHoldTicks = Math.min(upHoldTicks * 2, MAX_UP_HOLD_TICKS);
+                }
+                return moveTo(index + 1);
+            }
+        } else if (underuse) {
+            overuseStreak = 0;
+            if (++underuseStreak >= upHoldTicks && index > 0) {
+                ticksSinceUpgrade = 0;
+                return moveTo(index - 1);
+            }
+        } else {
+            overuseStreak = 0;
+            underuseStreak = 0;
+        }
+        return null;
+    }
+
+    private Level moveTo(int newIndex) {
+        index = newIndex;
+        overuseStreak = 0;
+        underuseStreak = 0;
+        cooldown = COOLDOWN_TICKS;
+        ticksAtLevel = 0;
+        return current();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.webrtcdemo.messenger.capture;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import com.example.webrtcdemo.messenger.stats.RtcStatsCollector;
+import com.example.webrtcdemo.messenger.stats.StatsRingBuffer;
+
+import org.webrtc.CameraEnumerationAndroid;
+import org.webrtc.CameraEnumerator;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoSource;
+
+import java.util.List;
+
+/**
+ * 采集控制：选起始格式，通话中按 {@link CaptureAdaptationPolicy} 调整输出格式或采集格式
+ */
+public class CaptureController implements RtcStatsCollector.SampleListener {
+
+    private static final String TAG = "CaptureController";
+
+    /** 低端设备的起始像素率上限 */
+    private static final long LOW_END_START_PIXEL_RATE = 640L * 480 * 30;
+    private static final long DEFAULT_START_PIXEL_RATE = 1280L * 720 * 30;
+
+    private final VideoCapturer capturer;
+    private final VideoSource videoSource;
+    private final List<CameraEnumerationAndroid.CaptureFormat> formats;
+    private final CaptureAdaptationPolicy policy;
+    private final ProcessCpuSampler cpuSampler;
+    private final CaptureAdaptationPolicy.Sample sample = new CaptureAdaptationPolicy.Sample();
+
+    private CameraEnumerationAndroid.CaptureFormat captureFormat;
+    private volatile boolean stopped;
+
+    public CaptureController(Context context, CameraEnumerator enumerator, String deviceName,
+                             VideoCapturer capturer, VideoSource videoSource) {
+        this(context, enumerator.getSupportedFormats(deviceName), capturer, videoSource);
+    }
+
+    /**
+     * 非摄像头来源（见 {@link CaptureSource}）直接给出支持的格式
+     */
+    public CaptureController(Context context, List<CameraEnumerationAndroid.CaptureFormat> formats,
+                             VideoCapturer capturer, VideoSource videoSource) {
+        this.capturer = capturer;
+        this.videoSource = videoSource;
+        this.formats = formats;
+        int[][] supported = new int[formats.size()][];
+        for (int i = 0; i < formats.size(); i++) {
+            CameraEnumerationAndroid.CaptureFormat format = formats.get(i);
+            supported[i] = new int[]{format.width, format.height, format.framerate.max / 1000};
+        }
+        List<CaptureAdaptationPolicy.Level> ladder = CaptureAdaptationPolicy.buildLadder(supported);
+        if (ladder.isEmpty()) {
+            // 拿不到格式列表时退回原来写死的 640x480@30
+            ladder.add(new CaptureAdaptationPolicy.Level(640, 480, 30));
+        }
+        long startPixelRate = isLowEndDevice(context) ? LOW_END_START_PIXEL_RATE : DEFAULT_START_PIXEL_RATE;
+        this.policy = new CaptureAdaptationPolicy(ladder,
+                CaptureAdaptationPolicy.startIndexFor(ladder, startPixelRate));
+        this.cpuSampler = new ProcessCpuSampler(Os.sysconf(OsConstants._SC_CLK_TCK));
+        Log.d(TAG, "ladder=" + ladder + " start=" + policy.current());
+    }
+
+    private static boolean isLowEndDevice(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return (am != null && am.isLowRamDevice()) || Runtime.getRuntime().availableProcessors() <= 4;
+    }
+
+    /**
+     * 用起始档位开始采集
+     */
+    public synchronized void start() {
+        CaptureAdaptationPolicy.Level level = policy.current();
+        captureFormat = pickCaptureFormat(level);
+        capturer.startCapture(captureWidth(level), captureHeight(level), level.fps);
+        videoSource.adaptOutputFormat(level.width, level.height, level.fps);
+        cpuSampler.sample();
+        Log.d(TAG, "startCapture " + captureWidth(level) + "x" + captureHeight(level) + "@" + level.fps
+                + ", output " + level);
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+    }
+
+    public synchronized CaptureAdaptationPolicy.Level getCurrentLevel() {
+        return policy.current();
+    }
+
+    @Override
+    public void onSample(double[] row) {
+        if (stopped) {
+            return;
+        }
+        sample.clear();
+        sample.cpuLoad = cpuSampler.sample();
+        sample.encodeMsPerFrame = row[StatsRingBuffer.COL_ENCODE_MS_PER_FRAME];
+        sample.encodedFps = row[StatsRingBuffer.COL_SEND_FPS];
+        double limitation = row[StatsRingBuffer.COL_QUALITY_LIMITATION];
+        sample.limitation = Double.isNaN(limitation) ? CaptureAdaptationPolicy.LIMITATION_NONE : (int) limitation;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            CaptureAdaptationPolicy.Level level = policy.onSample(sample);
+            if (level != null) {
+                apply(level);
+            }
+        }
+    }
+
+    private void apply(CaptureAdaptationPolicy.Level level) {
+        CameraEnumerationAndroid.CaptureFormat format = pickCaptureFormat(level);
+        if (format != captureFormat) {
+            captureFormat = format;
+            capturer.changeCaptureFormat(captureWidth(level), captureHeight(level), level.fps);
+        }
+        videoSource.adaptOutputFormat(level.width, level.height, level.fps);
+        Log.d(TAG, "adapt to " + level + " (cpu=" + sample.cpuLoad + " encodeMs=" + sample.encodeMsPerFrame
+                + " fps=" + sample.encodedFps + " limitation=" + sample.limitation + ")");
+    }
+
+    /**
+     * 能覆盖该档位的最小格式，没有时返回 null（按档位尺寸请求，由摄像头就近选择）
+     */
+    private CameraEnumerationAndroid.CaptureFormat pickCaptureFormat(CaptureAdaptationPolicy.Level level) {
+        CameraEnumerationAndroid.CaptureFormat best = null;
+        for (CameraEnumerationAndroid.CaptureFormat format : formats) {
+            if (format.width >= level.width && format.height >= level.height
+                    && format.framerate.max / 1000 >= level.fps
+                    && (best == null || (long) format.width * format.height < (long) best.width * best.height)) {
+                best = format;
+            }
+        }
+        return best;
+    }
+
+    private int captureWidth(CaptureAdaptationPolicy.Level level) {
+        return captureFormat != null ? captureFormat.width : level.width;
+    }
+
+    private int captureHeight(CaptureAdaptationPolicy.Level level) {
+        return captureFormat != null ? captureFormat.height : level.height;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.webrtcdemo.messenger.capture;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.webrtc.Camera2Enumerator;
+import org.webrtc.CameraEnumerationAndroid;
+import org.webrtc.CameraEnumerator;
+import org.webrtc.VideoCapturer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按字符串选择视频来源："camera"（默认）、"synthetic[:复杂度[:宽x高@帧率]]" 或 "y4m:文件路径"
+ */
+public final class CaptureSource {
+
+    private static final String TAG = "CaptureSource";
+
+    public static final String CAMERA = "camera";
+    public static final String SYNTHETIC = "synthetic";
+    public static final String Y4M = "y4m";
+
+    private static final float DEFAULT_COMPLEXITY = 0.3f;
+
+    public final VideoCapturer capturer;
+    /** 交给 CaptureController 生成档位表 */
+    public final List<CameraEnumerationAndroid.CaptureFormat> formats;
+    public final String description;
+
+    private CaptureSource(VideoCapturer capturer, List<CameraEnumerationAndroid.CaptureFormat> formats,
+                          String description) {
+        this.capturer = capturer;
+        this.formats = formats;
+        this.description = description;
+    }
+
+    /**
+     * @return 打不开（没有摄像头、文件格式不对、参数错误）时返回 null
+     */
+    public static CaptureSource open(Context context, String spec) {
+        if (spec == null || spec.isEmpty() || CAMERA.equals(spec)) {
+            return openCamera(context);
+        }
+        String[] parts = spec.split(":", 2);
+        try {
+            if (SYNTHETIC.equals(parts[0])) {
+                return openSynthetic(parts.length > 1 ? parts[1] : "");
+            } else if (Y4M.equals(parts[0]) && parts.length > 1) {
+                Y4mFileCapturer capturer = new Y4mFileCapturer(parts[1]);
+                return new CaptureSource(capturer, capturer.getSupportedFormats(), spec);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "open capture source " + spec + " failed", e);
+            return null;
+        }
+        Log.e(TAG, "unknown capture source: " + spec);
+        return null;
+    }
+
+    private static CaptureSource openCamera(Context context) {
+        CameraEnumerator enumerator = new Camera2Enumerator(context);
+        String deviceName = findCameraDevice(enumerator);
+        VideoCapturer capturer = deviceName != null ? enumerator.createCapturer(deviceName, null) : null;
+        if (capturer == null) {
+            Log.e(TAG, "No camera capturer found.");
+            return null;
+        }
+        return new CaptureSource(capturer, enumerator.getSupportedFormats(deviceName), CAMERA + ":" + deviceName);
+    }
+
+    /**
+     * @param args "复杂度[:宽x高@帧率]"，都可以省略
+     */
+    private static CaptureSource openSynthetic(String args) {
+        String[] parts = args.isEmpty() ? new String[0] : args.split(":");
+        float complexity = parts.length > 0 && !parts[0].isEmpty() ? Float.parseFloat(parts[0]) : DEFAULT_COMPLEXITY;
+        List<CameraEnumerationAndroid.CaptureFormat> formats = SyntheticVideoCapturer.getSupportedFormats();
+        if (parts.length > 1) {
+            String[] sizeAndFps = parts[1].split("@");
+            String[] size = sizeAndFps[0].split("x");
+            int fps = sizeAndFps.length > 1 ? Integer.parseInt(sizeAndFps[1]) : 30;
+            formats = Collections.singletonList(new CameraEnumerationAndroid.CaptureFormat(
+                    Integer.parseInt(size[0]), Integer.parseInt(size[1]), 0, fps * 1000));
+        }
+        return new CaptureSource(new SyntheticVideoCapturer(complexity), formats, SYNTHETIC + ":" + complexity);
+    }
+
+    /**
+     * 优先前置摄像头，没有时退回后置
+     */
+    private static String findCameraDevice(CameraEnumerator enumerator) {
+        for (String deviceName : enumerator.getDeviceNames()) {
+            if (enumerator.isFrontFacing(deviceName)) {
+                return deviceName;
+            }
+        }
+        // fallback back camera
+        for (String deviceName : enumerator.getDeviceNames()) {
+            if (!enumerator.isFrontFacing(deviceName)) {
+                return deviceName;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.webrtcdemo.messenger.capture;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * 读 /proc/self/stat 的 utime + stime，计算两次采样之间本进程的 CPU 占用（已除以核数）。
+ * 高版本 Android 不允许读 /proc/stat，但自己进程的统计始终可读
+ */
+public final class ProcessCpuSampler {
+
+    private final long clockTicksPerSecond;
+    private final int cores;
+    private final byte[] buffer = new byte[512];
+    private long lastCpuTicks = -1;
+    private long lastWallNs;
+
+    public ProcessCpuSampler(long clockTicksPerSecond) {
+        this.clockTicksPerSecond = clockTicksPerSecond;
+        this.cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 读缓冲和上次的采样点是实例状态，加锁后可以在任意线程调用
+     *
+     * @return 距上次调用的平均 CPU 占用 0~1，首次调用或读取失败时返回 NaN
+     */
+    public synchronized double sample() {
+        long cpuTicks = readCpuTicks();
+        long now = System.nanoTime();
+        if (cpuTicks < 0) {
+            return Double.NaN;
+        }
+        double load = Double.NaN;
+        if (lastCpuTicks >= 0 && now > lastWallNs) {
+            double cpuSeconds = (double) (cpuTicks - lastCpuTicks) / clockTicksPerSecond;
+            double wallSeconds = (now - lastWallNs) / 1e9;
+            load = cpuSeconds / wallSeconds / cores;
+        }
+        lastCpuTicks = cpuTicks;
+        lastWallNs = now;
+        return load;
+    }
+
+    private long readCpuTicks() {
+        int length;
+        try (FileInputStream in = new FileInputStream("/proc/self/stat")) {
+            length = in.read(buffer);
+        } catch (IOException e) {
+            return -1;
+        }
+        if (length <= 0) {
+            return -1;
+        }
+        // comm 字段可能包含空格，从最后一个 ')' 之后开始数：state 是第 3 个字段，utime / stime 是第 14、15 个
+        int i = length - 1;
+        while (i >= 0 && buffer[i] != ')') {
+            i--;
+        }
+        if (i < 0) {
+            return -1;
+        }
+        int field = 2;
+        long utime = -1;
+        long stime = -1;
+        long value = 0;
+        boolean inValue = false;
+        for (i = i + 1; i < length; i++) {
+            byte b = buffer[i];
+            if (b == ' ') {
+                if (inValue) {
+                    if (field == 14) {
+                        utime = value;
+                    } else if (field == 15) {
+                        stime = value;
+                        break;
+                    }
+                    inValue = false;
+                }
+                continue;
+            }
+            if (!inValue) {
+                inValue = true;
+                field++;
+                value = 0;
+            }
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+            }
+        }
+        return utime >= 0 && stime >= 0 ? utime + stime : -1;
+    }
+}
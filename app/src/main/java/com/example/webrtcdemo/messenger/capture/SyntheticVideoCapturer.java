@@ -0,0 +1,238 @@
+package com.example.webrtcdemo.messenger.capture;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.CameraEnumerationAndroid;
+import org.webrtc.CapturerObserver;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.ThreadUtils;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoFrame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 不依赖摄像头的合成画面采集器，画面只由帧序号和复杂度决定，用来做可复现的编码和吞吐测试
+ */
+public class SyntheticVideoCapturer implements VideoCapturer {
+
+    private static final String TAG = "SyntheticCapturer";
+
+    private static final int BLOCK = 16;
+    private static final int BOX_SIZE_DIVISOR = 6;
+
+    /** 合成源能产生任意尺寸，这里给采集自适应提供的候选格式 */
+    private static final int[][] SUPPORTED = {
+            {1920, 1080, 30},
+            {1280, 720, 30},
+            {960, 540, 30},
+            {640, 480, 30},
+            {320, 240, 30},
+    };
+
+    private final float complexity;
+
+    private CapturerObserver observer;
+    private Handler handler;
+    private byte[] row;
+
+    // 以下字段只在 handler 线程上访问（start / change / stop 都 post 过去）
+    private int width;
+    private int height;
+    private int fps;
+    private boolean running;
+    private long frameIndex;
+    private long startUptimeMs;
+    private long startFrameIndex;
+    private volatile long framesDelivered;
+
+    /**
+     * @param complexity 0~1，噪声块占比
+     */
+    public SyntheticVideoCapturer(float complexity) {
+        this.complexity = Math.max(0f, Math.min(1f, complexity));
+    }
+
+    public static List<CameraEnumerationAndroid.CaptureFormat> getSupportedFormats() {
+        List<CameraEnumerationAndroid.CaptureFormat> formats = new ArrayList<>();
+        for (int[] format : SUPPORTED) {
+            formats.add(new CameraEnumerationAndroid.CaptureFormat(format[0], format[1], 0, format[2] * 1000));
+        }
+        return formats;
+    }
+
+    @Override
+    public void initialize(SurfaceTextureHelper surfaceTextureHelper, Context context, CapturerObserver observer) {
+        this.observer = observer;
+        this.handler = surfaceTextureHelper.getHandler();
+    }
+
+    @Override
+    public void startCapture(int width, int height, int framerate) {
+        handler.post(() -> {
+            configure(width, height, framerate);
+            if (!running) {
+                running = true;
+                observer.onCapturerStarted(true);
+                scheduleNext();
+            }
+        });
+    }
+
+    @Override
+    public void stopCapture() {
+        // 和 Camera 采集器一样同步返回，返回后不会再有帧
+        ThreadUtils.invokeAtFrontUninterruptibly(handler, () -> {
+            if (running) {
+                running = false;
+                handler.removeCallbacksAndMessages(this);
+                observer.onCapturerStopped();
+            }
+        });
+    }
+
+    @Override
+    public void changeCaptureFormat(int width, int height, int framerate) {
+        handler.post(() -> configure(width, height, framerate));
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    @Override
+    public boolean isScreencast() {
+        return false;
+    }
+
+    public long getFramesDelivered() {
+        return framesDelivered;
+    }
+
+    private void configure(int width, int height, int framerate) {
+        // I420 色度平面按 2x2 下采样，宽高取偶数
+        this.width = Math.max(2, width & ~1);
+        this.height = Math.max(2, height & ~1);
+        this.fps = Math.max(1, framerate);
+        if (row == null || row.length < this.width) {
+            row = new byte[this.width];
+        }
+        // 帧率变化后从当前帧重新排期
+        startUptimeMs = SystemClock.uptimeMillis();
+        startFrameIndex = frameIndex;
+        Log.d(TAG, "format " + this.width + "x" + this.height + "@" + fps + " complexity=" + complexity);
+    }
+
+    private void scheduleNext() {
+        long dueMs = startUptimeMs + (frameIndex - startFrameIndex) * 1000 / fps;
+        // token 用 this，stopCapture 时一次性清掉
+        handler.postAtTime(this::deliverFrame, this, dueMs);
+    }
+
+    private void deliverFrame() {
+        if (!running) {
+            return;
+        }
+        JavaI420Buffer buffer = JavaI420Buffer.allocate(width, height);
+        render(buffer, frameIndex);
+        VideoFrame frame = new VideoFrame(buffer, 0, SystemClock.elapsedRealtimeNanos());
+        observer.onFrameCaptured(frame);
+        frame.release();
+        frameIndex++;
+        framesDelivered++;
+        scheduleNext();
+    }
+
+    private void render(JavaI420Buffer buffer, long index) {
+        int w = buffer.getWidth();
+        int h = buffer.getHeight();
+        ByteBuffer y = buffer.getDataY();
+        int strideY = buffer.getStrideY();
+        int shift = (int) (index * 3);
+
+        // 亮度：斜向渐变，每帧平移，编码器可以用运动补偿
+        for (int j = 0; j < h; j++) {
+            int base = j + shift;
+            for (int i = 0; i < w; i++) {
+                row[i] = (byte) ((i + base) & 0xFF);
+            }
+            y.position(j * strideY);
+            y.put(row, 0, w);
+        }
+
+        // 噪声块：位置和内容都由 (帧序号, 块序号) 决定
+        if (complexity > 0f) {
+            int blocksX = w / BLOCK;
+            int blocksY = h / BLOCK;
+            int threshold = (int) (complexity * 0x10000);
+            for (int by = 0; by < blocksY; by++) {
+                for (int bx = 0; bx < blocksX; bx++) {
+                    int seed = mix((int) index, by * blocksX + bx);
+                    if ((seed & 0xFFFF) >= threshold) {
+                        continue;
+                    }
+                    for (int j = 0; j < BLOCK; j++) {
+                        int pos = (by * BLOCK + j) * strideY + bx * BLOCK;
+                        for (int i = 0; i < BLOCK; i++) {
+                            seed = seed * 1103515245 + 12345;
+                            y.put(pos + i, (byte) (seed >>> 24));
+                        }
+                    }
+                }
+            }
+        }
+
+        // 弹跳的白色方块
+        int box = Math.max(BLOCK, Math.min(w, h) / BOX_SIZE_DIVISOR);
+        int boxX = bounce(index * 7, w - box);
+        int boxY = bounce(index * 5, h - box);
+        for (int j = 0; j < box; j++) {
+            int pos = (boxY + j) * strideY + boxX;
+            for (int i = 0; i < box; i++) {
+                y.put(pos + i, (byte) 235);
+            }
+        }
+        y.rewind();
+
+        // 色度：整帧一个颜色，缓慢变化
+        fill(buffer.getDataU(), buffer.getStrideU(), (w + 1) / 2, (h + 1) / 2, (byte) (128 + bounce(index, 64) - 32));
+        fill(buffer.getDataV(), buffer.getStrideV(), (w + 1) / 2, (h + 1) / 2, (byte) (128 - bounce(index, 64) + 32));
+    }
+
+    private void fill(ByteBuffer plane, int stride, int w, int h, byte value) {
+        for (int i = 0; i < w; i++) {
+            row[i] = value;
+        }
+        for (int j = 0; j < h; j++) {
+            plane.position(j * stride);
+            plane.put(row, 0, w);
+        }
+        plane.rewind();
+    }
+
+    /**
+     * 0..range..0 往返
+     */
+    private static int bounce(long step, int range) {
+        if (range <= 0) {
+            return 0;
+        }
+        int period = range * 2;
+        int p = (int) (step % period);
+        return p <= range ? p : period - p;
+    }
+
+    private static int mix(int a, int b) {
+        int h = a * 0x9E3779B1 ^ b * 0x85EBCA6B;
+        h ^= h >>> 16;
+        h *= 0x7FEB352D;
+        h ^= h >>> 15;
+        return h;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.webrtcdemo.messenger.capture;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.CameraEnumerationAndroid;
+import org.webrtc.CapturerObserver;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.ThreadUtils;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoFrame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 循环回放 Y4M（4:2:0）文件的采集器，帧直接包装 mmap 的文件内容，不拷贝
+ */
+public class Y4mFileCapturer implements VideoCapturer {
+
+    private static final String TAG = "Y4mFileCapturer";
+
+    private static final String MAGIC = "YUV4MPEG2";
+    private static final String FRAME_TAG = "FRAME";
+    /** 文件头 / 帧头的最大长度，超过视为格式错误 */
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    private final String path;
+    private final int width;
+    private final int height;
+    /** 文件头帧率，0 表示没写 */
+    private final int fileFps;
+    private final int frameSize;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    /** 每帧像素数据所在的段和段内偏移 */
+    private final int[] frameSegment;
+    private final int[] frameOffset;
+
+    private CapturerObserver observer;
+    private Handler handler;
+
+    // 以下字段只在 handler 线程上访问
+    private int fps;
+    private boolean running;
+    private int frameIndex;
+    private long playedFrames;
+    private long startUptimeMs;
+    private volatile long framesDelivered;
+
+    /**
+     * 打开并索引文件，格式不支持时抛出 IOException
+     */
+    public Y4mFileCapturer(String path) throws IOException {
+        this.path = path;
+        try (RandomAccessFile file = new RandomAccessFile(new File(path), "r")) {
+            FileChannel channel = file.getChannel();
+            long fileLength = channel.size();
+
+            // 文件头：YUV4MPEG2 W<宽> H<高> F<分子>:<分母> C<色度格式> ...
+            String header = readLine(channel, 0);
+            String[] fields = header.split(" ");
+            if (!MAGIC.equals(fields[0])) {
+                throw new IOException("not a y4m file: " + path);
+            }
+            int w = 0;
+            int h = 0;
+            int rate = 0;
+            for (int i = 1; i < fields.length; i++) {
+                String field = fields[i];
+                if (field.isEmpty()) {
+                    continue;
+                }
+                switch (field.charAt(0)) {
+                    case 'W':
+                        w = Integer.parseInt(field.substring(1));
+                        break;
+                    case 'H':
+                        h = Integer.parseInt(field.substring(1));
+                        break;
+                    case 'F':
+                        String[] ratio = field.substring(1).split(":");
+                        int den = ratio.length > 1 ? Integer.parseInt(ratio[1]) : 1;
+                        rate = den > 0 ? Math.round((float) Integer.parseInt(ratio[0]) / den) : 0;
+                        break;
+                    case 'C':
+                        if (!field.startsWith("C420")) {
+                            throw new IOException("unsupported y4m colorspace " + field + ", only 4:2:0");
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (w <= 0 || h <= 0) {
+                throw new IOException("y4m header without size: " + header);
+            }
+            this.width = w;
+            this.height = h;
+            this.fileFps = rate;
+            this.frameSize = w * h + 2 * (((w + 1) / 2) * ((h + 1) / 2));
+
+            // 帧：FRAME[ 参数]\n + 像素数据，帧头一般只有 6 字节，但允许带参数
+            List<Long> frames = new ArrayList<>();
+            long position = header.length() + 1;
+            while (position + FRAME_TAG.length() < fileLength) {
+                String frameHeader = readLine(channel, position);
+                if (!frameHeader.startsWith(FRAME_TAG)) {
+                    throw new IOException("bad y4m frame header at " + position);
+                }
+                long data = position + frameHeader.length() + 1;
+                if (data + frameSize > fileLength) {
+                    // 末尾不完整的帧直接丢掉
+                    break;
+                }
+                frames.add(data);
+                position = data + frameSize;
+            }
+            if (frames.isEmpty()) {
+                throw new IOException("y4m file has no frames: " + path);
+            }
+
+            // 按整帧切段映射，每段不超过 Integer.MAX_VALUE
+            frameSegment = new int[frames.size()];
+            frameOffset = new int[frames.size()];
+            int first = 0;
+            while (first < frames.size()) {
+                long segmentStart = frames.get(first);
+                int last = first;
+                while (last + 1 < frames.size()
+                        && frames.get(last + 1) + frameSize - segmentStart <= Integer.MAX_VALUE) {
+                    last++;
+                }
+                long segmentLength = frames.get(last) + frameSize - segmentStart;
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentLength);
+                for (int i = first; i <= last; i++) {
+                    frameSegment[i] = segments.size();
+                    frameOffset[i] = (int) (frames.get(i) - segmentStart);
+                }
+                segments.add(segment);
+                first = last + 1;
+            }
+            // 映射建立后关闭文件不影响映射区
+        }
+        Log.d(TAG, path + ": " + width + "x" + height + "@" + fileFps + ", " + frameSegment.length
+                + " frames in " + segments.size() + " segment(s)");
+    }
+
+    /**
+     * 从 position 开始读到 '\n' 为止（不含换行）
+     */
+    private static String readLine(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_LENGTH);
+        channel.read(buffer, position);
+        buffer.flip();
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                return new String(buffer.array(), 0, i, StandardCharsets.US_ASCII);
+            }
+        }
+        throw new IOException("y4m header line too long at " + position);
+    }
+
+    /**
+     * 只有文件本身这一种格式
+     */
+    public List<CameraEnumerationAndroid.CaptureFormat> getSupportedFormats() {
+        int maxFps = fileFps > 0 ? fileFps : 30;
+        return Collections.singletonList(
+                new CameraEnumerationAndroid.CaptureFormat(width, height, 0, maxFps * 1000));
+    }
+
+    public int getFrameCount() {
+        return frameSegment.length;
+    }
+
+    public long getFramesDelivered() {
+        return framesDelivered;
+    }
+
+    @Override
+    public void initialize(SurfaceTextureHelper surfaceTextureHelper, Context context, CapturerObserver observer) {
+        this.observer = observer;
+        this.handler = surfaceTextureHelper.getHandler();
+    }
+
+    @Override
+    public void startCapture(int width, int height, int framerate) {
+        handler.post(() -> {
+            if (running) {
+                return;
+            }
+            fps = fileFps > 0 ? fileFps : Math.max(1, framerate);
+            running = true;
+            playedFrames = 0;
+            startUptimeMs = SystemClock.uptimeMillis();
+            observer.onCapturerStarted(true);
+            Log.d(TAG, "replay " + path + " at " + fps + "fps");
+            scheduleNext();
+        });
+    }
+
+    @Override
+    public void stopCapture() {
+        ThreadUtils.invokeAtFrontUninterruptibly(handler, () -> {
+            if (running) {
+                running = false;
+                handler.removeCallbacksAndMessages(this);
+                observer.onCapturerStopped();
+            }
+        });
+    }
+
+    @Override
+    public void changeCaptureFormat(int width, int height, int framerate) {
+        // 文件尺寸和帧率是固定的，输出尺寸由 VideoSource.adaptOutputFormat 调整
+    }
+
+    @Override
+    public void dispose() {
+        // MappedByteBuffer 没有显式 unmap，编码器可能还持有已经发出去的帧，交给 GC 回收
+    }
+
+    @Override
+    public boolean isScreencast() {
+        return false;
+    }
+
+    private void scheduleNext() {
+        long dueMs = startUptimeMs + playedFrames * 1000 / fps;
+        handler.postAtTime(this::deliverFrame, this, dueMs);
+    }
+
+    private void deliverFrame() {
+        if (!running) {
+            return;
+        }
+        ByteBuffer segment = segments.get(frameSegment[frameIndex]).duplicate();
+        int offset = frameOffset[frameIndex];
+        int chromaWidth = (width + 1) / 2;
+        int chromaSize = chromaWidth * ((height + 1) / 2);
+        ByteBuffer y = slice(segment, offset, width * height);
+        ByteBuffer u = slice(segment, offset + width * height, chromaSize);
+        ByteBuffer v = slice(segment, offset + width * height + chromaSize, chromaSize);
+        // 映射区生命周期跟随 ByteBuffer 引用，释放回调不需要做任何事
+        JavaI420Buffer buffer = JavaI420Buffer.wrap(width, height, y, width, u, chromaWidth, v, chromaWidth, null);
+        VideoFrame frame = new VideoFrame(buffer, 0, SystemClock.elapsedRealtimeNanos());
+        observer.onFrameCaptured(frame);
+        frame.release();
+
+        frameIndex = (frameIndex + 1) % frameSegment.length;
+        playedFrames++;
+        framesDelivered++;
+        scheduleNext();
+    }
+
+    private static ByteBuffer slice(ByteBuffer segment, int offset, int length) {
+        segment.limit(offset + length);
+        segment.position(offset);
+        ByteBuffer slice = segment.slice();
+        segment.clear();
+        return slice;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.webrtcdemo.messenger.datachannel;
+
+import org.webrtc.DataChannel;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 会话里固定建立的 DataChannel（control / telemetry / bulk）及其可靠性、限速和接收上限
+ */
+public final class ChannelSpec {
+
+    public static final String CONTROL = "control";
+    public static final String TELEMETRY = "telemetry";
+    public static final String BULK = "bulk";
+
+    /** bulk 默认限速 4Mbps，0 表示不限 */
+    public static final int DEFAULT_BULK_BYTES_PER_SECOND = 500_000;
+    /** 接收文件的默认大小上限，块头里的 count 超过它对应的块数时直接丢弃，不建文件也不分配位图 */
+    public static final long DEFAULT_MAX_FILE_BYTES = 256L * 1024 * 1024;
+
+    public static final List<ChannelSpec> DEFAULTS = Arrays.asList(
+            new ChannelSpec(CONTROL, true, -1, 0),
+            new ChannelSpec(TELEMETRY, false, 0, 0),
+            new ChannelSpec(BULK, false, -1, DEFAULT_BULK_BYTES_PER_SECOND));
+
+    public final String label;
+    public final boolean ordered;
+    /** -1 表示可靠传输 */
+    public final int maxRetransmits;
+    /** 发送限速，0 表示不限 */
+    public final int bytesPerSecond;
+    /** 对端发来的单个文件的大小上限 */
+    public final long maxFileBytes;
+
+    public ChannelSpec(String label, boolean ordered, int maxRetransmits, int bytesPerSecond) {
+        this(label, ordered, maxRetransmits, bytesPerSecond, DEFAULT_MAX_FILE_BYTES);
+    }
+
+    public ChannelSpec(String label, boolean ordered, int maxRetransmits, int bytesPerSecond, long maxFileBytes) {
+        this.label = label;
+        this.ordered = ordered;
+        this.maxRetransmits = maxRetransmits;
+        this.bytesPerSecond = bytesPerSecond;
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public boolean isReliable() {
+        return maxRetransmits < 0;
+    }
+
+    DataChannel.Init toInit() {
+        DataChannel.Init init = new DataChannel.Init();
+        init.ordered = ordered;
+        init.maxRetransmits = maxRetransmits;
+        return init;
+    }
+
+    /**
+     * 对端建的、不在默认列表里的通道按有序可靠、不限速处理
+     */
+    static ChannelSpec forChannel(DataChannel channel) {
+        for (ChannelSpec spec : DEFAULTS) {
+            if (spec.label.equals(channel.label())) {
+                return spec;
+            }
+        }
+        return new ChannelSpec(channel.label(), true, -1, 0);
+    }
+
+    @Override
+    public String toString() {
+        return label + "(" + (ordered ? "ordered" : "unordered") + ", "
+                + (isReliable() ? "reliable" : "maxRetransmits=" + maxRetransmits)
+                + (bytesPerSecond > 0 ? ", " + bytesPerSecond + "B/s" : "") + ")";
+    }
+}
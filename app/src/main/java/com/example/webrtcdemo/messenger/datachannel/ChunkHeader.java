@@ -0,0 +1,59 @@
+package com.example.webrtcdemo.messenger.datachannel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * DataChannel 消息前的 24 字节块头（大端）：type(1) reserved(3) transferId(4) index(4) count(4) sendTimeNanos(8)
+ */
+final class ChunkHeader {
+
+    static final int SIZE = 24;
+    static final int MAX_MESSAGE = 16 * 1024;
+    static final int MAX_PAYLOAD = MAX_MESSAGE - SIZE;
+
+    static final byte TYPE_MESSAGE = 1;
+    static final byte TYPE_FILE = 2;
+
+    byte type;
+    int transferId;
+    int index;
+    int count;
+    long sendTimeNanos;
+
+    void write(ByteBuffer dst) {
+        dst.put(type);
+        dst.put((byte) 0);
+        dst.putShort((short) 0);
+        dst.putInt(transferId);
+        dst.putInt(index);
+        dst.putInt(count);
+        dst.putLong(sendTimeNanos);
+    }
+
+    /**
+     * 从 src 当前位置读出块头，position 前进到负载开始处
+     *
+     * @return 长度不够或字段不合法时返回 false
+     */
+    boolean read(ByteBuffer src) {
+        if (src.remaining() < SIZE) {
+            return false;
+        }
+        type = src.get();
+        src.get();
+        src.getShort();
+        transferId = src.getInt();
+        index = src.getInt();
+        count = src.getInt();
+        sendTimeNanos = src.getLong();
+        return (type == TYPE_MESSAGE || type == TYPE_FILE)
+                && count > 0 && index >= 0 && index < count && src.remaining() <= MAX_PAYLOAD;
+    }
+
+    /**
+     * length 字节要拆成的块数，空消息也占一块
+     */
+    static int chunkCount(long length) {
+        return (int) Math.max(1, (length + MAX_PAYLOAD - 1) / MAX_PAYLOAD);
+    }
+}
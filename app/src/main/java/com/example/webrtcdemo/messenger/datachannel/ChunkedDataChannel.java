@@ -0,0 +1,734 @@
+package com.example.webrtcdemo.messenger.datachannel;
+
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.webrtcdemo.messenger.processing.DirectBufferPool;
+
+import org.webrtc.DataChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一条 DataChannel 上按 {@link ChunkHeader} 分块收发消息和文件，带 bufferedAmount 流控和限速
+ */
+public class ChunkedDataChannel implements DataChannel.Observer {
+
+    private static final String TAG = "ChunkedDataChannel";
+
+    public interface Listener {
+        /** 在 DataChannel 工作线程上回调 */
+        void onMessage(ChunkedDataChannel channel, byte[] data);
+
+        /** 文件已完整写到 file，length 为字节数 */
+        void onFileReceived(ChunkedDataChannel channel, File file, long length);
+    }
+
+    /** bufferedAmount 到这里停发 */
+    static final long HIGH_WATER_BYTES = 1024 * 1024;
+    /** 回落到这里继续发 */
+    static final long LOW_WATER_BYTES = 256 * 1024;
+    /** 单条消息上限，要能放进一次 binder 回调 */
+    public static final int MAX_MESSAGE_BYTES = 256 * 1024;
+    /** 排队未发完的消息总量上限，超出时 sendMessage 直接拒绝 */
+    private static final long MAX_QUEUED_MESSAGE_BYTES = 4L * 1024 * 1024;
+    /** 限速时允许的突发：100ms 的量，至少一整块 */
+    private static final int BURST_MS = 100;
+    private static final long MESSAGE_TIMEOUT_MS = 10_000;
+    private static final long FILE_IDLE_TIMEOUT_MS = 30_000;
+    private static final long SWEEP_INTERVAL_MS = 1000;
+    /** 每条通道同时接收的文件数上限，每个都占一个打开的文件和一份位图 */
+    static final int MAX_CONCURRENT_FILES = 4;
+
+    private final String owner;
+    private final ChannelSpec spec;
+    private final DataChannel channel;
+    private final ScheduledExecutorService executor;
+    private final DirectBufferPool pool;
+    private final File receiveDir;
+    private final Listener listener;
+    /** 接收文件名前缀，owner 和 label 都可能来自对端，先过滤 */
+    private final String filePrefix;
+    /** 对端一个文件最多能有多少块 */
+    private final int maxFileChunks;
+
+    // ---------------- 以下只在 executor 上访问 ----------------
+    private final ArrayDeque<Outgoing> queue = new ArrayDeque<>();
+    /** M84 的 DataChannel.send 会先把数据拷进 byte[]，同一个发送缓冲可以一直复用 */
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(ChunkHeader.MAX_MESSAGE);
+    private final ChunkHeader sendHeader = new ChunkHeader();
+    private final Map<Integer, PartialMessage> partialMessages = new HashMap<>();
+    private final Map<Integer, PartialFile> partialFiles = new HashMap<>();
+    private int nextTransferId;
+    private int bytesPerSecond;
+    private double tokens;
+    private long tokensAtNanos = System.nanoTime();
+    private boolean pumpScheduled;
+    private long stallStartNanos;
+    private long lastSweepMs;
+    private boolean closed;
+
+    /** 只在 DataChannel 回调线程上访问 */
+    private final ChunkHeader receiveHeader = new ChunkHeader();
+
+    private volatile boolean stalled;
+    private volatile DataChannel.State state;
+    private volatile long bufferedAmount;
+    private final AtomicBoolean resumePosted = new AtomicBoolean();
+    private final AtomicLong queuedMessageBytes = new AtomicLong();
+
+    // 计数器，单写者（executor），snapshot 在 binder 线程读
+    private volatile long messagesSent;
+    private volatile long messagesReceived;
+    private volatile long filesSent;
+    private volatile long filesReceived;
+    private volatile long chunksSent;
+    private volatile long chunksReceived;
+    private volatile long bytesSent;
+    private volatile long bytesReceived;
+    private volatile long stalls;
+    private volatile long stalledNanos;
+    private volatile long expiredTransfers;
+    private volatile long failedTransfers;
+    /** 超出块数或并发上限被丢弃的块，网络线程和 executor 都会写 */
+    private final AtomicLong rejectedChunks = new AtomicLong();
+    private volatile double latencyAvgMs;
+    private volatile double latencyMaxMs;
+
+    // 吞吐按两次 snapshot 之间的差值计算
+    private long lastSnapshotMs;
+    private long lastSnapshotBytesSent;
+    private long lastSnapshotBytesReceived;
+
+    ChunkedDataChannel(String owner, ChannelSpec spec, DataChannel channel, ScheduledExecutorService executor,
+                       DirectBufferPool pool, File receiveDir, Listener listener) {
+        this.owner = owner;
+        this.spec = spec;
+        this.channel = channel;
+        this.executor = executor;
+        this.pool = pool;
+        this.receiveDir = receiveDir;
+        this.listener = listener;
+        this.filePrefix = ReceivedFiles.safeName(owner) + "_" + ReceivedFiles.safeName(spec.label);
+        this.maxFileChunks = ChunkHeader.chunkCount(spec.maxFileBytes);
+        this.bytesPerSecond = spec.bytesPerSecond;
+        this.state = channel.state();
+        this.lastSnapshotMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * 注册回调，对端在注册前发来的消息由 native 层缓存，注册时补发
+     */
+    void start() {
+        channel.registerObserver(this);
+        Log.d(TAG, owner + " channel " + spec + " state=" + state);
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getLabel() {
+        return spec.label;
+    }
+
+    // ---------------- 发送 ----------------
+
+    /**
+     * @return 通道已关闭、消息超过 {@link #MAX_MESSAGE_BYTES} 或排队的消息太多时返回 false
+     */
+    public boolean sendMessage(byte[] data) {
+        if (data.length > MAX_MESSAGE_BYTES) {
+            Log.w(TAG, owner + "/" + spec.label + " message too large: " + data.length);
+            return false;
+        }
+        if (queuedMessageBytes.addAndGet(data.length) > MAX_QUEUED_MESSAGE_BYTES) {
+            queuedMessageBytes.addAndGet(-data.length);
+            Log.w(TAG, owner + "/" + spec.label + " send queue full");
+            return false;
+        }
+        boolean posted = post(() -> enqueue(new MessageOutgoing(nextTransferId++, data)));
+        if (!posted) {
+            queuedMessageBytes.addAndGet(-data.length);
+        }
+        return posted;
+    }
+
+    /**
+     * 发送一个普通文件，fd 的所有权转交给本类，发完或失败时关闭
+     *
+     * @return fd 不是普通文件（取不到大小）或通道已关闭时返回 false，此时 fd 也已关闭
+     */
+    public boolean sendFile(ParcelFileDescriptor fd) {
+        long length = fd.getStatSize();
+        if (length < 0 || !post(() -> enqueue(new FileOutgoing(nextTransferId++, fd, length)))) {
+            Log.w(TAG, owner + "/" + spec.label + " cannot send file, length=" + length);
+            closeQuietly(fd);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param bytesPerSecond 0 表示不限速
+     */
+    public void setRateLimit(int bytesPerSecond) {
+        post(() -> {
+            this.bytesPerSecond = Math.max(0, bytesPerSecond);
+            tokens = 0;
+            tokensAtNanos = System.nanoTime();
+            pump();
+        });
+    }
+
+    private void enqueue(Outgoing outgoing) {
+        if (closed) {
+            abort(outgoing);
+            return;
+        }
+        queue.addLast(outgoing);
+        pump();
+    }
+
+    /**
+     * 尽量多发块，直到队列空、到高水位或限速令牌不够
+     */
+    private void pump() {
+        if (closed || state != DataChannel.State.OPEN) {
+            return;
+        }
+        while (!queue.isEmpty()) {
+            long buffered = channel.bufferedAmount();
+            bufferedAmount = buffered;
+            if (buffered >= HIGH_WATER_BYTES) {
+                if (!stalled) {
+                    stallStartNanos = System.nanoTime();
+                    stalls++;
+                    stalled = true;
+                }
+                // stalled 置位前缓冲可能已经回落，那次回调没看到 stalled，这里再查一次
+                if (channel.bufferedAmount() > LOW_WATER_BYTES) {
+                    return;
+                }
+            }
+            if (stalled) {
+                stalled = false;
+                stalledNanos += System.nanoTime() - stallStartNanos;
+            }
+
+            Outgoing outgoing = queue.peekFirst();
+            int index = outgoing.nextIndex;
+            int length = outgoing.chunkLength(index);
+            if (!takeTokens(ChunkHeader.SIZE + length)) {
+                return;
+            }
+
+            sendBuffer.clear();
+            sendHeader.type = outgoing.type;
+            sendHeader.transferId = outgoing.transferId;
+            sendHeader.index = index;
+            sendHeader.count = outgoing.count;
+            sendHeader.sendTimeNanos = SystemClock.elapsedRealtimeNanos();
+            sendHeader.write(sendBuffer);
+            try {
+                outgoing.fill(sendBuffer, index, length);
+            } catch (IOException e) {
+                Log.e(TAG, owner + "/" + spec.label + " read transfer " + outgoing.transferId + " failed", e);
+                queue.pollFirst();
+                abort(outgoing);
+                continue;
+            }
+            sendBuffer.flip();
+            if (!channel.send(new DataChannel.Buffer(sendBuffer, true))) {
+                // 只有通道不在 OPEN 或 SCTP 缓冲满时才会失败，后者有高水位挡着
+                Log.w(TAG, owner + "/" + spec.label + " send failed, state=" + channel.state());
+                abortAll();
+                return;
+            }
+            chunksSent++;
+            bytesSent += length;
+            if (++outgoing.nextIndex == outgoing.count) {
+                queue.pollFirst();
+                finish(outgoing);
+            }
+        }
+    }
+
+    /**
+     * 令牌不够时排期到够为止再 pump
+     */
+    private boolean takeTokens(int size) {
+        if (bytesPerSecond <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        double burst = Math.max(ChunkHeader.MAX_MESSAGE, (double) bytesPerSecond * BURST_MS / 1000);
+        tokens = Math.min(burst, tokens + (now - tokensAtNanos) * (double) bytesPerSecond / 1e9);
+        tokensAtNanos = now;
+        if (tokens >= size) {
+            tokens -= size;
+            return true;
+        }
+        if (!pumpScheduled) {
+            pumpScheduled = true;
+            long waitNanos = (long) ((size - tokens) * 1e9 / bytesPerSecond);
+            try {
+                executor.schedule(() -> {
+                    pumpScheduled = false;
+                    pump();
+                }, waitNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                pumpScheduled = false;
+            }
+        }
+        return false;
+    }
+
+    private void finish(Outgoing outgoing) {
+        outgoing.close();
+        if (outgoing.type == ChunkHeader.TYPE_MESSAGE) {
+            queuedMessageBytes.addAndGet(-outgoing.length);
+            messagesSent++;
+        } else {
+            filesSent++;
+            Log.d(TAG, owner + "/" + spec.label + " file " + outgoing.transferId + " sent, " + outgoing.length + " bytes");
+        }
+    }
+
+    private void abort(Outgoing outgoing) {
+        outgoing.close();
+        if (outgoing.type == ChunkHeader.TYPE_MESSAGE) {
+            queuedMessageBytes.addAndGet(-outgoing.length);
+        }
+        failedTransfers++;
+    }
+
+    private void abortAll() {
+        Outgoing outgoing;
+        while ((outgoing = queue.pollFirst()) != null) {
+            abort(outgoing);
+        }
+    }
+
+    // ---------------- DataChannel 回调（WebRTC 网络线程） ----------------
+
+    @Override
+    public void onBufferedAmountChange(long previousAmount) {
+        if (!stalled) {
+            return;
+        }
+        long amount = channel.bufferedAmount();
+        bufferedAmount = amount;
+        if (amount <= LOW_WATER_BYTES && resumePosted.compareAndSet(false, true)) {
+            post(() -> {
+                resumePosted.set(false);
+                pump();
+            });
+        }
+    }
+
+    @Override
+    public void onStateChange() {
+        DataChannel.State newState = channel.state();
+        state = newState;
+        Log.d(TAG, owner + "/" + spec.label + " state " + newState);
+        if (newState == DataChannel.State.OPEN) {
+            post(this::pump);
+        } else if (newState == DataChannel.State.CLOSED) {
+            post(this::abortAll);
+        }
+    }
+
+    @Override
+    public void onMessage(DataChannel.Buffer buffer) {
+        long arrivalNanos = SystemClock.elapsedRealtimeNanos();
+        ByteBuffer data = buffer.data;
+        ChunkHeader header = receiveHeader;
+        if (!buffer.binary || !header.read(data)) {
+            Log.w(TAG, owner + "/" + spec.label + " dropped malformed message, " + data.limit() + " bytes");
+            return;
+        }
+        int transferId = header.transferId;
+        int index = header.index;
+        int count = header.count;
+        long latencyNanos = arrivalNanos - header.sendTimeNanos;
+        int length = data.remaining();
+        // buffer.data 只在回调期间有效，必须在这里拷走
+        if (header.type == ChunkHeader.TYPE_MESSAGE) {
+            if (count > ChunkHeader.chunkCount(MAX_MESSAGE_BYTES)) {
+                Log.w(TAG, owner + "/" + spec.label + " message with " + count + " chunks exceeds limit");
+                rejectedChunks.incrementAndGet();
+                return;
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            post(() -> onMessageChunk(transferId, index, count, payload, latencyNanos));
+        } else {
+            if (count > maxFileChunks) {
+                // 每块都会走到这里，只在第一块时打日志
+                if (index == 0) {
+                    Log.w(TAG, owner + "/" + spec.label + " file with " + count + " chunks exceeds "
+                            + spec.maxFileBytes + " bytes");
+                }
+                rejectedChunks.incrementAndGet();
+                return;
+            }
+            ByteBuffer payload = pool.acquire(length);
+            payload.put(data);
+            payload.flip();
+            if (!post(() -> onFileChunk(transferId, index, count, payload, latencyNanos))) {
+                pool.release(payload);
+            }
+        }
+    }
+
+    // ---------------- 接收（executor） ----------------
+
+    private void onMessageChunk(int transferId, int index, int count, byte[] payload, long latencyNanos) {
+        if (closed) {
+            return;
+        }
+        recordReceived(payload.length, latencyNanos);
+        sweep();
+        if (count == 1) {
+            messagesReceived++;
+            listener.onMessage(this, payload);
+            return;
+        }
+        PartialMessage partial = partialMessages.get(transferId);
+        if (partial == null) {
+            partial = new PartialMessage(count);
+            partialMessages.put(transferId, partial);
+        }
+        if (partial.parts.length != count || partial.parts[index] != null) {
+            return;
+        }
+        partial.parts[index] = payload;
+        partial.received++;
+        partial.length += payload.length;
+        if (partial.received < count) {
+            return;
+        }
+        partialMessages.remove(transferId);
+        byte[] message = new byte[partial.length];
+        int offset = 0;
+        for (byte[] part : partial.parts) {
+            System.arraycopy(part, 0, message, offset, part.length);
+            offset += part.length;
+        }
+        messagesReceived++;
+        listener.onMessage(this, message);
+    }
+
+    private void onFileChunk(int transferId, int index, int count, ByteBuffer payload, long latencyNanos) {
+        try {
+            if (closed) {
+                return;
+            }
+            int length = payload.remaining();
+            recordReceived(length, latencyNanos);
+            sweep();
+            PartialFile partial = partialFiles.get(transferId);
+            if (partial == null) {
+                if (partialFiles.size() >= MAX_CONCURRENT_FILES) {
+                    rejectedChunks.incrementAndGet();
+                    return;
+                }
+                partial = new PartialFile(new File(receiveDir, fileName(transferId) + ReceivedFiles.PART_SUFFIX), count);
+                partialFiles.put(transferId, partial);
+            }
+            partial.lastChunkMs = SystemClock.elapsedRealtime();
+            if (partial.count != count || partial.received.get(index)) {
+                return;
+            }
+            long position = (long) index * ChunkHeader.MAX_PAYLOAD;
+            while (payload.hasRemaining()) {
+                position += partial.channel.write(payload, position);
+            }
+            partial.received.set(index);
+            partial.receivedCount++;
+            partial.length += length;
+            if (partial.receivedCount < count) {
+                return;
+            }
+            partialFiles.remove(transferId);
+            partial.channel.close();
+            File done = new File(receiveDir, fileName(transferId));
+            if (!partial.file.renameTo(done)) {
+                done = partial.file;
+            }
+            filesReceived++;
+            Log.d(TAG, owner + "/" + spec.label + " file received: " + done + ", " + partial.length + " bytes");
+            // 刚收完的文件是最新的，不会被删；进行中的 .part 不动
+            ReceivedFiles.prune(receiveDir, false);
+            listener.onFileReceived(this, done, partial.length);
+        } catch (IOException e) {
+            Log.e(TAG, owner + "/" + spec.label + " write file " + transferId + " failed", e);
+            PartialFile partial = partialFiles.remove(transferId);
+            if (partial != null) {
+                partial.discard();
+            }
+            failedTransfers++;
+        } finally {
+            pool.release(payload);
+        }
+    }
+
+    private String fileName(int transferId) {
+        return filePrefix + "_" + (transferId & 0xFFFFFFFFL);
+    }
+
+    private void recordReceived(int length, long latencyNanos) {
+        chunksReceived++;
+        bytesReceived += length;
+        double ms = latencyNanos / 1e6;
+        double avg = latencyAvgMs;
+        latencyAvgMs = avg == 0 ? ms : avg + (ms - avg) / 16;
+        if (ms > latencyMaxMs) {
+            latencyMaxMs = ms;
+        }
+    }
+
+    /**
+     * 丢掉超时没收齐的传输（部分可靠通道上丢了块，或对端中途断开）
+     */
+    private void sweep() {
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastSweepMs < SWEEP_INTERVAL_MS) {
+            return;
+        }
+        lastSweepMs = now;
+        for (Iterator<PartialMessage> it = partialMessages.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().firstChunkMs > MESSAGE_TIMEOUT_MS) {
+                it.remove();
+                expiredTransfers++;
+            }
+        }
+        for (Iterator<PartialFile> it = partialFiles.values().iterator(); it.hasNext(); ) {
+            PartialFile partial = it.next();
+            if (now - partial.lastChunkMs > FILE_IDLE_TIMEOUT_MS) {
+                it.remove();
+                partial.discard();
+                expiredTransfers++;
+            }
+        }
+    }
+
+    // ---------------- 生命周期 ----------------
+
+    /**
+     * 必须在 executor 上调用；之后不再有回调，DataChannel 的 native 对象被释放
+     */
+    void closeOnExecutor() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        channel.unregisterObserver();
+        channel.close();
+        channel.dispose();
+        state = DataChannel.State.CLOSED;
+        abortAll();
+        partialMessages.clear();
+        for (PartialFile partial : partialFiles.values()) {
+            partial.discard();
+        }
+        partialFiles.clear();
+    }
+
+    /**
+     * key 为 label / mode / state / buffered_amount / queued_message_bytes / messages_* / files_* / chunks_* / bytes_* /
+     * send_kbps / recv_kbps（距上次调用的平均值）/ stalls / stalled_ms / expired / failed / rejected / latency_avg_ms /
+     * latency_max_ms
+     */
+    public synchronized Bundle snapshot() {
+        long now = SystemClock.elapsedRealtime();
+        long sent = bytesSent;
+        long received = bytesReceived;
+        long elapsedMs = Math.max(1, now - lastSnapshotMs);
+        Bundle bundle = new Bundle();
+        bundle.putString("label", spec.label);
+        bundle.putString("mode", spec.toString());
+        bundle.putString("state", state.name());
+        bundle.putLong("buffered_amount", bufferedAmount);
+        bundle.putLong("queued_message_bytes", queuedMessageBytes.get());
+        bundle.putLong("messages_sent", messagesSent);
+        bundle.putLong("messages_received", messagesReceived);
+        bundle.putLong("files_sent", filesSent);
+        bundle.putLong("files_received", filesReceived);
+        bundle.putLong("chunks_sent", chunksSent);
+        bundle.putLong("chunks_received", chunksReceived);
+        bundle.putLong("bytes_sent", sent);
+        bundle.putLong("bytes_received", received);
+        bundle.putDouble("send_kbps", (sent - lastSnapshotBytesSent) * 8.0 / elapsedMs);
+        bundle.putDouble("recv_kbps", (received - lastSnapshotBytesReceived) * 8.0 / elapsedMs);
+        bundle.putLong("stalls", stalls);
+        bundle.putLong("stalled_ms", TimeUnit.NANOSECONDS.toMillis(stalledNanos));
+        bundle.putLong("expired", expiredTransfers);
+        bundle.putLong("failed", failedTransfers);
+        bundle.putLong("rejected", rejectedChunks.get());
+        bundle.putDouble("latency_avg_ms", latencyAvgMs);
+        bundle.putDouble("latency_max_ms", latencyMaxMs);
+        lastSnapshotMs = now;
+        lastSnapshotBytesSent = sent;
+        lastSnapshotBytesReceived = received;
+        return bundle;
+    }
+
+    private boolean post(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            // executor 已随会话关闭
+            return false;
+        }
+    }
+
+    private static void closeQuietly(ParcelFileDescriptor fd) {
+        try {
+            fd.close();
+        } catch (IOException e) {
+            Log.w(TAG, "close fd failed", e);
+        }
+    }
+
+    // ---------------- 传输状态 ----------------
+
+    private abstract static class Outgoing {
+        final byte type;
+        final int transferId;
+        final long length;
+        final int count;
+        int nextIndex;
+
+        Outgoing(byte type, int transferId, long length) {
+            this.type = type;
+            this.transferId = transferId;
+            this.length = length;
+            this.count = ChunkHeader.chunkCount(length);
+        }
+
+        int chunkLength(int index) {
+            return (int) Math.min(ChunkHeader.MAX_PAYLOAD, length - (long) index * ChunkHeader.MAX_PAYLOAD);
+        }
+
+        /** 把第 index 块的 length 字节负载写进 dst */
+        abstract void fill(ByteBuffer dst, int index, int length) throws IOException;
+
+        void close() {
+        }
+    }
+
+    private static final class MessageOutgoing extends Outgoing {
+        private final byte[] data;
+
+        MessageOutgoing(int transferId, byte[] data) {
+            super(ChunkHeader.TYPE_MESSAGE, transferId, data.length);
+            this.data = data;
+        }
+
+        @Override
+        void fill(ByteBuffer dst, int index, int length) {
+            dst.put(data, index * ChunkHeader.MAX_PAYLOAD, length);
+        }
+    }
+
+    /**
+     * 文件按需读取，不整体读进内存
+     */
+    private static final class FileOutgoing extends Outgoing {
+        private final ParcelFileDescriptor fd;
+        private final FileChannel file;
+
+        FileOutgoing(int transferId, ParcelFileDescriptor fd, long length) {
+            super(ChunkHeader.TYPE_FILE, transferId, length);
+            this.fd = fd;
+            this.file = new ParcelFileDescriptor.AutoCloseInputStream(fd).getChannel();
+        }
+
+        @Override
+        void fill(ByteBuffer dst, int index, int length) throws IOException {
+            long position = (long) index * ChunkHeader.MAX_PAYLOAD;
+            int end = dst.position() + length;
+            int limit = dst.limit();
+            dst.limit(end);
+            try {
+                while (dst.position() < end) {
+                    int n = file.read(dst, position);
+                    if (n < 0) {
+                        throw new IOException("file shrank while sending");
+                    }
+                    position += n;
+                }
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        void close() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                Log.w(TAG, "close file failed", e);
+            }
+            closeQuietly(fd);
+        }
+    }
+
+    private static final class PartialMessage {
+        final byte[][] parts;
+        final long firstChunkMs = SystemClock.elapsedRealtime();
+        int received;
+        int length;
+
+        PartialMessage(int count) {
+            this.parts = new byte[count][];
+        }
+    }
+
+    private static final class PartialFile {
+        final File file;
+        final FileChannel channel;
+        final int count;
+        final BitSet received;
+        int receivedCount;
+        long length;
+        long lastChunkMs;
+
+        PartialFile(File file, int count) throws IOException {
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            this.count = count;
+            this.received = new BitSet(count);
+        }
+
+        void discard() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "close " + file + " failed", e);
+            }
+            if (!file.delete()) {
+                Log.w(TAG, "delete " + file + " failed");
+            }
+        }
+    }
+}
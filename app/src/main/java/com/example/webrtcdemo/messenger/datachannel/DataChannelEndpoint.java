@@ -0,0 +1,138 @@
+package com.example.webrtcdemo.messenger.datachannel;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import com.example.webrtcdemo.messenger.processing.DirectBufferPool;
+
+import org.webrtc.DataChannel;
+import org.webrtc.PeerConnection;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 一条 PeerConnection 上的所有 DataChannel，按 label 查找，共用一个 executor 和接收缓冲池
+ */
+public class DataChannelEndpoint {
+
+    private static final String TAG = "DataChannelEndpoint";
+
+    private final String owner;
+    private final ScheduledExecutorService executor;
+    private final DirectBufferPool pool;
+    private final File receiveDir;
+    private final ChunkedDataChannel.Listener listener;
+    private final Map<String, ChunkedDataChannel> channels = new ConcurrentHashMap<>();
+    /** 通道建立前设置的限速，建立时生效 */
+    private final Map<String, Integer> rateLimits = new ConcurrentHashMap<>();
+    private boolean closed;
+
+    /**
+     * @param owner 所属 PeerConnection 的 session key，用于日志、回调和接收文件名
+     */
+    public DataChannelEndpoint(String owner, ScheduledExecutorService executor, DirectBufferPool pool,
+                               File receiveDir, ChunkedDataChannel.Listener listener) {
+        this.owner = owner;
+        this.executor = executor;
+        this.pool = pool;
+        this.receiveDir = receiveDir;
+        this.listener = listener;
+    }
+
+    public void createDefaultChannels(PeerConnection pc) {
+        for (ChannelSpec spec : ChannelSpec.DEFAULTS) {
+            DataChannel channel = pc.createDataChannel(spec.label, spec.toInit());
+            if (channel == null) {
+                Log.e(TAG, owner + " createDataChannel " + spec + " failed");
+                continue;
+            }
+            adopt(channel, spec);
+        }
+    }
+
+    public void adopt(DataChannel channel) {
+        adopt(channel, ChannelSpec.forChannel(channel));
+    }
+
+    private synchronized void adopt(DataChannel channel, ChannelSpec spec) {
+        if (closed) {
+            // 关闭之后才到的 onDataChannel
+            channel.dispose();
+            return;
+        }
+        ChunkedDataChannel chunked = new ChunkedDataChannel(owner, spec, channel, executor, pool, receiveDir, listener);
+        ChunkedDataChannel previous = channels.put(spec.label, chunked);
+        if (previous != null) {
+            Log.w(TAG, owner + " duplicated channel label " + spec.label + ", replacing");
+            // 这里在 WebRTC 信令线程上，而关闭要同步等信令线程，只能异步关
+            executor.execute(previous::closeOnExecutor);
+        }
+        Integer rateLimit = rateLimits.get(spec.label);
+        if (rateLimit != null) {
+            chunked.setRateLimit(rateLimit);
+        }
+        chunked.start();
+    }
+
+    public ChunkedDataChannel get(String label) {
+        return channels.get(label);
+    }
+
+    public void setRateLimit(String label, int bytesPerSecond) {
+        rateLimits.put(label, bytesPerSecond);
+        ChunkedDataChannel channel = channels.get(label);
+        if (channel != null) {
+            channel.setRateLimit(bytesPerSecond);
+        }
+    }
+
+    /**
+     * key 为 label，value 为 {@link ChunkedDataChannel#snapshot()}
+     */
+    public Bundle snapshot() {
+        Bundle bundle = new Bundle();
+        for (ChunkedDataChannel channel : channels.values()) {
+            bundle.putBundle(channel.getLabel(), channel.snapshot());
+        }
+        return bundle;
+    }
+
+    /**
+     * 不能在 WebRTC 信令线程上调用：关闭时要等 executor，executor 又要等信令线程注销回调
+     */
+    public void close() {
+        List<ChunkedDataChannel> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(channels.values());
+            channels.clear();
+        }
+        // 不持锁等待，信令线程上的 adopt 要拿同一把锁
+        for (ChunkedDataChannel channel : toClose) {
+            closeChannel(channel);
+        }
+    }
+
+    /**
+     * 在 executor 上关闭并等它完成，保证返回后没有任务再碰这条 DataChannel
+     */
+    private void closeChannel(ChunkedDataChannel channel) {
+        try {
+            executor.submit(channel::closeOnExecutor).get();
+        } catch (RejectedExecutionException e) {
+            // executor 已经停了，没有并发访问，直接在当前线程关
+            channel.closeOnExecutor();
+        } catch (ExecutionException e) {
+            Log.e(TAG, owner + " close channel " + channel.getLabel() + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
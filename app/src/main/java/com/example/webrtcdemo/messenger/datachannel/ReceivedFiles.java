@@ -0,0 +1,97 @@
+package com.example.webrtcdemo.messenger.datachannel;
+
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * DataChannel 接收目录的安全文件名和清理（按存放时间和目录总量）
+ */
+public final class ReceivedFiles {
+
+    private static final String TAG = "ReceivedFiles";
+
+    static final String PART_SUFFIX = ".part";
+    static final long MAX_AGE_MS = 24L * 60 * 60 * 1000;
+    static final long MAX_TOTAL_BYTES = 1024L * 1024 * 1024;
+    private static final int MAX_NAME_PART = 48;
+
+    private ReceivedFiles() {
+    }
+
+    /**
+     * owner / label 里不安全的字符换成 '_'，过长的截断
+     */
+    static String safeName(String name) {
+        int length = Math.min(name.length(), MAX_NAME_PART);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '_';
+            sb.append(safe ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 删掉过期的文件，再把总量删到上限以内
+     *
+     * @param includePartial 是否也清理 .part（只有确定没有进行中的传输时才能传 true）
+     */
+    public static void prune(File dir, boolean includePartial) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<File> kept = new ArrayList<>(files.length);
+        long total = 0;
+        int deleted = 0;
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            boolean partial = file.getName().endsWith(PART_SUFFIX);
+            if (partial && !includePartial) {
+                total += file.length();
+                continue;
+            }
+            if (partial || now - file.lastModified() > MAX_AGE_MS) {
+                deleted += delete(file);
+            } else {
+                kept.add(file);
+                total += file.length();
+            }
+        }
+        if (total > MAX_TOTAL_BYTES) {
+            File[] oldestFirst = kept.toArray(new File[0]);
+            Arrays.sort(oldestFirst, Comparator.comparingLong(File::lastModified));
+            for (File file : oldestFirst) {
+                if (total <= MAX_TOTAL_BYTES) {
+                    break;
+                }
+                long length = file.length();
+                if (delete(file) > 0) {
+                    total -= length;
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            Log.d(TAG, "pruned " + deleted + " files in " + dir + ", " + total + " bytes left");
+        }
+    }
+
+    private static int delete(File file) {
+        if (file.delete()) {
+            return 1;
+        }
+        Log.w(TAG, "delete " + file + " failed");
+        return 0;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.webrtcdemo.messenger.ipc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 客户端把 IWebRtcCallback.onDataMessage 的分片按 (peer, label) 拼回完整消息，分片对不上时丢弃整条
+ */
+public class DataMessageAssembler {
+
+    public interface Listener {
+        void onMessage(String peer, String label, byte[] data);
+    }
+
+    private static final class Partial {
+        final int messageId;
+        final byte[] data;
+        int filled;
+
+        Partial(int messageId, int totalLength) {
+            this.messageId = messageId;
+            this.data = new byte[totalLength];
+        }
+    }
+
+    private final int maxMessageBytes;
+    private final Listener listener;
+    private final Map<String, Partial> partials = new HashMap<>();
+    private long dropped;
+
+    public DataMessageAssembler(int maxMessageBytes, Listener listener) {
+        this.maxMessageBytes = maxMessageBytes;
+        this.listener = listener;
+    }
+
+    /**
+     * 收到一个分片，消息拼完整时回调 listener
+     *
+     * @return 分片被丢弃时返回 false
+     */
+    public boolean onFragment(String peer, String label, int messageId, int offset, int totalLength, byte[] chunk) {
+        byte[] complete;
+        synchronized (this) {
+            String key = peer + "/" + label;
+            Partial partial = partials.get(key);
+            if (offset == 0) {
+                if (partial != null) {
+                    // 上一条没拼完就开始了新消息
+                    partials.remove(key);
+                    dropped++;
+                }
+                if (totalLength < 0 || totalLength > maxMessageBytes || chunk.length > totalLength) {
+                    dropped++;
+                    return false;
+                }
+                if (chunk.length == totalLength) {
+                    complete = chunk;
+                } else {
+                    partial = new Partial(messageId, totalLength);
+                    System.arraycopy(chunk, 0, partial.data, 0, chunk.length);
+                    partial.filled = chunk.length;
+                    partials.put(key, partial);
+                    return true;
+                }
+            } else {
+                if (partial == null || partial.messageId != messageId || partial.filled != offset
+                        || partial.data.length != totalLength || chunk.length > totalLength - offset) {
+                    if (partial != null) {
+                        partials.remove(key);
+                        dropped++;
+                    }
+                    return false;
+                }
+                System.arraycopy(chunk, 0, partial.data, offset, chunk.length);
+                partial.filled += chunk.length;
+                if (partial.filled < totalLength) {
+                    return true;
+                }
+                partials.remove(key);
+                complete = partial.data;
+            }
+        }
+        listener.onMessage(peer, label, complete);
+        return true;
+    }
+
+    /**
+     * 没拼完就被放弃的消息数
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+}
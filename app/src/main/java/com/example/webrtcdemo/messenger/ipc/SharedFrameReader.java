@@ -0,0 +1,160 @@
+package com.example.webrtcdemo.messenger.ipc;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 客户端的帧通道：等门铃，把共享内存里最新一帧的槽直接包装成 VideoFrame 交给 sink
+ */
+@RequiresApi(api = Build.VERSION_CODES.O_MR1)
+public class SharedFrameReader {
+
+    private static final String TAG = "SharedFrameReader";
+
+    private final int channelId;
+    private final SharedMemory memory;
+    private final ByteBuffer mapping;
+    private final SharedFrameRing ring;
+    private final ParcelFileDescriptor doorbell;
+    private final VideoSink sink;
+    private final Thread thread;
+
+    private final Object lock = new Object();
+    private int outstandingFrames;
+    private boolean closed;
+    private boolean unmapped;
+
+    /**
+     * @param channel {@link SharedFrameWriter#toBundle()} 跨进程传过来的 Bundle
+     */
+    public SharedFrameReader(Bundle channel, VideoSink sink) throws IOException {
+        this.channelId = channel.getInt(SharedFrameWriter.KEY_CHANNEL_ID);
+        this.memory = channel.getParcelable(SharedFrameWriter.KEY_MEMORY);
+        this.doorbell = channel.getParcelable(SharedFrameWriter.KEY_DOORBELL);
+        if (memory == null || doorbell == null) {
+            throw new IOException("invalid frame channel bundle");
+        }
+        try {
+            mapping = memory.mapReadWrite();
+        } catch (ErrnoException e) {
+            throw new IOException(e);
+        }
+        this.ring = SharedFrameRing.attach(mapping);
+        this.sink = sink;
+        this.thread = new Thread(this::readLoop, "FrameReader-" + channelId);
+    }
+
+    public int getChannelId() {
+        return channelId;
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void readLoop() {
+        byte[] drain = new byte[64];
+        try (InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(doorbell)) {
+            // 一次读空门铃里积压的字节，只取最新一帧
+            while (in.read(drain) > 0) {
+                deliverLatest();
+            }
+        } catch (IOException e) {
+            if (!isClosed()) {
+                Log.w(TAG, "doorbell read failed for channel " + channelId, e);
+            }
+        }
+        // 映射可能已经被 close 解除，这里只能读本地计数
+        Log.d(TAG, "channel " + channelId + " ended, readerDropped=" + ring.getReaderDropped());
+        close();
+    }
+
+    private void deliverLatest() {
+        int slot;
+        synchronized (lock) {
+            // 和 close 互斥，保证占住槽之后映射不会被解除
+            if (closed) {
+                return;
+            }
+            slot = ring.acquireLatest();
+            if (slot < 0) {
+                return;
+            }
+            outstandingFrames++;
+        }
+        int width = ring.width(slot);
+        JavaI420Buffer buffer = JavaI420Buffer.wrap(width, ring.height(slot),
+                ring.plane(slot, 0), SharedFrameRing.planeStride(width, 0),
+                ring.plane(slot, 1), SharedFrameRing.planeStride(width, 1),
+                ring.plane(slot, 2), SharedFrameRing.planeStride(width, 2),
+                () -> onFrameReleased(slot));
+        VideoFrame frame = new VideoFrame(buffer, ring.rotation(slot), ring.timestampNs(slot));
+        try {
+            sink.onFrame(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private void onFrameReleased(int slot) {
+        synchronized (lock) {
+            if (unmapped) {
+                return;
+            }
+            ring.release(slot);
+            outstandingFrames--;
+            maybeUnmapLocked();
+        }
+    }
+
+    public long getReaderDropped() {
+        return ring.getReaderDropped();
+    }
+
+    private boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    /**
+     * 停止读取。sink 手里还没 release 的帧仍然有效，最后一帧 release 时才解除映射
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            maybeUnmapLocked();
+        }
+        try {
+            // 关闭读端会让阻塞中的 read 返回
+            doorbell.close();
+        } catch (IOException e) {
+            Log.w(TAG, "close doorbell failed", e);
+        }
+    }
+
+    private void maybeUnmapLocked() {
+        if (closed && outstandingFrames == 0 && !unmapped) {
+            unmapped = true;
+            SharedMemory.unmap(mapping);
+            memory.close();
+        }
+    }
+}
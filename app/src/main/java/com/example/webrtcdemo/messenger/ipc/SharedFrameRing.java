@@ -0,0 +1,314 @@
+package com.example.webrtcdemo.messenger.ipc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 共享内存里的单写单读 I420 帧环形缓冲，每个槽带 seqlock，读端只取最新一帧
+ */
+public final class SharedFrameRing {
+
+    public static final int MAGIC = 0x5746524d; // "WFRM"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int SLOT_HEADER_SIZE = 64;
+    /** 一帧最多 255 个槽，槽号打包在 published 字段的低 8 位 */
+    public static final int MAX_SLOTS = 255;
+
+    // 头部偏移
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOT_COUNT = 8;
+    private static final int H_SLOT_DATA_SIZE = 12;
+    private static final int H_PUBLISHED = 16;
+    private static final int H_WRITER_DROPPED = 24;
+
+    // 槽头偏移
+    private static final int S_SEQ = 0;
+    private static final int S_HELD = 8;
+    private static final int S_WIDTH = 12;
+    private static final int S_HEIGHT = 16;
+    private static final int S_ROTATION = 20;
+    private static final int S_TIMESTAMP_NS = 24;
+    private static final int S_FRAME_SEQ = 32;
+
+    private final ByteBuffer buffer;
+    private final int slotCount;
+    private final int slotDataSize;
+    private final int slotStride;
+
+    // 写端状态，只在写线程访问
+    private long nextFrameSeq = 1;
+    private int lastWrittenSlot = -1;
+
+    // 读端状态，只在读线程访问
+    private long lastReadSeq;
+    private long readerDropped;
+
+    /**
+     * 共享内存需要的总字节数
+     */
+    public static int sizeFor(int slotCount, int maxWidth, int maxHeight) {
+        return HEADER_SIZE + slotCount * (SLOT_HEADER_SIZE + align(frameSize(maxWidth, maxHeight)));
+    }
+
+    /**
+     * 紧密排列的 I420 帧大小
+     */
+    public static int frameSize(int width, int height) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        return width * height + 2 * chromaWidth * chromaHeight;
+    }
+
+    /**
+     * 写端初始化一块新映射的内存
+     */
+    public static SharedFrameRing create(ByteBuffer buffer, int slotCount, int maxWidth, int maxHeight) {
+        if (slotCount < 2 || slotCount > MAX_SLOTS) {
+            throw new IllegalArgumentException("slotCount out of range: " + slotCount);
+        }
+        int slotDataSize = align(frameSize(maxWidth, maxHeight));
+        if (buffer.capacity() < sizeFor(slotCount, maxWidth, maxHeight)) {
+            throw new IllegalArgumentException("buffer too small: " + buffer.capacity());
+        }
+        buffer.putInt(H_SLOT_COUNT, slotCount);
+        buffer.putInt(H_SLOT_DATA_SIZE, slotDataSize);
+        buffer.putLong(H_PUBLISHED, 0);
+        buffer.putLong(H_WRITER_DROPPED, 0);
+        buffer.putInt(H_VERSION, VERSION);
+        fence();
+        buffer.putInt(H_MAGIC, MAGIC);
+        return new SharedFrameRing(buffer, slotCount, slotDataSize);
+    }
+
+    /**
+     * 读端附着到写端已初始化的内存
+     */
+    public static SharedFrameRing attach(ByteBuffer buffer) {
+        if (buffer.getInt(H_MAGIC) != MAGIC || buffer.getInt(H_VERSION) != VERSION) {
+            throw new IllegalArgumentException("not a frame ring");
+        }
+        fence();
+        int slotCount = buffer.getInt(H_SLOT_COUNT);
+        int slotDataSize = buffer.getInt(H_SLOT_DATA_SIZE);
+        if (slotCount < 2 || slotCount > MAX_SLOTS
+                || (long) HEADER_SIZE + (long) slotCount * (SLOT_HEADER_SIZE + slotDataSize) > buffer.capacity()) {
+            throw new IllegalArgumentException("corrupt frame ring header");
+        }
+        return new SharedFrameRing(buffer, slotCount, slotDataSize);
+    }
+
+    private SharedFrameRing(ByteBuffer buffer, int slotCount, int slotDataSize) {
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        this.slotDataSize = slotDataSize;
+        this.slotStride = SLOT_HEADER_SIZE + slotDataSize;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public int getSlotDataSize() {
+        return slotDataSize;
+    }
+
+    // ---------------- 写端 ----------------
+
+    /**
+     * 写入一帧，像素按紧密步长拷贝进共享内存
+     *
+     * @return 该帧的序号；帧太大或所有槽都被读端占着时返回 -1
+     */
+    public long write(int width, int height, int rotation, long timestampNs,
+                      ByteBuffer dataY, int strideY, ByteBuffer dataU, int strideU, ByteBuffer dataV, int strideV) {
+        if (frameSize(width, height) > slotDataSize) {
+            addWriterDropped();
+            return -1;
+        }
+        int slot = claimSlot();
+        if (slot < 0) {
+            addWriterDropped();
+            return -1;
+        }
+        int base = slotBase(slot);
+        int data = base + SLOT_HEADER_SIZE;
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        data = copyPlane(dataY, strideY, width, height, data);
+        data = copyPlane(dataU, strideU, chromaWidth, chromaHeight, data);
+        copyPlane(dataV, strideV, chromaWidth, chromaHeight, data);
+
+        long frameSeq = nextFrameSeq++;
+        buffer.putInt(base + S_WIDTH, width);
+        buffer.putInt(base + S_HEIGHT, height);
+        buffer.putInt(base + S_ROTATION, rotation);
+        buffer.putLong(base + S_TIMESTAMP_NS, timestampNs);
+        buffer.putLong(base + S_FRAME_SEQ, frameSeq);
+        fence();
+        buffer.putLong(base + S_SEQ, frameSeq * 2);
+        fence();
+        buffer.putLong(H_PUBLISHED, (frameSeq << 8) | slot);
+        lastWrittenSlot = slot;
+        return frameSeq;
+    }
+
+    /**
+     * 从上次写的槽之后开始找第一个没被读端占住的槽，并把它的 seq 置为奇数
+     */
+    private int claimSlot() {
+        for (int i = 1; i <= slotCount; i++) {
+            int slot = (lastWrittenSlot + i) % slotCount;
+            int base = slotBase(slot);
+            long seq = buffer.getLong(base + S_SEQ);
+            buffer.putLong(base + S_SEQ, seq | 1);
+            fence();
+            if (buffer.getInt(base + S_HELD) == 0) {
+                return slot;
+            }
+            // 读端正在用，恢复原 seq 让它能通过校验
+            buffer.putLong(base + S_SEQ, seq);
+        }
+        return -1;
+    }
+
+    private int copyPlane(ByteBuffer src, int srcStride, int rowBytes, int rows, int dst) {
+        ByteBuffer in = src.duplicate();
+        ByteBuffer out = buffer.duplicate();
+        int srcBase = in.position();
+        if (srcStride == rowBytes) {
+            in.limit(srcBase + rowBytes * rows);
+            out.position(dst);
+            out.put(in);
+        } else {
+            for (int row = 0; row < rows; row++) {
+                int start = srcBase + row * srcStride;
+                in.limit(start + rowBytes).position(start);
+                out.position(dst + row * rowBytes);
+                out.put(in);
+            }
+        }
+        return dst + rowBytes * rows;
+    }
+
+    private void addWriterDropped() {
+        buffer.putLong(H_WRITER_DROPPED, buffer.getLong(H_WRITER_DROPPED) + 1);
+    }
+
+    // ---------------- 读端 ----------------
+
+    /**
+     * 占住最新发布的一帧（比上次读到的更新才算）。成功后槽内容在 {@link #release(int)} 之前不会被写端覆盖
+     *
+     * @return 槽号，没有新帧或者写端正在写这个槽时返回 -1
+     */
+    public int acquireLatest() {
+        long published = buffer.getLong(H_PUBLISHED);
+        if (published == 0) {
+            return -1;
+        }
+        int slot = (int) (published & 0xff);
+        if (slot >= slotCount) {
+            // 32 位设备上 long 读写可能被撕裂，下次门铃再试
+            return -1;
+        }
+        int base = slotBase(slot);
+        buffer.putInt(base + S_HELD, 1);
+        fence();
+        long seq = buffer.getLong(base + S_SEQ);
+        long frameSeq = buffer.getLong(base + S_FRAME_SEQ);
+        if ((seq & 1) != 0 || seq != frameSeq * 2 || frameSeq <= lastReadSeq) {
+            buffer.putInt(base + S_HELD, 0);
+            return -1;
+        }
+        if (lastReadSeq != 0) {
+            readerDropped += frameSeq - lastReadSeq - 1;
+        }
+        lastReadSeq = frameSeq;
+        return slot;
+    }
+
+    public void release(int slot) {
+        fence();
+        buffer.putInt(slotBase(slot) + S_HELD, 0);
+    }
+
+    public int width(int slot) {
+        return buffer.getInt(slotBase(slot) + S_WIDTH);
+    }
+
+    public int height(int slot) {
+        return buffer.getInt(slotBase(slot) + S_HEIGHT);
+    }
+
+    public int rotation(int slot) {
+        return buffer.getInt(slotBase(slot) + S_ROTATION);
+    }
+
+    public long timestampNs(int slot) {
+        return buffer.getLong(slotBase(slot) + S_TIMESTAMP_NS);
+    }
+
+    public long frameSeq(int slot) {
+        return buffer.getLong(slotBase(slot) + S_FRAME_SEQ);
+    }
+
+    /**
+     * 槽内某个平面的只读视图（不拷贝），plane 为 0/1/2 对应 Y/U/V，步长即平面宽度
+     */
+    public ByteBuffer plane(int slot, int plane) {
+        int width = width(slot);
+        int height = height(slot);
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int offset = slotBase(slot) + SLOT_HEADER_SIZE;
+        int size = width * height;
+        if (plane > 0) {
+            offset += size;
+            size = chromaWidth * chromaHeight;
+            if (plane > 1) {
+                offset += size;
+            }
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + size).position(offset);
+        return view.slice();
+    }
+
+    public static int planeStride(int width, int plane) {
+        return plane == 0 ? width : (width + 1) / 2;
+    }
+
+    /**
+     * 读端因为来不及读而跳过的帧数
+     */
+    public long getReaderDropped() {
+        return readerDropped;
+    }
+
+    /**
+     * 写端因为帧太大或没有空闲槽而丢弃的帧数
+     */
+    public long getWriterDropped() {
+        return buffer.getLong(H_WRITER_DROPPED);
+    }
+
+    private int slotBase(int slot) {
+        return HEADER_SIZE + slot * slotStride;
+    }
+
+    private static int align(int size) {
+        return (size + 63) & ~63;
+    }
+
+    private static volatile int fenceField;
+
+    /**
+     * 全屏障：volatile 写（release）紧跟 volatile 读（acquire），ART 在 arm64 上分别是 stlr / ldar，
+     * 两者之间不会重排，因此之前的普通写和之后的普通读也不会越过这里，x86 上 volatile 写本身就带 StoreLoad
+     */
+    private static void fence() {
+        fenceField = 0;
+        int ignored = fenceField;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.webrtcdemo.messenger.ipc;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 服务端的帧通道：把 VideoTrack 的帧写进 {@link SharedFrameRing}，再写门铃管道通知读端
+ */
+@RequiresApi(api = Build.VERSION_CODES.O_MR1)
+public class SharedFrameWriter implements VideoSink {
+
+    private static final String TAG = "SharedFrameWriter";
+
+    public static final String KEY_CHANNEL_ID = "channel_id";
+    public static final String KEY_MEMORY = "memory";
+    public static final String KEY_DOORBELL = "doorbell";
+
+    /** 帧通道最大尺寸的长边和短边 */
+    static final int MAX_LONG_SIDE = 1920;
+    static final int MAX_SHORT_SIDE = 1080;
+
+    private final int channelId;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final SharedMemory memory;
+    private final ByteBuffer mapping;
+    private final SharedFrameRing ring;
+    private final ParcelFileDescriptor doorbellRead;
+    private final ParcelFileDescriptor doorbellWrite;
+    private final byte[] ding = new byte[1];
+
+    private boolean closed;
+
+    /**
+     * 把客户端要的最大尺寸规整成能分配的尺寸：超过上限的按方向缩到 1920x1080 或 1080x1920 以内，
+     * 奇数向下取偶（I420 的色度平面是半分辨率）
+     *
+     * @return {width, height}；宽高不是正数或取偶后为 0 时返回 null
+     */
+    public static int[] clampSize(int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            return null;
+        }
+        boolean portrait = maxHeight > maxWidth;
+        int width = Math.min(maxWidth, portrait ? MAX_SHORT_SIDE : MAX_LONG_SIDE) & ~1;
+        int height = Math.min(maxHeight, portrait ? MAX_LONG_SIDE : MAX_SHORT_SIDE) & ~1;
+        return width > 0 && height > 0 ? new int[]{width, height} : null;
+    }
+
+    /**
+     * @throws IllegalArgumentException 尺寸不是 {@link #clampSize} 规整过的
+     */
+    public SharedFrameWriter(int channelId, int slotCount, int maxWidth, int maxHeight) throws IOException {
+        int[] size = clampSize(maxWidth, maxHeight);
+        if (size == null || size[0] != maxWidth || size[1] != maxHeight) {
+            throw new IllegalArgumentException("bad frame channel size " + maxWidth + "x" + maxHeight);
+        }
+        this.channelId = channelId;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        try {
+            memory = SharedMemory.create("frames-" + channelId,
+                    SharedFrameRing.sizeFor(slotCount, maxWidth, maxHeight));
+            mapping = memory.mapReadWrite();
+            ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+            doorbellRead = pipe[0];
+            doorbellWrite = pipe[1];
+            Os.fcntlInt(doorbellWrite.getFileDescriptor(), OsConstants.F_SETFL, OsConstants.O_NONBLOCK);
+        } catch (ErrnoException e) {
+            throw new IOException(e);
+        }
+        ring = SharedFrameRing.create(mapping, slotCount, maxWidth, maxHeight);
+    }
+
+    public int getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * 交给客户端的句柄，Bundle 序列化时会 dup 文件描述符，本端的副本在 close 时关闭
+     */
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putInt(KEY_CHANNEL_ID, channelId);
+        bundle.putParcelable(KEY_MEMORY, memory);
+        bundle.putParcelable(KEY_DOORBELL, doorbellRead);
+        return bundle;
+    }
+
+    @Override
+    public synchronized void onFrame(VideoFrame frame) {
+        if (closed) {
+            return;
+        }
+        VideoFrame.Buffer buffer = frame.getBuffer();
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        VideoFrame.Buffer scaled = null;
+        if (width > maxWidth || height > maxHeight) {
+            float scale = Math.min((float) maxWidth / width, (float) maxHeight / height);
+            // I420 要求偶数尺寸
+            int scaledWidth = Math.max(2, (int) (width * scale) & ~1);
+            int scaledHeight = Math.max(2, (int) (height * scale) & ~1);
+            scaled = buffer.cropAndScale(0, 0, width, height, scaledWidth, scaledHeight);
+            buffer = scaled;
+        }
+        VideoFrame.I420Buffer i420 = buffer.toI420();
+        try {
+            long seq = ring.write(i420.getWidth(), i420.getHeight(), frame.getRotation(), frame.getTimestampNs(),
+                    i420.getDataY(), i420.getStrideY(), i420.getDataU(), i420.getStrideU(),
+                    i420.getDataV(), i420.getStrideV());
+            if (seq > 0) {
+                ringDoorbell();
+            }
+        } finally {
+            i420.release();
+            if (scaled != null) {
+                scaled.release();
+            }
+        }
+    }
+
+    private void ringDoorbell() {
+        try {
+            Os.write(doorbellWrite.getFileDescriptor(), ding, 0, 1);
+        } catch (ErrnoException e) {
+            if (e.errno != OsConstants.EAGAIN) {
+                Log.w(TAG, "doorbell failed for channel " + channelId, e);
+            }
+        } catch (java.io.InterruptedIOException ignored) {
+        }
+    }
+
+    public long getWriterDropped() {
+        return ring.getWriterDropped();
+    }
+
+    /**
+     * 需要先把自己从 track 上摘掉再调用；关闭写端管道后读端会读到 EOF 并退出
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            doorbellWrite.close();
+            doorbellRead.close();
+        } catch (IOException e) {
+            Log.w(TAG, "close doorbell failed", e);
+        }
+        SharedMemory.unmap(mapping);
+        memory.close();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.webrtcdemo.messenger.network;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+/**
+ * 监听系统默认网络的切换和丢失，回调在 ConnectivityManager 的线程上
+ */
+public class NetworkChangeMonitor {
+
+    private static final String TAG = "NetworkChangeMonitor";
+
+    public static final String TRANSPORT_WIFI = "wifi";
+    public static final String TRANSPORT_CELLULAR = "cellular";
+    public static final String TRANSPORT_ETHERNET = "ethernet";
+    public static final String TRANSPORT_VPN = "vpn";
+    public static final String TRANSPORT_OTHER = "other";
+
+    public interface Listener {
+        /**
+         * @param transport 新默认网络的类型，见 TRANSPORT_*
+         */
+        void onDefaultNetworkChanged(String transport);
+
+        void onDefaultNetworkLost();
+    }
+
+    private final ConnectivityManager connectivityManager;
+    private final Listener listener;
+
+    // 以下字段只在 ConnectivityManager 的回调线程上访问
+    private Network current;
+    private boolean initialized;
+
+    private final ConnectivityManager.NetworkCallback callback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            if (network.equals(current)) {
+                return;
+            }
+            current = network;
+            String transport = transportOf(connectivityManager.getNetworkCapabilities(network));
+            if (!initialized) {
+                initialized = true;
+                Log.d(TAG, "default network " + network + " (" + transport + ")");
+                return;
+            }
+            Log.d(TAG, "default network changed to " + network + " (" + transport + ")");
+            listener.onDefaultNetworkChanged(transport);
+        }
+
+        @Override
+        public void onLost(Network network) {
+            if (!network.equals(current)) {
+                return;
+            }
+            current = null;
+            // 丢失之后再来的网络不管是不是原来那个都要上报
+            initialized = true;
+            Log.d(TAG, "default network " + network + " lost");
+            listener.onDefaultNetworkLost();
+        }
+    };
+
+    private boolean registered;
+
+    public NetworkChangeMonitor(Context context, Listener listener) {
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (registered) {
+            return;
+        }
+        try {
+            connectivityManager.registerDefaultNetworkCallback(callback);
+            registered = true;
+        } catch (RuntimeException e) {
+            // 没有 ACCESS_NETWORK_STATE 权限或回调数超过系统上限
+            Log.e(TAG, "register network callback failed", e);
+        }
+    }
+
+    public synchronized void stop() {
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        try {
+            connectivityManager.unregisterNetworkCallback(callback);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "network callback already unregistered", e);
+        }
+    }
+
+    static String transportOf(NetworkCapabilities capabilities) {
+        if (capabilities == null) {
+            return TRANSPORT_OTHER;
+        }
+        // VPN 同时带底层传输类型，先判断 VPN
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN)) {
+            return TRANSPORT_VPN;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            return TRANSPORT_WIFI;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            return TRANSPORT_CELLULAR;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            return TRANSPORT_ETHERNET;
+        }
+        return TRANSPORT_OTHER;
+    }
+}
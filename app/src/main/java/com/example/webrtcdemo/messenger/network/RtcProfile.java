@@ -0,0 +1,137 @@
+package com.example.webrtcdemo.messenger.network;
+
+import android.util.Log;
+
+import org.webrtc.PeerConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RTCConfiguration 的命名配置（lan / mobile / relay / loopback），绑定服务时用 {@code rtc_profile} 选择
+ */
+public enum RtcProfile {
+
+    LAN("lan", 1, PeerConnection.IceTransportsType.ALL, PeerConnection.TcpCandidatePolicy.DISABLED,
+            PeerConnection.ContinualGatheringPolicy.GATHER_ONCE, PeerConnection.CandidateNetworkPolicy.LOW_COST),
+    MOBILE("mobile", 1, PeerConnection.IceTransportsType.ALL, PeerConnection.TcpCandidatePolicy.ENABLED,
+            PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY, PeerConnection.CandidateNetworkPolicy.ALL),
+    RELAY_ONLY("relay", 1, PeerConnection.IceTransportsType.RELAY, PeerConnection.TcpCandidatePolicy.ENABLED,
+            PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY, PeerConnection.CandidateNetworkPolicy.ALL),
+    LOOPBACK("loopback", 1, PeerConnection.IceTransportsType.ALL, PeerConnection.TcpCandidatePolicy.DISABLED,
+            PeerConnection.ContinualGatheringPolicy.GATHER_ONCE, PeerConnection.CandidateNetworkPolicy.ALL);
+
+    private static final String TAG = "RtcProfile";
+
+    /** lan：连续 1s 收不到数据就认为 pair 不可用（默认 2.5s） */
+    private static final int LAN_RECEIVING_TIMEOUT_MS = 1000;
+    /** mobile：备用 pair 每 2s 探测一次（默认 25s），网络切换时备用 pair 还是通的 */
+    private static final int MOBILE_BACKUP_PING_INTERVAL_MS = 2000;
+
+    public final String tag;
+    public final int candidatePoolSize;
+    public final PeerConnection.IceTransportsType iceTransportsType;
+    public final PeerConnection.TcpCandidatePolicy tcpCandidatePolicy;
+    public final PeerConnection.ContinualGatheringPolicy gatheringPolicy;
+    public final PeerConnection.CandidateNetworkPolicy networkPolicy;
+
+    RtcProfile(String tag, int candidatePoolSize, PeerConnection.IceTransportsType iceTransportsType,
+               PeerConnection.TcpCandidatePolicy tcpCandidatePolicy,
+               PeerConnection.ContinualGatheringPolicy gatheringPolicy,
+               PeerConnection.CandidateNetworkPolicy networkPolicy) {
+        this.tag = tag;
+        this.candidatePoolSize = candidatePoolSize;
+        this.iceTransportsType = iceTransportsType;
+        this.tcpCandidatePolicy = tcpCandidatePolicy;
+        this.gatheringPolicy = gatheringPolicy;
+        this.networkPolicy = networkPolicy;
+    }
+
+    /**
+     * @param iceServers loopback 时忽略
+     */
+    public PeerConnection.RTCConfiguration createConfiguration(List<PeerConnection.IceServer> iceServers) {
+        List<PeerConnection.IceServer> servers = this == LOOPBACK ? new ArrayList<>() : new ArrayList<>(iceServers);
+        if (this == RELAY_ONLY && !hasTurnServer(servers)) {
+            Log.w(TAG, "relay profile without a turn: server, no candidates will be gathered");
+        }
+        PeerConnection.RTCConfiguration config = new PeerConnection.RTCConfiguration(servers);
+        config.bundlePolicy = PeerConnection.BundlePolicy.MAXBUNDLE;
+        config.rtcpMuxPolicy = PeerConnection.RtcpMuxPolicy.REQUIRE;
+        config.iceCandidatePoolSize = candidatePoolSize;
+        config.iceTransportsType = iceTransportsType;
+        config.tcpCandidatePolicy = tcpCandidatePolicy;
+        config.continualGatheringPolicy = gatheringPolicy;
+        config.candidateNetworkPolicy = networkPolicy;
+        if (this == LAN) {
+            config.iceConnectionReceivingTimeout = LAN_RECEIVING_TIMEOUT_MS;
+        } else if (this == MOBILE) {
+            config.iceBackupCandidatePairPingInterval = MOBILE_BACKUP_PING_INTERVAL_MS;
+        }
+        return config;
+    }
+
+    /**
+     * @param name null 或空串时返回 defaultProfile
+     * @throws IllegalArgumentException 名字不认识时
+     */
+    public static RtcProfile fromName(String name, RtcProfile defaultProfile) {
+        if (name == null || name.isEmpty()) {
+            return defaultProfile;
+        }
+        for (RtcProfile profile : values()) {
+            if (profile.tag.equals(name)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("unknown rtc profile: " + name);
+    }
+
+    /**
+     * 解析 ICE 服务器列表，分号分隔，每项为 "url" 或 "url|username|password"，
+     * 例如 "stun:stun.l.google.com:19302;turn:turn.example.com:3478?transport=udp|user|secret"
+     *
+     * @throws IllegalArgumentException 格式不对时
+     */
+    public static List<PeerConnection.IceServer> parseIceServers(String spec) {
+        List<PeerConnection.IceServer> servers = new ArrayList<>();
+        if (spec == null || spec.isEmpty()) {
+            return servers;
+        }
+        for (String item : spec.split(";")) {
+            String entry = item.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            String[] parts = entry.split("\\|", -1);
+            if (parts.length != 1 && parts.length != 3) {
+                throw new IllegalArgumentException("bad ice server: " + entry);
+            }
+            if (!parts[0].startsWith("stun:") && !parts[0].startsWith("turn:") && !parts[0].startsWith("turns:")) {
+                throw new IllegalArgumentException("bad ice server url: " + parts[0]);
+            }
+            PeerConnection.IceServer.Builder builder = PeerConnection.IceServer.builder(parts[0]);
+            if (parts.length == 3) {
+                builder.setUsername(parts[1]).setPassword(parts[2]);
+            }
+            servers.add(builder.createIceServer());
+        }
+        return servers;
+    }
+
+    private static boolean hasTurnServer(List<PeerConnection.IceServer> servers) {
+        for (PeerConnection.IceServer server : servers) {
+            for (String url : server.urls) {
+                if (url.startsWith("turn:") || url.startsWith("turns:")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return tag;
+    }
+}
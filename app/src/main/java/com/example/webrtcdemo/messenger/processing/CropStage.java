@@ -0,0 +1,43 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import org.webrtc.VideoFrame;
+
+/**
+ * 居中裁剪到指定宽高比（按旋转后的显示方向计算）。纹理帧和 I420 帧都是零拷贝
+ */
+public class CropStage implements FrameStage {
+
+    private final int aspectWidth;
+    private final int aspectHeight;
+
+    public CropStage(int aspectWidth, int aspectHeight) {
+        this.aspectWidth = aspectWidth;
+        this.aspectHeight = aspectHeight;
+    }
+
+    @Override
+    public VideoFrame process(VideoFrame frame, I420BufferPool pool) {
+        VideoFrame.Buffer buffer = frame.getBuffer();
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        // 竖屏帧在缓冲里是横着的，比例要反过来用
+        boolean rotated = frame.getRotation() % 180 != 0;
+        long aw = rotated ? aspectHeight : aspectWidth;
+        long ah = rotated ? aspectWidth : aspectHeight;
+        int cropWidth = width;
+        int cropHeight = height;
+        if (width * ah > height * aw) {
+            cropWidth = (int) (height * aw / ah) & ~1;
+        } else {
+            cropHeight = (int) (width * ah / aw) & ~1;
+        }
+        if (cropWidth == width && cropHeight == height) {
+            return frame;
+        }
+        VideoFrame.Buffer cropped = buffer.cropAndScale((width - cropWidth) / 2, (height - cropHeight) / 2,
+                cropWidth, cropHeight, cropWidth, cropHeight);
+        VideoFrame out = new VideoFrame(cropped, frame.getRotation(), frame.getTimestampNs());
+        frame.release();
+        return out;
+    }
+}
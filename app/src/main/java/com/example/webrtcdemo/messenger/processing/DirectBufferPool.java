@@ -0,0 +1,168 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按大小分桶的 direct ByteBuffer 池，给逐帧的像素缓冲复用，线程安全
+ */
+public final class DirectBufferPool {
+
+    public static final int ALIGNMENT = 4096;
+
+    private static final class Bucket {
+        final int capacity;
+        final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+        long lastUsedTick;
+
+        Bucket(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    private final int maxBuffersPerBucket;
+    private final long maxPooledBytes;
+    private final List<Bucket> buckets = new ArrayList<>();
+
+    private long tick;
+    private long pooledBytes;
+    private long hits;
+    private long misses;
+    private long dropped;
+    private int outstanding;
+
+    public DirectBufferPool(int maxBuffersPerBucket, long maxPooledBytes) {
+        this.maxBuffersPerBucket = maxBuffersPerBucket;
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    public static int bucketCapacity(int size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * @return position 为 0、limit 为 size 的缓冲，内容是上一个使用者留下的，不会清零
+     */
+    public ByteBuffer acquire(int size) {
+        int capacity = bucketCapacity(size);
+        ByteBuffer buffer = null;
+        synchronized (this) {
+            outstanding++;
+            Bucket bucket = find(capacity);
+            if (bucket != null) {
+                bucket.lastUsedTick = ++tick;
+                buffer = bucket.free.pollFirst();
+            }
+            if (buffer != null) {
+                hits++;
+                pooledBytes -= capacity;
+            } else {
+                misses++;
+            }
+        }
+        if (buffer == null) {
+            // allocateDirect 要清零内存，放在锁外
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    public synchronized void release(ByteBuffer buffer) {
+        outstanding--;
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || capacity % ALIGNMENT != 0) {
+            dropped++;
+            return;
+        }
+        Bucket bucket = find(capacity);
+        if (bucket == null) {
+            bucket = new Bucket(capacity);
+            bucket.lastUsedTick = ++tick;
+            buckets.add(bucket);
+        }
+        if (bucket.free.size() >= maxBuffersPerBucket || !makeRoom(capacity, bucket)) {
+            dropped++;
+            return;
+        }
+        bucket.free.addLast(buffer);
+        pooledBytes += capacity;
+    }
+
+    /**
+     * 丢掉所有空闲缓冲，交给 GC 回收
+     */
+    public synchronized void trim() {
+        for (Bucket bucket : buckets) {
+            bucket.free.clear();
+        }
+        buckets.clear();
+        pooledBytes = 0;
+    }
+
+    /**
+     * 从最久没用的其他桶开始淘汰，直到放得下 capacity
+     */
+    private boolean makeRoom(int capacity, Bucket keep) {
+        if (capacity > maxPooledBytes) {
+            return false;
+        }
+        while (pooledBytes + capacity > maxPooledBytes) {
+            Bucket victim = null;
+            for (Bucket bucket : buckets) {
+                if (bucket != keep && !bucket.free.isEmpty()
+                        && (victim == null || bucket.lastUsedTick < victim.lastUsedTick)) {
+                    victim = bucket;
+                }
+            }
+            if (victim == null) {
+                return false;
+            }
+            victim.free.pollFirst();
+            pooledBytes -= victim.capacity;
+            if (victim.free.isEmpty()) {
+                buckets.remove(victim);
+            }
+        }
+        return true;
+    }
+
+    private Bucket find(int capacity) {
+        for (int i = 0; i < buckets.size(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket.capacity == capacity) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    public synchronized int getOutstanding() {
+        return outstanding;
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DirectBufferPool{hits=" + hits + ", misses=" + misses + ", dropped=" + dropped
+                + ", outstanding=" + outstanding + ", pooledBytes=" + pooledBytes + ", buckets=" + buckets.size() + "}";
+    }
+}
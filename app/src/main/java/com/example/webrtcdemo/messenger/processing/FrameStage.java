@@ -0,0 +1,17 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import org.webrtc.VideoFrame;
+
+/**
+ * {@link VideoProcessingPipeline} 里的一个处理阶段，只在采集线程上调用
+ */
+public interface FrameStage {
+
+    /**
+     * 处理一帧。frame 的一个引用交给本阶段：原样返回即把引用继续传下去；
+     * 返回新帧时本阶段负责 release 输入帧；返回 null 表示丢帧（同样要先 release 输入帧）
+     *
+     * @param pool 需要新像素缓冲时从这里拿，不要直接 JavaI420Buffer.allocate
+     */
+    VideoFrame process(VideoFrame frame, I420BufferPool pool);
+}
@@ -0,0 +1,96 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * {@link PooledI420Buffer} 的池：像素内存来自 {@link DirectBufferPool}，缓冲对象本身也复用，
+ * 稳定状态下每帧的申请 / 释放都不产生垃圾。另外提供基于池的拷贝和 native 裁剪缩放，给处理阶段用
+ */
+public final class I420BufferPool {
+
+    /** 一个尺寸同时在途的帧：采集 / 处理 / 编码队列 / 渲染，再留一点余量 */
+    private static final int MAX_BUFFERS_PER_SIZE = 8;
+    private static final long MAX_POOLED_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_SHELLS = 16;
+
+    /** 拷贝可能在编码线程上被 native 调用，每个线程一份临时数组 */
+    private static final ThreadLocal<I420Planes> PLANES = new ThreadLocal<I420Planes>() {
+        @Override
+        protected I420Planes initialValue() {
+            return new I420Planes();
+        }
+    };
+
+    private final DirectBufferPool memory = new DirectBufferPool(MAX_BUFFERS_PER_SIZE, MAX_POOLED_BYTES);
+    private final ArrayDeque<PooledI420Buffer> shells = new ArrayDeque<>();
+
+    /**
+     * @return 引用计数为 1 的缓冲，像素内容未定义
+     */
+    public PooledI420Buffer acquire(int width, int height) {
+        ByteBuffer data = memory.acquire(PooledI420Buffer.frameSize(width, height));
+        PooledI420Buffer buffer;
+        synchronized (shells) {
+            buffer = shells.pollFirst();
+        }
+        if (buffer == null) {
+            buffer = new PooledI420Buffer(this);
+        }
+        buffer.reset(data, width, height);
+        return buffer;
+    }
+
+    void recycle(PooledI420Buffer buffer) {
+        memory.release(buffer.detachData());
+        synchronized (shells) {
+            if (shells.size() < MAX_SHELLS) {
+                shells.addLast(buffer);
+            }
+        }
+    }
+
+    /**
+     * 把 src 的 (cropX, cropY, cropWidth, cropHeight) 区域缩放到 scaleWidth x scaleHeight。
+     * 缩放交给 JavaI420Buffer 的 native 实现（libyuv box filter），结果是新分配的 JavaI420Buffer，不放回池里；
+     * 不缩放时是指向 src 的零拷贝包装，src 会被多持有一个引用直到结果释放
+     */
+    public static VideoFrame.Buffer nativeCropAndScale(VideoFrame.I420Buffer src, int cropX, int cropY, int cropWidth,
+                                                       int cropHeight, int scaleWidth, int scaleHeight) {
+        src.retain();
+        JavaI420Buffer view = JavaI420Buffer.wrap(src.getWidth(), src.getHeight(),
+                src.getDataY(), src.getStrideY(), src.getDataU(), src.getStrideU(), src.getDataV(), src.getStrideV(),
+                src::release);
+        VideoFrame.Buffer out = view.cropAndScale(cropX, cropY, cropWidth, cropHeight, scaleWidth, scaleHeight);
+        view.release();
+        return out;
+    }
+
+    /**
+     * 拷贝一份到池缓冲，用于需要原地修改但 src 不是自己独占的情况
+     */
+    public PooledI420Buffer copyOf(VideoFrame.I420Buffer src) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        PooledI420Buffer dst = acquire(width, height);
+        I420Planes planes = PLANES.get();
+        ByteBuffer out = dst.data();
+        planes.copyPlane(src.getDataY(), 0, src.getStrideY(), out, 0, dst.getStrideY(), width, height);
+        int chromaW = (width + 1) / 2;
+        int chromaH = (height + 1) / 2;
+        planes.copyPlane(src.getDataU(), 0, src.getStrideU(), out, dst.getOffsetU(), dst.getStrideU(), chromaW, chromaH);
+        planes.copyPlane(src.getDataV(), 0, src.getStrideV(), out, dst.getOffsetV(), dst.getStrideV(), chromaW, chromaH);
+        return dst;
+    }
+
+    I420Planes planes() {
+        return PLANES.get();
+    }
+
+    public DirectBufferPool getMemoryPool() {
+        return memory;
+    }
+}
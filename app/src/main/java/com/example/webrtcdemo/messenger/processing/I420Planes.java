@@ -0,0 +1,76 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * I420 单个平面的拷贝和画数字，行数组在实例里复用；不是线程安全的，会修改传入 ByteBuffer 的 position / limit
+ */
+public final class I420Planes {
+
+    /** 3x5 点阵数字，每行 3 位，高位在左 */
+    private static final int[][] DIGITS = {
+            {7, 5, 5, 5, 7}, {2, 6, 2, 2, 7}, {7, 1, 7, 4, 7}, {7, 1, 7, 1, 7}, {5, 5, 7, 1, 1},
+            {7, 4, 7, 1, 7}, {7, 4, 7, 5, 7}, {7, 1, 1, 1, 1}, {7, 5, 7, 5, 7}, {7, 5, 7, 1, 7},
+    };
+    private static final byte WHITE = (byte) 235;
+    private static final byte BLACK = (byte) 16;
+
+    private byte[] row = new byte[0];
+    private final char[] digits = new char[20];
+
+    public void copyPlane(ByteBuffer src, int srcOffset, int srcStride,
+                          ByteBuffer dst, int dstOffset, int dstStride, int width, int height) {
+        if (row.length < width) {
+            row = new byte[width];
+        }
+        for (int j = 0; j < height; j++) {
+            src.limit(src.capacity()).position(srcOffset + j * srcStride);
+            src.get(row, 0, width);
+            dst.limit(dst.capacity()).position(dstOffset + j * dstStride);
+            dst.put(row, 0, width);
+        }
+    }
+
+    /**
+     * 在亮度平面 (x, y) 处画一个非负整数，白字黑底，每个点阵点放大 scale 倍；超出平面的部分不画
+     */
+    public void drawNumber(ByteBuffer plane, int stride, int width, int height, int x, int y, long value, int scale) {
+        int count = 0;
+        long v = Math.max(0, value);
+        do {
+            digits[count++] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0 && count < digits.length);
+
+        int glyphW = 4 * scale;
+        int boxW = Math.min(width - x, count * glyphW + scale);
+        int boxH = Math.min(height - y, 7 * scale);
+        if (boxW <= 0 || boxH <= 0) {
+            return;
+        }
+        for (int j = 0; j < boxH; j++) {
+            int pos = (y + j) * stride + x;
+            for (int i = 0; i < boxW; i++) {
+                plane.put(pos + i, BLACK);
+            }
+        }
+        for (int d = 0; d < count; d++) {
+            int[] glyph = DIGITS[digits[count - 1 - d] - '0'];
+            int gx = x + scale + d * glyphW;
+            for (int gy = 0; gy < 5; gy++) {
+                for (int bit = 0; bit < 3; bit++) {
+                    if ((glyph[gy] & (4 >> bit)) == 0) {
+                        continue;
+                    }
+                    int px = gx + bit * scale;
+                    int py = y + scale + gy * scale;
+                    for (int j = 0; j < scale && py + j < height; j++) {
+                        for (int i = 0; i < scale && px + i < width; i++) {
+                            plane.put((py + j) * stride + px + i, WHITE);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 像素内存来自 {@link I420BufferPool} 的 I420 缓冲，引用计数归零时回到池里
+ */
+public final class PooledI420Buffer implements VideoFrame.I420Buffer {
+
+    private final I420BufferPool pool;
+    private final AtomicInteger refCount = new AtomicInteger();
+
+    private ByteBuffer data;
+    private int width;
+    private int height;
+    private int offsetU;
+    private int offsetV;
+
+    PooledI420Buffer(I420BufferPool pool) {
+        this.pool = pool;
+    }
+
+    void reset(ByteBuffer data, int width, int height) {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.offsetU = width * height;
+        this.offsetV = offsetU + strideUV(width) * ((height + 1) / 2);
+        refCount.set(1);
+    }
+
+    static int frameSize(int width, int height) {
+        return width * height + 2 * strideUV(width) * ((height + 1) / 2);
+    }
+
+    private static int strideUV(int width) {
+        return (width + 1) / 2;
+    }
+
+    /**
+     * 整块像素内存，Y / U / V 依次位于 0、{@link #getOffsetU()}、{@link #getOffsetV()}
+     */
+    ByteBuffer data() {
+        return data;
+    }
+
+    int getOffsetU() {
+        return offsetU;
+    }
+
+    int getOffsetV() {
+        return offsetV;
+    }
+
+    ByteBuffer detachData() {
+        ByteBuffer d = data;
+        data = null;
+        return d;
+    }
+
+    public boolean isExclusive() {
+        return refCount.get() == 1;
+    }
+
+    @Override
+    public ByteBuffer getDataY() {
+        return slice(0, offsetU);
+    }
+
+    @Override
+    public ByteBuffer getDataU() {
+        return slice(offsetU, offsetV - offsetU);
+    }
+
+    @Override
+    public ByteBuffer getDataV() {
+        return slice(offsetV, offsetV - offsetU);
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = data.duplicate();
+        view.limit(offset + length).position(offset);
+        return view.slice();
+    }
+
+    @Override
+    public int getStrideY() {
+        return width;
+    }
+
+    @Override
+    public int getStrideU() {
+        return strideUV(width);
+    }
+
+    @Override
+    public int getStrideV() {
+        return strideUV(width);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public VideoFrame.I420Buffer toI420() {
+        retain();
+        return this;
+    }
+
+    @Override
+    public void retain() {
+        refCount.incrementAndGet();
+    }
+
+    @Override
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            pool.recycle(this);
+        } else if (count < 0) {
+            throw new IllegalStateException("PooledI420Buffer released too many times");
+        }
+    }
+
+    /**
+     * 只裁剪时零拷贝：包一层 JavaI420Buffer 指向原内存，它释放时再释放本缓冲；需要缩放时走 libyuv
+     */
+    @Override
+    public VideoFrame.Buffer cropAndScale(int cropX, int cropY, int cropWidth, int cropHeight,
+                                          int scaleWidth, int scaleHeight) {
+        if (cropWidth != scaleWidth || cropHeight != scaleHeight) {
+            return I420BufferPool.nativeCropAndScale(this, cropX, cropY, cropWidth, cropHeight, scaleWidth, scaleHeight);
+        }
+        // 色度按 2x2 对齐
+        int x = cropX & ~1;
+        int y = cropY & ~1;
+        int strideUV = strideUV(width);
+        int offsetY = y * width + x;
+        int offsetUV = (y / 2) * strideUV + x / 2;
+        retain();
+        return JavaI420Buffer.wrap(cropWidth, cropHeight,
+                slice(offsetY, offsetU - offsetY), width,
+                slice(offsetU + offsetUV, offsetV - offsetU - offsetUV), strideUV,
+                slice(offsetV + offsetUV, offsetV - offsetU - offsetUV), strideUV,
+                this::release);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import org.webrtc.VideoFrame;
+
+/**
+ * 保持比例缩小到不超过 maxWidth x maxHeight（按缓冲方向，不看旋转）。
+ * 纹理帧只改变换矩阵，内存帧由 cropAndScale 走 libyuv 缩放（JavaI420Buffer 和池缓冲都是）
+ */
+public class ScaleStage implements FrameStage {
+
+    private final int maxWidth;
+    private final int maxHeight;
+
+    public ScaleStage(int maxWidth, int maxHeight) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    @Override
+    public VideoFrame process(VideoFrame frame, I420BufferPool pool) {
+        VideoFrame.Buffer buffer = frame.getBuffer();
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        if (width <= maxWidth && height <= maxHeight) {
+            return frame;
+        }
+        double ratio = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        int scaleWidth = Math.max(2, (int) (width * ratio) & ~1);
+        int scaleHeight = Math.max(2, (int) (height * ratio) & ~1);
+        VideoFrame.Buffer scaled = buffer.cropAndScale(0, 0, width, height, scaleWidth, scaleHeight);
+        VideoFrame out = new VideoFrame(scaled, frame.getRotation(), frame.getTimestampNs());
+        frame.release();
+        return out;
+    }
+}
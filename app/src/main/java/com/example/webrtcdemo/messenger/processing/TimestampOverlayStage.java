@@ -0,0 +1,38 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import org.webrtc.VideoFrame;
+
+/**
+ * 在画面左上角画采集时间戳和帧序号，用来目测端到端延迟和丢帧，只建议测试时开
+ */
+public class TimestampOverlayStage implements FrameStage {
+
+    private static final int SCALE_DIVISOR = 120;
+
+    private long frameCount;
+
+    @Override
+    public VideoFrame process(VideoFrame frame, I420BufferPool pool) {
+        VideoFrame.Buffer buffer = frame.getBuffer();
+        PooledI420Buffer target;
+        if (buffer instanceof PooledI420Buffer && ((PooledI420Buffer) buffer).isExclusive()) {
+            target = (PooledI420Buffer) buffer;
+            target.retain();
+        } else {
+            VideoFrame.I420Buffer i420 = buffer.toI420();
+            target = pool.copyOf(i420);
+            i420.release();
+        }
+        int width = target.getWidth();
+        int height = target.getHeight();
+        int scale = Math.max(1, height / SCALE_DIVISOR);
+        I420Planes planes = pool.planes();
+        planes.drawNumber(target.data(), target.getStrideY(), width, height, 0, 0,
+                frame.getTimestampNs() / 1_000_000, scale);
+        planes.drawNumber(target.data(), target.getStrideY(), width, height, 0, 8 * scale, frameCount++, scale);
+
+        VideoFrame out = new VideoFrame(target, frame.getRotation(), frame.getTimestampNs());
+        frame.release();
+        return out;
+    }
+}
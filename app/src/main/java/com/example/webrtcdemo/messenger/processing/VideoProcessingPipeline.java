@@ -0,0 +1,151 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import android.util.Log;
+
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoProcessor;
+import org.webrtc.VideoSink;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * VideoSource 上的帧处理流水线：先按 adaptOutputFormat 裁剪缩放，再依次经过各个 {@link FrameStage}
+ */
+public class VideoProcessingPipeline implements VideoProcessor {
+
+    private static final String TAG = "VideoPipeline";
+
+    private final I420BufferPool pool = new I420BufferPool();
+    private final List<FrameStage> stages = new CopyOnWriteArrayList<>();
+    private volatile VideoSink sink;
+    private long framesIn;
+    private long framesOut;
+
+    /**
+     * 按逗号分隔的配置建流水线，例如 "crop:16x9,scale:1280x720,timestamp"；空串得到没有阶段的流水线
+     *
+     * @throws IllegalArgumentException 配置写错时
+     */
+    public static VideoProcessingPipeline fromSpec(String spec) {
+        VideoProcessingPipeline pipeline = new VideoProcessingPipeline();
+        if (spec == null || spec.isEmpty()) {
+            return pipeline;
+        }
+        for (String item : spec.split(",")) {
+            String[] parts = item.trim().split(":", 2);
+            switch (parts[0]) {
+                case "crop": {
+                    int[] size = parseSize(parts);
+                    pipeline.addStage(new CropStage(size[0], size[1]));
+                    break;
+                }
+                case "scale": {
+                    int[] size = parseSize(parts);
+                    pipeline.addStage(new ScaleStage(size[0], size[1]));
+                    break;
+                }
+                case "timestamp":
+                    pipeline.addStage(new TimestampOverlayStage());
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown video stage: " + item);
+            }
+        }
+        return pipeline;
+    }
+
+    private static int[] parseSize(String[] parts) {
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("missing size for " + parts[0]);
+        }
+        String[] size = parts[1].split("x");
+        int w = Integer.parseInt(size[0]);
+        int h = Integer.parseInt(size[1]);
+        if (w <= 0 || h <= 0) {
+            throw new IllegalArgumentException("bad size for " + parts[0] + ": " + parts[1]);
+        }
+        return new int[]{w, h};
+    }
+
+    public VideoProcessingPipeline addStage(FrameStage stage) {
+        stages.add(stage);
+        return this;
+    }
+
+    public void removeStage(FrameStage stage) {
+        stages.remove(stage);
+    }
+
+    /**
+     * 没有任何阶段；这时应该不调用 setVideoProcessor，让 VideoSource 自己做 adaptOutputFormat
+     */
+    public boolean isEmpty() {
+        return stages.isEmpty();
+    }
+
+    public I420BufferPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public void setSink(VideoSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void onCapturerStarted(boolean success) {
+        Log.d(TAG, "capturer started=" + success + ", stages=" + stages.size());
+    }
+
+    @Override
+    public void onCapturerStopped() {
+        Log.d(TAG, "capturer stopped, frames in=" + framesIn + " out=" + framesOut + ", " + pool.getMemoryPool());
+    }
+
+    /**
+     * VideoSource 不带适配参数的入口（没有 adaptOutputFormat 要求时也走带参数的版本，这里只做兜底）
+     */
+    @Override
+    public void onFrameCaptured(VideoFrame frame) {
+        frame.retain();
+        deliver(frame);
+    }
+
+    @Override
+    public void onFrameCaptured(VideoFrame frame, FrameAdaptationParameters parameters) {
+        if (parameters.drop) {
+            return;
+        }
+        deliver(adapt(frame, parameters));
+    }
+
+    /**
+     * 和 VideoProcessor.applyFrameAdaptationParameters 结果相同，只是不为没有缩放的帧新建 VideoFrame 以外的东西：
+     * 纹理帧只改矩阵，内存帧只裁剪时零拷贝，需要缩放时走 libyuv
+     */
+    private VideoFrame adapt(VideoFrame frame, FrameAdaptationParameters p) {
+        VideoFrame.Buffer adapted = frame.getBuffer().cropAndScale(
+                p.cropX, p.cropY, p.cropWidth, p.cropHeight, p.scaleWidth, p.scaleHeight);
+        return new VideoFrame(adapted, frame.getRotation(), p.timestampNs);
+    }
+
+    /**
+     * @param frame 持有一个引用，这里负责释放
+     */
+    private void deliver(VideoFrame frame) {
+        framesIn++;
+        for (FrameStage stage : stages) {
+            frame = stage.process(frame, pool);
+            if (frame == null) {
+                return;
+            }
+        }
+        VideoSink target = sink;
+        if (target != null) {
+            target.onFrame(frame);
+            framesOut++;
+        }
+        frame.release();
+    }
+}
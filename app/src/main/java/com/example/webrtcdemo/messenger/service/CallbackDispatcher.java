@@ -0,0 +1,225 @@
+package com.example.webrtcdemo.messenger.service;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.RemoteCallbackList;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.webrtcdemo.binder.IWebRtcCallback;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务端回调分发：在自己的 HandlerThread 上投递给所有客户端，状态和进度事件合并，数据消息分片
+ */
+public class CallbackDispatcher {
+
+    private static final String TAG = "CallbackDispatcher";
+
+    /** 状态事件合并窗口 */
+    private static final long COALESCE_WINDOW_MS = 50;
+
+    public static final String KEY_TYPE = "type";
+    public static final String KEY_PEER = "peer";
+    public static final String KEY_VALUE = "value";
+    public static final String KEY_TIME_MS = "time_ms";
+    /** 通话进度事件的 type，value 为阶段名：starting / factory_ready / capture_started / signaling_started / offer_sent / connected / ended */
+    public static final String TYPE_PROGRESS = "progress";
+
+    /** 单次 onDataMessage 的数据上限 */
+    public static final int MAX_DATA_FRAGMENT_BYTES = 64 * 1024;
+    /** 已入队还没投递完的数据消息上限 */
+    private static final int MAX_PENDING_DATA_MESSAGES = 16;
+    private static final long MAX_PENDING_DATA_BYTES = 1024 * 1024;
+
+    private final RemoteCallbackList<IWebRtcCallback> callbacks = new RemoteCallbackList<IWebRtcCallback>() {
+        @Override
+        public void onCallbackDied(IWebRtcCallback callback) {
+            Log.w(TAG, "callback process died, remaining=" + getRegisteredCallbackCount());
+        }
+    };
+
+    private final HandlerThread thread = new HandlerThread("CallbackDispatch");
+    private final Handler handler;
+
+    // 只在 dispatch 线程上访问
+    private final LinkedHashMap<String, Bundle> pendingStates = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    private final Runnable flushTask = this::flushStates;
+
+    private final AtomicInteger nextMessageId = new AtomicInteger();
+    private final AtomicInteger pendingDataMessages = new AtomicInteger();
+    private final AtomicLong pendingDataBytes = new AtomicLong();
+    private final AtomicLong droppedDataMessages = new AtomicLong();
+
+    public CallbackDispatcher() {
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    public boolean register(IWebRtcCallback callback) {
+        return callbacks.register(callback);
+    }
+
+    public boolean unregister(IWebRtcCallback callback) {
+        return callbacks.unregister(callback);
+    }
+
+    /**
+     * 已经入队的投递（包括最后的 ended 进度）做完再退出；合并窗口不再等，剩下的状态立即发出
+     */
+    public void release() {
+        handler.post(() -> {
+            flushStates();
+            callbacks.kill();
+        });
+        thread.quitSafely();
+    }
+
+    public void postLocalVideoTrackCreated(String sessionId, String trackId) {
+        handler.post(() -> {
+            // 先把之前积累的状态发出去，保证客户端看到的顺序和发生顺序一致
+            flushStates();
+            broadcast(cb -> cb.onLocalVideoTrackCreated(sessionId, trackId));
+        });
+    }
+
+    public void postRemoteVideoTrackCreated(String sessionId, String trackId) {
+        handler.post(() -> {
+            flushStates();
+            broadcast(cb -> cb.onRemoteVideoTrackCreated(sessionId, trackId));
+        });
+    }
+
+    /**
+     * 通话进度和状态事件一起合并投递。key 里带上阶段名，所以每个阶段都会送到，
+     * 只有多条连接重复报告的同一阶段（offer_sent / connected）在窗口内合成一条
+     */
+    public void postCallProgress(String sessionId, String stage) {
+        enqueueState(TYPE_PROGRESS + ":" + sessionId + ":" + stage, TYPE_PROGRESS, sessionId, stage);
+    }
+
+    /**
+     * 失败不合并，投递前先把积累的进度和状态发出去，客户端看到的顺序和发生顺序一致
+     */
+    public void postCallFailed(String sessionId, String stage, String reason) {
+        handler.post(() -> {
+            flushStates();
+            broadcast(cb -> cb.onCallFailed(sessionId, stage, reason));
+        });
+    }
+
+    /**
+     * DataChannel 消息不合并，按到达顺序逐条投递，超过 {@link #MAX_DATA_FRAGMENT_BYTES} 的切片
+     *
+     * @return 排队的消息太多被丢弃时返回 false
+     */
+    public boolean postDataMessage(String peer, String label, byte[] data) {
+        int length = data.length;
+        int count = pendingDataMessages.incrementAndGet();
+        long bytes = pendingDataBytes.addAndGet(length);
+        if (count > MAX_PENDING_DATA_MESSAGES || bytes > MAX_PENDING_DATA_BYTES) {
+            pendingDataMessages.decrementAndGet();
+            pendingDataBytes.addAndGet(-length);
+            long dropped = droppedDataMessages.incrementAndGet();
+            if (dropped == 1 || dropped % 100 == 0) {
+                Log.w(TAG, "client too slow, dropped " + dropped + " data messages, last from " + peer + "/" + label);
+            }
+            return false;
+        }
+        int messageId = nextMessageId.incrementAndGet();
+        handler.post(() -> {
+            try {
+                int offset = 0;
+                do {
+                    int n = Math.min(MAX_DATA_FRAGMENT_BYTES, length - offset);
+                    byte[] chunk = n == length ? data : Arrays.copyOfRange(data, offset, offset + n);
+                    int at = offset;
+                    broadcast(cb -> cb.onDataMessage(peer, label, messageId, at, length, chunk));
+                    offset += n;
+                } while (offset < length);
+            } finally {
+                pendingDataMessages.decrementAndGet();
+                pendingDataBytes.addAndGet(-length);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 因为排队过多被丢弃的数据消息数
+     */
+    public long getDroppedDataMessages() {
+        return droppedDataMessages.get();
+    }
+
+    public void postFileReceived(String peer, String label, String path, long length) {
+        handler.post(() -> broadcast(cb -> cb.onFileReceived(peer, label, path, length)));
+    }
+
+    /**
+     * 状态变化事件，同一 (type, peer) 在合并窗口内只投递最后一次
+     */
+    public void postState(String type, String peerId, String value) {
+        enqueueState(type + ":" + peerId, type, peerId, value);
+    }
+
+    private void enqueueState(String key, String type, String peerId, String value) {
+        long now = SystemClock.elapsedRealtime();
+        handler.post(() -> {
+            Bundle event = new Bundle();
+            event.putString(KEY_TYPE, type);
+            event.putString(KEY_PEER, peerId);
+            event.putString(KEY_VALUE, value);
+            event.putLong(KEY_TIME_MS, now);
+            pendingStates.put(key, event);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                handler.postDelayed(flushTask, COALESCE_WINDOW_MS);
+            }
+        });
+    }
+
+    private void flushStates() {
+        if (flushScheduled) {
+            handler.removeCallbacks(flushTask);
+            flushScheduled = false;
+        }
+        if (pendingStates.isEmpty()) {
+            return;
+        }
+        Bundle[] batch = pendingStates.values().toArray(new Bundle[0]);
+        pendingStates.clear();
+        broadcast(cb -> cb.onStateEvents(batch));
+    }
+
+    private interface Delivery {
+        void deliver(IWebRtcCallback callback) throws RemoteException;
+    }
+
+    private void broadcast(Delivery delivery) {
+        int n = callbacks.beginBroadcast();
+        try {
+            for (int i = 0; i < n; i++) {
+                try {
+                    delivery.deliver(callbacks.getBroadcastItem(i));
+                } catch (RemoteException e) {
+                    // 对端已死，RemoteCallbackList 会在 binderDied 时自动清理
+                    Log.w(TAG, "deliver callback failed", e);
+                } catch (RuntimeException e) {
+                    // 同进程客户端的异常不应影响其他客户端
+                    Log.e(TAG, "callback threw", e);
+                }
+            }
+        } finally {
+            callbacks.finishBroadcast();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.webrtcdemo.messenger.service;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.webrtcdemo.messenger.network.NetworkChangeMonitor;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.PeerConnection;
+
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * ICE 断线和默认网络切换后的恢复：发起方做有限次数、指数退避的 ICE 重启，只在会话线程上调用
+ */
+final class IceRecovery {
+
+    private static final String TAG = "IceRecovery";
+
+    static final long DISCONNECTED_GRACE_MS = 2000;
+    static final long RESTART_TIMEOUT_MS = 8000;
+    static final long INITIAL_BACKOFF_MS = 1000;
+    static final long MAX_BACKOFF_MS = 8000;
+    static final int MAX_RESTART_ATTEMPTS = 5;
+
+    private static final String NETWORK_LOOPBACK = "loopback";
+
+    interface Restarter {
+        /**
+         * @return 上一轮协商还没结束、没有真正发起重启时返回 false
+         */
+        boolean restartIce(PeerSession session);
+
+        void giveUp(PeerSession session, String reason);
+    }
+
+    private final ScheduledExecutorService executor;
+    private final CallbackDispatcher dispatcher;
+    private final Restarter restarter;
+    /** elapsedRealtime 毫秒 */
+    private final LongSupplier clock;
+    private boolean networkAvailable = true;
+
+    IceRecovery(ScheduledExecutorService executor, CallbackDispatcher dispatcher, Restarter restarter) {
+        this(executor, dispatcher, restarter, SystemClock::elapsedRealtime);
+    }
+
+    IceRecovery(ScheduledExecutorService executor, CallbackDispatcher dispatcher, Restarter restarter,
+                LongSupplier clock) {
+        this.executor = executor;
+        this.dispatcher = dispatcher;
+        this.restarter = restarter;
+        this.clock = clock;
+    }
+
+    void onIceStateChanged(PeerSession session, PeerConnection.IceConnectionState state) {
+        switch (state) {
+            case CONNECTED:
+            case COMPLETED:
+                onConnected(session);
+                break;
+            case DISCONNECTED:
+                markDown(session);
+                if (canRestart(session) && session.recoveryTask == null) {
+                    schedule(session, DISCONNECTED_GRACE_MS);
+                }
+                break;
+            case FAILED:
+                markDown(session);
+                if (canRestart(session)) {
+                    // 重启中途又失败了就按退避来，避免对端没响应时连续刷 offer
+                    schedule(session, session.restartAttempts == 0 ? 0 : backoff(session.restartAttempts));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    void onNetworkChanged(Collection<PeerSession> sessions, String transport) {
+        networkAvailable = true;
+        for (PeerSession session : sessions) {
+            String network = session.selectedNetwork;
+            if (isConnected(session) && (transport.equals(network) || NETWORK_LOOPBACK.equals(network))) {
+                Log.d(TAG, session.key + " keeps " + session.selectedPair + " on " + network);
+                continue;
+            }
+            markDown(session);
+            // 已经放弃的连接在新网络上也再试一轮
+            if (session.role == PeerSession.Role.OFFERER && session.negotiation != NegotiationState.CLOSED) {
+                // 新网络是一次新的机会，重新计数
+                session.restartAttempts = 0;
+                schedule(session, 0);
+            }
+        }
+    }
+
+    void onNetworkLost(Collection<PeerSession> sessions) {
+        networkAvailable = false;
+        for (PeerSession session : sessions) {
+            if (!NETWORK_LOOPBACK.equals(session.selectedNetwork)) {
+                markDown(session);
+            }
+        }
+    }
+
+    private void onConnected(PeerSession session) {
+        cancel(session);
+        session.restartAttempts = 0;
+        if (session.disconnectedAtMs == 0) {
+            return;
+        }
+        long elapsed = clock.getAsLong() - session.disconnectedAtMs;
+        session.disconnectedAtMs = 0;
+        session.reconnects++;
+        session.lastReconnectMs = elapsed;
+        Log.d(TAG, session.key + " reconnected in " + elapsed + "ms after " + session.iceRestarts + " restarts");
+        dispatcher.postState("reconnect_ms", session.key, String.valueOf(elapsed));
+    }
+
+    private void attempt(PeerSession session) {
+        session.recoveryTask = null;
+        if (isConnected(session) && session.disconnectedAtMs == 0) {
+            return;
+        }
+        if (!networkAvailable) {
+            Log.d(TAG, session.key + " waits for a network before restarting ICE");
+            return;
+        }
+        if (session.restartAttempts >= MAX_RESTART_ATTEMPTS) {
+            restarter.giveUp(session, "not reconnected after " + MAX_RESTART_ATTEMPTS + " ICE restarts");
+            return;
+        }
+        if (restarter.restartIce(session)) {
+            session.restartAttempts++;
+            session.iceRestarts++;
+            Log.d(TAG, session.key + " ICE restart #" + session.restartAttempts);
+            dispatcher.postState("ice_restart", session.key, String.valueOf(session.restartAttempts));
+        }
+        // 没连通（或上一轮协商还没结束）就退避后再来
+        schedule(session, RESTART_TIMEOUT_MS);
+    }
+
+    private void markDown(PeerSession session) {
+        if (session.disconnectedAtMs == 0) {
+            session.disconnectedAtMs = clock.getAsLong();
+        }
+    }
+
+    private void schedule(PeerSession session, long delayMs) {
+        cancel(session);
+        try {
+            session.recoveryTask = executor.schedule(() -> {
+                if (session.negotiation != NegotiationState.CLOSED) {
+                    attempt(session);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            Log.d(TAG, session.key + " recovery after shutdown dropped");
+        }
+    }
+
+    private static void cancel(PeerSession session) {
+        if (session.recoveryTask != null) {
+            session.recoveryTask.cancel(false);
+            session.recoveryTask = null;
+        }
+    }
+
+    /**
+     * 只有发起方重启，已经放弃的连接不再重启
+     */
+    private static boolean canRestart(PeerSession session) {
+        return session.role == PeerSession.Role.OFFERER && session.negotiation != NegotiationState.CLOSED
+                && !(session.negotiation == NegotiationState.FAILED && session.restartAttempts >= MAX_RESTART_ATTEMPTS);
+    }
+
+    private static boolean isConnected(PeerSession session) {
+        return session.iceState == PeerConnection.IceConnectionState.CONNECTED
+                || session.iceState == PeerConnection.IceConnectionState.COMPLETED;
+    }
+
+    /**
+     * 第 n 次重启失败后的等待：1s、2s、4s、8s、8s
+     */
+    static long backoff(int attempts) {
+        return Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempts - 1, 16));
+    }
+
+    /**
+     * candidate 所在的本地网络，和 {@link NetworkChangeMonitor} 的 TRANSPORT_* 对应
+     */
+    static String networkOf(IceCandidate candidate) {
+        return candidate == null ? NetworkChangeMonitor.TRANSPORT_OTHER : networkOf(candidate.adapterType);
+    }
+
+    static String networkOf(PeerConnection.AdapterType adapterType) {
+        if (adapterType == null) {
+            return NetworkChangeMonitor.TRANSPORT_OTHER;
+        }
+        switch (adapterType) {
+            case WIFI:
+                return NetworkChangeMonitor.TRANSPORT_WIFI;
+            case CELLULAR:
+                return NetworkChangeMonitor.TRANSPORT_CELLULAR;
+            case ETHERNET:
+                return NetworkChangeMonitor.TRANSPORT_ETHERNET;
+            case VPN:
+                return NetworkChangeMonitor.TRANSPORT_VPN;
+            case LOOPBACK:
+                return NETWORK_LOOPBACK;
+            default:
+                return NetworkChangeMonitor.TRANSPORT_OTHER;
+        }
+    }
+
+    /**
+     * candidate 的类型（host / srflx / prflx / relay），取 SDP 里 typ 后面的字段
+     */
+    static String typeOf(IceCandidate candidate) {
+        if (candidate == null || candidate.sdp == null) {
+            return "unknown";
+        }
+        String[] fields = candidate.sdp.split(" ");
+        for (int i = 0; i < fields.length - 1; i++) {
+            if ("typ".equals(fields[i])) {
+                return fields[i + 1];
+            }
+        }
+        return "unknown";
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.webrtcdemo.messenger.service;
+
+/**
+ * 一条 PeerConnection 的 offer / answer 协商状态，只允许表里的迁移，只在会话线程上读写
+ */
+enum NegotiationState {
+    NEW,
+    CREATING_OFFER,
+    HAVE_LOCAL_OFFER,
+    SETTING_REMOTE_ANSWER,
+    SETTING_REMOTE_OFFER,
+    HAVE_REMOTE_OFFER,
+    CREATING_ANSWER,
+    STABLE,
+    CONNECTED,
+    FAILED,
+    CLOSED;
+
+    boolean canMoveTo(NegotiationState next) {
+        if (this == CLOSED) {
+            return false;
+        }
+        switch (next) {
+            case CREATING_OFFER:
+            case SETTING_REMOTE_OFFER:
+                return this == NEW || canRenegotiate();
+            case HAVE_LOCAL_OFFER:
+                return this == CREATING_OFFER;
+            case SETTING_REMOTE_ANSWER:
+                return this == HAVE_LOCAL_OFFER;
+            case HAVE_REMOTE_OFFER:
+                return this == SETTING_REMOTE_OFFER;
+            case CREATING_ANSWER:
+                return this == HAVE_REMOTE_OFFER;
+            case STABLE:
+                return this == SETTING_REMOTE_ANSWER || this == CREATING_ANSWER;
+            case CONNECTED:
+                return this == STABLE;
+            case FAILED:
+                return this != FAILED;
+            case CLOSED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 上一轮协商已经结束，可以开始 ICE 重启
+     */
+    boolean canRenegotiate() {
+        return this == STABLE || this == CONNECTED || this == FAILED;
+    }
+
+    /**
+     * 远端描述已经设置，可以直接 addIceCandidate
+     */
+    boolean hasRemoteDescription() {
+        return this == HAVE_REMOTE_OFFER || this == CREATING_ANSWER || this == STABLE || this == CONNECTED;
+    }
+
+    /**
+     * 本端的 offer / answer 已经发给对端，之后的本地 candidate 可以直接发
+     */
+    boolean hasSentLocalDescription() {
+        return this == HAVE_LOCAL_OFFER || this == SETTING_REMOTE_ANSWER || this == STABLE || this == CONNECTED;
+    }
+}
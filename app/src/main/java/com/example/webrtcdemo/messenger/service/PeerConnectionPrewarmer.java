@@ -0,0 +1,205 @@
+package com.example.webrtcdemo.messenger.service;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.webrtcdemo.messenger.model.PeerConnectionObserver;
+
+import org.webrtc.CandidatePairChangeEvent;
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RtpReceiver;
+
+/**
+ * 提前建好一条 PeerConnection 预收集 candidate，配置相同且没放太久时给下一条连接直接用
+ */
+final class PeerConnectionPrewarmer {
+
+    private static final String TAG = "PeerConnectionPrewarmer";
+
+    /** 超过这个时间的池化 candidate 可能已经过期（NAT 映射超时、网络切换），不再使用 */
+    static final long MAX_AGE_MS = 60_000;
+
+    private PeerConnection peerConnection;
+    private ForwardingObserver observer;
+    private String configKey;
+    private long createdAtMs;
+
+    private volatile int hits;
+    private volatile int misses;
+
+    /**
+     * 已经有同样配置且未过期的就保留
+     */
+    void prewarm(PeerConnectionFactory factory, PeerConnection.RTCConfiguration config, String key) {
+        if (peerConnection != null) {
+            if (key.equals(configKey) && !isExpired()) {
+                return;
+            }
+            release();
+        }
+        if (config.iceCandidatePoolSize <= 0) {
+            return;
+        }
+        ForwardingObserver forwarding = new ForwardingObserver();
+        PeerConnection pc = factory.createPeerConnection(config, forwarding);
+        if (pc == null) {
+            Log.e(TAG, "prewarm createPeerConnection failed");
+            return;
+        }
+        peerConnection = pc;
+        observer = forwarding;
+        configKey = key;
+        createdAtMs = SystemClock.elapsedRealtime();
+        Log.d(TAG, "prewarmed " + key + ", pool=" + config.iceCandidatePoolSize);
+    }
+
+    /**
+     * @return 配置一致且未过期时返回预建的 PeerConnection（之后的回调都交给 target），否则返回 null
+     */
+    PeerConnection take(String key, PeerConnection.Observer target) {
+        if (peerConnection == null || !key.equals(configKey) || isExpired()) {
+            misses++;
+            if (peerConnection != null) {
+                Log.d(TAG, "prewarmed connection unusable for " + key);
+                release();
+            }
+            return null;
+        }
+        PeerConnection pc = peerConnection;
+        observer.target = target;
+        Log.d(TAG, "take prewarmed connection, age=" + (SystemClock.elapsedRealtime() - createdAtMs) + "ms");
+        peerConnection = null;
+        observer = null;
+        configKey = null;
+        hits++;
+        return pc;
+    }
+
+    void release() {
+        if (peerConnection != null) {
+            peerConnection.dispose();
+            peerConnection = null;
+            observer = null;
+            configKey = null;
+        }
+    }
+
+    private boolean isExpired() {
+        return SystemClock.elapsedRealtime() - createdAtMs > MAX_AGE_MS;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + " misses=" + misses;
+    }
+
+    /**
+     * 绑定前的回调直接丢弃
+     */
+    private static final class ForwardingObserver extends PeerConnectionObserver {
+
+        volatile PeerConnection.Observer target;
+
+        @Override
+        public void onSignalingChange(PeerConnection.SignalingState signalingState) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onSignalingChange(signalingState);
+            }
+        }
+
+        @Override
+        public void onIceConnectionChange(PeerConnection.IceConnectionState newState) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onIceConnectionChange(newState);
+            }
+        }
+
+        @Override
+        public void onIceConnectionReceivingChange(boolean receiving) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onIceConnectionReceivingChange(receiving);
+            }
+        }
+
+        @Override
+        public void onIceGatheringChange(PeerConnection.IceGatheringState newState) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onIceGatheringChange(newState);
+            }
+        }
+
+        @Override
+        public void onIceCandidate(IceCandidate candidate) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onIceCandidate(candidate);
+            }
+        }
+
+        @Override
+        public void onIceCandidatesRemoved(IceCandidate[] candidates) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onIceCandidatesRemoved(candidates);
+            }
+        }
+
+        @Override
+        public void onSelectedCandidatePairChanged(CandidatePairChangeEvent event) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onSelectedCandidatePairChanged(event);
+            }
+        }
+
+        @Override
+        public void onAddStream(MediaStream stream) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onAddStream(stream);
+            }
+        }
+
+        @Override
+        public void onRemoveStream(MediaStream stream) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onRemoveStream(stream);
+            }
+        }
+
+        @Override
+        public void onDataChannel(DataChannel dataChannel) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onDataChannel(dataChannel);
+            } else {
+                dataChannel.dispose();
+            }
+        }
+
+        @Override
+        public void onRenegotiationNeeded() {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onRenegotiationNeeded();
+            }
+        }
+
+        @Override
+        public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
+            PeerConnection.Observer t = target;
+            if (t != null) {
+                t.onAddTrack(receiver, mediaStreams);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.webrtcdemo.messenger.service;
+
+import android.os.SystemClock;
+
+import com.example.webrtcdemo.messenger.bandwidth.BandwidthLimits;
+import com.example.webrtcdemo.messenger.datachannel.DataChannelEndpoint;
+import com.example.webrtcdemo.messenger.simulcast.SimulcastController;
+import com.example.webrtcdemo.messenger.stats.RtcStatsCollector;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.PeerConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 会话里的一条 PeerConnection（发起方或应答方），除 volatile 字段外只在会话线程上访问
+ */
+final class PeerSession {
+
+    enum Role {
+        OFFERER("offerer"),
+        ANSWERER("answerer");
+
+        final String tag;
+
+        Role(String tag) {
+            this.tag = tag;
+        }
+
+        Role opposite() {
+            return this == OFFERER ? ANSWERER : OFFERER;
+        }
+    }
+
+    final String peerId;
+    final Role role;
+    final String key;
+    final long createdAtMs = SystemClock.elapsedRealtime();
+
+    PeerConnection peerConnection;
+    RtcStatsCollector statsCollector;
+    /** 只有开启 simulcast 的发起方才有 */
+    SimulcastController simulcast;
+    /** 发起方的码率 / 帧率 / 退化策略，见 BandwidthController */
+    BandwidthLimits bandwidth;
+    /** 上一次成功 setBitrate 时的设置，null 表示还没有设置过，见 BandwidthController#applyBitrate */
+    BandwidthLimits appliedBitrate;
+    DataChannelEndpoint dataChannels;
+    /** 应答方收到视频后在 WebRtcHolder 里注册的 track id */
+    volatile String remoteVideoTrackId;
+    /** 用的是预建、candidate 已收集好的连接 */
+    volatile boolean prewarmed;
+    /** 新建连接时 RTCConfiguration 是否带了缓存的 DTLS 证书；预建连接和已经记过第一次 offer / answer 耗时后为 null */
+    Boolean cachedCertificate;
+    volatile PeerConnection.IceConnectionState iceState = PeerConnection.IceConnectionState.NEW;
+    volatile NegotiationState negotiation = NegotiationState.NEW;
+    /** offer 发出之前收集到的本地 candidate，先于 offer 到达对端会被丢弃 */
+    final List<IceCandidate> pendingLocalCandidates = new ArrayList<>();
+    /** 远端描述设置之前收到的 candidate，addIceCandidate 会失败 */
+    final List<IceCandidate> pendingRemoteCandidates = new ArrayList<>();
+
+    // ICE 恢复（见 IceRecovery），非 volatile 的只在会话线程上访问
+    /** 断线（ICE 断开或默认网络切换）开始的时间，0 表示当前连通 */
+    long disconnectedAtMs;
+    /** 这次断线已经做了几次 ICE 重启，连通后清零 */
+    int restartAttempts;
+    ScheduledFuture<?> recoveryTask;
+    volatile int iceRestarts;
+    volatile int reconnects;
+    volatile long lastReconnectMs = -1;
+    /** 当前选中的 candidate pair 的本地网络类型，见 NetworkChangeMonitor.TRANSPORT_* */
+    volatile String selectedNetwork;
+    /** 当前选中的 candidate pair，例如 "host->srflx" */
+    volatile String selectedPair;
+
+    PeerSession(String peerId, Role role) {
+        this.peerId = peerId;
+        this.role = role;
+        this.key = key(peerId, role);
+    }
+
+    static String key(String peerId, Role role) {
+        return peerId + ":" + role.tag;
+    }
+
+    /**
+     * @return key 对应的角色，格式不对时返回 null
+     */
+    static Role roleOf(String key) {
+        if (key == null) {
+            return null;
+        }
+        for (Role role : Role.values()) {
+            if (key.endsWith(":" + role.tag)) {
+                return role;
+            }
+        }
+        return null;
+    }
+
+    static String peerIdOf(String key) {
+        int sep = key.lastIndexOf(':');
+        return sep < 0 ? key : key.substring(0, sep);
+    }
+
+    /**
+     * 需要在 WebRtcHolder 释放远端 track 之后调用，PeerConnection.dispose 会一并释放 receiver 的 track；
+     * DataChannel 不会被连带释放，要先关
+     */
+    void dispose() {
+        negotiation = NegotiationState.CLOSED;
+        if (recoveryTask != null) {
+            recoveryTask.cancel(false);
+            recoveryTask = null;
+        }
+        pendingLocalCandidates.clear();
+        pendingRemoteCandidates.clear();
+        if (dataChannels != null) {
+            dataChannels.close();
+        }
+        if (statsCollector != null) {
+            statsCollector.stop();
+        }
+        if (simulcast != null) {
+            simulcast.detach();
+        }
+        if (peerConnection != null) {
+            peerConnection.dispose();
+            peerConnection = null;
+        }
+    }
+}
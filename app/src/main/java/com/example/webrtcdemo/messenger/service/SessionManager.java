@@ -0,0 +1,1008 @@
+package com.example.webrtcdemo.messenger.service;
+
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import com.example.webrtcdemo.messenger.audio.AudioConfig;
+import com.example.webrtcdemo.messenger.audio.AudioDeviceSetup;
+import com.example.webrtcdemo.messenger.bandwidth.BandwidthController;
+import com.example.webrtcdemo.messenger.bandwidth.BandwidthLimits;
+import com.example.webrtcdemo.messenger.capture.ProcessCpuSampler;
+import com.example.webrtcdemo.messenger.datachannel.ChannelSpec;
+import com.example.webrtcdemo.messenger.datachannel.ChunkedDataChannel;
+import com.example.webrtcdemo.messenger.datachannel.DataChannelEndpoint;
+import com.example.webrtcdemo.messenger.datachannel.ReceivedFiles;
+import com.example.webrtcdemo.messenger.model.PeerConnectionObserver;
+import com.example.webrtcdemo.messenger.model.SdpObserverAdapter;
+import com.example.webrtcdemo.messenger.network.NetworkChangeMonitor;
+import com.example.webrtcdemo.messenger.network.RtcProfile;
+import com.example.webrtcdemo.messenger.processing.DirectBufferPool;
+import com.example.webrtcdemo.messenger.signaling.SignalingClient;
+import com.example.webrtcdemo.messenger.simulcast.SimulcastController;
+import com.example.webrtcdemo.messenger.stats.CallSetupTracer;
+import com.example.webrtcdemo.messenger.stats.FrameStatsSink;
+import com.example.webrtcdemo.messenger.stats.RtcStatsCollector;
+import com.example.webrtcdemo.messenger.stats.StatsRingBuffer;
+import com.example.webrtcdemo.messenger.utils.DtlsCertificateManager;
+import com.example.webrtcdemo.messenger.utils.WebRtcHolder;
+
+import org.webrtc.AudioTrack;
+import org.webrtc.CandidatePairChangeEvent;
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RtpReceiver;
+import org.webrtc.RtpTransceiver;
+import org.webrtc.SessionDescription;
+import org.webrtc.VideoTrack;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 多方会话：按 peerId 管理发起方 / 应答方的 {@link PeerSession}，共用一个工厂和一路本地采集。
+ * 所有改动连接的操作都在会话线程上串行执行，WebRTC 和信令回调只投递任务
+ */
+class SessionManager implements SignalingClient.Callback, NetworkChangeMonitor.Listener, IceRecovery.Restarter {
+
+    private static final String TAG = "SessionManager";
+
+    static final String REMOTE_VIDEO_TRACK_PREFIX = "remoteTrack:";
+    static final String REMOTE_AUDIO_TRACK_PREFIX = "remoteAudio:";
+    private static final long FRAME_STATS_INTERVAL_MS = 2000;
+    private static final long RTC_STATS_INTERVAL_MS = 1000;
+    /** 1s 一条，保留最近 5 分钟 */
+    private static final int RTC_STATS_HISTORY_SIZE = 300;
+    private static final String LOCAL_STREAM_ID = "localStream";
+    /** 接收缓冲池：16KB 的块，最多留 2MB */
+    private static final int DATA_POOL_BUFFERS = 128;
+    private static final long DATA_POOL_BYTES = 2L * 1024 * 1024;
+    /** Opus 默认 20ms 一包，发送端要攒满一包才能编码 */
+    private static final double OPUS_FRAME_MS = 20;
+
+    private final PeerConnectionFactory factory;
+    private final SignalingClient signaling;
+    private final String holderSessionId;
+    private final VideoTrack localVideoTrack;
+    private final AudioTrack localAudioTrack;
+    private final AudioConfig audioConfig;
+    private final RtcProfile profile;
+    private final List<PeerConnection.IceServer> iceServers;
+    private final PeerConnectionPrewarmer prewarmer;
+    private final String configKey;
+    private final boolean simulcastEnabled;
+    private final CallbackDispatcher dispatcher;
+    private final CallSetupTracer tracer;
+    private final FrameStatsSink.Listener frameStatsLogger;
+    private final RtcStatsCollector.SampleListener captureAdaptation;
+    private final ProcessCpuSampler cpuSampler = new ProcessCpuSampler(Os.sysconf(OsConstants._SC_CLK_TCK));
+    private final File dataDir;
+    private final ChunkedDataChannel.Listener dataListener;
+    private final ScheduledExecutorService dataExecutor =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "DataChannel"));
+    private final DirectBufferPool dataPool = new DirectBufferPool(DATA_POOL_BUFFERS, DATA_POOL_BYTES);
+    private volatile int bulkBytesPerSecond = ChannelSpec.DEFAULT_BULK_BYTES_PER_SECOND;
+
+    private final ScheduledExecutorService sessionExecutor;
+    private final IceRecovery recovery;
+
+    private final Map<String, PeerSession> sessions = new ConcurrentHashMap<>();
+    // 以下字段只在会话线程上访问
+    /** 采集自适应只跟随一条发送连接的统计，否则 N 条连接会让策略的计数快 N 倍 */
+    private String adaptationSourceKey;
+    private boolean closed;
+    /** 之后加入的参与者用的码率设置 */
+    private BandwidthLimits bandwidthLimits = BandwidthLimits.DEFAULT;
+    /** 第一条 offer 发出、第一条连接连通时各上报一次进度 */
+    private boolean offerSentReported;
+    private boolean connectedReported;
+
+    SessionManager(PeerConnectionFactory factory, SignalingClient signaling, String holderSessionId,
+                   VideoTrack localVideoTrack, AudioTrack localAudioTrack, AudioConfig audioConfig,
+                   RtcProfile profile, List<PeerConnection.IceServer> iceServers, PeerConnectionPrewarmer prewarmer,
+                   boolean simulcastEnabled, CallbackDispatcher dispatcher,
+                   CallSetupTracer tracer, FrameStatsSink.Listener frameStatsLogger,
+                   RtcStatsCollector.SampleListener captureAdaptation, File dataDir,
+                   ChunkedDataChannel.Listener dataListener, ScheduledExecutorService sessionExecutor) {
+        this.factory = factory;
+        this.signaling = signaling;
+        this.holderSessionId = holderSessionId;
+        this.localVideoTrack = localVideoTrack;
+        this.localAudioTrack = localAudioTrack;
+        this.audioConfig = audioConfig;
+        this.profile = profile;
+        this.iceServers = iceServers;
+        this.prewarmer = prewarmer;
+        this.configKey = configurationKey(profile, iceServers, simulcastEnabled, audioConfig);
+        this.simulcastEnabled = simulcastEnabled;
+        this.dispatcher = dispatcher;
+        this.tracer = tracer;
+        this.frameStatsLogger = frameStatsLogger;
+        this.captureAdaptation = captureAdaptation;
+        this.dataDir = dataDir;
+        this.dataListener = dataListener;
+        this.sessionExecutor = sessionExecutor;
+        this.recovery = new IceRecovery(sessionExecutor, dispatcher, this);
+        if (!dataDir.isDirectory() && !dataDir.mkdirs()) {
+            Log.w(TAG, "create " + dataDir + " failed");
+        }
+        // 这时还没有进行中的传输，上次异常退出留下的 .part 和过期文件一起清掉
+        dataExecutor.execute(() -> ReceivedFiles.prune(dataDir, true));
+        cpuSampler.sample();
+    }
+
+    /**
+     * 加入一个参与者：创建发起方连接，挂上共享的本地视频和音频并发 offer。在会话线程上调用
+     *
+     * @return peerId 已存在或会话已关闭时返回 false
+     */
+    boolean join(String peerId) {
+        String key = PeerSession.key(peerId, PeerSession.Role.OFFERER);
+        if (closed || sessions.containsKey(key)) {
+            return false;
+        }
+        PeerSession session = createSession(peerId, PeerSession.Role.OFFERER);
+        if (session == null) {
+            return false;
+        }
+        PeerConnection pc = session.peerConnection;
+        if (localVideoTrack != null) {
+            if (simulcastEnabled) {
+                SimulcastController controller = new SimulcastController(SimulcastController.DEFAULT_LAYERS);
+                RtpTransceiver transceiver = pc.addTransceiver(localVideoTrack,
+                        new RtpTransceiver.RtpTransceiverInit(RtpTransceiver.RtpTransceiverDirection.SEND_ONLY,
+                                Collections.singletonList(LOCAL_STREAM_ID), controller.buildEncodings()));
+                controller.attach(transceiver.getSender());
+                session.simulcast = controller;
+            } else {
+                // addTrack 不像 addStream 那样在 dispose 时连带释放我们的 track 对象，同一个 track 可以加到多条连接上
+                pc.addTrack(localVideoTrack, Collections.singletonList(LOCAL_STREAM_ID));
+            }
+        }
+        if (localAudioTrack != null) {
+            pc.addTrack(localAudioTrack, Collections.singletonList(LOCAL_STREAM_ID));
+        }
+        if (adaptationSourceKey == null && captureAdaptation != null) {
+            adaptationSourceKey = key;
+            session.statsCollector.setSampleListener(captureAdaptation);
+        }
+        // Unified Plan 下 sender 现在就有编码参数；Plan B 要等连通后再下发一次
+        session.bandwidth = bandwidthLimits;
+        applyBandwidth(session);
+        // DataChannel 要在 createOffer 之前建，offer 里才有 SCTP 的 m 行
+        session.dataChannels.createDefaultChannels(pc);
+        sessions.put(key, session);
+        Log.d(TAG, "join " + peerId + ", sessions=" + sessions.size());
+        createOffer(session, false);
+        return true;
+    }
+
+    /**
+     * 移除参与者的两侧连接（本端发起方和本端应答方）。在会话线程上调用
+     */
+    boolean leave(String peerId) {
+        boolean removed = false;
+        for (PeerSession.Role role : PeerSession.Role.values()) {
+            PeerSession session = sessions.remove(PeerSession.key(peerId, role));
+            if (session != null) {
+                disposeSession(session);
+                removed = true;
+            }
+        }
+        Log.d(TAG, "leave " + peerId + ", sessions=" + sessions.size());
+        return removed;
+    }
+
+    /**
+     * 在会话线程上调用；返回后所有连接都已释放，还在路上的回调会因为状态是 CLOSED 被忽略
+     */
+    void close() {
+        closed = true;
+        for (PeerSession session : sessions.values()) {
+            disposeSession(session);
+        }
+        sessions.clear();
+        dataExecutor.shutdownNow();
+    }
+
+    /**
+     * 已加入的参与者（去重后的 peerId）。在会话线程上调用
+     */
+    List<String> getPeerIds() {
+        List<String> ids = new ArrayList<>();
+        for (PeerSession session : sessions.values()) {
+            if (!ids.contains(session.peerId)) {
+                ids.add(session.peerId);
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * @param sessionKey "&lt;peerId&gt;:offerer" / "&lt;peerId&gt;:answerer"，见 {@link PeerSession#key}。在会话线程上调用
+     */
+    RtcStatsCollector getStatsCollector(String sessionKey) {
+        PeerSession session = sessions.get(sessionKey);
+        return session != null ? session.statsCollector : null;
+    }
+
+    /**
+     * 所有发送连接的 simulcast 控制器，按 session key 排序。在会话线程上调用
+     */
+    List<SimulcastController> getSimulcastControllers() {
+        List<String> keys = new ArrayList<>(sessions.keySet());
+        Collections.sort(keys);
+        List<SimulcastController> controllers = new ArrayList<>();
+        for (String key : keys) {
+            PeerSession session = sessions.get(key);
+            if (session != null && session.simulcast != null) {
+                controllers.add(session.simulcast);
+            }
+        }
+        return controllers;
+    }
+
+    /**
+     * 修改发送连接的码率 / 帧率 / 退化策略，Bundle 里没有的项保持原值。在会话线程上调用
+     *
+     * @param peerId null 表示所有参与者（覆盖各自单独的设置，之后加入的也用它）
+     * @return peerId 不存在或有参数下发失败时返回 false
+     * @throws IllegalArgumentException 参数不合法时，见 {@link BandwidthLimits#merge}
+     */
+    boolean setBandwidthLimits(String peerId, Bundle spec) {
+        List<PeerSession> targets = new ArrayList<>();
+        if (peerId == null) {
+            bandwidthLimits = bandwidthLimits.merge(spec);
+            for (PeerSession session : sessions.values()) {
+                if (session.bandwidth != null) {
+                    session.bandwidth = bandwidthLimits;
+                    targets.add(session);
+                }
+            }
+        } else {
+            PeerSession session = sessions.get(PeerSession.key(peerId, PeerSession.Role.OFFERER));
+            if (session == null || session.bandwidth == null) {
+                return false;
+            }
+            session.bandwidth = session.bandwidth.merge(spec);
+            targets.add(session);
+        }
+        boolean ok = true;
+        for (PeerSession session : targets) {
+            ok &= applyBandwidth(session);
+        }
+        return ok;
+    }
+
+    /**
+     * 下发 session.bandwidth：setBitrate 只在上下限变了时调用，起始值只在第一次带上
+     */
+    private static boolean applyBandwidth(PeerSession session) {
+        boolean ok = BandwidthController.applyBitrate(session.peerConnection, session.bandwidth, session.appliedBitrate);
+        if (ok) {
+            session.appliedBitrate = session.bandwidth;
+        }
+        return BandwidthController.applyEncodings(session.peerConnection, session.bandwidth, session.simulcast) && ok;
+    }
+
+    /**
+     * default 为之后加入的参与者用的设置；peers 下每条发送连接一个 Bundle：requested（设置值）、
+     * senders（各视频 sender 实际生效的参数，见 {@link BandwidthController#snapshot}）、
+     * available_send_kbps（拥塞控制估计的可用带宽，也就是编码码率的实际目标）和 send_kbps。在会话线程上调用
+     */
+    Bundle bandwidthStats() {
+        Bundle bundle = new Bundle();
+        bundle.putBundle("default", bandwidthLimits.toBundle());
+        Bundle peers = new Bundle();
+        for (PeerSession session : sessions.values()) {
+            if (session.bandwidth == null) {
+                continue;
+            }
+            Bundle peer = new Bundle();
+            peer.putBundle("requested", session.bandwidth.toBundle());
+            peer.putBundle("senders", BandwidthController.snapshot(session.peerConnection));
+            RtcStatsCollector collector = session.statsCollector;
+            if (collector != null) {
+                StatsRingBuffer history = collector.getHistory();
+                peer.putDouble("available_send_kbps", history.latest(StatsRingBuffer.COL_AVAILABLE_SEND_KBPS));
+                peer.putDouble("send_kbps", history.latest(StatsRingBuffer.COL_SEND_KBPS));
+            }
+            peers.putBundle(session.key, peer);
+        }
+        bundle.putBundle("peers", peers);
+        return bundle;
+    }
+
+    /**
+     * 发给 peerId 的 DataChannel：优先本端发起方那条连接，没有时用应答方
+     */
+    ChunkedDataChannel findDataChannel(String peerId, String label) {
+        for (PeerSession.Role role : PeerSession.Role.values()) {
+            PeerSession session = sessions.get(PeerSession.key(peerId, role));
+            ChunkedDataChannel channel = session != null ? session.dataChannels.get(label) : null;
+            if (channel != null) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * bulk 通道的发送限速，对已有和之后新建的连接都生效
+     *
+     * @param bytesPerSecond 0 表示不限速
+     */
+    void setBulkRateLimit(int bytesPerSecond) {
+        bulkBytesPerSecond = bytesPerSecond;
+        for (PeerSession session : sessions.values()) {
+            session.dataChannels.setRateLimit(ChannelSpec.BULK, bytesPerSecond);
+        }
+    }
+
+    /**
+     * key 为 session key，value 为该连接各通道的统计（{@link DataChannelEndpoint#snapshot()}）。在会话线程上调用
+     */
+    Bundle dataChannelStats() {
+        Bundle bundle = new Bundle();
+        for (PeerSession session : sessions.values()) {
+            bundle.putBundle(session.key, session.dataChannels.snapshot());
+        }
+        bundle.putString("receive_pool", dataPool.toString());
+        return bundle;
+    }
+
+    private void disposeSession(PeerSession session) {
+        if (session.key.equals(adaptationSourceKey)) {
+            session.statsCollector.setSampleListener(null);
+            adaptationSourceKey = null;
+            // 采集自适应交给剩下的任意一条发送连接
+            for (PeerSession other : sessions.values()) {
+                if (other != session && other.role == PeerSession.Role.OFFERER && other.statsCollector != null) {
+                    adaptationSourceKey = other.key;
+                    other.statsCollector.setSampleListener(captureAdaptation);
+                    break;
+                }
+            }
+        }
+        // 远端 track 要在 PeerConnection dispose 之前摘掉消费者的 sink
+        WebRtcHolder.release(holderSessionId, REMOTE_VIDEO_TRACK_PREFIX + session.peerId);
+        WebRtcHolder.release(holderSessionId, REMOTE_AUDIO_TRACK_PREFIX + session.peerId);
+        session.dispose();
+        dispatcher.postState("negotiation", session.key, NegotiationState.CLOSED.name());
+    }
+
+    // ---------------- 协商（会话线程） ----------------
+
+    /**
+     * 把 WebRTC 线程上的回调投递到会话线程；连接已释放时丢弃。服务销毁后 executor 拒绝任务，同样丢弃
+     */
+    private void post(PeerSession session, Runnable task) {
+        try {
+            sessionExecutor.execute(() -> {
+                if (session.negotiation != NegotiationState.CLOSED) {
+                    task.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.d(TAG, session.key + " callback after shutdown dropped");
+        }
+    }
+
+    /**
+     * @return 迁移是否合法；不合法时状态不变
+     */
+    private boolean moveTo(PeerSession session, NegotiationState next) {
+        NegotiationState current = session.negotiation;
+        if (current == next) {
+            // CONNECTED 之后的 COMPLETED 之类，不是错误
+            return false;
+        }
+        if (!current.canMoveTo(next)) {
+            Log.w(TAG, session.key + " ignored negotiation " + current + " -> " + next);
+            return false;
+        }
+        session.negotiation = next;
+        Log.d(TAG, session.key + " negotiation " + current + " -> " + next);
+        dispatcher.postState("negotiation", session.key, next.name());
+        if (next == NegotiationState.STABLE) {
+            applyPendingRemoteCandidates(session);
+            // 应答方的 ICE 可能先于本地描述设置完成就连通了；ICE 重启时原来的 pair 可能一直没断，不会再有状态回调
+            if (isConnected(session.iceState)) {
+                moveTo(session, NegotiationState.CONNECTED);
+                recovery.onIceStateChanged(session, session.iceState);
+            }
+        } else if (next == NegotiationState.CONNECTED) {
+            if (session.bandwidth != null) {
+                applyBandwidth(session);
+            }
+            if (!connectedReported) {
+                connectedReported = true;
+                dispatcher.postCallProgress(holderSessionId, "connected");
+            }
+        }
+        return true;
+    }
+
+    private void fail(PeerSession session, String stage, String error) {
+        Log.e(TAG, session.key + " " + stage + " failed: " + error);
+        if (moveTo(session, NegotiationState.FAILED)) {
+            dispatcher.postCallFailed(holderSessionId, stage, session.key + ": " + error);
+        }
+    }
+
+    private static boolean isConnected(PeerConnection.IceConnectionState state) {
+        return state == PeerConnection.IceConnectionState.CONNECTED
+                || state == PeerConnection.IceConnectionState.COMPLETED;
+    }
+
+    /**
+     * offer 在本地描述设置成功后才发出，保证对端收到 offer 时本端已经能接受 answer；
+     * 这期间收集到的 candidate 暂存，随 offer 之后一起发
+     */
+    private void createOffer(PeerSession session, boolean iceRestart) {
+        moveTo(session, NegotiationState.CREATING_OFFER);
+        PeerConnection pc = session.peerConnection;
+        MediaConstraints constraints = new MediaConstraints();
+        if (iceRestart) {
+            // 新的 ufrag / pwd，两端重新收集和检查 candidate；重启期间媒体仍走原来的 pair
+            constraints.mandatory.add(new MediaConstraints.KeyValuePair("IceRestart", "true"));
+        }
+        long start = SystemClock.elapsedRealtime();
+        pc.createOffer(new SdpObserverAdapter() {
+            @Override
+            public void onCreateSuccess(SessionDescription offer) {
+                post(session, () -> {
+                    tracer.mark(CallSetupTracer.Phase.OFFER_CREATED);
+                    recordCertificateTiming(session, start);
+                    pc.setLocalDescription(new SdpObserverAdapter() {
+                        @Override
+                        public void onSetSuccess() {
+                            post(session, () -> {
+                                if (!moveTo(session, NegotiationState.HAVE_LOCAL_OFFER)) {
+                                    return;
+                                }
+                                tracer.mark(CallSetupTracer.Phase.LOCAL_DESCRIPTION_SET);
+                                signaling.sendOffer(session.key, offer);
+                                sendPendingLocalCandidates(session);
+                                if (!offerSentReported) {
+                                    offerSentReported = true;
+                                    dispatcher.postCallProgress(holderSessionId, "offer_sent");
+                                }
+                            });
+                        }
+
+                        @Override
+                        public void onSetFailure(String error) {
+                            post(session, () -> fail(session, "set_local_offer", error));
+                        }
+                    }, offer);
+                });
+            }
+
+            @Override
+            public void onCreateFailure(String error) {
+                post(session, () -> fail(session, "create_offer", error));
+            }
+        }, constraints);
+    }
+
+    private void createAnswer(PeerSession session) {
+        moveTo(session, NegotiationState.CREATING_ANSWER);
+        PeerConnection pc = session.peerConnection;
+        long start = SystemClock.elapsedRealtime();
+        pc.createAnswer(new SdpObserverAdapter() {
+            @Override
+            public void onCreateSuccess(SessionDescription answer) {
+                post(session, () -> {
+                    recordCertificateTiming(session, start);
+                    pc.setLocalDescription(new SdpObserverAdapter() {
+                        @Override
+                        public void onSetSuccess() {
+                            post(session, () -> {
+                                if (!moveTo(session, NegotiationState.STABLE)) {
+                                    return;
+                                }
+                                signaling.sendAnswer(session.key, answer);
+                                sendPendingLocalCandidates(session);
+                            });
+                        }
+
+                        @Override
+                        public void onSetFailure(String error) {
+                            post(session, () -> fail(session, "set_local_answer", error));
+                        }
+                    }, answer);
+                });
+            }
+
+            @Override
+            public void onCreateFailure(String error) {
+                post(session, () -> fail(session, "create_answer", error));
+            }
+        }, new MediaConstraints());
+    }
+
+    /**
+     * 新建连接的第一次 createOffer / createAnswer 要等证书：没有缓存证书时包含 WebRTC 现生成证书的时间
+     */
+    private static void recordCertificateTiming(PeerSession session, long startMs) {
+        Boolean cached = session.cachedCertificate;
+        if (cached == null) {
+            return;
+        }
+        session.cachedCertificate = null;
+        DtlsCertificateManager.recordDescriptionCreated(cached, SystemClock.elapsedRealtime() - startMs);
+    }
+
+    @Override
+    public boolean restartIce(PeerSession session) {
+        if (session.role != PeerSession.Role.OFFERER || !session.negotiation.canRenegotiate()) {
+            return false;
+        }
+        createOffer(session, true);
+        return true;
+    }
+
+    @Override
+    public void giveUp(PeerSession session, String reason) {
+        fail(session, "ice_restart", reason);
+    }
+
+    /**
+     * 本端描述还没发出去时先攒着，否则 candidate 可能先于 offer / answer 到达对端
+     */
+    private void sendLocalCandidate(PeerSession session, IceCandidate candidate) {
+        if (!session.negotiation.hasSentLocalDescription()) {
+            session.pendingLocalCandidates.add(candidate);
+            return;
+        }
+        // SignalingClient 内部按 session key 合并
+        signaling.sendIceCandidate(session.key, candidate);
+    }
+
+    private void sendPendingLocalCandidates(PeerSession session) {
+        for (IceCandidate candidate : session.pendingLocalCandidates) {
+            signaling.sendIceCandidate(session.key, candidate);
+        }
+        session.pendingLocalCandidates.clear();
+        if (session.peerConnection.iceGatheringState() == PeerConnection.IceGatheringState.COMPLETE) {
+            signaling.flushIceCandidates(session.key);
+        }
+    }
+
+    private void applyPendingRemoteCandidates(PeerSession session) {
+        if (session.pendingRemoteCandidates.isEmpty()) {
+            return;
+        }
+        for (IceCandidate candidate : session.pendingRemoteCandidates) {
+            session.peerConnection.addIceCandidate(candidate);
+        }
+        Log.d(TAG, "applied " + session.pendingRemoteCandidates.size() + " queued candidates to " + session.key);
+        session.pendingRemoteCandidates.clear();
+    }
+
+    private PeerSession createSession(String peerId, PeerSession.Role role) {
+        PeerSession session = new PeerSession(peerId, role);
+        SessionObserver observer = new SessionObserver(session);
+        PeerConnection pc = prewarmer.take(configKey, observer);
+        if (pc != null) {
+            session.prewarmed = true;
+            // 给下一条连接再预建一条，不挡住当前的 offer / answer
+            execute(() -> prewarmer.prewarm(factory, buildConfiguration(profile, iceServers, simulcastEnabled,
+                    audioConfig), configKey));
+        } else {
+            PeerConnection.RTCConfiguration config = buildConfiguration(profile, iceServers, simulcastEnabled, audioConfig);
+            session.cachedCertificate = config.certificate != null;
+            pc = factory.createPeerConnection(config, observer);
+        }
+        if (pc == null) {
+            Log.e(TAG, "createPeerConnection failed for " + session.key);
+            return null;
+        }
+        session.peerConnection = pc;
+        session.dataChannels = new DataChannelEndpoint(session.key, dataExecutor, dataPool, dataDir, dataListener);
+        session.dataChannels.setRateLimit(ChannelSpec.BULK, bulkBytesPerSecond);
+        session.statsCollector = new RtcStatsCollector(session.key, pc, RTC_STATS_INTERVAL_MS, RTC_STATS_HISTORY_SIZE);
+        session.statsCollector.start();
+        return session;
+    }
+
+    /**
+     * 会话里所有连接和预建连接共用的配置；两端的 sdpSemantics 要一致
+     */
+    static PeerConnection.RTCConfiguration buildConfiguration(RtcProfile profile,
+                                                              List<PeerConnection.IceServer> iceServers,
+                                                              boolean simulcastEnabled, AudioConfig audioConfig) {
+        PeerConnection.RTCConfiguration config = profile.createConfiguration(iceServers);
+        if (simulcastEnabled) {
+            // sendEncodings 只能通过 addTransceiver 指定，Plan B 不支持
+            config.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
+        }
+        AudioDeviceSetup.applyJitterBuffer(config, audioConfig);
+        // 缓存里没有可用证书时为 null，由 WebRTC 为这条连接现生成
+        config.certificate = DtlsCertificateManager.get();
+        return config;
+    }
+
+    /**
+     * 预建连接只在这几项都相同时才能直接用
+     */
+    static String configurationKey(RtcProfile profile, List<PeerConnection.IceServer> iceServers,
+                                   boolean simulcastEnabled, AudioConfig audioConfig) {
+        StringBuilder key = new StringBuilder(profile.tag).append(simulcastEnabled ? "|simulcast|" : "|")
+                .append(audioConfig);
+        for (PeerConnection.IceServer server : iceServers) {
+            key.append('|').append(server.urls).append(server.username);
+        }
+        return key.toString();
+    }
+
+    /**
+     * PeerConnection 回调（WebRTC 信令线程）：改动协商状态的都投递到会话线程，其余只访问线程安全的对象
+     */
+    private class SessionObserver extends PeerConnectionObserver {
+
+        private final PeerSession session;
+
+        SessionObserver(PeerSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public void onIceCandidate(IceCandidate candidate) {
+            post(session, () -> sendLocalCandidate(session, candidate));
+        }
+
+        @Override
+        public void onIceGatheringChange(PeerConnection.IceGatheringState newState) {
+            if (newState == PeerConnection.IceGatheringState.COMPLETE) {
+                // 和 candidate 走同一个队列，保证 flush 在最后一个 candidate 之后；描述还没发出时由 sendPendingLocalCandidates 补 flush
+                post(session, () -> {
+                    if (session.pendingLocalCandidates.isEmpty()) {
+                        signaling.flushIceCandidates(session.key);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void onIceConnectionChange(PeerConnection.IceConnectionState newState) {
+            session.iceState = newState;
+            dispatcher.postState("ice_state", session.key, newState.name());
+            post(session, () -> {
+                if (isConnected(newState)) {
+                    moveTo(session, NegotiationState.CONNECTED);
+                }
+                // FAILED 不直接算失败，先交给 ICE 重启
+                recovery.onIceStateChanged(session, newState);
+            });
+            if (session.role != PeerSession.Role.OFFERER) {
+                return;
+            }
+            if (newState == PeerConnection.IceConnectionState.CHECKING) {
+                tracer.mark(CallSetupTracer.Phase.ICE_CHECKING);
+            } else if (isConnected(newState)) {
+                tracer.mark(CallSetupTracer.Phase.ICE_CONNECTED);
+            }
+        }
+
+        @Override
+        public void onSelectedCandidatePairChanged(CandidatePairChangeEvent event) {
+            session.selectedNetwork = IceRecovery.networkOf(event.local);
+            session.selectedPair = IceRecovery.typeOf(event.local) + "->" + IceRecovery.typeOf(event.remote);
+            Log.d(TAG, session.key + " selected " + session.selectedPair + " on " + session.selectedNetwork
+                    + ", reason=" + event.reason);
+            // 没经过 DISCONNECTED 的路径切换（网络切换后换到新网络上的 pair）也算恢复
+            post(session, () -> {
+                if (isConnected(session.iceState)) {
+                    recovery.onIceStateChanged(session, session.iceState);
+                }
+            });
+        }
+
+        @Override
+        public void onDataChannel(DataChannel dataChannel) {
+            Log.d(TAG, session.key + " onDataChannel " + dataChannel.label());
+            session.dataChannels.adopt(dataChannel);
+        }
+
+        @Override
+        public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
+            Log.d(TAG, session.key + " onAddTrack");
+            if (receiver.track() instanceof VideoTrack) {
+                VideoTrack remoteTrack = (VideoTrack) receiver.track();
+                // 远端 track 收到的帧即解码后的帧；不能在 onFrame 里 removeSink（会和分发锁死锁），
+                // 之后的帧 mark 只是一次失败的 CAS
+                remoteTrack.addSink(frame -> tracer.mark(CallSetupTracer.Phase.FIRST_FRAME_DECODED));
+                remoteTrack.addSink(new FrameStatsSink(session.key, FRAME_STATS_INTERVAL_MS, frameStatsLogger));
+                String trackId = REMOTE_VIDEO_TRACK_PREFIX + session.peerId;
+                session.remoteVideoTrackId = trackId;
+                WebRtcHolder.putRemoteVideoTrack(holderSessionId, trackId, remoteTrack);
+                dispatcher.postRemoteVideoTrackCreated(holderSessionId, trackId);
+            } else if (receiver.track() instanceof AudioTrack) {
+                WebRtcHolder.putRemoteAudioTrack(holderSessionId, REMOTE_AUDIO_TRACK_PREFIX + session.peerId,
+                        (AudioTrack) receiver.track());
+            }
+        }
+    }
+
+    // ---------------- 信令回调（SignalingClient 线程，投递到会话线程处理） ----------------
+
+    @Override
+    public void onOfferReceived(String from, SessionDescription offer) {
+        execute(() -> handleOffer(from, offer));
+    }
+
+    @Override
+    public void onAnswerReceived(String from, SessionDescription answer) {
+        execute(() -> handleAnswer(from, answer));
+    }
+
+    @Override
+    public void onIceCandidatesReceived(String from, List<IceCandidate> candidates) {
+        execute(() -> handleIceCandidates(from, candidates));
+    }
+
+    private void execute(Runnable task) {
+        try {
+            sessionExecutor.execute(() -> {
+                if (!closed) {
+                    task.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.d(TAG, "signaling message after shutdown dropped");
+        }
+    }
+
+    // ---------------- 默认网络切换（ConnectivityManager 线程，投递到会话线程处理） ----------------
+
+    @Override
+    public void onDefaultNetworkChanged(String transport) {
+        execute(() -> recovery.onNetworkChanged(new ArrayList<>(sessions.values()), transport));
+    }
+
+    @Override
+    public void onDefaultNetworkLost() {
+        execute(() -> recovery.onNetworkLost(new ArrayList<>(sessions.values())));
+    }
+
+    private void handleOffer(String from, SessionDescription offer) {
+        if (PeerSession.roleOf(from) != PeerSession.Role.OFFERER) {
+            Log.w(TAG, "offer from unexpected peer " + from);
+            return;
+        }
+        String peerId = PeerSession.peerIdOf(from);
+        String key = PeerSession.key(peerId, PeerSession.Role.ANSWERER);
+        PeerSession session = sessions.get(key);
+        if (session == null) {
+            session = createSession(peerId, PeerSession.Role.ANSWERER);
+            if (session == null) {
+                return;
+            }
+            sessions.put(key, session);
+        }
+        // ICE 重启的 offer 要等上一轮协商结束，进行中再来的 offer 直接丢弃
+        if (!moveTo(session, NegotiationState.SETTING_REMOTE_OFFER)) {
+            return;
+        }
+        Log.d(TAG, "onOfferReceived from " + from);
+        PeerSession answerer = session;
+        session.peerConnection.setRemoteDescription(new SdpObserverAdapter() {
+            @Override
+            public void onSetSuccess() {
+                post(answerer, () -> {
+                    if (moveTo(answerer, NegotiationState.HAVE_REMOTE_OFFER)) {
+                        applyPendingRemoteCandidates(answerer);
+                        createAnswer(answerer);
+                    }
+                });
+            }
+
+            @Override
+            public void onSetFailure(String error) {
+                post(answerer, () -> fail(answerer, "set_remote_offer", error));
+            }
+        }, offer);
+    }
+
+    private void handleAnswer(String from, SessionDescription answer) {
+        PeerSession session = counterpart(from);
+        if (session == null || session.role != PeerSession.Role.OFFERER) {
+            Log.w(TAG, "answer for unknown session from " + from);
+            return;
+        }
+        if (!moveTo(session, NegotiationState.SETTING_REMOTE_ANSWER)) {
+            return;
+        }
+        Log.d(TAG, "onAnswerReceived from " + from);
+        session.peerConnection.setRemoteDescription(new SdpObserverAdapter() {
+            @Override
+            public void onSetSuccess() {
+                post(session, () -> {
+                    if (moveTo(session, NegotiationState.STABLE)) {
+                        tracer.mark(CallSetupTracer.Phase.REMOTE_DESCRIPTION_SET);
+                    }
+                });
+            }
+
+            @Override
+            public void onSetFailure(String error) {
+                post(session, () -> fail(session, "set_remote_answer", error));
+            }
+        }, answer);
+    }
+
+    private void handleIceCandidates(String from, List<IceCandidate> candidates) {
+        PeerSession session = counterpart(from);
+        if (session == null) {
+            Log.w(TAG, "dropped " + candidates.size() + " candidates for unknown session from " + from);
+            return;
+        }
+        if (!session.negotiation.hasRemoteDescription()) {
+            // offer / answer 还在设置中，等远端描述设置完再加
+            session.pendingRemoteCandidates.addAll(candidates);
+            return;
+        }
+        // 一批一次性加完
+        for (IceCandidate candidate : candidates) {
+            session.peerConnection.addIceCandidate(candidate);
+        }
+        Log.d(TAG, "applied " + candidates.size() + " candidates from " + from + " to " + session.key);
+    }
+
+    /**
+     * 发出方 key 对应的本端连接：同一 peerId、相反角色
+     */
+    private PeerSession counterpart(String from) {
+        PeerSession.Role role = PeerSession.roleOf(from);
+        if (role == null) {
+            return null;
+        }
+        PeerSession session = sessions.get(PeerSession.key(PeerSession.peerIdOf(from), role.opposite()));
+        return session != null && session.peerConnection != null ? session : null;
+    }
+
+    // ---------------- 资源统计 ----------------
+
+    /**
+     * 进程级：cpu_load（距上次调用的平均值，已除以核数）、java_heap_bytes、native_heap_bytes、threads、
+     * peer_connections、video_encoders、video_decoders、rtc_profile、prewarm（预建连接命中次数）；另外每个 session key 一个 Bundle，
+     * 包含 role / peer / ice_state / age_ms / negotiation / prewarmed /
+     * ICE 恢复（selected_pair、selected_network、ice_restarts、reconnects、last_reconnect_ms）/
+     * 编解码器实现 / 最新一条码率、帧率、编码耗时以及估算的编码 CPU（核）。在会话线程上调用，cpuSampler 只在这个线程上用
+     */
+    Bundle resourceUsage() {
+        Bundle bundle = new Bundle();
+        Runtime runtime = Runtime.getRuntime();
+        bundle.putDouble("cpu_load", cpuSampler.sample());
+        bundle.putInt("cores", runtime.availableProcessors());
+        bundle.putLong("java_heap_bytes", runtime.totalMemory() - runtime.freeMemory());
+        bundle.putLong("native_heap_bytes", Debug.getNativeHeapAllocatedSize());
+        bundle.putInt("threads", readThreadCount());
+
+        int encoders = 0;
+        int decoders = 0;
+        long now = SystemClock.elapsedRealtime();
+        Bundle peers = new Bundle();
+        for (PeerSession session : sessions.values()) {
+            Bundle peer = new Bundle();
+            peer.putString("role", session.role.tag);
+            peer.putString("peer", session.peerId);
+            peer.putString("ice_state", session.iceState.name());
+            peer.putLong("age_ms", now - session.createdAtMs);
+            peer.putString("negotiation", session.negotiation.name());
+            peer.putBoolean("prewarmed", session.prewarmed);
+            peer.putString("selected_pair", session.selectedPair);
+            peer.putString("selected_network", session.selectedNetwork);
+            peer.putInt("ice_restarts", session.iceRestarts);
+            peer.putInt("reconnects", session.reconnects);
+            peer.putLong("last_reconnect_ms", session.lastReconnectMs);
+            RtcStatsCollector collector = session.statsCollector;
+            if (collector != null) {
+                StatsRingBuffer history = collector.getHistory();
+                peer.putString("encoder_implementation", collector.getEncoderImplementation());
+                peer.putString("decoder_implementation", collector.getDecoderImplementation());
+                peer.putDouble("send_kbps", history.latest(StatsRingBuffer.COL_SEND_KBPS));
+                peer.putDouble("recv_kbps", history.latest(StatsRingBuffer.COL_RECV_KBPS));
+                double fps = history.latest(StatsRingBuffer.COL_SEND_FPS);
+                double encodeMs = history.latest(StatsRingBuffer.COL_ENCODE_MS_PER_FRAME);
+                peer.putDouble("send_fps", fps);
+                peer.putDouble("encode_ms_per_frame", encodeMs);
+                // 每秒编码耗时 / 1000 ≈ 编码占用的核数
+                peer.putDouble("encode_cpu_cores", fps * encodeMs / 1000);
+            }
+            if (session.role == PeerSession.Role.OFFERER && localVideoTrack != null) {
+                int layers = activeLayers(session);
+                peer.putInt("video_encoders", layers);
+                encoders += layers;
+            }
+            if (session.remoteVideoTrackId != null) {
+                decoders++;
+            }
+            peers.putBundle(session.key, peer);
+        }
+        bundle.putInt("peer_connections", sessions.size());
+        bundle.putString("rtc_profile", profile.tag);
+        bundle.putString("prewarm", prewarmer.toString());
+        bundle.putInt("video_encoders", encoders);
+        bundle.putInt("video_decoders", decoders);
+        bundle.putBundle("peers", peers);
+        return bundle;
+    }
+
+    /**
+     * 每条收到音频的连接一个 Bundle（key 为 session key）：最新的 audio_level / jitter_buffer_ms / concealed_percent /
+     * accelerated_percent / rtt_ms，以及估算的口到耳延迟 mouth_to_ear_ms =
+     * 对端采集 + Opus 攒包 + 单向网络（RTT/2）+ 抖动缓冲 + 本端播放。两端是同一台设备时采集和播放都用本机的估计。在会话线程上调用
+     *
+     * @param captureLatencyMs  采集段延迟，见 AudioDeviceSetup.deviceInfo
+     * @param playoutLatencyMs  播放段延迟
+     */
+    Bundle audioStats(double captureLatencyMs, double playoutLatencyMs) {
+        Bundle bundle = new Bundle();
+        for (PeerSession session : sessions.values()) {
+            RtcStatsCollector collector = session.statsCollector;
+            if (collector == null) {
+                continue;
+            }
+            StatsRingBuffer history = collector.getHistory();
+            double jitterBufferMs = history.latest(StatsRingBuffer.COL_JITTER_BUFFER_MS);
+            if (Double.isNaN(jitterBufferMs)) {
+                // 这条连接没有在收音频
+                continue;
+            }
+            double rttMs = history.latest(StatsRingBuffer.COL_RTT_MS);
+            Bundle peer = new Bundle();
+            peer.putDouble("audio_level", history.latest(StatsRingBuffer.COL_AUDIO_LEVEL));
+            peer.putDouble("jitter_buffer_ms", jitterBufferMs);
+            peer.putDouble("concealed_percent", history.latest(StatsRingBuffer.COL_CONCEALED_PERCENT));
+            peer.putDouble("accelerated_percent", history.latest(StatsRingBuffer.COL_ACCELERATED_PERCENT));
+            peer.putDouble("rtt_ms", rttMs);
+            peer.putDouble("mouth_to_ear_ms", captureLatencyMs + OPUS_FRAME_MS
+                    + (Double.isNaN(rttMs) ? 0 : rttMs / 2) + jitterBufferMs + playoutLatencyMs);
+            bundle.putBundle(session.key, peer);
+        }
+        return bundle;
+    }
+
+    /**
+     * 一条发送连接实际在编的层数：simulcast 时为激活的层数，否则为 1
+     */
+    private static int activeLayers(PeerSession session) {
+        SimulcastController simulcast = session.simulcast;
+        return simulcast != null ? simulcast.activeLayerCount() : 1;
+    }
+
+    private static int readThreadCount() {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("Threads:")) {
+                    return Integer.parseInt(line.substring("Threads:".length()).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "read thread count failed", e);
+        }
+        return -1;
+    }
+}
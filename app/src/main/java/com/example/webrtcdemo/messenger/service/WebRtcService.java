@@ -1,295 +1,731 @@
 package com.example.webrtcdemo.messenger.service;
+import android.Manifest;
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.media.AudioManager;
+import android.os.Build;
+import android.os.Bundle;
 import android.os.IBinder;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
+import androidx.annotation.RequiresApi;
+
 import com.example.webrtcdemo.binder.IWebRtcCallback;
 import com.example.webrtcdemo.binder.IWebRtcService;
-import com.example.webrtcdemo.messenger.model.PeerConnectionObserver;
-import com.example.webrtcdemo.messenger.model.SdpObserverAdapter;
+import com.example.webrtcdemo.messenger.audio.AudioConfig;
+import com.example.webrtcdemo.messenger.audio.AudioDeviceSetup;
+import com.example.webrtcdemo.messenger.capture.CaptureController;
+import com.example.webrtcdemo.messenger.capture.CaptureSource;
+import com.example.webrtcdemo.messenger.datachannel.ChannelSpec;
+import com.example.webrtcdemo.messenger.datachannel.ChunkedDataChannel;
+import com.example.webrtcdemo.messenger.ipc.SharedFrameWriter;
+import com.example.webrtcdemo.messenger.network.NetworkChangeMonitor;
+import com.example.webrtcdemo.messenger.network.RtcProfile;
+import com.example.webrtcdemo.messenger.processing.VideoProcessingPipeline;
 import com.example.webrtcdemo.messenger.signaling.SignalingClient;
-import com.example.webrtcdemo.messenger.utils.EglUtils;
+import com.example.webrtcdemo.messenger.simulcast.SimulcastController;
+import com.example.webrtcdemo.messenger.stats.CallSetupTracer;
+import com.example.webrtcdemo.messenger.stats.FrameStatsSink;
+import com.example.webrtcdemo.messenger.stats.RtcStatsCollector;
+import com.example.webrtcdemo.messenger.utils.DtlsCertificateManager;
+import com.example.webrtcdemo.messenger.utils.EglContextManager;
+import com.example.webrtcdemo.messenger.utils.PeerConnectionFactoryManager;
 import com.example.webrtcdemo.messenger.utils.WebRtcHolder;
+import com.example.webrtcdemo.messenger.videocodec.VideoCodecCapabilities;
 import org.webrtc.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 public class WebRtcService extends Service {
 
     private static final String TAG = "WebRtcService";
 
+    /** 绑定服务时可传入信令服务地址（ws://...），不传则使用本地回环信令 */
+    public static final String EXTRA_SIGNALING_URL = "signaling_url";
+    /** 绑定时传 true 开启发送端 simulcast（会切换到 Unified Plan） */
+    public static final String EXTRA_SIMULCAST = "simulcast";
+    /** 绑定时指定视频来源，格式见 {@link CaptureSource}，不传则用摄像头 */
+    public static final String EXTRA_CAPTURE_SOURCE = "capture_source";
+    /** 绑定时指定采集后的处理阶段，例如 "crop:16x9,scale:1280x720,timestamp"，见 {@link VideoProcessingPipeline#fromSpec} */
+    public static final String EXTRA_VIDEO_PROCESSING = "video_processing";
+    /** 绑定时指定音频设备配置，例如 "low_latency,sw_aec,hw_ns,rate=48000"，见 {@link AudioConfig}；只在服务首次建工厂时生效 */
+    public static final String EXTRA_AUDIO_CONFIG = "audio_config";
+    /** 绑定时指定 RTCConfiguration 配置：lan / mobile / relay / loopback，见 {@link RtcProfile}；不传时本地回环信令用 loopback，否则用 mobile */
+    public static final String EXTRA_RTC_PROFILE = "rtc_profile";
+    /** 绑定时指定 ICE 服务器，格式见 {@link RtcProfile#parseIceServers} */
+    public static final String EXTRA_ICE_SERVERS = "ice_servers";
+    /** 绑定时传 false 关闭 DTLS 证书缓存（每条连接现生成证书），用来对比通话建立耗时，默认开启 */
+    public static final String EXTRA_DTLS_CERT_CACHE = "dtls_cert_cache";
+
+    /** startCall 默认加入的参与者 */
+    private static final String DEFAULT_PEER_ID = "peer-1";
+    private static final String LOCAL_VIDEO_TRACK_ID = "localTrack";
+    private static final String LOCAL_AUDIO_TRACK_ID = "localAudio";
+    private static final long FRAME_STATS_INTERVAL_MS = 2000;
+    /** 跨进程帧通道的槽数：1 个在写、1 个刚发布、其余留给渲染端持有 */
+    private static final int FRAME_CHANNEL_SLOTS = 4;
+    /** DataChannel 收到的文件放在缓存目录下 */
+    private static final String DATA_CHANNEL_DIR = "datachannel";
+    /** 需要返回值的 binder 调用在会话线程上最多等这么久 */
+    private static final long SESSION_CALL_TIMEOUT_MS = 3000;
+    /** callOnSession 里任务的状态，超时时只有还在排队的能取消 */
+    private static final int CALL_QUEUED = 0;
+    private static final int CALL_STARTED = 1;
+    private static final int CALL_CANCELLED = 2;
+    /** onDestroy 等会话线程结束通话的上限 */
+    private static final long SESSION_SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private static final AtomicInteger sessionCounter = new AtomicInteger();
+    private static final AtomicInteger channelCounter = new AtomicInteger();
+
+    private static final class FrameChannel {
+        final String sessionId;
+        final String trackId;
+        final SharedFrameWriter writer;
+
+        FrameChannel(String sessionId, String trackId, SharedFrameWriter writer) {
+            this.sessionId = sessionId;
+            this.trackId = trackId;
+            this.writer = writer;
+        }
+    }
+
+    /**
+     * 会话线程：开始 / 结束通话、加入 / 移除参与者以及 SessionManager 里所有信令和 SDP 回调都在这里串行执行，
+     * binder 线程只投递，不会被建工厂、开摄像头卡住；快速 start / stop 时按投递顺序执行，不会交错。
+     * ICE 重启的定时也排在这个线程上
+     */
+    private final ScheduledExecutorService sessionExecutor = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "WebRtcSession"));
+
+    // factory / sessionId / signalingClient / networkMonitor 只在会话线程上访问
     private PeerConnectionFactory factory;
-    private VideoTrack localVideoTrack;
-    private IWebRtcCallback callback;
+    /** 当前通话在 WebRtcHolder 中的会话 id，track 的生命周期都挂在它下面 */
+    private String sessionId;
+    private final CallbackDispatcher dispatcher = new CallbackDispatcher();
+
+    private volatile SessionManager sessionManager;
+    private SignalingClient signalingClient;
+    private NetworkChangeMonitor networkMonitor;
+    /** 绑定后就预建一条 PeerConnection 开始收集 candidate，只在会话线程上访问 */
+    private final PeerConnectionPrewarmer prewarmer = new PeerConnectionPrewarmer();
+    private volatile RtcProfile rtcProfile = RtcProfile.LOOPBACK;
+    private volatile List<PeerConnection.IceServer> iceServers = Collections.emptyList();
+    private volatile CaptureController captureController;
+    /** 采集用的共享 EGL 根上下文，和工厂一起获取，服务销毁时释放；只在会话线程上访问 */
+    private EglBase.Context eglContext;
+    private final Map<Integer, FrameChannel> frameChannels = new ConcurrentHashMap<>();
+    private String signalingUrl;
+    private boolean simulcastEnabled;
+    private String captureSourceSpec;
+    private String videoProcessingSpec;
+    private String audioConfigSpec;
+    /** 通话开始前的 AudioManager 模式，-1 表示没有改过 */
+    private int previousAudioMode = -1;
+    private final CallSetupTracer setupTracer = new CallSetupTracer();
+    private final FrameStatsSink.Listener frameStatsLogger = snapshot -> Log.d(TAG, snapshot.toString());
+    private final ChunkedDataChannel.Listener dataListener = new ChunkedDataChannel.Listener() {
+        @Override
+        public void onMessage(ChunkedDataChannel channel, byte[] data) {
+            dispatcher.postDataMessage(channel.getOwner(), channel.getLabel(), data);
+        }
 
-    private PeerConnection localPeer;
-    private PeerConnection remotePeer;
+        @Override
+        public void onFileReceived(ChunkedDataChannel channel, File file, long length) {
+            dispatcher.postFileReceived(channel.getOwner(), channel.getLabel(), file.getAbsolutePath(), length);
+        }
+    };
 
     private final IWebRtcService.Stub binder = new IWebRtcService.Stub() {
         @Override
         public void registerCallback(IWebRtcCallback cb) {
-            callback = cb;
+            dispatcher.register(cb);
         }
 
         @Override
         public void unregisterCallback(IWebRtcCallback cb) {
-            callback = null;
+            dispatcher.unregister(cb);
         }
 
         @Override
         public void startCall() {
-//            initWebRTC();
-            initWebRTCNew();
+            setupTracer.beginCall();
+            runOnSession(WebRtcService.this::startCallOnSession);
         }
-    };
 
-    @Override
-    public IBinder onBind(Intent intent) {
-        return binder;
-    }
-
-    private void initWebRTC() {
-        Log.d(TAG, "Initializing WebRTC");
-
-        PeerConnectionFactory.initialize(
-                PeerConnectionFactory.InitializationOptions.builder(getApplicationContext())
-                        .createInitializationOptions()
-        );
+        @Override
+        public void endCall() {
+            runOnSession(WebRtcService.this::endCallOnSession);
+        }
 
-        factory = PeerConnectionFactory.builder()
-                .setVideoEncoderFactory(
-                        new org.webrtc.DefaultVideoEncoderFactory(
-                                EglUtils.getRootEglBase().getEglBaseContext(), true, true
-                        )
-                )
-                .setVideoDecoderFactory(
-                        new org.webrtc.DefaultVideoDecoderFactory(
-                                EglUtils.getRootEglBase().getEglBaseContext()
-                        )
-                )
-                .createPeerConnectionFactory();
-
-        VideoCapturer capturer = createCameraCapturer();
-        if (capturer == null) {
-            Log.e(TAG, "No camera capturer found.");
-            return;
+        @Override
+        public void prepareCall() {
+            runOnSession(WebRtcService.this::prepareCallOnSession);
         }
 
-        SurfaceTextureHelper surfaceTextureHelper = SurfaceTextureHelper.create(
-                "CaptureThread", EglUtils.getRootEglBase().getEglBaseContext()
-        );
+        @Override
+        public void reportFirstFrameRendered(long elapsedRealtimeNanos) {
+            setupTracer.mark(CallSetupTracer.Phase.FIRST_FRAME_RENDERED, elapsedRealtimeNanos);
+        }
 
-        VideoSource videoSource = factory.createVideoSource(false);
-        capturer.initialize(surfaceTextureHelper, getApplicationContext(), videoSource.getCapturerObserver());
-        try {
-            capturer.startCapture(640, 480, 30);
-            Log.d(TAG, "Camera started capturing...");
-        } catch (Exception e) {
-            Log.e(TAG, "startCapture failed", e);
+        @Override
+        public Bundle getCallSetupStats() {
+            Bundle bundle = setupTracer.snapshot();
+            bundle.putBundle("dtls_certificate", DtlsCertificateManager.stats());
+            VideoCodecCapabilities codecs = PeerConnectionFactoryManager.getVideoCodecCapabilities();
+            if (codecs != null) {
+                bundle.putBundle("video_codecs", codecs.stats());
+            }
+            return bundle;
         }
 
-        localVideoTrack = factory.createVideoTrack("localTrack", videoSource);
+        @Override
+        public Bundle getStatsHistory(String sessionKey, int maxSamples) {
+            RtcStatsCollector collector = querySession(manager -> manager.getStatsCollector(sessionKey), null);
+            // 环形缓冲自己加锁，导出不占会话线程
+            return collector != null ? collector.exportHistory(maxSamples) : new Bundle();
+        }
 
-        localVideoTrack.addSink(frame -> {
-            Log.d(TAG, "Local video frame arrived: "
-                    + frame.getRotatedWidth() + "x" + frame.getRotatedHeight());
-        });
+        @Override
+        public boolean joinPeer(String peerId) {
+            if (peerId == null) {
+                return false;
+            }
+            // join 只是建连接、发起 createOffer，不等协商完成
+            Boolean joined = callOnSession(() -> {
+                SessionManager manager = sessionManager;
+                return manager != null && manager.join(peerId);
+            });
+            return joined != null && joined;
+        }
 
+        @Override
+        public void leavePeer(String peerId) {
+            if (peerId == null) {
+                return;
+            }
+            runOnSession(() -> {
+                SessionManager manager = sessionManager;
+                if (manager != null) {
+                    manager.leave(peerId);
+                }
+            });
+        }
 
-        // 模拟远端 VideoTrack
-        VideoTrack remoteVideoTrack = factory.createVideoTrack("remoteTrack", videoSource);
-        WebRtcHolder.putVideoTrack("remoteTrack", remoteVideoTrack);
+        @Override
+        public String[] getPeers() {
+            return querySession(manager -> manager.getPeerIds().toArray(new String[0]), new String[0]);
+        }
 
-        WebRtcHolder.putVideoTrack("localTrack", localVideoTrack);
+        @Override
+        public Bundle getResourceUsage() {
+            return querySession(SessionManager::resourceUsage, new Bundle());
+        }
 
-        if (callback != null) {
-            try {
-                callback.onLocalVideoTrackCreated("localTrack");
-                callback.onRemoteVideoTrackCreated("remoteTrack");
-            } catch (Exception e) {
-                e.printStackTrace();
+        @Override
+        public Bundle openFrameChannel(String sessionId, String trackId, int maxWidth, int maxHeight) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1) {
+                return new Bundle();
             }
+            return WebRtcService.this.openFrameChannel(sessionId, trackId, maxWidth, maxHeight);
         }
-    }
 
-    private void initWebRTCNew() {
-        Log.d(TAG, "Initializing WebRTC (New)");
+        @Override
+        public void closeFrameChannel(int channelId) {
+            WebRtcService.this.closeFrameChannel(frameChannels.remove(channelId));
+        }
 
-        // 1. 初始化 PeerConnectionFactory（跟之前一样）
-        PeerConnectionFactory.initialize(
-                PeerConnectionFactory.InitializationOptions.builder(getApplicationContext())
-                        .createInitializationOptions()
-        );
+        @Override
+        public boolean setSimulcastLayers(String[] activeRids) {
+            if (activeRids == null) {
+                return false;
+            }
+            return querySession(manager -> {
+                List<SimulcastController> controllers = manager.getSimulcastControllers();
+                boolean ok = !controllers.isEmpty();
+                for (SimulcastController controller : controllers) {
+                    ok &= controller.setActiveLayers(Arrays.asList(activeRids));
+                }
+                return ok;
+            }, false);
+        }
 
-        factory = PeerConnectionFactory.builder()
-                .setVideoEncoderFactory(
-                        new DefaultVideoEncoderFactory(
-                                EglUtils.getRootEglBase().getEglBaseContext(),
-                                true,
-                                true
-                        )
-                )
-                .setVideoDecoderFactory(
-                        new DefaultVideoDecoderFactory(
-                                EglUtils.getRootEglBase().getEglBaseContext()
-                        )
-                )
-                .createPeerConnectionFactory();
-
-        // 2. 视频采集
-        VideoCapturer capturer = createCameraCapturer();
-        if (capturer == null) {
-            Log.e(TAG, "No camera capturer found.");
-            return;
+        @Override
+        public boolean limitSimulcastToHeight(int maxViewerHeight) {
+            return querySession(manager -> {
+                List<SimulcastController> controllers = manager.getSimulcastControllers();
+                CaptureController capture = captureController;
+                if (controllers.isEmpty() || capture == null) {
+                    return false;
+                }
+                int sourceHeight = capture.getCurrentLevel().height;
+                boolean ok = true;
+                for (SimulcastController controller : controllers) {
+                    ok &= controller.limitToHeight(maxViewerHeight, sourceHeight);
+                }
+                return ok;
+            }, false);
         }
 
-        SurfaceTextureHelper surfaceTextureHelper = SurfaceTextureHelper.create(
-                "CaptureThread", EglUtils.getRootEglBase().getEglBaseContext()
-        );
+        @Override
+        public Bundle getSimulcastLayers() {
+            return querySession(manager -> {
+                List<SimulcastController> controllers = manager.getSimulcastControllers();
+                return controllers.isEmpty() ? new Bundle() : controllers.get(0).snapshot();
+            }, new Bundle());
+        }
 
-        VideoSource videoSource = factory.createVideoSource(false);
-        capturer.initialize(surfaceTextureHelper, getApplicationContext(), videoSource.getCapturerObserver());
-        try {
-            capturer.startCapture(640, 480, 30);
-            Log.d(TAG, "Camera started capturing...");
-        } catch (Exception e) {
-            Log.e(TAG, "startCapture failed", e);
+        @Override
+        public Bundle getAudioStats() {
+            AudioConfig config = PeerConnectionFactoryManager.getActiveAudioConfig();
+            Bundle device = AudioDeviceSetup.deviceInfo(WebRtcService.this, config);
+            Bundle bundle = new Bundle();
+            bundle.putString("config", config.toString());
+            bundle.putBundle("device", device);
+            bundle.putBundle("metrics", PeerConnectionFactoryManager.getAudioMetrics().snapshot());
+            bundle.putBundle("peers", querySession(manager -> manager.audioStats(
+                    device.getDouble("capture_latency_ms"), device.getDouble("playout_latency_ms")), new Bundle()));
+            return bundle;
         }
 
-        localVideoTrack = factory.createVideoTrack("localTrack", videoSource);
+        @Override
+        public boolean sendData(String peerId, String label, byte[] data) {
+            SessionManager manager = sessionManager;
+            ChunkedDataChannel channel = manager != null && peerId != null && label != null && data != null
+                    ? manager.findDataChannel(peerId, label) : null;
+            return channel != null && channel.sendMessage(data);
+        }
 
-        localVideoTrack.addSink(frame -> {
-            Log.d(TAG, "Local video frame arrived: "
-                    + frame.getRotatedWidth() + "x" + frame.getRotatedHeight());
-        });
+        @Override
+        public boolean sendFile(String peerId, ParcelFileDescriptor file) {
+            SessionManager manager = sessionManager;
+            ChunkedDataChannel channel = manager != null && peerId != null
+                    ? manager.findDataChannel(peerId, ChannelSpec.BULK) : null;
+            if (channel == null) {
+                closeQuietly(file);
+                return false;
+            }
+            return channel.sendFile(file);
+        }
 
-        // 存储本地 Track
-        WebRtcHolder.putVideoTrack("localTrack", localVideoTrack);
-        if (callback != null) {
-            try {
-                callback.onLocalVideoTrackCreated("localTrack");
-            } catch (Exception e) {
-                e.printStackTrace();
+        @Override
+        public void setDataRateLimit(int bytesPerSecond) {
+            SessionManager manager = sessionManager;
+            if (manager != null) {
+                manager.setBulkRateLimit(Math.max(0, bytesPerSecond));
             }
         }
 
-        // 3. Signaling Client
-        SignalingClient signalingClient = new SignalingClient();
+        @Override
+        public boolean setBandwidthLimits(String peerId, Bundle limits) {
+            if (limits == null) {
+                return false;
+            }
+            // 要读写 RtpSender 参数，放到会话线程上做；参数不合法时 merge 抛出的异常由 callOnSession 记录
+            Boolean applied = callOnSession(() -> {
+                SessionManager manager = sessionManager;
+                return manager != null && manager.setBandwidthLimits(peerId, limits);
+            });
+            return applied != null && applied;
+        }
 
-        // 4. 创建 PeerConnections
-        PeerConnection.RTCConfiguration config = new PeerConnection.RTCConfiguration(new ArrayList<>());
+        @Override
+        public Bundle getBandwidthLimits() {
+            return querySession(SessionManager::bandwidthStats, new Bundle());
+        }
 
-        localPeer = factory.createPeerConnection(config, new PeerConnectionObserver() {
-            @Override
-            public void onIceCandidate(IceCandidate candidate) {
-                // 通过 signaling 转发给 remote
-                signalingClient.sendIceCandidate(candidate.sdpMid, candidate.sdpMLineIndex, candidate.sdp);
-            }
+        @Override
+        public Bundle getDataChannelStats() {
+            return querySession(SessionManager::dataChannelStats, new Bundle());
+        }
+    };
 
-            @Override
-            public void onDataChannel(DataChannel dataChannel) {
+    @Override
+    public IBinder onBind(Intent intent) {
+        signalingUrl = intent.getStringExtra(EXTRA_SIGNALING_URL);
+        simulcastEnabled = intent.getBooleanExtra(EXTRA_SIMULCAST, false);
+        captureSourceSpec = intent.getStringExtra(EXTRA_CAPTURE_SOURCE);
+        videoProcessingSpec = intent.getStringExtra(EXTRA_VIDEO_PROCESSING);
+        audioConfigSpec = intent.getStringExtra(EXTRA_AUDIO_CONFIG);
+        DtlsCertificateManager.setEnabled(intent.getBooleanExtra(EXTRA_DTLS_CERT_CACHE, true));
+        RtcProfile defaultProfile = signalingUrl == null ? RtcProfile.LOOPBACK : RtcProfile.MOBILE;
+        try {
+            rtcProfile = RtcProfile.fromName(intent.getStringExtra(EXTRA_RTC_PROFILE), defaultProfile);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "bad rtc profile, using " + defaultProfile, e);
+            rtcProfile = defaultProfile;
+        }
+        try {
+            iceServers = RtcProfile.parseIceServers(intent.getStringExtra(EXTRA_ICE_SERVERS));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "bad ice servers", e);
+        }
+        // 用户点呼叫之前就建好工厂和一条 PeerConnection，candidate 在这段时间里收集
+        runOnSession(this::prepareCallOnSession);
+        return binder;
+    }
 
+    @Override
+    public void onDestroy() {
+        // 排在已投递的任务之后结束通话并释放工厂，之后会话线程不再接任务
+        Future<?> shutdown = sessionExecutor.submit(() -> {
+            endSession();
+            prewarmer.release();
+            if (factory != null) {
+                factory = null;
+                PeerConnectionFactoryManager.release();
+            }
+            // endSession 已经停了采集（连同 SurfaceTextureHelper）
+            if (eglContext != null) {
+                eglContext = null;
+                EglContextManager.release(TAG);
             }
         });
+        sessionExecutor.shutdown();
+        try {
+            shutdown.get(SESSION_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Log.e(TAG, "end session failed", e.getCause());
+        } catch (TimeoutException e) {
+            Log.e(TAG, "end session not finished in " + SESSION_SHUTDOWN_TIMEOUT_MS + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatcher.release();
+        super.onDestroy();
+    }
+
+    private void runOnSession(Runnable task) {
+        try {
+            sessionExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "service destroyed, session task dropped");
+        }
+    }
 
-        remotePeer = factory.createPeerConnection(config, new PeerConnectionObserver() {
-            @Override
-            public void onIceCandidate(IceCandidate candidate) {
-                signalingClient.sendIceCandidate(candidate.sdpMid, candidate.sdpMLineIndex, candidate.sdp);
+    /**
+     * 在会话线程上执行并等待结果；被拒绝、抛异常或超时被取消时返回 null。
+     * 超时时还没开始的任务直接取消、不会再执行，返回 null 和"什么都没做"一致；已经开始的任务副作用一定会发生，
+     * 再等一个超时时间拿它的真实结果，仍然没完成时才返回 null
+     */
+    private <T> T callOnSession(Callable<T> task) {
+        AtomicInteger state = new AtomicInteger(CALL_QUEUED);
+        Future<T> future;
+        try {
+            future = sessionExecutor.submit(() -> state.compareAndSet(CALL_QUEUED, CALL_STARTED) ? task.call() : null);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "service destroyed, session call dropped");
+            return null;
+        }
+        try {
+            try {
+                return future.get(SESSION_CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (state.compareAndSet(CALL_QUEUED, CALL_CANCELLED)) {
+                    future.cancel(false);
+                    Log.e(TAG, "session call not started in " + SESSION_CALL_TIMEOUT_MS + "ms, cancelled");
+                    return null;
+                }
+                Log.w(TAG, "session call still running after " + SESSION_CALL_TIMEOUT_MS + "ms, waiting for result");
+                return future.get(SESSION_CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
             }
+        } catch (ExecutionException e) {
+            Log.e(TAG, "session call failed", e.getCause());
+        } catch (TimeoutException e) {
+            Log.e(TAG, "session call not finished in " + 2 * SESSION_CALL_TIMEOUT_MS + "ms, result unknown");
+        } catch (InterruptedException e) {
+            // 被中断时任务可能还没开始，取消掉，免得调用方以为失败而它又执行了
+            if (state.compareAndSet(CALL_QUEUED, CALL_CANCELLED)) {
+                future.cancel(false);
+            }
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
 
-            @Override
-            public void onDataChannel(DataChannel dataChannel) {
+    /**
+     * 会话线程：任何一步抛异常都结束这次通话并上报失败，不会留下半建好的连接
+     */
+    private void startCallOnSession() {
+        try {
+            initWebRTCNew();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "start call failed", e);
+            String failedSession = sessionId;
+            endSession();
+            dispatcher.postCallFailed(failedSession, "start", String.valueOf(e));
+        }
+    }
 
-            }
+    /**
+     * 预建失败不影响通话，startCall 时照常现建
+     */
+    private void prepareCallOnSession() {
+        try {
+            acquireFactory();
+            AudioConfig audioConfig = PeerConnectionFactoryManager.getActiveAudioConfig();
+            prewarmer.prewarm(factory,
+                    SessionManager.buildConfiguration(rtcProfile, iceServers, simulcastEnabled, audioConfig),
+                    SessionManager.configurationKey(rtcProfile, iceServers, simulcastEnabled, audioConfig));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "prepare call failed", e);
+        }
+    }
 
-            @Override
-            public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
-                Log.d(TAG, "remotePeer onAddTrack");
-                if (receiver.track() instanceof VideoTrack) {
-                    VideoTrack remoteTrack = (VideoTrack) receiver.track();
-                    WebRtcHolder.putVideoTrack("remoteTrack", remoteTrack);
-                    if (callback != null) {
-                        try {
-                            callback.onRemoteVideoTrackCreated("remoteTrack");
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }
-        });
+    private void endCallOnSession() {
+        String endedSession = sessionId;
+        endSession();
+        if (endedSession != null) {
+            dispatcher.postCallProgress(endedSession, "ended");
+        }
+    }
 
-        // 5. 注册 Signaling 回调
-        signalingClient.setCallback(new SignalingClient.Callback() {
-            @Override
-            public void onOfferReceived(SessionDescription offer) {
-                Log.d(TAG, "onOfferReceived");
-
-                remotePeer.setRemoteDescription(new SdpObserverAdapter(), offer);
-
-                remotePeer.createAnswer(new SdpObserverAdapter() {
-                    @Override
-                    public void onCreateSuccess(SessionDescription answer) {
-                        remotePeer.setLocalDescription(new SdpObserverAdapter(), answer);
-                        signalingClient.sendAnswer(answer);
-                    }
-                }, new MediaConstraints());
-            }
+    /**
+     * 结束当前通话：先停信令和采集自适应，再由 SessionManager 逐个释放远端 track 并销毁 PeerConnection，
+     * 最后释放本地 track（addTrack 加上去的 track 不会被 PeerConnection.dispose 连带释放，归 WebRtcHolder 管）。
+     * 只在会话线程上调用
+     */
+    private void endSession() {
+        closeFrameChannels();
+        if (networkMonitor != null) {
+            networkMonitor.stop();
+            networkMonitor = null;
+        }
+        if (captureController != null) {
+            captureController.stop();
+            captureController = null;
+        }
+        if (signalingClient != null) {
+            signalingClient.close();
+            signalingClient = null;
+        }
+        if (sessionManager != null) {
+            sessionManager.close();
+            sessionManager = null;
+        }
+        if (sessionId != null) {
+            WebRtcHolder.releaseSession(sessionId);
+            sessionId = null;
+        }
+        restoreAudioMode();
+    }
 
-            @Override
-            public void onAnswerReceived(SessionDescription answer) {
-                Log.d(TAG, "onAnswerReceived");
-                localPeer.setRemoteDescription(new SdpObserverAdapter(), answer);
-            }
+    private static void closeQuietly(ParcelFileDescriptor fd) {
+        if (fd == null) {
+            return;
+        }
+        try {
+            fd.close();
+        } catch (IOException e) {
+            Log.w(TAG, "close fd failed", e);
+        }
+    }
 
-            @Override
-            public void onIceCandidateReceived(String sdpMid, int sdpMLineIndex, String candidate) {
-                IceCandidate iceCandidate = new IceCandidate(sdpMid, sdpMLineIndex, candidate);
-                if (sdpMid != null && sdpMid.contains("video")) {
-                    // 随便判断一下 local/remote
-                    remotePeer.addIceCandidate(iceCandidate);
-                } else {
-                    localPeer.addIceCandidate(iceCandidate);
-                }
-            }
+    /**
+     * binder 线程读会话状态：在会话线程上对当前 SessionManager 执行 query，没有通话、超时或 query 返回 null 时返回 fallback。
+     * sessions 里的 PeerSession 字段只在会话线程上写，不能在 binder 线程上直接读
+     */
+    private <T> T querySession(Function<SessionManager, T> query, T fallback) {
+        T result = callOnSession(() -> {
+            SessionManager manager = sessionManager;
+            return manager != null ? query.apply(manager) : null;
         });
+        return result != null ? result : fallback;
+    }
 
-        // 6. local 添加本地流
-        MediaStream stream = factory.createLocalMediaStream("localStream");
-        stream.addTrack(localVideoTrack);
-        localPeer.addStream(stream);
-
-        // 7. local 创建 offer
-        localPeer.createOffer(new SdpObserverAdapter() {
-            @Override
-            public void onCreateSuccess(SessionDescription offer) {
-                Log.d(TAG, "local createOffer success");
-                localPeer.setLocalDescription(new SdpObserverAdapter(), offer);
-                signalingClient.sendOffer(offer);
-            }
-        }, new MediaConstraints());
+    private String beginSession() {
+        endSession();
+        sessionId = "call-" + sessionCounter.incrementAndGet();
+        return sessionId;
     }
 
+    @RequiresApi(api = Build.VERSION_CODES.O_MR1)
+    private Bundle openFrameChannel(String sessionId, String trackId, int maxWidth, int maxHeight) {
+        // 共享内存按这个尺寸分配，不能直接用客户端给的值
+        int[] size = SharedFrameWriter.clampSize(maxWidth, maxHeight);
+        if (size == null) {
+            Log.w(TAG, "reject frame channel size " + maxWidth + "x" + maxHeight);
+            return new Bundle();
+        }
+        int channelId = channelCounter.incrementAndGet();
+        SharedFrameWriter writer;
+        try {
+            writer = new SharedFrameWriter(channelId, FRAME_CHANNEL_SLOTS, size[0], size[1]);
+        } catch (IOException e) {
+            Log.e(TAG, "create frame channel failed", e);
+            return new Bundle();
+        }
+        if (!WebRtcHolder.attachSink(sessionId, trackId, writer)) {
+            writer.close();
+            return new Bundle();
+        }
+        frameChannels.put(channelId, new FrameChannel(sessionId, trackId, writer));
+        Log.d(TAG, "frame channel " + channelId + " opened for " + sessionId + "/" + trackId);
+        return writer.toBundle();
+    }
 
+    private void closeFrameChannel(FrameChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        // removeSink 返回后不会再有 onFrame 进来，之后才能解除映射
+        WebRtcHolder.detachSink(channel.sessionId, channel.trackId, channel.writer);
+        channel.writer.close();
+    }
 
+    private void closeFrameChannels() {
+        for (Integer channelId : new ArrayList<>(frameChannels.keySet())) {
+            closeFrameChannel(frameChannels.remove(channelId));
+        }
+    }
 
-    private VideoCapturer createCameraCapturer() {
-        Camera2Enumerator enumerator = new Camera2Enumerator(this);
-        for (String deviceName : enumerator.getDeviceNames()) {
-            if (enumerator.isFrontFacing(deviceName)) {
-                VideoCapturer capturer = enumerator.createCapturer(deviceName, null);
-                if (capturer != null) return capturer;
+    private void acquireFactory() {
+        if (factory == null) {
+            try {
+                PeerConnectionFactoryManager.setAudioConfig(this, AudioConfig.fromSpec(audioConfigSpec));
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "bad audio config: " + audioConfigSpec, e);
             }
+            factory = PeerConnectionFactoryManager.acquire(this);
+            Log.d(TAG, "factory ready: " + PeerConnectionFactoryManager.getTimings());
+        }
+        if (eglContext == null) {
+            eglContext = EglContextManager.acquire(TAG);
+        }
+    }
+
+    /**
+     * 没有录音权限时返回 null，通话只有视频
+     */
+    private AudioTrack createLocalAudioTrack(String sessionId) {
+        if (checkSelfPermission(Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "RECORD_AUDIO not granted, call without audio");
+            return null;
+        }
+        AudioConfig config = PeerConnectionFactoryManager.getActiveAudioConfig();
+        AudioSource audioSource = factory.createAudioSource(AudioDeviceSetup.sourceConstraints(config));
+        AudioTrack audioTrack = factory.createAudioTrack(LOCAL_AUDIO_TRACK_ID, audioSource);
+        WebRtcHolder.putLocalAudioTrack(sessionId, LOCAL_AUDIO_TRACK_ID, audioTrack, audioSource);
+        // 通话模式下系统走语音路径，硬件 AEC 才有参考信号
+        AudioManager audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+        if (previousAudioMode < 0) {
+            previousAudioMode = audioManager.getMode();
+        }
+        audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
+        Log.d(TAG, "local audio " + config + ", device " + AudioDeviceSetup.deviceInfo(this, config));
+        return audioTrack;
+    }
+
+    private void restoreAudioMode() {
+        if (previousAudioMode >= 0) {
+            AudioManager audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+            audioManager.setMode(previousAudioMode);
+            previousAudioMode = -1;
+        }
+    }
+
+    private void initWebRTCNew() {
+        Log.d(TAG, "Initializing WebRTC (New)");
+
+        // 重复 startCall 时先释放上一通话的 PeerConnection 和 track
+        String sessionId = beginSession();
+        dispatcher.postCallProgress(sessionId, "starting");
+
+        // 1. 获取共享的 PeerConnectionFactory（应用启动时已预热）
+        acquireFactory();
+        setupTracer.mark(CallSetupTracer.Phase.FACTORY_READY);
+        dispatcher.postCallProgress(sessionId, "factory_ready");
+
+        // 2. 视频采集（摄像头，或无摄像头测试用的合成 / Y4M 回放来源）
+        CaptureSource source = CaptureSource.open(this, captureSourceSpec);
+        if (source == null) {
+            // 和 startCallOnSession 的异常路径一样，先释放已经拿到的会话和工厂
+            endSession();
+            dispatcher.postCallFailed(sessionId, "capture", "capture source unavailable: " + captureSourceSpec);
+            return;
         }
-        // fallback back camera
-        for (String deviceName : enumerator.getDeviceNames()) {
-            if (!enumerator.isFrontFacing(deviceName)) {
-                VideoCapturer capturer = enumerator.createCapturer(deviceName, null);
-                if (capturer != null) return capturer;
+        VideoCapturer capturer = source.capturer;
+
+        SurfaceTextureHelper surfaceTextureHelper = SurfaceTextureHelper.create(
+                "CaptureThread", eglContext
+        );
+
+        VideoSource videoSource = factory.createVideoSource(false);
+        // 采集和编码之间的处理流水线；没有配置阶段时不装，adaptOutputFormat 留给 VideoSource 在 native 层做
+        try {
+            VideoProcessingPipeline pipeline = VideoProcessingPipeline.fromSpec(videoProcessingSpec);
+            if (!pipeline.isEmpty()) {
+                videoSource.setVideoProcessor(pipeline);
             }
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "bad video processing spec: " + videoProcessingSpec, e);
         }
-        return null;
+        capturer.initialize(surfaceTextureHelper, getApplicationContext(), videoSource.getCapturerObserver());
+        captureController = new CaptureController(this, source.formats, capturer, videoSource);
+        try {
+            captureController.start();
+            setupTracer.mark(CallSetupTracer.Phase.CAPTURER_STARTED);
+            dispatcher.postCallProgress(sessionId, "capture_started");
+            Log.d(TAG, source.description + " started capturing...");
+        } catch (Exception e) {
+            // 采集失败不中断通话，对端仍能收到音频和 DataChannel
+            Log.e(TAG, "startCapture failed", e);
+            dispatcher.postCallFailed(sessionId, "capture", String.valueOf(e));
+        }
+
+        VideoTrack localVideoTrack = factory.createVideoTrack(LOCAL_VIDEO_TRACK_ID, videoSource);
+
+        // 服务自己的 sink 直接挂在 track 上，track dispose 时会一并释放
+        localVideoTrack.addSink(frame -> setupTracer.mark(CallSetupTracer.Phase.FIRST_FRAME_CAPTURED));
+        localVideoTrack.addSink(new FrameStatsSink("local", FRAME_STATS_INTERVAL_MS, frameStatsLogger));
+
+        // 注册本地 Track，capturer / source / SurfaceTextureHelper 随最后一个引用一起释放
+        WebRtcHolder.putLocalVideoTrack(sessionId, LOCAL_VIDEO_TRACK_ID, localVideoTrack,
+                videoSource, surfaceTextureHelper, capturer);
+        dispatcher.postLocalVideoTrackCreated(sessionId, LOCAL_VIDEO_TRACK_ID);
+
+        // 音频：采集和播放由工厂里的 JavaAudioDeviceModule 负责，这里只建 source / track
+        AudioTrack localAudioTrack = createLocalAudioTrack(sessionId);
+
+        // 3. Signaling Client
+        SignalingClient signalingClient = SignalingClient.create(signalingUrl);
+        this.signalingClient = signalingClient;
+
+        // 4. 会话管理：所有参与者共用工厂和这一路本地视频，发送端的编码统计驱动采集自适应
+        SessionManager manager = new SessionManager(factory, signalingClient, sessionId, localVideoTrack,
+                localAudioTrack, PeerConnectionFactoryManager.getActiveAudioConfig(), rtcProfile, iceServers,
+                prewarmer, simulcastEnabled, dispatcher, setupTracer, frameStatsLogger, captureController, new File(getCacheDir(), DATA_CHANNEL_DIR),
+                dataListener, sessionExecutor);
+        sessionManager = manager;
+        signalingClient.setCallback(manager);
+        signalingClient.connect();
+        dispatcher.postCallProgress(sessionId, "signaling_started");
+
+        // 默认网络切换（Wi-Fi ↔ 蜂窝）时由 SessionManager 决定保留原来的 candidate pair 还是 ICE 重启
+        networkMonitor = new NetworkChangeMonitor(this, manager);
+        networkMonitor.start();
+
+        // 5. 加入默认参与者并发 offer，更多参与者通过 joinPeer 加入
+        manager.join(DEFAULT_PEER_ID);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package com.example.webrtcdemo.messenger.signaling;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 本地回环传输，发出的消息在独立线程上原样回送，用于单机模拟两端协商
+ */
+public class LoopbackTransport implements SignalingTransport {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "SignalingLoopback"));
+
+    private volatile Listener listener;
+
+    @Override
+    public void connect(Listener listener) {
+        this.listener = listener;
+        executor.execute(listener::onOpen);
+    }
+
+    @Override
+    public boolean send(byte[] data, int offset, int length, boolean binary) {
+        Listener l = listener;
+        if (l == null || executor.isShutdown()) {
+            return false;
+        }
+        // 发送方的缓冲区会被复用，先拷贝；异步回送，保证和真实网络一样不在发送线程上直接回调
+        byte[] copy = Arrays.copyOfRange(data, offset, offset + length);
+        executor.execute(() -> l.onMessage(copy, 0, copy.length));
+        return true;
+    }
+
+    @Override
+    public void close() {
+        Listener l = listener;
+        listener = null;
+        if (l != null) {
+            executor.execute(() -> l.onClosed(null));
+        }
+        executor.shutdown();
+    }
+}
@@ -2,45 +2,364 @@ package com.example.webrtcdemo.messenger.signaling;
 
 import android.util.Log;
 
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.example.webrtcdemo.messenger.signaling.codec.BinarySignalingCodec;
+import com.example.webrtcdemo.messenger.signaling.codec.JsonSignalingCodec;
+import com.example.webrtcdemo.messenger.signaling.codec.SignalingCodec;
+import com.example.webrtcdemo.messenger.signaling.codec.SignalingCodecException;
+import com.example.webrtcdemo.messenger.signaling.codec.SignalingMessage;
+
+import org.webrtc.IceCandidate;
 import org.webrtc.SessionDescription;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 信令客户端：可插拔传输、按 seq 去重的断线补发和重连、按 peer 合并 ICE candidate
+ */
 public class SignalingClient {
 
+    private static final String TAG = "SignalingClient";
+
+    private static final long RECONNECT_BASE_DELAY_MS = 500;
+    private static final long RECONNECT_MAX_DELAY_MS = 10_000;
+    /** 断线时可能还在途的消息数量上限，重连后会重发这一段 */
+    private static final int RESEND_WINDOW = 64;
+    /** candidate 合并窗口默认值，gather 高峰期一般几十毫秒内会连续产生多个 */
+    public static final long DEFAULT_ICE_BATCH_WINDOW_MS = 40;
+
     public interface Callback {
-        void onOfferReceived(SessionDescription offer);
-        void onAnswerReceived(SessionDescription answer);
-        void onIceCandidateReceived(String sdpMid, int sdpMLineIndex, String candidate);
+        /**
+         * peerId 是发出该消息的 PeerConnection 标识，接收端据此路由到对应的连接
+         */
+        void onOfferReceived(String peerId, SessionDescription offer);
+        void onAnswerReceived(String peerId, SessionDescription answer);
+
+        /**
+         * 一批合并后的 candidate，peerId 同上
+         */
+        void onIceCandidatesReceived(String peerId, List<IceCandidate> candidates);
     }
 
-    private Callback callback;
+    private final SignalingTransport transport;
+    private final SignalingCodec codec;
+    private final String clientId = UUID.randomUUID().toString();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "SignalingClient"));
+
+    // 以下字段只在 executor 线程上访问
+    private final ArrayDeque<SignalingMessage> pending = new ArrayDeque<>();
+    private final ArrayDeque<SignalingMessage> recentlySent = new ArrayDeque<>(RESEND_WINDOW + 1);
+    private final ArrayDeque<SignalingMessage> messagePool = new ArrayDeque<>();
+    private final Map<String, Long> lastSeqBySender = new HashMap<>();
+    private final Map<String, SignalingMessage> candidateBatches = new HashMap<>();
+    private final Map<String, ScheduledFuture<?>> batchFlushTasks = new HashMap<>();
+    private final SignalingMessage inbound = new SignalingMessage();
+    private BinarySignalingCodec binaryDecoder;
+    private JsonSignalingCodec jsonDecoder;
+    private long nextSeq = 1;
+    private boolean open;
+    private boolean closed;
+    private int reconnectAttempts;
+
+    private volatile Callback callback;
+    private volatile long iceBatchWindowMs = DEFAULT_ICE_BATCH_WINDOW_MS;
+
+    public SignalingClient() {
+        this(new LoopbackTransport());
+    }
+
+    public SignalingClient(SignalingTransport transport) {
+        this(transport, new BinarySignalingCodec());
+    }
+
+    public SignalingClient(SignalingTransport transport, SignalingCodec codec) {
+        this.transport = transport;
+        this.codec = codec;
+    }
+
+    /**
+     * url 为空时使用本地回环，否则连接到对应的 WebSocket 信令服务
+     */
+    public static SignalingClient create(String url) {
+        return create(url, false);
+    }
+
+    /**
+     * @param jsonDebug true 时发送 JSON 文本帧，便于抓包查看
+     */
+    public static SignalingClient create(String url, boolean jsonDebug) {
+        SignalingTransport transport = url == null || url.isEmpty()
+                ? new LoopbackTransport() : new WebSocketTransport(url);
+        SignalingCodec codec = jsonDebug ? new JsonSignalingCodec() : new BinarySignalingCodec();
+        return new SignalingClient(transport, codec);
+    }
 
     public void setCallback(Callback callback) {
         this.callback = callback;
     }
 
-    public void sendOffer(SessionDescription offer) {
-        // 模拟信令传输
-        Log.d("SignalingClient", "Sending Offer:\n" + offer.description);
-        // 此处你可以替换为 WebSocket 实际发送逻辑
-        if (callback != null) {
-            callback.onOfferReceived(offer);
+    /**
+     * 设置 candidate 合并窗口，0 表示不等待、每个 candidate 立即发送
+     */
+    public void setIceBatchWindowMs(long windowMs) {
+        this.iceBatchWindowMs = Math.max(0, windowMs);
+    }
+
+    public void connect() {
+        post(this::connectInternal);
+    }
+
+    public void close() {
+        post(() -> {
+            closed = true;
+            open = false;
+            pending.clear();
+            recentlySent.clear();
+            candidateBatches.clear();
+            for (ScheduledFuture<?> f : batchFlushTasks.values()) {
+                f.cancel(false);
+            }
+            batchFlushTasks.clear();
+            transport.close();
+            // 之后排队的任务看到 closed 都不会再碰编解码器
+            codec.release();
+            if (binaryDecoder != null && binaryDecoder != codec) {
+                binaryDecoder.release();
+            }
+        });
+        executor.shutdown();
+    }
+
+    /**
+     * @param peerId 产生这个 offer 的 PeerConnection 标识，和它的 candidate 使用同一个值
+     */
+    public void sendOffer(String peerId, SessionDescription offer) {
+        Log.d(TAG, "Sending Offer from " + peerId + ", sdp length=" + offer.description.length());
+        sendDescription(SignalingMessage.TYPE_OFFER, peerId, offer.description);
+    }
+
+    public void sendAnswer(String peerId, SessionDescription answer) {
+        Log.d(TAG, "Sending Answer from " + peerId + ", sdp length=" + answer.description.length());
+        sendDescription(SignalingMessage.TYPE_ANSWER, peerId, answer.description);
+    }
+
+    private void sendDescription(byte type, String peerId, String sdp) {
+        post(() -> {
+            if (closed) {
+                return;
+            }
+            SignalingMessage msg = obtain(type);
+            msg.peer = peerId;
+            msg.sdp = sdp;
+            append(msg);
+        });
+    }
+
+    /**
+     * candidate 先进入 peerId 对应的批次，窗口到期或 {@link #flushIceCandidates} 时合并成一条消息
+     */
+    public void sendIceCandidate(String peerId, IceCandidate candidate) {
+        post(() -> {
+            if (closed) {
+                return;
+            }
+            SignalingMessage batch = candidateBatches.get(peerId);
+            if (batch == null) {
+                batch = obtain(SignalingMessage.TYPE_CANDIDATES);
+                batch.peer = peerId;
+                candidateBatches.put(peerId, batch);
+            }
+            batch.addCandidate(candidate.sdpMid, candidate.sdpMLineIndex, candidate.sdp);
+            long window = iceBatchWindowMs;
+            if (window == 0) {
+                flushBatch(peerId);
+            } else if (!batchFlushTasks.containsKey(peerId)) {
+                batchFlushTasks.put(peerId, executor.schedule(
+                        () -> flushBatch(peerId), window, TimeUnit.MILLISECONDS));
+            }
+        });
+    }
+
+    /**
+     * 立即发送 peerId 下尚未发出的 candidate，ICE gathering 完成时调用
+     */
+    public void flushIceCandidates(String peerId) {
+        post(() -> flushBatch(peerId));
+    }
+
+    private void flushBatch(String peerId) {
+        ScheduledFuture<?> task = batchFlushTasks.remove(peerId);
+        if (task != null) {
+            task.cancel(false);
         }
+        SignalingMessage batch = candidateBatches.remove(peerId);
+        if (closed || batch == null) {
+            return;
+        }
+        append(batch);
     }
 
-    public void sendAnswer(SessionDescription answer) {
-        Log.d("SignalingClient", "Sending Answer:\n" + answer.description);
-        if (callback != null) {
-            callback.onAnswerReceived(answer);
+    private SignalingMessage obtain(byte type) {
+        SignalingMessage msg = messagePool.pollFirst();
+        if (msg == null) {
+            msg = new SignalingMessage();
         }
+        msg.type = type;
+        msg.from = clientId;
+        return msg;
+    }
+
+    private void recycle(SignalingMessage msg) {
+        msg.clear();
+        messagePool.addLast(msg);
+    }
+
+    /**
+     * seq 在真正入队时才分配，保证队列内严格递增
+     */
+    private void append(SignalingMessage msg) {
+        msg.seq = nextSeq++;
+        pending.addLast(msg);
+        flush();
     }
 
-    public void sendIceCandidate(String sdpMid, int sdpMLineIndex, String candidate) {
-        Log.d("SignalingClient", "Sending Candidate:\n" + candidate);
-        if (callback != null) {
-            callback.onIceCandidateReceived(sdpMid, sdpMLineIndex, candidate);
+    private void post(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // close() 之后的迟到调用直接丢弃
         }
     }
-}
 
+    private void flush() {
+        boolean binary = codec.isBinary();
+        while (open && !pending.isEmpty()) {
+            SignalingMessage msg = pending.peekFirst();
+            int length = codec.encode(msg);
+            if (!transport.send(codec.buffer(), 0, length, binary)) {
+                // 连接已不可用，保留在队首等待重连
+                return;
+            }
+            pending.pollFirst();
+            recentlySent.addLast(msg);
+            if (recentlySent.size() > RESEND_WINDOW) {
+                recycle(recentlySent.pollFirst());
+            }
+        }
+    }
+
+    private void connectInternal() {
+        if (closed) {
+            return;
+        }
+        transport.connect(new SignalingTransport.Listener() {
+            @Override
+            public void onOpen() {
+                post(SignalingClient.this::onTransportOpen);
+            }
+
+            @Override
+            public void onMessage(byte[] data, int offset, int length) {
+                // 传输层保证 data 在回调之后不再修改，可以直接异步处理
+                post(() -> dispatch(data, offset, length));
+            }
+
+            @Override
+            public void onClosed(Throwable cause) {
+                post(() -> onTransportClosed(cause));
+            }
+        });
+    }
+
+    private void onTransportOpen() {
+        if (closed) {
+            return;
+        }
+        Log.d(TAG, "transport open, pending=" + pending.size() + " resend=" + recentlySent.size());
+        open = true;
+        reconnectAttempts = 0;
+        // 断线前最后发出的一段可能没到达对端，放回队首按原顺序重发，对端按 seq 去重
+        while (!recentlySent.isEmpty()) {
+            pending.addFirst(recentlySent.pollLast());
+        }
+        flush();
+    }
+
+    private void onTransportClosed(Throwable cause) {
+        open = false;
+        if (closed) {
+            return;
+        }
+        long delay = Math.min(RECONNECT_MAX_DELAY_MS, RECONNECT_BASE_DELAY_MS << Math.min(reconnectAttempts, 5));
+        delay += ThreadLocalRandom.current().nextLong(delay / 4 + 1);
+        reconnectAttempts++;
+        Log.w(TAG, "transport closed, reconnect #" + reconnectAttempts + " in " + delay + "ms", cause);
+        executor.schedule(this::connectInternal, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private SignalingCodec decoderFor(byte[] data, int offset, int length) {
+        if (length > 0 && data[offset] == '{') {
+            if (jsonDecoder == null) {
+                jsonDecoder = new JsonSignalingCodec();
+            }
+            return jsonDecoder;
+        }
+        if (binaryDecoder == null) {
+            binaryDecoder = new BinarySignalingCodec();
+        }
+        return binaryDecoder;
+    }
+
+    private void dispatch(byte[] data, int offset, int length) {
+        if (closed) {
+            return;
+        }
+        SignalingMessage msg = inbound;
+        try {
+            decoderFor(data, offset, length).decode(data, offset, length, msg);
+        } catch (SignalingCodecException e) {
+            Log.e(TAG, "decode message failed", e);
+            return;
+        }
+        Long last = lastSeqBySender.get(msg.from);
+        if (last != null && msg.seq <= last) {
+            // 重连补发导致的重复消息
+            return;
+        }
+        lastSeqBySender.put(msg.from, msg.seq);
+        Callback cb = callback;
+        if (cb == null) {
+            return;
+        }
+        switch (msg.type) {
+            case SignalingMessage.TYPE_OFFER:
+                cb.onOfferReceived(msg.peer, new SessionDescription(SessionDescription.Type.OFFER, msg.sdp));
+                break;
+            case SignalingMessage.TYPE_ANSWER:
+                cb.onAnswerReceived(msg.peer, new SessionDescription(SessionDescription.Type.ANSWER, msg.sdp));
+                break;
+            case SignalingMessage.TYPE_CANDIDATES:
+                List<IceCandidate> candidates = new ArrayList<>(msg.candidateCount);
+                for (int i = 0; i < msg.candidateCount; i++) {
+                    candidates.add(new IceCandidate(
+                            msg.candidateMids[i], msg.candidateMLineIndexes[i], msg.candidateSdps[i]));
+                }
+                cb.onIceCandidatesReceived(msg.peer, candidates);
+                break;
+            default:
+                Log.w(TAG, "unknown message type: " + msg.type);
+                break;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.webrtcdemo.messenger.signaling;
+
+/**
+ * 信令传输层抽象，SignalingClient 只依赖这个接口，具体实现可以是 WebSocket、本地回环等
+ */
+public interface SignalingTransport {
+
+    interface Listener {
+        void onOpen();
+
+        /**
+         * 收到一帧数据（文本帧按 UTF-8 给出），回调之后 data 不会再被传输层修改
+         */
+        void onMessage(byte[] data, int offset, int length);
+
+        /**
+         * 连接断开（包括主动关闭和异常断开），cause 为 null 表示正常关闭
+         */
+        void onClosed(Throwable cause);
+    }
+
+    /**
+     * 异步建立连接，结果通过 Listener 回调，不能阻塞调用线程
+     */
+    void connect(Listener listener);
+
+    /**
+     * 非阻塞发送，返回 false 表示当前连接不可用，调用方需要自己保留消息。
+     * data 是调用方复用的缓冲区，实现类需要在返回前完成拷贝
+     *
+     * @param binary true 发送二进制帧，false 发送 UTF-8 文本帧
+     */
+    boolean send(byte[] data, int offset, int length, boolean binary);
+
+    void close();
+}
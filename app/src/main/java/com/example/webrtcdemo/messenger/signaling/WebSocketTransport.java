@@ -0,0 +1,158 @@
+package com.example.webrtcdemo.messenger.signaling;
+
+import androidx.annotation.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+
+/**
+ * 基于 OkHttp 的 WebSocket 信令传输，OkHttp 内部有发送队列，send 不会阻塞调用线程。
+ * 每次 connect 用一个新的回调对象作为这次连接的标识，OkHttp 在 newWebSocket 返回前就可能回调，不能拿返回的 WebSocket 比较
+ */
+public class WebSocketTransport implements SignalingTransport {
+
+    private static final OkHttpClient SHARED_CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(5, TimeUnit.SECONDS)
+            .readTimeout(0, TimeUnit.MILLISECONDS)
+            .pingInterval(15, TimeUnit.SECONDS)
+            .build();
+
+    private final String url;
+    private final Object lock = new Object();
+    /** 当前这次连接的回调对象，作为连接的标识；close 或重新 connect 后旧连接的回调都会被忽略 */
+    private Connection connection;
+    private volatile WebSocket webSocket;
+
+    public WebSocketTransport(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public void connect(Listener listener) {
+        Request request = new Request.Builder().url(url).build();
+        Connection current = new Connection(listener);
+        synchronized (lock) {
+            connection = current;
+        }
+        // newWebSocket 返回之前 OkHttp 的线程上就可能回调 onOpen / onMessage，所以不能拿返回值来判断是不是当前连接
+        WebSocket ws = SHARED_CLIENT.newWebSocket(request, current);
+        synchronized (lock) {
+            if (connection == current) {
+                webSocket = ws;
+                return;
+            }
+        }
+        // 返回之前已经被 close 或者又发起了新连接
+        ws.cancel();
+    }
+
+    /**
+     * 一次连接的回调，只有仍是 {@link #connection} 时才转发给 Listener
+     */
+    private final class Connection extends WebSocketListener {
+        private final Listener listener;
+
+        Connection(Listener listener) {
+            this.listener = listener;
+        }
+
+        private boolean isCurrent(WebSocket ws) {
+            synchronized (lock) {
+                if (connection != this) {
+                    return false;
+                }
+                // onOpen 可能早于 connect 里的赋值，先记下，回调里调用 send 时才有连接可用
+                webSocket = ws;
+                return true;
+            }
+        }
+
+        private boolean release(WebSocket ws) {
+            synchronized (lock) {
+                if (connection != this) {
+                    return false;
+                }
+                connection = null;
+                if (webSocket == ws) {
+                    webSocket = null;
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public void onOpen(@NonNull WebSocket ws, @NonNull Response response) {
+            if (isCurrent(ws)) {
+                listener.onOpen();
+            }
+        }
+
+        @Override
+        public void onMessage(@NonNull WebSocket ws, @NonNull String text) {
+            if (isCurrent(ws)) {
+                byte[] data = text.getBytes(StandardCharsets.UTF_8);
+                listener.onMessage(data, 0, data.length);
+            }
+        }
+
+        @Override
+        public void onMessage(@NonNull WebSocket ws, @NonNull ByteString bytes) {
+            if (isCurrent(ws)) {
+                byte[] data = bytes.toByteArray();
+                listener.onMessage(data, 0, data.length);
+            }
+        }
+
+        @Override
+        public void onClosing(@NonNull WebSocket ws, int code, @NonNull String reason) {
+            ws.close(1000, null);
+        }
+
+        @Override
+        public void onClosed(@NonNull WebSocket ws, int code, @NonNull String reason) {
+            if (release(ws)) {
+                listener.onClosed(null);
+            }
+        }
+
+        @Override
+        public void onFailure(@NonNull WebSocket ws, @NonNull Throwable t, Response response) {
+            // 重连后旧连接的迟到回调直接忽略
+            if (release(ws)) {
+                listener.onClosed(t);
+            }
+        }
+    }
+
+    @Override
+    public boolean send(byte[] data, int offset, int length, boolean binary) {
+        WebSocket ws = webSocket;
+        if (ws == null) {
+            return false;
+        }
+        // OkHttp 的发送队列会持有数据，这里的拷贝不可避免
+        return binary
+                ? ws.send(ByteString.of(data, offset, length))
+                : ws.send(new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() {
+        WebSocket ws;
+        synchronized (lock) {
+            connection = null;
+            ws = webSocket;
+            webSocket = null;
+        }
+        if (ws != null) {
+            ws.close(1000, "bye");
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.webrtcdemo.messenger.signaling.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 紧凑二进制信令帧（v1）
+ *
+ * <pre>
+ * u8      version      当前为 1
+ * u8      type         {@link SignalingMessage#TYPE_OFFER} 等
+ * u8      flags        bit0: SDP 经过 deflate
+ * varint  seq
+ * str     from
+ * nstr    peer
+ * offer/answer:
+ *   flags&1 == 0:  str sdp
+ *   flags&1 == 1:  varint 原始 UTF-8 长度, varint 压缩后长度, bytes
+ * candidates:
+ *   varint count, 每个 candidate: nstr sdpMid, varint sdpMLineIndex, str candidate
+ *
+ * str  = varint 字节长度 + UTF-8
+ * nstr = varint (字节长度 + 1) + UTF-8，0 表示 null
+ * </pre>
+ *
+ * 缓冲区和 Deflater / Inflater 在实例内复用，用完要 {@link #release()}
+ */
+public final class BinarySignalingCodec implements SignalingCodec {
+
+    public static final int VERSION = 1;
+    private static final int FLAG_SDP_DEFLATED = 0x1;
+    /** 小于这个长度的 SDP 压缩收益不明显，直接明文 */
+    private static final int DEFLATE_THRESHOLD = 256;
+    private static final int MAX_FIELD_LENGTH = 1 << 20;
+    /** 一帧里 candidate 的上限，正常一批只有几个到几十个 */
+    static final int MAX_CANDIDATES = 256;
+    /** 每个 candidate 至少占 3 字节：nstr sdpMid、varint sdpMLineIndex、str candidate 各至少 1 字节 */
+    private static final int MIN_CANDIDATE_BYTES = 3;
+    /** deflate 的理论最大压缩比约 1032:1，声明的原始长度超过它说明帧是伪造的 */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+    private static final int STRING_CACHE_SIZE = 8;
+
+    private final boolean deflateSdp;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    private final Inflater inflater = new Inflater(true);
+
+    private byte[] out = new byte[4096];
+    private int pos;
+    private byte[] utf8Scratch = new byte[4096];
+    private byte[] zipScratch = new byte[4096];
+
+    private final byte[][] cachedBytes = new byte[STRING_CACHE_SIZE][];
+    private final String[] cachedStrings = new String[STRING_CACHE_SIZE];
+    private int nextCacheSlot;
+
+    // 当前正在解码的输入，只在 decode 期间有效
+    private byte[] in;
+    private int inPos;
+    private int inEnd;
+
+    public BinarySignalingCodec() {
+        this(true);
+    }
+
+    public BinarySignalingCodec(boolean deflateSdp) {
+        this.deflateSdp = deflateSdp;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return true;
+    }
+
+    @Override
+    public byte[] buffer() {
+        return out;
+    }
+
+    @Override
+    public void release() {
+        deflater.end();
+        inflater.end();
+    }
+
+    // ------------------------------------------------------------------ encode
+
+    @Override
+    public int encode(SignalingMessage message) {
+        pos = 0;
+        boolean sdpMessage = message.type == SignalingMessage.TYPE_OFFER
+                || message.type == SignalingMessage.TYPE_ANSWER;
+        int sdpLength = sdpMessage ? utf8Length(message.sdp) : 0;
+        boolean deflate = sdpMessage && deflateSdp && sdpLength >= DEFLATE_THRESHOLD;
+
+        ensureOut(3);
+        out[pos++] = VERSION;
+        out[pos++] = message.type;
+        out[pos++] = (byte) (deflate ? FLAG_SDP_DEFLATED : 0);
+        writeVarLong(message.seq);
+        writeString(message.from);
+        writeNullableString(message.peer);
+
+        if (sdpMessage) {
+            if (deflate) {
+                writeDeflated(message.sdp, sdpLength);
+            } else {
+                writeString(message.sdp);
+            }
+        } else if (message.type == SignalingMessage.TYPE_CANDIDATES) {
+            writeVarLong(message.candidateCount);
+            for (int i = 0; i < message.candidateCount; i++) {
+                writeNullableString(message.candidateMids[i]);
+                writeVarLong(message.candidateMLineIndexes[i]);
+                writeString(message.candidateSdps[i]);
+            }
+        }
+        return pos;
+    }
+
+    private void writeDeflated(String sdp, int utf8Len) {
+        utf8Scratch = grow(utf8Scratch, utf8Len);
+        encodeUtf8(sdp, utf8Len, utf8Scratch, 0);
+
+        deflater.reset();
+        deflater.setInput(utf8Scratch, 0, utf8Len);
+        deflater.finish();
+        int compressed = 0;
+        while (!deflater.finished()) {
+            if (compressed == zipScratch.length) {
+                zipScratch = grow(zipScratch, zipScratch.length * 2);
+            }
+            compressed += deflater.deflate(zipScratch, compressed, zipScratch.length - compressed);
+        }
+
+        writeVarLong(utf8Len);
+        writeVarLong(compressed);
+        ensureOut(compressed);
+        System.arraycopy(zipScratch, 0, out, pos, compressed);
+        pos += compressed;
+    }
+
+    private void writeString(String s) {
+        String value = s == null ? "" : s;
+        int len = utf8Length(value);
+        writeVarLong(len);
+        ensureOut(len);
+        pos = encodeUtf8(value, len, out, pos);
+    }
+
+    private void writeNullableString(String s) {
+        if (s == null) {
+            writeVarLong(0);
+            return;
+        }
+        int len = utf8Length(s);
+        writeVarLong(len + 1L);
+        ensureOut(len);
+        pos = encodeUtf8(s, len, out, pos);
+    }
+
+    private void writeVarLong(long value) {
+        ensureOut(10);
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+    }
+
+    private void ensureOut(int extra) {
+        if (pos + extra > out.length) {
+            byte[] bigger = new byte[Math.max(pos + extra, out.length * 2)];
+            System.arraycopy(out, 0, bigger, 0, pos);
+            out = bigger;
+        }
+    }
+
+    private static int utf8Length(String s) {
+        if (s == null) {
+            return 0;
+        }
+        int len = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                len++;
+            } else if (c < 0x800) {
+                len += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                len += 4;
+                i++;
+            } else {
+                len += 3;
+            }
+        }
+        return len;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int encodeUtf8(String s, int utf8Len, byte[] dst, int p) {
+        if (utf8Len == s.length()) {
+            // 纯 ASCII（SDP 和 candidate 基本都是），直接按字节拷贝，不产生中间数组
+            s.getBytes(0, utf8Len, dst, p);
+            return p + utf8Len;
+        }
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                dst[p++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[p++] = (byte) (0xC0 | (c >> 6));
+                dst[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                dst[p++] = (byte) (0xF0 | (cp >> 18));
+                dst[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dst[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dst[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                dst[p++] = (byte) (0xE0 | (c >> 12));
+                dst[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return p;
+    }
+
+    // ------------------------------------------------------------------ decode
+
+    @Override
+    public void decode(byte[] data, int offset, int length, SignalingMessage message)
+            throws SignalingCodecException {
+        in = data;
+        inPos = offset;
+        inEnd = offset + length;
+        try {
+            message.clear();
+            int version = readByte();
+            if (version != VERSION) {
+                throw new SignalingCodecException("unsupported signaling frame version " + version);
+            }
+            message.type = (byte) readByte();
+            int flags = readByte();
+            message.seq = readVarLong();
+            message.from = readCachedString(readLength());
+            int peerLen = readLength();
+            message.peer = peerLen == 0 ? null : readCachedString(peerLen - 1);
+
+            switch (message.type) {
+                case SignalingMessage.TYPE_OFFER:
+                case SignalingMessage.TYPE_ANSWER:
+                    message.sdp = (flags & FLAG_SDP_DEFLATED) != 0 ? readDeflated() : readString();
+                    break;
+                case SignalingMessage.TYPE_CANDIDATES:
+                    int count = readLength();
+                    if (count > MAX_CANDIDATES || count > (inEnd - inPos) / MIN_CANDIDATE_BYTES) {
+                        throw new SignalingCodecException("bad candidate count " + count);
+                    }
+                    message.ensureCandidateCapacity(count);
+                    for (int i = 0; i < count; i++) {
+                        String mid = readNullableString();
+                        int index = (int) readVarLong();
+                        message.addCandidate(mid, index, readString());
+                    }
+                    break;
+                default:
+                    throw new SignalingCodecException("unknown message type " + message.type);
+            }
+        } finally {
+            in = null;
+        }
+    }
+
+    private String readDeflated() throws SignalingCodecException {
+        int rawLen = readLength();
+        int compressed = readLength();
+        require(compressed);
+        if (rawLen > (long) compressed * MAX_DEFLATE_RATIO) {
+            throw new SignalingCodecException("bad deflated sdp length " + rawLen + " from " + compressed + " bytes");
+        }
+        utf8Scratch = grow(utf8Scratch, rawLen);
+        inflater.reset();
+        inflater.setInput(in, inPos, compressed);
+        inPos += compressed;
+        try {
+            int n = 0;
+            while (n < rawLen && !inflater.finished()) {
+                int r = inflater.inflate(utf8Scratch, n, rawLen - n);
+                if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += r;
+            }
+            if (n != rawLen) {
+                throw new SignalingCodecException("truncated deflated sdp: " + n + "/" + rawLen);
+            }
+        } catch (DataFormatException e) {
+            throw new SignalingCodecException("corrupt deflated sdp", e);
+        }
+        return decodeUtf8(utf8Scratch, 0, rawLen);
+    }
+
+    private String readString() throws SignalingCodecException {
+        int len = readLength();
+        require(len);
+        String s = decodeUtf8(in, inPos, len);
+        inPos += len;
+        return s;
+    }
+
+    private String readNullableString() throws SignalingCodecException {
+        int len = readLength();
+        if (len == 0) {
+            return null;
+        }
+        len -= 1;
+        require(len);
+        String s = decodeUtf8(in, inPos, len);
+        inPos += len;
+        return s;
+    }
+
+    /**
+     * from / peer 在一次会话里几乎不变，命中缓存时直接返回之前的 String
+     */
+    private String readCachedString(int len) throws SignalingCodecException {
+        require(len);
+        for (int slot = 0; slot < STRING_CACHE_SIZE; slot++) {
+            byte[] cached = cachedBytes[slot];
+            if (cached != null && cached.length == len && regionEquals(cached, in, inPos, len)) {
+                inPos += len;
+                return cachedStrings[slot];
+            }
+        }
+        String s = decodeUtf8(in, inPos, len);
+        byte[] copy = new byte[len];
+        System.arraycopy(in, inPos, copy, 0, len);
+        int slot = nextCacheSlot;
+        nextCacheSlot = (nextCacheSlot + 1) % STRING_CACHE_SIZE;
+        cachedBytes[slot] = copy;
+        cachedStrings[slot] = s;
+        inPos += len;
+        return s;
+    }
+
+    private static boolean regionEquals(byte[] a, byte[] b, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            if (a[i] != b[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decodeUtf8(byte[] src, int off, int len) {
+        // 平台自带的 UTF-8 解码有 intrinsic 优化，只分配结果 String 本身
+        return len == 0 ? "" : new String(src, off, len, StandardCharsets.UTF_8);
+    }
+
+    private int readByte() throws SignalingCodecException {
+        require(1);
+        return in[inPos++] & 0xFF;
+    }
+
+    private long readVarLong() throws SignalingCodecException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new SignalingCodecException("varint too long");
+    }
+
+    private int readLength() throws SignalingCodecException {
+        long len = readVarLong();
+        if (len < 0 || len > MAX_FIELD_LENGTH) {
+            throw new SignalingCodecException("field length out of range: " + len);
+        }
+        return (int) len;
+    }
+
+    private void require(int n) throws SignalingCodecException {
+        if (inEnd - inPos < n) {
+            throw new SignalingCodecException("truncated signaling frame");
+        }
+    }
+
+    private static byte[] grow(byte[] buf, int size) {
+        return size <= buf.length ? buf : new byte[Math.max(size, buf.length * 2)];
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.webrtcdemo.messenger.signaling.codec;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON 格式的信令编解码，字段和 {@link BinarySignalingCodec} 一一对应，
+ * 方便抓包和调试，性能不做要求。JSON 帧总是以 '{' 开头，接收端据此和二进制帧区分
+ */
+public final class JsonSignalingCodec implements SignalingCodec {
+
+    private byte[] out = new byte[4096];
+
+    @Override
+    public boolean isBinary() {
+        return false;
+    }
+
+    @Override
+    public byte[] buffer() {
+        return out;
+    }
+
+    @Override
+    public int encode(SignalingMessage message) {
+        try {
+            JSONObject json = new JSONObject()
+                    .put("type", SignalingMessage.typeName(message.type))
+                    .put("from", message.from)
+                    .put("seq", message.seq)
+                    .put("peer", message.peer);
+            if (message.type == SignalingMessage.TYPE_CANDIDATES) {
+                JSONArray array = new JSONArray();
+                for (int i = 0; i < message.candidateCount; i++) {
+                    array.put(new JSONObject()
+                            .put("sdpMid", message.candidateMids[i])
+                            .put("sdpMLineIndex", message.candidateMLineIndexes[i])
+                            .put("candidate", message.candidateSdps[i]));
+                }
+                json.put("candidates", array);
+            } else {
+                json.put("sdp", message.sdp);
+            }
+            byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > out.length) {
+                out = new byte[Math.max(bytes.length, out.length * 2)];
+            }
+            System.arraycopy(bytes, 0, out, 0, bytes.length);
+            return bytes.length;
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("encode " + SignalingMessage.typeName(message.type) + " failed", e);
+        }
+    }
+
+    @Override
+    public void decode(byte[] data, int offset, int length, SignalingMessage message)
+            throws SignalingCodecException {
+        message.clear();
+        try {
+            JSONObject json = new JSONObject(new String(data, offset, length, StandardCharsets.UTF_8));
+            message.type = SignalingMessage.typeOf(json.getString("type"));
+            message.from = json.optString("from");
+            message.seq = json.optLong("seq");
+            message.peer = json.isNull("peer") ? null : json.getString("peer");
+            switch (message.type) {
+                case SignalingMessage.TYPE_OFFER:
+                case SignalingMessage.TYPE_ANSWER:
+                    message.sdp = json.getString("sdp");
+                    break;
+                case SignalingMessage.TYPE_CANDIDATES:
+                    JSONArray array = json.getJSONArray("candidates");
+                    for (int i = 0; i < array.length(); i++) {
+                        JSONObject c = array.getJSONObject(i);
+                        message.addCandidate(
+                                c.isNull("sdpMid") ? null : c.getString("sdpMid"),
+                                c.getInt("sdpMLineIndex"),
+                                c.getString("candidate"));
+                    }
+                    break;
+                default:
+                    throw new SignalingCodecException("unknown message type " + json.optString("type"));
+            }
+        } catch (JSONException e) {
+            throw new SignalingCodecException("malformed json frame", e);
+        }
+    }
+
+    @Override
+    public void release() {
+        // 没有 native 资源
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.webrtcdemo.messenger.signaling.codec;
+
+/**
+ * 信令编解码器。编码结果写在编码器内部复用的缓冲区里，只在下一次 encode 之前有效；
+ * 实现类不是线程安全的，每个线程各用一个实例
+ */
+public interface SignalingCodec {
+
+    /**
+     * @return 编码后的字节数，数据从 {@link #buffer()} 的下标 0 开始
+     */
+    int encode(SignalingMessage message);
+
+    byte[] buffer();
+
+    /**
+     * 解码到 out 中，out 会先被 clear
+     */
+    void decode(byte[] data, int offset, int length, SignalingMessage out) throws SignalingCodecException;
+
+    /**
+     * 是否为二进制格式，决定传输层用 binary 帧还是 text 帧
+     */
+    boolean isBinary();
+
+    /**
+     * 释放编解码器持有的 native 资源（例如 zlib 的 Deflater / Inflater），之后不能再使用
+     */
+    void release();
+}
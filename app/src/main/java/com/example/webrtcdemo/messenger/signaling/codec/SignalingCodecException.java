@@ -0,0 +1,17 @@
+package com.example.webrtcdemo.messenger.signaling.codec;
+
+/**
+ * 信令帧格式错误
+ */
+public class SignalingCodecException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public SignalingCodecException(String message) {
+        super(message);
+    }
+
+    public SignalingCodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.webrtcdemo.messenger.signaling.codec;
+
+/**
+ * 信令消息的可复用载体，不依赖 org.webrtc，编解码器读写的都是这个对象。
+ * candidate 用并行数组保存，clear() 后数组保留，重复使用时不会再分配
+ */
+public final class SignalingMessage {
+
+    public static final byte TYPE_OFFER = 1;
+    public static final byte TYPE_ANSWER = 2;
+    public static final byte TYPE_CANDIDATES = 3;
+
+    public byte type;
+    public String from;
+    public long seq;
+    /** 产生这条消息的 PeerConnection 标识 */
+    public String peer;
+    /** offer / answer 的 SDP 文本 */
+    public String sdp;
+
+    public int candidateCount;
+    public String[] candidateMids = new String[8];
+    public int[] candidateMLineIndexes = new int[8];
+    public String[] candidateSdps = new String[8];
+
+    public void clear() {
+        type = 0;
+        from = null;
+        seq = 0;
+        peer = null;
+        sdp = null;
+        for (int i = 0; i < candidateCount; i++) {
+            candidateMids[i] = null;
+            candidateSdps[i] = null;
+        }
+        candidateCount = 0;
+    }
+
+    public void addCandidate(String sdpMid, int sdpMLineIndex, String candidate) {
+        ensureCandidateCapacity(candidateCount + 1);
+        candidateMids[candidateCount] = sdpMid;
+        candidateMLineIndexes[candidateCount] = sdpMLineIndex;
+        candidateSdps[candidateCount] = candidate;
+        candidateCount++;
+    }
+
+    void ensureCandidateCapacity(int capacity) {
+        if (capacity <= candidateSdps.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, candidateSdps.length * 2);
+        String[] mids = new String[newCapacity];
+        int[] indexes = new int[newCapacity];
+        String[] sdps = new String[newCapacity];
+        System.arraycopy(candidateMids, 0, mids, 0, candidateCount);
+        System.arraycopy(candidateMLineIndexes, 0, indexes, 0, candidateCount);
+        System.arraycopy(candidateSdps, 0, sdps, 0, candidateCount);
+        candidateMids = mids;
+        candidateMLineIndexes = indexes;
+        candidateSdps = sdps;
+    }
+
+    public static String typeName(byte type) {
+        switch (type) {
+            case TYPE_OFFER:
+                return "offer";
+            case TYPE_ANSWER:
+                return "answer";
+            case TYPE_CANDIDATES:
+                return "candidates";
+            default:
+                return "unknown(" + type + ")";
+        }
+    }
+
+    public static byte typeOf(String name) {
+        switch (name) {
+            case "offer":
+                return TYPE_OFFER;
+            case "answer":
+                return TYPE_ANSWER;
+            case "candidates":
+                return TYPE_CANDIDATES;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.webrtcdemo.messenger.simulcast;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import org.webrtc.RtpParameters;
+import org.webrtc.RtpSender;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 视频发送端的 simulcast 分层配置，通话中通过 RtpSender 参数开关某一层
+ */
+public class SimulcastController {
+
+    private static final String TAG = "SimulcastController";
+
+    public static final class Layer {
+        public final String rid;
+        public final double scaleResolutionDownBy;
+        public final int maxBitrateBps;
+        public final int maxFramerate;
+
+        public Layer(String rid, double scaleResolutionDownBy, int maxBitrateBps, int maxFramerate) {
+            this.rid = rid;
+            this.scaleResolutionDownBy = scaleResolutionDownBy;
+            this.maxBitrateBps = maxBitrateBps;
+            this.maxFramerate = maxFramerate;
+        }
+    }
+
+    /** 全分辨率 / 1/2 / 1/4 三层，从高到低 */
+    public static final List<Layer> DEFAULT_LAYERS = Arrays.asList(
+            new Layer("f", 1.0, 1_500_000, 30),
+            new Layer("h", 2.0, 500_000, 30),
+            new Layer("q", 4.0, 150_000, 15));
+
+    private final List<Layer> layers;
+    private RtpSender sender;
+
+    public SimulcastController(List<Layer> layers) {
+        this.layers = new ArrayList<>(layers);
+    }
+
+    /**
+     * addTransceiver 用的编码列表，初始全部激活
+     */
+    public List<RtpParameters.Encoding> buildEncodings() {
+        List<RtpParameters.Encoding> encodings = new ArrayList<>();
+        for (Layer layer : layers) {
+            RtpParameters.Encoding encoding = new RtpParameters.Encoding(layer.rid, true, layer.scaleResolutionDownBy);
+            encoding.maxBitrateBps = layer.maxBitrateBps;
+            encoding.maxFramerate = layer.maxFramerate;
+            encodings.add(encoding);
+        }
+        return encodings;
+    }
+
+    /**
+     * @return rid 不是这里配置的层时返回 null
+     */
+    public Layer getLayer(String rid) {
+        for (Layer layer : layers) {
+            if (layer.rid.equals(rid)) {
+                return layer;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void attach(RtpSender sender) {
+        this.sender = sender;
+    }
+
+    public synchronized void detach() {
+        this.sender = null;
+    }
+
+    /**
+     * 只激活给定 rid 的层，其余关闭。至少要保留一层，否则忽略
+     *
+     * @return 参数是否成功下发
+     */
+    public synchronized boolean setActiveLayers(Collection<String> rids) {
+        if (sender == null) {
+            return false;
+        }
+        Set<String> active = new HashSet<>(rids);
+        RtpParameters parameters = sender.getParameters();
+        boolean any = false;
+        for (RtpParameters.Encoding encoding : parameters.encodings) {
+            any |= active.contains(encoding.rid);
+        }
+        if (!any) {
+            Log.w(TAG, "refuse to deactivate all layers: " + rids);
+            return false;
+        }
+        if (!applyActive(parameters.encodings, active)) {
+            return true;
+        }
+        boolean ok = sender.setParameters(parameters);
+        Log.d(TAG, "active layers " + active + " applied=" + ok);
+        return ok;
+    }
+
+    /**
+     * 观看端最大只需要 maxViewerHeight 高时，关掉比需要的最小够用层更高的层
+     *
+     * @param sourceHeight 当前采集输出高度，用来换算每层的实际高度
+     */
+    public synchronized boolean limitToHeight(int maxViewerHeight, int sourceHeight) {
+        return setActiveLayers(layersForHeight(maxViewerHeight, sourceHeight));
+    }
+
+    /**
+     * 观看端需要 maxViewerHeight 高时应当保留的层
+     */
+    List<String> layersForHeight(int maxViewerHeight, int sourceHeight) {
+        List<String> rids = new ArrayList<>();
+        // layers 从高到低：先找最小的够用层，它和比它小的层都保留
+        int keepFrom = 0;
+        for (int i = 0; i < layers.size(); i++) {
+            if (sourceHeight / layers.get(i).scaleResolutionDownBy >= maxViewerHeight) {
+                keepFrom = i;
+            }
+        }
+        for (int i = keepFrom; i < layers.size(); i++) {
+            rids.add(layers.get(i).rid);
+        }
+        return rids;
+    }
+
+    /**
+     * 只打开 active 里的层
+     *
+     * @return 是否有层的开关发生变化
+     */
+    static boolean applyActive(List<RtpParameters.Encoding> encodings, Set<String> active) {
+        boolean changed = false;
+        for (RtpParameters.Encoding encoding : encodings) {
+            boolean on = active.contains(encoding.rid);
+            if (encoding.active != on) {
+                encoding.active = on;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 当前实际在编的层数，未绑定 sender 时返回 0
+     */
+    public synchronized int activeLayerCount() {
+        if (sender == null) {
+            return 0;
+        }
+        int active = 0;
+        for (RtpParameters.Encoding encoding : sender.getParameters().encodings) {
+            if (encoding.active) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * 当前各层状态，key 为 rid，value 为包含 active / scale / max_bitrate_bps / max_framerate 的 Bundle
+     */
+    public synchronized Bundle snapshot() {
+        Bundle bundle = new Bundle();
+        if (sender == null) {
+            return bundle;
+        }
+        for (RtpParameters.Encoding encoding : sender.getParameters().encodings) {
+            Bundle layer = new Bundle();
+            layer.putBoolean("active", encoding.active);
+            if (encoding.scaleResolutionDownBy != null) {
+                layer.putDouble("scale", encoding.scaleResolutionDownBy);
+            }
+            if (encoding.maxBitrateBps != null) {
+                layer.putInt("max_bitrate_bps", encoding.maxBitrateBps);
+            }
+            if (encoding.maxFramerate != null) {
+                layer.putInt("max_framerate", encoding.maxFramerate);
+            }
+            bundle.putBundle(encoding.rid, layer);
+        }
+        return bundle;
+    }
+}
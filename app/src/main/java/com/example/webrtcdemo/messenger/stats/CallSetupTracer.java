@@ -0,0 +1,155 @@
+package com.example.webrtcdemo.messenger.stats;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 通话建立各阶段打点，打点是一次 CAS，可以在任意线程调用；每次通话结束归档，查询时算分位数
+ */
+public class CallSetupTracer {
+
+    public enum Phase {
+        START_CALL,
+        FACTORY_READY,
+        CAPTURER_STARTED,
+        FIRST_FRAME_CAPTURED,
+        OFFER_CREATED,
+        LOCAL_DESCRIPTION_SET,
+        REMOTE_DESCRIPTION_SET,
+        ICE_CHECKING,
+        ICE_CONNECTED,
+        FIRST_FRAME_DECODED,
+        FIRST_FRAME_RENDERED
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final int HISTORY_SIZE = 64;
+
+    private final AtomicLongArray current = new AtomicLongArray(PHASES.length);
+
+    // 历史数据只在 synchronized 中访问，单位微秒，-1 表示该次通话没有到达这个阶段
+    private final long[][] history = new long[PHASES.length][HISTORY_SIZE];
+    private int historyCount;
+    private int historyNext;
+
+    /**
+     * 开始一次新的通话，上一次未提交的数据先归档
+     */
+    public void beginCall() {
+        beginCall(SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * @param elapsedRealtimeNanos 通话开始时间
+     */
+    public synchronized void beginCall(long elapsedRealtimeNanos) {
+        commitLocked();
+        current.set(Phase.START_CALL.ordinal(), elapsedRealtimeNanos);
+    }
+
+    public void mark(Phase phase) {
+        mark(phase, SystemClock.elapsedRealtimeNanos());
+    }
+
+    /**
+     * @param elapsedRealtimeNanos 事件发生时间，跨进程上报时由对端传入
+     */
+    public void mark(Phase phase, long elapsedRealtimeNanos) {
+        if (current.get(Phase.START_CALL.ordinal()) == 0) {
+            return;
+        }
+        if (current.compareAndSet(phase.ordinal(), 0, elapsedRealtimeNanos)
+                && phase == Phase.FIRST_FRAME_RENDERED) {
+            // 首帧上屏是最后一个阶段，到达后立即归档
+            synchronized (this) {
+                commitLocked();
+            }
+        }
+    }
+
+    private void commitLocked() {
+        long start = current.get(Phase.START_CALL.ordinal());
+        if (start == 0) {
+            return;
+        }
+        for (int i = 0; i < PHASES.length; i++) {
+            long t = current.getAndSet(i, 0);
+            history[i][historyNext] = t == 0 ? -1 : (t - start) / 1000;
+        }
+        historyNext = (historyNext + 1) % HISTORY_SIZE;
+        historyCount = Math.min(historyCount + 1, HISTORY_SIZE);
+    }
+
+    /**
+     * 每个阶段一个子 Bundle：last_ms 为当前/最近一次通话的耗时，p50/p90/p99 为历史分位数
+     */
+    public synchronized Bundle snapshot() {
+        Bundle result = new Bundle();
+        for (Phase phase : PHASES) {
+            PhaseStats stats = stats(phase);
+            Bundle b = new Bundle();
+            b.putDouble("last_ms", stats.lastMs);
+            b.putInt("count", stats.count);
+            b.putDouble("p50_ms", stats.p50Ms);
+            b.putDouble("p90_ms", stats.p90Ms);
+            b.putDouble("p99_ms", stats.p99Ms);
+            result.putBundle(phase.name(), b);
+        }
+        return result;
+    }
+
+    public synchronized PhaseStats stats(Phase phase) {
+        long start = current.get(Phase.START_CALL.ordinal());
+        int lastIndex = (historyNext - 1 + HISTORY_SIZE) % HISTORY_SIZE;
+        long t = current.get(phase.ordinal());
+        double lastMs;
+        if (start != 0) {
+            lastMs = t == 0 ? -1 : (t - start) / 1_000_000.0;
+        } else {
+            lastMs = historyCount == 0 || history[phase.ordinal()][lastIndex] < 0
+                    ? -1 : history[phase.ordinal()][lastIndex] / 1000.0;
+        }
+
+        long[] samples = new long[historyCount];
+        int n = 0;
+        for (int i = 0; i < historyCount; i++) {
+            long v = history[phase.ordinal()][i];
+            if (v >= 0) {
+                samples[n++] = v;
+            }
+        }
+        Arrays.sort(samples, 0, n);
+        return new PhaseStats(lastMs, n, percentile(samples, n, 50), percentile(samples, n, 90),
+                percentile(samples, n, 99));
+    }
+
+    private static double percentile(long[] sorted, int n, int p) {
+        if (n == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(p / 100.0 * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, index))] / 1000.0;
+    }
+
+    /**
+     * 一个阶段的耗时统计，单位毫秒，-1 表示没有数据
+     */
+    public static final class PhaseStats {
+        public final double lastMs;
+        public final int count;
+        public final double p50Ms;
+        public final double p90Ms;
+        public final double p99Ms;
+
+        PhaseStats(double lastMs, int count, double p50Ms, double p90Ms, double p99Ms) {
+            this.lastMs = lastMs;
+            this.count = count;
+            this.p50Ms = p50Ms;
+            this.p90Ms = p90Ms;
+            this.p99Ms = p99Ms;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.webrtcdemo.messenger.stats;
+
+/**
+ * 帧统计的纯计数部分，不依赖 Android / WebRTC，方便单独压测。
+ * record() 只更新基本类型字段，不分配对象；不是线程安全的，同一个实例只能在一个线程上 record
+ */
+public final class FrameStatsRecorder {
+
+    /** 帧间隔直方图的桶上界（毫秒），最后一个桶收集所有更大的间隔 */
+    public static final int[] INTERVAL_BUCKET_BOUNDS_MS = {10, 20, 30, 40, 50, 70, 100, 150, 250};
+    public static final int BUCKET_COUNT = INTERVAL_BUCKET_BOUNDS_MS.length + 1;
+
+    private static final long[] BUCKET_BOUNDS_NS = new long[INTERVAL_BUCKET_BOUNDS_MS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS_NS.length; i++) {
+            BUCKET_BOUNDS_NS[i] = INTERVAL_BUCKET_BOUNDS_MS[i] * 1_000_000L;
+        }
+    }
+
+    private final long publishIntervalNs;
+
+    // 累计值
+    private long totalFrames;
+    private long resolutionChanges;
+    private long rotationChanges;
+    private int width;
+    private int height;
+    private int rotation = -1;
+    private long lastFrameNs;
+
+    // 当前统计窗口
+    private long windowStartNs;
+    private int windowFrames;
+    private long windowIntervalSumNs;
+    private long windowMaxIntervalNs;
+    private final int[] windowHistogram = new int[BUCKET_COUNT];
+
+    public FrameStatsRecorder(long publishIntervalMs) {
+        this.publishIntervalNs = publishIntervalMs * 1_000_000L;
+    }
+
+    /**
+     * @return true 表示本窗口已到期，调用方应当立即调用 {@link #publish} 取快照
+     */
+    public boolean record(long nowNs, int frameWidth, int frameHeight, int frameRotation) {
+        if (totalFrames == 0) {
+            windowStartNs = nowNs;
+        } else {
+            long interval = nowNs - lastFrameNs;
+            windowIntervalSumNs += interval;
+            if (interval > windowMaxIntervalNs) {
+                windowMaxIntervalNs = interval;
+            }
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_NS.length && interval >= BUCKET_BOUNDS_NS[bucket]) {
+                bucket++;
+            }
+            windowHistogram[bucket]++;
+        }
+        lastFrameNs = nowNs;
+        totalFrames++;
+        windowFrames++;
+
+        if (frameWidth != width || frameHeight != height) {
+            if (width != 0) {
+                resolutionChanges++;
+            }
+            width = frameWidth;
+            height = frameHeight;
+        }
+        if (frameRotation != rotation) {
+            if (rotation != -1) {
+                rotationChanges++;
+            }
+            rotation = frameRotation;
+        }
+        return nowNs - windowStartNs >= publishIntervalNs;
+    }
+
+    /**
+     * 生成当前窗口的快照并开始新窗口，每个统计周期调用一次
+     */
+    public FrameStatsSnapshot publish(String label, long nowNs) {
+        long windowNs = Math.max(1, nowNs - windowStartNs);
+        int intervals = 0;
+        for (int count : windowHistogram) {
+            intervals += count;
+        }
+        FrameStatsSnapshot snapshot = new FrameStatsSnapshot(
+                label,
+                totalFrames,
+                windowFrames,
+                windowFrames * 1e9 / windowNs,
+                intervals == 0 ? 0 : windowIntervalSumNs / 1e6 / intervals,
+                windowMaxIntervalNs / 1e6,
+                windowHistogram.clone(),
+                width,
+                height,
+                rotation,
+                resolutionChanges,
+                rotationChanges);
+
+        windowStartNs = nowNs;
+        windowFrames = 0;
+        windowIntervalSumNs = 0;
+        windowMaxIntervalNs = 0;
+        for (int i = 0; i < windowHistogram.length; i++) {
+            windowHistogram[i] = 0;
+        }
+        return snapshot;
+    }
+
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.webrtcdemo.messenger.stats;
+
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+/**
+ * 可挂到本地或远端 VideoTrack 上的帧统计 sink，替代逐帧打印日志。
+ * 逐帧只更新计数，每个统计周期在帧回调线程上生成一次快照并回调 Listener
+ */
+public class FrameStatsSink implements VideoSink {
+
+    public interface Listener {
+        void onFrameStats(FrameStatsSnapshot snapshot);
+    }
+
+    private final String label;
+    private final FrameStatsRecorder recorder;
+    private final Listener listener;
+    private volatile FrameStatsSnapshot latest;
+
+    public FrameStatsSink(String label, long publishIntervalMs, Listener listener) {
+        this.label = label;
+        this.recorder = new FrameStatsRecorder(publishIntervalMs);
+        this.listener = listener;
+    }
+
+    @Override
+    public void onFrame(VideoFrame frame) {
+        long now = System.nanoTime();
+        if (recorder.record(now, frame.getRotatedWidth(), frame.getRotatedHeight(), frame.getRotation())) {
+            FrameStatsSnapshot snapshot = recorder.publish(label, now);
+            latest = snapshot;
+            if (listener != null) {
+                listener.onFrameStats(snapshot);
+            }
+        }
+    }
+
+    /**
+     * 最近一个统计周期的快照，尚未满一个周期时为 null
+     */
+    public FrameStatsSnapshot getLatest() {
+        return latest;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.webrtcdemo.messenger.stats;
+
+import java.util.Arrays;
+
+/**
+ * 一个统计周期内的帧统计快照，不可变
+ */
+public final class FrameStatsSnapshot {
+
+    public final String label;
+    public final long totalFrames;
+    public final int windowFrames;
+    public final double fps;
+    public final double avgIntervalMs;
+    public final double maxIntervalMs;
+    /** 帧间隔分布，桶边界见 {@link FrameStatsRecorder#INTERVAL_BUCKET_BOUNDS_MS} */
+    public final int[] intervalHistogram;
+    public final int width;
+    public final int height;
+    public final int rotation;
+    public final long resolutionChanges;
+    public final long rotationChanges;
+
+    FrameStatsSnapshot(String label, long totalFrames, int windowFrames, double fps,
+                       double avgIntervalMs, double maxIntervalMs, int[] intervalHistogram,
+                       int width, int height, int rotation,
+                       long resolutionChanges, long rotationChanges) {
+        this.label = label;
+        this.totalFrames = totalFrames;
+        this.windowFrames = windowFrames;
+        this.fps = fps;
+        this.avgIntervalMs = avgIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+        this.intervalHistogram = intervalHistogram;
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.resolutionChanges = resolutionChanges;
+        this.rotationChanges = rotationChanges;
+    }
+
+    @Override
+    public String toString() {
+        return label + ": " + width + "x" + height + "@" + rotation
+                + String.format(" fps=%.1f avg=%.1fms max=%.1fms", fps, avgIntervalMs, maxIntervalMs)
+                + " frames=" + totalFrames
+                + " resChanges=" + resolutionChanges
+                + " rotChanges=" + rotationChanges
+                + " hist=" + Arrays.toString(intervalHistogram);
+    }
+}
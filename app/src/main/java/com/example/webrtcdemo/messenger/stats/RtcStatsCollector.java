@@ -0,0 +1,303 @@
+package com.example.webrtcdemo.messenger.stats;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定时调用 PeerConnection.getStats，提取码率、丢包、抖动、RTT、编解码帧数、qpSum、
+ * 接收音频的电平 / 抖动缓冲延迟 / 隐藏和加速比例以及编解码器实现名，写入 {@link StatsRingBuffer}。统计解析在共享的 stats 线程上进行，不占用 WebRTC 信令线程
+ */
+public class RtcStatsCollector {
+
+    /**
+     * 每次采样写入历史后在 stats 线程上回调，row 在回调返回后会被复用
+     */
+    public interface SampleListener {
+        void onSample(double[] row);
+    }
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            r -> new Thread(r, "RtcStats"));
+
+    private final String label;
+    private final PeerConnection peerConnection;
+    private final long intervalMs;
+    private final StatsRingBuffer history;
+
+    // 以下字段只在 stats 线程上访问
+    private final double[] row = new double[StatsRingBuffer.COLUMN_COUNT];
+    private double lastBytesSent = Double.NaN;
+    private double lastBytesReceived = Double.NaN;
+    private double lastFramesEncoded = Double.NaN;
+    private double lastTotalEncodeTime = Double.NaN;
+    private double lastJitterBufferDelay = Double.NaN;
+    private double lastJitterBufferEmitted = Double.NaN;
+    private double lastSamplesReceived = Double.NaN;
+    private double lastConcealedSamples = Double.NaN;
+    private double lastRemovedSamples = Double.NaN;
+    private long lastSampleMs;
+
+    private volatile String encoderImplementation;
+    private volatile String decoderImplementation;
+    private volatile SampleListener sampleListener;
+    private ScheduledFuture<?> task;
+
+    public RtcStatsCollector(String label, PeerConnection peerConnection, long intervalMs, int historySize) {
+        this.label = label;
+        this.peerConnection = peerConnection;
+        this.intervalMs = intervalMs;
+        this.history = new StatsRingBuffer(historySize);
+    }
+
+    public synchronized void start() {
+        if (task == null) {
+            task = scheduler.scheduleWithFixedDelay(this::poll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 停止轮询，需要在 PeerConnection dispose 之前调用
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    public void setSampleListener(SampleListener listener) {
+        this.sampleListener = listener;
+    }
+
+    public StatsRingBuffer getHistory() {
+        return history;
+    }
+
+    public String getEncoderImplementation() {
+        return encoderImplementation;
+    }
+
+    public String getDecoderImplementation() {
+        return decoderImplementation;
+    }
+
+    private void poll() {
+        synchronized (this) {
+            if (task == null) {
+                return;
+            }
+            peerConnection.getStats(report -> scheduler.execute(() -> onReport(report)));
+        }
+    }
+
+    private void onReport(RTCStatsReport report) {
+        double bytesSent = Double.NaN;
+        double bytesReceived = Double.NaN;
+        double packetsLost = Double.NaN;
+        double jitterMs = Double.NaN;
+        double rttMs = Double.NaN;
+        double availableSendBps = Double.NaN;
+        double framesEncoded = Double.NaN;
+        double framesDecoded = Double.NaN;
+        double framesDropped = Double.NaN;
+        double qpSum = Double.NaN;
+        double totalEncodeTime = Double.NaN;
+        double limitation = Double.NaN;
+        // 音频接收指标在 M84 里出现在 track 统计，新版本移到了 inbound-rtp，哪个有用哪个
+        double audioLevel = Double.NaN;
+        double jitterBufferDelay = Double.NaN;
+        double jitterBufferEmitted = Double.NaN;
+        double samplesReceived = Double.NaN;
+        double concealedSamples = Double.NaN;
+        double removedSamples = Double.NaN;
+
+        for (RTCStats stats : report.getStatsMap().values()) {
+            Map<String, Object> m = stats.getMembers();
+            switch (stats.getType()) {
+                case "outbound-rtp":
+                    bytesSent = sum(bytesSent, number(m, "bytesSent"));
+                    if ("video".equals(m.get("kind"))) {
+                        framesEncoded = sum(framesEncoded, number(m, "framesEncoded"));
+                        qpSum = sum(qpSum, number(m, "qpSum"));
+                        totalEncodeTime = sum(totalEncodeTime, number(m, "totalEncodeTime"));
+                        double code = limitationCode(m.get("qualityLimitationReason"));
+                        if (!Double.isNaN(code)) {
+                            limitation = Double.isNaN(limitation) ? code : Math.max(limitation, code);
+                        }
+                        Object impl = m.get("encoderImplementation");
+                        if (impl != null) {
+                            encoderImplementation = impl.toString();
+                        }
+                    }
+                    break;
+                case "inbound-rtp":
+                    bytesReceived = sum(bytesReceived, number(m, "bytesReceived"));
+                    packetsLost = sum(packetsLost, number(m, "packetsLost"));
+                    double jitter = number(m, "jitter");
+                    if (!Double.isNaN(jitter)) {
+                        jitterMs = Double.isNaN(jitterMs) ? jitter * 1000 : Math.max(jitterMs, jitter * 1000);
+                    }
+                    if ("video".equals(m.get("kind"))) {
+                        framesDecoded = sum(framesDecoded, number(m, "framesDecoded"));
+                        framesDropped = sum(framesDropped, number(m, "framesDropped"));
+                        Object impl = m.get("decoderImplementation");
+                        if (impl != null) {
+                            decoderImplementation = impl.toString();
+                        }
+                    }
+                    break;
+                case "track":
+                    // 旧版本的 framesDropped 只出现在 track 统计里
+                    if (Double.isNaN(framesDropped) && Boolean.TRUE.equals(m.get("remoteSource"))) {
+                        framesDropped = number(m, "framesDropped");
+                    }
+                    break;
+                case "candidate-pair":
+                    if (Boolean.TRUE.equals(m.get("nominated")) && "succeeded".equals(m.get("state"))) {
+                        double rtt = number(m, "currentRoundTripTime");
+                        if (!Double.isNaN(rtt)) {
+                            rttMs = rtt * 1000;
+                        }
+                        availableSendBps = number(m, "availableOutgoingBitrate");
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if ("audio".equals(m.get("kind")) && ("inbound-rtp".equals(stats.getType())
+                    || ("track".equals(stats.getType()) && Boolean.TRUE.equals(m.get("remoteSource"))))) {
+                audioLevel = first(audioLevel, number(m, "audioLevel"));
+                jitterBufferDelay = first(jitterBufferDelay, number(m, "jitterBufferDelay"));
+                jitterBufferEmitted = first(jitterBufferEmitted, number(m, "jitterBufferEmittedCount"));
+                samplesReceived = first(samplesReceived, number(m, "totalSamplesReceived"));
+                concealedSamples = first(concealedSamples, number(m, "concealedSamples"));
+                removedSamples = first(removedSamples, number(m, "removedSamplesForAcceleration"));
+            }
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        double seconds = lastSampleMs == 0 ? Double.NaN : (now - lastSampleMs) / 1000.0;
+        Arrays.fill(row, Double.NaN);
+        row[StatsRingBuffer.COL_TIMESTAMP_MS] = now;
+        row[StatsRingBuffer.COL_SEND_KBPS] = kbps(bytesSent, lastBytesSent, seconds);
+        row[StatsRingBuffer.COL_RECV_KBPS] = kbps(bytesReceived, lastBytesReceived, seconds);
+        row[StatsRingBuffer.COL_PACKETS_LOST] = packetsLost;
+        row[StatsRingBuffer.COL_JITTER_MS] = jitterMs;
+        row[StatsRingBuffer.COL_RTT_MS] = rttMs;
+        row[StatsRingBuffer.COL_AVAILABLE_SEND_KBPS] = availableSendBps / 1000;
+        row[StatsRingBuffer.COL_FRAMES_ENCODED] = framesEncoded;
+        row[StatsRingBuffer.COL_FRAMES_DECODED] = framesDecoded;
+        row[StatsRingBuffer.COL_FRAMES_DROPPED] = framesDropped;
+        row[StatsRingBuffer.COL_QP_SUM] = qpSum;
+        double encodedDelta = framesEncoded - lastFramesEncoded;
+        row[StatsRingBuffer.COL_SEND_FPS] = seconds > 0 && encodedDelta >= 0 ? encodedDelta / seconds : Double.NaN;
+        row[StatsRingBuffer.COL_ENCODE_MS_PER_FRAME] = encodedDelta > 0
+                ? (totalEncodeTime - lastTotalEncodeTime) * 1000 / encodedDelta : Double.NaN;
+        row[StatsRingBuffer.COL_QUALITY_LIMITATION] = limitation;
+        row[StatsRingBuffer.COL_AUDIO_LEVEL] = audioLevel;
+        double emittedDelta = jitterBufferEmitted - lastJitterBufferEmitted;
+        row[StatsRingBuffer.COL_JITTER_BUFFER_MS] = emittedDelta > 0
+                ? (jitterBufferDelay - lastJitterBufferDelay) * 1000 / emittedDelta : Double.NaN;
+        double samplesDelta = samplesReceived - lastSamplesReceived;
+        row[StatsRingBuffer.COL_CONCEALED_PERCENT] = samplesDelta > 0
+                ? (concealedSamples - lastConcealedSamples) * 100 / samplesDelta : Double.NaN;
+        row[StatsRingBuffer.COL_ACCELERATED_PERCENT] = samplesDelta > 0
+                ? (removedSamples - lastRemovedSamples) * 100 / samplesDelta : Double.NaN;
+        history.append(row);
+
+        lastSampleMs = now;
+        lastBytesSent = bytesSent;
+        lastBytesReceived = bytesReceived;
+        lastFramesEncoded = framesEncoded;
+        lastTotalEncodeTime = totalEncodeTime;
+        lastJitterBufferDelay = jitterBufferDelay;
+        lastJitterBufferEmitted = jitterBufferEmitted;
+        lastSamplesReceived = samplesReceived;
+        lastConcealedSamples = concealedSamples;
+        lastRemovedSamples = removedSamples;
+
+        SampleListener listener = sampleListener;
+        if (listener != null) {
+            listener.onSample(row);
+        }
+    }
+
+    /**
+     * 导出最近 maxSamples 条历史：每一列一个 double[]（从旧到新），另附编解码器实现名
+     */
+    public Bundle exportHistory(int maxSamples) {
+        int n = Math.max(0, Math.min(maxSamples, history.capacity()));
+        double[][] out = new double[StatsRingBuffer.COLUMN_COUNT][n];
+        int copied = n == 0 ? 0 : history.copyLatest(n, out);
+        Bundle bundle = new Bundle();
+        bundle.putString("label", label);
+        bundle.putInt("count", copied);
+        for (int c = 0; c < StatsRingBuffer.COLUMN_COUNT; c++) {
+            bundle.putDoubleArray(StatsRingBuffer.COLUMN_NAMES[c],
+                    copied == n ? out[c] : Arrays.copyOf(out[c], copied));
+        }
+        bundle.putString("encoder_implementation", encoderImplementation);
+        bundle.putString("decoder_implementation", decoderImplementation);
+        return bundle;
+    }
+
+    private static double kbps(double bytes, double lastBytes, double seconds) {
+        if (Double.isNaN(bytes) || Double.isNaN(lastBytes) || !(seconds > 0)) {
+            return Double.NaN;
+        }
+        return Math.max(0, bytes - lastBytes) * 8 / 1000 / seconds;
+    }
+
+    private static double limitationCode(Object reason) {
+        // 多个编码流取最大值，所以按严重程度编码：cpu 最优先
+        if (reason == null) {
+            return Double.NaN;
+        }
+        switch (reason.toString()) {
+            case "none":
+                return 0;
+            case "bandwidth":
+                return 2;
+            case "cpu":
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
+    private static double sum(double acc, double value) {
+        if (Double.isNaN(value)) {
+            return acc;
+        }
+        return Double.isNaN(acc) ? value : acc + value;
+    }
+
+    private static double first(double current, double value) {
+        return Double.isNaN(current) ? value : current;
+    }
+
+    private static double number(Map<String, Object> members, String key) {
+        Object v = members.get(key);
+        // uint64 字段在 Java 层是 BigInteger，同样是 Number
+        return v instanceof Number ? ((Number) v).doubleValue() : Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return label + " send=" + history.latest(StatsRingBuffer.COL_SEND_KBPS) + "kbps"
+                + " recv=" + history.latest(StatsRingBuffer.COL_RECV_KBPS) + "kbps"
+                + " rtt=" + history.latest(StatsRingBuffer.COL_RTT_MS) + "ms"
+                + " enc=" + encoderImplementation + " dec=" + decoderImplementation;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.webrtcdemo.messenger.stats;
+
+/**
+ * 定长的 RTC 指标历史，按列存储在 double 数组里，写满后覆盖最旧的数据。
+ * 写入和读取都不分配对象（读取由调用方提供输出数组），读写通过对象锁串行，开销只是一次数组拷贝
+ */
+public final class StatsRingBuffer {
+
+    public static final int COL_TIMESTAMP_MS = 0;
+    public static final int COL_SEND_KBPS = 1;
+    public static final int COL_RECV_KBPS = 2;
+    public static final int COL_PACKETS_LOST = 3;
+    public static final int COL_JITTER_MS = 4;
+    public static final int COL_RTT_MS = 5;
+    public static final int COL_FRAMES_ENCODED = 6;
+    public static final int COL_FRAMES_DECODED = 7;
+    public static final int COL_FRAMES_DROPPED = 8;
+    public static final int COL_QP_SUM = 9;
+    public static final int COL_SEND_FPS = 10;
+    public static final int COL_ENCODE_MS_PER_FRAME = 11;
+    /** 编码器的 qualityLimitationReason：0 none / 1 other / 2 bandwidth / 3 cpu */
+    public static final int COL_QUALITY_LIMITATION = 12;
+    /** 接收音频电平 0~1 */
+    public static final int COL_AUDIO_LEVEL = 13;
+    /** 两次采样之间 NetEq 抖动缓冲的平均延迟 */
+    public static final int COL_JITTER_BUFFER_MS = 14;
+    /** 播放欠载：丢包隐藏补出来的样本占比 */
+    public static final int COL_CONCEALED_PERCENT = 15;
+    /** 缓冲过多：NetEq 加速丢掉的样本占比 */
+    public static final int COL_ACCELERATED_PERCENT = 16;
+    /** 拥塞控制估计的可用发送带宽（选中 candidate pair 的 availableOutgoingBitrate），编码码率的实际目标 */
+    public static final int COL_AVAILABLE_SEND_KBPS = 17;
+    public static final int COLUMN_COUNT = 18;
+
+    public static final String[] COLUMN_NAMES = {
+            "timestamp_ms",
+            "send_kbps",
+            "recv_kbps",
+            "packets_lost",
+            "jitter_ms",
+            "rtt_ms",
+            "frames_encoded",
+            "frames_decoded",
+            "frames_dropped",
+            "qp_sum",
+            "send_fps",
+            "encode_ms_per_frame",
+            "quality_limitation",
+            "audio_level",
+            "jitter_buffer_ms",
+            "concealed_percent",
+            "accelerated_percent",
+            "available_send_kbps",
+    };
+
+    private final double[][] columns;
+    private final int capacity;
+    private int next;
+    private int size;
+
+    public StatsRingBuffer(int capacity) {
+        this.capacity = capacity;
+        this.columns = new double[COLUMN_COUNT][capacity];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param row 长度为 {@link #COLUMN_COUNT}，缺失的指标用 NaN
+     */
+    public synchronized void append(double[] row) {
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            columns[c][next] = row[c];
+        }
+        next = (next + 1) % capacity;
+        if (size < capacity) {
+            size++;
+        }
+    }
+
+    /**
+     * 把最近 maxSamples 条记录按时间从旧到新拷贝到 out[column][0..n)
+     *
+     * @return 实际拷贝的条数
+     */
+    public synchronized int copyLatest(int maxSamples, double[][] out) {
+        int n = Math.min(Math.min(maxSamples, size), out[0].length);
+        int start = (next - n + capacity) % capacity;
+        int firstPart = Math.min(n, capacity - start);
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            System.arraycopy(columns[c], start, out[c], 0, firstPart);
+            System.arraycopy(columns[c], 0, out[c], firstPart, n - firstPart);
+        }
+        return n;
+    }
+
+    /**
+     * 最近一条记录的某一列，没有数据时返回 NaN
+     */
+    public synchronized double latest(int column) {
+        return size == 0 ? Double.NaN : columns[column][(next - 1 + capacity) % capacity];
+    }
+}
@@ -6,9 +6,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.IBinder;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.LinearLayout;
 import android.widget.Toast;
@@ -20,57 +22,190 @@ import androidx.core.content.ContextCompat;
 
 import com.example.webrtcdemo.binder.IWebRtcCallback;
 import com.example.webrtcdemo.binder.IWebRtcService;
-import com.example.webrtcdemo.messenger.utils.EglUtils;
+import com.example.webrtcdemo.messenger.datachannel.ChunkedDataChannel;
+import com.example.webrtcdemo.messenger.ipc.DataMessageAssembler;
+import com.example.webrtcdemo.messenger.ipc.SharedFrameReader;
+import com.example.webrtcdemo.messenger.service.CallbackDispatcher;
+import com.example.webrtcdemo.messenger.utils.EglContextManager;
 import com.example.webrtcdemo.messenger.utils.WebRtcHolder;
 
+import org.webrtc.EglBase;
+import org.webrtc.RendererCommon;
 import org.webrtc.SurfaceViewRenderer;
-import org.webrtc.VideoTrack;
+
+import java.io.IOException;
 
 
 public class CallerActivity extends AppCompatActivity {
 
     private static final String TAG = "CallerActivity";
     private static final int PERMISSION_REQUEST_CAMERA = 1001;
+    /** 跨进程帧通道的最大分辨率，超出的帧由服务端缩放 */
+    private static final int FRAME_CHANNEL_MAX_WIDTH = 1280;
+    private static final int FRAME_CHANNEL_MAX_HEIGHT = 720;
 
-    private IWebRtcService webRtcService;
+    private volatile IWebRtcService webRtcService;
     private SurfaceViewRenderer localRenderer;
     private SurfaceViewRenderer remoteRenderer;
+    // 当前挂载的 track，格式为 {sessionId, trackId}，只在主线程访问
+    private String[] localAttached;
+    private String[] remoteAttached;
+    // 服务在其他进程时改走共享内存帧通道，只在主线程访问
+    private SharedFrameReader localReader;
+    private SharedFrameReader remoteReader;
+
+    private final DataMessageAssembler dataAssembler = new DataMessageAssembler(ChunkedDataChannel.MAX_MESSAGE_BYTES,
+            (peer, label, data) -> Log.d(TAG, "data message from " + peer + "/" + label + ", " + data.length + " bytes"));
 
     private final IWebRtcCallback callback = new IWebRtcCallback.Stub() {
         @Override
-        public void onLocalVideoTrackCreated(String trackId) throws RemoteException {
-            Log.d(TAG, "onLocalVideoTrack received: " + trackId);
-            runOnUiThread(() -> showLocalTrack(trackId));
+        public void onLocalVideoTrackCreated(String sessionId, String trackId) throws RemoteException {
+            Log.d(TAG, "onLocalVideoTrack received: " + sessionId + "/" + trackId);
+            runOnUiThread(() -> showLocalTrack(sessionId, trackId));
+        }
+
+        @Override
+        public void onRemoteVideoTrackCreated(String sessionId, String trackId) throws RemoteException {
+            Log.d(TAG, "onRemoteVideoTrackCreated: " + sessionId + "/" + trackId);
+            runOnUiThread(() -> showRemoteTrack(sessionId, trackId));
+        }
+
+        @Override
+        public void onStateEvents(Bundle[] events) throws RemoteException {
+            for (Bundle event : events) {
+                String type = event.getString(CallbackDispatcher.KEY_TYPE);
+                if (CallbackDispatcher.TYPE_PROGRESS.equals(type)) {
+                    Log.d(TAG, "call " + event.getString(CallbackDispatcher.KEY_PEER) + " "
+                            + event.getString(CallbackDispatcher.KEY_VALUE));
+                } else {
+                    Log.d(TAG, "state " + type + "[" + event.getString(CallbackDispatcher.KEY_PEER) + "] = "
+                            + event.getString(CallbackDispatcher.KEY_VALUE));
+                }
+            }
+        }
+
+        @Override
+        public void onCallFailed(String sessionId, String stage, String reason) throws RemoteException {
+            Log.e(TAG, "call " + sessionId + " failed at " + stage + ": " + reason);
+        }
+
+        @Override
+        public void onDataMessage(String peer, String label, int messageId, int offset, int totalLength,
+                                  byte[] chunk) throws RemoteException {
+            if (!dataAssembler.onFragment(peer, label, messageId, offset, totalLength, chunk)) {
+                Log.w(TAG, "dropped data fragment " + messageId + "@" + offset + " from " + peer + "/" + label);
+            }
         }
 
         @Override
-        public void onRemoteVideoTrackCreated(String trackId) throws RemoteException {
-            Log.d(TAG, "onRemoteVideoTrackCreated: " + trackId);
-            runOnUiThread(() -> showRemoteTrack(trackId));
+        public void onFileReceived(String peer, String label, String path, long length) throws RemoteException {
+            Log.d(TAG, "file received from " + peer + "/" + label + ": " + path + ", " + length + " bytes");
         }
 
     };
 
-    private void showLocalTrack(String trackId) {
+    private void showLocalTrack(String sessionId, String trackId) {
         Log.d(TAG, "Trying to show local track: " + trackId);
-        VideoTrack track = WebRtcHolder.getVideoTrack(trackId);
-        if (track != null) {
-            track.addSink(localRenderer);
+        if (isDestroyed()) {
+            return;
+        }
+        if (useFrameChannel()) {
+            closeReader(localReader);
+            localReader = openReader(sessionId, trackId, localRenderer);
+            return;
+        }
+        detach(localAttached, localRenderer);
+        localAttached = null;
+        if (WebRtcHolder.attachSink(sessionId, trackId, localRenderer)) {
+            localAttached = new String[]{sessionId, trackId};
             Log.d(TAG, "Local track added as sink");
         } else {
             Log.e(TAG, "VideoTrack not found in holder.");
         }
     }
 
-    private void showRemoteTrack(String trackId) {
-        VideoTrack track = WebRtcHolder.getVideoTrack(trackId);
-        if (track != null) {
-            track.addSink(remoteRenderer);
+    private void showRemoteTrack(String sessionId, String trackId) {
+        if (isDestroyed()) {
+            return;
+        }
+        if (useFrameChannel()) {
+            closeReader(remoteReader);
+            remoteReader = openReader(sessionId, trackId, remoteRenderer);
+            return;
+        }
+        detach(remoteAttached, remoteRenderer);
+        remoteAttached = null;
+        if (WebRtcHolder.attachSink(sessionId, trackId, remoteRenderer)) {
+            remoteAttached = new String[]{sessionId, trackId};
         } else {
             Log.e(TAG, "Remote VideoTrack not found in holder.");
         }
     }
 
+    /**
+     * 服务和界面不在同一个进程时 WebRtcHolder 里拿不到 track，只能走共享内存帧通道（需要 API 27）
+     */
+    private boolean useFrameChannel() {
+        IWebRtcService service = webRtcService;
+        return service != null && !(service instanceof IWebRtcService.Stub)
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1;
+    }
+
+    private SharedFrameReader openReader(String sessionId, String trackId, SurfaceViewRenderer renderer) {
+        IWebRtcService service = webRtcService;
+        if (service == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1) {
+            return null;
+        }
+        try {
+            Bundle channel = service.openFrameChannel(sessionId, trackId,
+                    FRAME_CHANNEL_MAX_WIDTH, FRAME_CHANNEL_MAX_HEIGHT);
+            if (channel == null || channel.isEmpty()) {
+                Log.e(TAG, "frame channel unavailable for " + sessionId + "/" + trackId);
+                return null;
+            }
+            SharedFrameReader reader = new SharedFrameReader(channel, renderer);
+            reader.start();
+            return reader;
+        } catch (RemoteException | IOException e) {
+            Log.e(TAG, "open frame channel failed", e);
+            return null;
+        }
+    }
+
+    private void closeReader(SharedFrameReader reader) {
+        if (reader == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1) {
+            return;
+        }
+        reader.close();
+        IWebRtcService service = webRtcService;
+        if (service != null) {
+            try {
+                service.closeFrameChannel(reader.getChannelId());
+            } catch (RemoteException e) {
+                Log.w(TAG, "closeFrameChannel failed", e);
+            }
+        }
+    }
+
+    private static void detach(String[] attached, SurfaceViewRenderer renderer) {
+        if (attached != null) {
+            WebRtcHolder.detachSink(attached[0], attached[1], renderer);
+        }
+    }
+
+    private void reportFirstFrameRendered() {
+        long now = SystemClock.elapsedRealtimeNanos();
+        IWebRtcService service = webRtcService;
+        if (service == null) {
+            return;
+        }
+        try {
+            service.reportFirstFrameRendered(now);
+        } catch (RemoteException e) {
+            Log.e(TAG, "reportFirstFrameRendered failed", e);
+        }
+    }
+
     private final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
@@ -100,8 +235,18 @@ public class CallerActivity extends AppCompatActivity {
         remoteRenderer = new SurfaceViewRenderer(this);
         localRenderer.setMirror(true);
         remoteRenderer.setMirror(true);
-        localRenderer.init(EglUtils.getRootEglBase().getEglBaseContext(), null);
-        remoteRenderer.init(EglUtils.getRootEglBase().getEglBaseContext(), null);
+        EglBase.Context eglContext = EglContextManager.acquire(TAG);
+        localRenderer.init(eglContext, null);
+        remoteRenderer.init(eglContext, new RendererCommon.RendererEvents() {
+            @Override
+            public void onFirstFrameRendered() {
+                reportFirstFrameRendered();
+            }
+
+            @Override
+            public void onFrameResolutionChanged(int videoWidth, int videoHeight, int rotation) {
+            }
+        });
 
         rootLayout.addView(localRenderer, new LinearLayout.LayoutParams(
                 LinearLayout.LayoutParams.MATCH_PARENT, 0, 1
@@ -112,8 +257,11 @@ public class CallerActivity extends AppCompatActivity {
 
         setContentView(rootLayout);
 
-        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, PERMISSION_REQUEST_CAMERA);
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED
+                || ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
+            // 录音权限可选，没有时服务只发视频
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.CAMERA, Manifest.permission.RECORD_AUDIO}, PERMISSION_REQUEST_CAMERA);
         } else {
             bindWebRtcService();
         }
@@ -143,6 +291,15 @@ public class CallerActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        // 先摘 sink 释放引用，再解绑服务：服务销毁时会释放 factory，track 必须在这之前回收
+        detach(localAttached, localRenderer);
+        detach(remoteAttached, remoteRenderer);
+        localAttached = null;
+        remoteAttached = null;
+        closeReader(localReader);
+        closeReader(remoteReader);
+        localReader = null;
+        remoteReader = null;
         if (webRtcService != null) {
             try {
                 webRtcService.unregisterCallback(callback);
@@ -153,5 +310,6 @@ public class CallerActivity extends AppCompatActivity {
         unbindService(serviceConnection);
         localRenderer.release();
         remoteRenderer.release();
+        EglContextManager.release(TAG);
     }
 }
\ No newline at end of file
@@ -0,0 +1,291 @@
+package com.example.webrtcdemo.messenger.utils;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RtcCertificatePem;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内共享、落盘的 DTLS 证书缓存，避免每条 PeerConnection 在建立时现生成证书；快到期时后台轮换
+ */
+public final class DtlsCertificateManager {
+
+    private static final String TAG = "DtlsCertificate";
+
+    static final long LIFETIME_SECONDS = 30L * 24 * 60 * 60;
+    static final long ROTATE_BEFORE_MS = 7L * 24 * 60 * 60 * 1000;
+    static final long MIN_REMAINING_MS = 24L * 60 * 60 * 1000;
+    private static final String FILE_NAME = "dtls_certificate.pem";
+    private static final String CERTIFICATE_BEGIN = "-----BEGIN CERTIFICATE-----";
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "DtlsCertificate"));
+
+    static final class Entry {
+        final RtcCertificatePem pem;
+        /** 证书的 notAfter，墙上时钟 */
+        final long expiresAtMs;
+
+        Entry(RtcCertificatePem pem, long expiresAtMs) {
+            this.pem = pem;
+            this.expiresAtMs = expiresAtMs;
+        }
+
+        long remainingMs() {
+            return expiresAtMs - System.currentTimeMillis();
+        }
+    }
+
+    private static Context appContext;
+    private static boolean refreshing;
+    private static volatile Entry current;
+    private static volatile boolean enabled = true;
+
+    /**
+     * 一组耗时的次数 / 总和 / 最大值，毫秒
+     */
+    private static final class Timing {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalMs = new AtomicLong();
+        final AtomicLong maxMs = new AtomicLong();
+
+        void add(long ms) {
+            count.incrementAndGet();
+            totalMs.addAndGet(ms);
+            maxMs.accumulateAndGet(ms, Math::max);
+        }
+
+        Bundle toBundle() {
+            Bundle bundle = new Bundle();
+            long n = count.get();
+            bundle.putLong("count", n);
+            bundle.putDouble("avg_ms", n == 0 ? -1 : (double) totalMs.get() / n);
+            bundle.putLong("max_ms", n == 0 ? -1 : maxMs.get());
+            return bundle;
+        }
+    }
+
+    // 统计，耗时单位毫秒，-1 表示还没有发生；get() 在多个连接的线程上调用，计数用原子类型
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicInteger generateCount = new AtomicInteger();
+    private static final Timing createCached = new Timing();
+    private static final Timing createGenerated = new Timing();
+    private static volatile long lastLoadMs = -1;
+    private static volatile long lastGenerateMs = -1;
+
+    private DtlsCertificateManager() {
+    }
+
+    /**
+     * 在后台加载或生成证书，可以重复调用
+     */
+    public static synchronized void warmUp(Context context) {
+        if (appContext == null) {
+            appContext = context.getApplicationContext();
+        }
+        refreshLocked();
+    }
+
+    /**
+     * 关闭后 {@link #get()} 一律返回 null，每条连接由 WebRTC 自己生成证书，用来对比通话建立耗时
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 不阻塞：有可用证书时返回它，快到期时顺便在后台轮换；没有时返回 null 并在后台准备，这一次由 WebRTC 自己生成
+     */
+    public static RtcCertificatePem get() {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = current;
+        if (entry != null && entry.remainingMs() > MIN_REMAINING_MS) {
+            hits.incrementAndGet();
+            if (entry.remainingMs() < ROTATE_BEFORE_MS) {
+                refresh();
+            }
+            return entry.pem;
+        }
+        misses.incrementAndGet();
+        refresh();
+        return null;
+    }
+
+    /**
+     * 记录一次 createOffer / createAnswer 的耗时。只记新建的连接：预建连接的证书在预建期间就生成好了，混进来会拉低未命中的耗时
+     *
+     * @param cached 这条连接的 RTCConfiguration 是否带了缓存证书
+     */
+    public static void recordDescriptionCreated(boolean cached, long elapsedMs) {
+        (cached ? createCached : createGenerated).add(elapsedMs);
+    }
+
+    /**
+     * cache_enabled / hits / misses / generate_count / load_ms / generate_ms / expires_in_hours（没有证书时为 -1），
+     * create_sdp_cached / create_sdp_generated 为两种情况下 createOffer / createAnswer 的 count / avg_ms / max_ms
+     */
+    public static Bundle stats() {
+        Bundle bundle = new Bundle();
+        bundle.putBoolean("cache_enabled", enabled);
+        bundle.putLong("hits", hits.get());
+        bundle.putLong("misses", misses.get());
+        bundle.putInt("generate_count", generateCount.get());
+        bundle.putLong("load_ms", lastLoadMs);
+        bundle.putLong("generate_ms", lastGenerateMs);
+        Entry entry = current;
+        bundle.putLong("expires_in_hours", entry != null ? entry.remainingMs() / (60 * 60 * 1000) : -1);
+        bundle.putBundle("create_sdp_cached", createCached.toBundle());
+        bundle.putBundle("create_sdp_generated", createGenerated.toBundle());
+        return bundle;
+    }
+
+    private static synchronized void refresh() {
+        refreshLocked();
+    }
+
+    private static void refreshLocked() {
+        if (refreshing || appContext == null) {
+            return;
+        }
+        refreshing = true;
+        executor.execute(() -> {
+            try {
+                loadOrGenerate();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "prepare certificate failed", e);
+            } finally {
+                synchronized (DtlsCertificateManager.class) {
+                    refreshing = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * 只在 executor 上调用
+     */
+    private static void loadOrGenerate() throws InterruptedException {
+        File file = new File(appContext.getNoBackupFilesDir(), FILE_NAME);
+        // 早先的版本放在 getFilesDir()，会被备份，不再读它
+        File legacy = new File(appContext.getFilesDir(), FILE_NAME);
+        if (legacy.exists() && !legacy.delete()) {
+            Log.w(TAG, "delete " + legacy + " failed");
+        }
+        Entry entry = current;
+        if (entry == null) {
+            long start = SystemClock.elapsedRealtime();
+            entry = load(file);
+            lastLoadMs = SystemClock.elapsedRealtime() - start;
+            if (entry != null && entry.remainingMs() > MIN_REMAINING_MS) {
+                current = entry;
+                Log.d(TAG, "loaded certificate in " + lastLoadMs + "ms, expires in "
+                        + entry.remainingMs() / (60 * 60 * 1000) + "h");
+            }
+        }
+        if (entry != null && entry.remainingMs() > ROTATE_BEFORE_MS) {
+            return;
+        }
+
+        PeerConnectionFactoryManager.awaitInitialized(appContext);
+        long start = SystemClock.elapsedRealtime();
+        RtcCertificatePem pem = RtcCertificatePem.generateCertificate(PeerConnection.KeyType.ECDSA, LIFETIME_SECONDS);
+        lastGenerateMs = SystemClock.elapsedRealtime() - start;
+        generateCount.incrementAndGet();
+        Entry generated = parse(pem);
+        if (generated == null) {
+            return;
+        }
+        store(file, pem);
+        current = generated;
+        Log.d(TAG, "generated certificate in " + lastGenerateMs + "ms");
+    }
+
+    static Entry load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        String content;
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            content = new String(bytes, 0, read, StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            Log.w(TAG, "read " + file + " failed", e);
+            return null;
+        }
+        // 文件里先是私钥再是证书
+        int split = content.indexOf(CERTIFICATE_BEGIN);
+        if (split <= 0) {
+            Log.w(TAG, "malformed " + file);
+            return null;
+        }
+        return parse(new RtcCertificatePem(content.substring(0, split), content.substring(split)));
+    }
+
+    /**
+     * @return 证书解析不了时返回 null
+     */
+    static Entry parse(RtcCertificatePem pem) {
+        try {
+            X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                    .generateCertificate(new ByteArrayInputStream(pem.certificate.getBytes(StandardCharsets.US_ASCII)));
+            return new Entry(pem, certificate.getNotAfter().getTime());
+        } catch (CertificateException | ClassCastException e) {
+            Log.w(TAG, "parse certificate failed", e);
+            return null;
+        }
+    }
+
+    static void store(File file, RtcCertificatePem pem) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(pem.privateKey.getBytes(StandardCharsets.US_ASCII));
+            if (!pem.privateKey.endsWith("\n")) {
+                out.write('\n');
+            }
+            out.write(pem.certificate.getBytes(StandardCharsets.US_ASCII));
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.w(TAG, "write " + tmp + " failed", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.w(TAG, "rename " + tmp + " failed");
+            tmp.delete();
+        }
+    }
+}
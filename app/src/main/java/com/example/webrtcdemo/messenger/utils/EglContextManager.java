@@ -0,0 +1,99 @@
+package com.example.webrtcdemo.messenger.utils;
+
+import android.util.Log;
+
+import org.webrtc.EglBase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 进程内共享的根 EGL 上下文，按 owner 引用计数，最后一个 release 时释放
+ */
+public final class EglContextManager {
+
+    private static final String TAG = "EglContextManager";
+
+    /** 创建根上下文，单元测试里替换掉，不碰 EGL */
+    static volatile Supplier<EglBase> eglCreator = EglBase::create;
+
+    private static EglBase rootEglBase;
+    private static final Map<String, Integer> owners = new LinkedHashMap<>();
+    private static int refCount;
+    private static int createCount;
+
+    private EglContextManager() {
+    }
+
+    /**
+     * 获取根上下文并增加引用计数，还没有时创建
+     *
+     * @param owner 用于日志和排查泄漏，同一个 owner 可以多次 acquire
+     */
+    public static synchronized EglBase.Context acquire(String owner) {
+        if (rootEglBase == null) {
+            rootEglBase = eglCreator.get();
+            createCount++;
+            Log.d(TAG, "root context created, count=" + createCount);
+        }
+        refCount++;
+        Integer count = owners.get(owner);
+        owners.put(owner, count == null ? 1 : count + 1);
+        Log.d(TAG, "acquire by " + owner + ": refCount=" + refCount);
+        return rootEglBase.getEglBaseContext();
+    }
+
+    /**
+     * 减少 owner 的引用计数，全部归零时释放根上下文
+     */
+    public static synchronized void release(String owner) {
+        Integer count = owners.get(owner);
+        if (count == null) {
+            Log.w(TAG, "release by " + owner + " without acquire");
+            return;
+        }
+        if (count == 1) {
+            owners.remove(owner);
+        } else {
+            owners.put(owner, count - 1);
+        }
+        refCount--;
+        Log.d(TAG, "release by " + owner + ": refCount=" + refCount);
+        if (refCount == 0) {
+            rootEglBase.release();
+            rootEglBase = null;
+            Log.d(TAG, "root context released");
+        }
+    }
+
+    /**
+     * 基于根上下文建一个共享上下文，调用方负责在自己 release 之前释放它
+     *
+     * @throws IllegalStateException 没有 acquire 时
+     */
+    public static synchronized EglBase createShared(int[] configAttributes) {
+        if (rootEglBase == null) {
+            throw new IllegalStateException("acquire the root EGL context first");
+        }
+        return EglBase.create(rootEglBase.getEglBaseContext(), configAttributes);
+    }
+
+    public static synchronized int getRefCount() {
+        return refCount;
+    }
+
+    /**
+     * 进程启动以来创建根上下文的次数
+     */
+    public static synchronized int getCreateCount() {
+        return createCount;
+    }
+
+    /**
+     * 当前持有引用的 owner 和次数，排查泄漏用
+     */
+    public static synchronized String describeOwners() {
+        return owners.toString();
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.webrtcdemo.messenger.utils;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.webrtcdemo.messenger.audio.AudioConfig;
+import com.example.webrtcdemo.messenger.audio.AudioDeviceMetrics;
+import com.example.webrtcdemo.messenger.audio.AudioDeviceSetup;
+import com.example.webrtcdemo.messenger.videocodec.PreferredVideoDecoderFactory;
+import com.example.webrtcdemo.messenger.videocodec.PreferredVideoEncoderFactory;
+import com.example.webrtcdemo.messenger.videocodec.VideoCodecCapabilities;
+
+import org.webrtc.DefaultVideoDecoderFactory;
+import org.webrtc.DefaultVideoEncoderFactory;
+import org.webrtc.EglBase;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 进程内共享的 PeerConnectionFactory，在单独线程上创建，可以提前预热，按引用计数 dispose
+ */
+public final class PeerConnectionFactoryManager {
+
+    private static final String TAG = "PcFactoryManager";
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "PcFactoryInit"));
+
+    private static Context appContext;
+    private static boolean initialized;
+    private static Future<PeerConnectionFactory> factoryFuture;
+    private static int refCount;
+    private static volatile AudioConfig audioConfig = AudioConfig.DEFAULT;
+    /** 当前工厂实际使用的音频配置 */
+    private static volatile AudioConfig activeAudioConfig;
+    private static final AudioDeviceMetrics audioMetrics = new AudioDeviceMetrics();
+    private static volatile VideoCodecCapabilities videoCodecCapabilities;
+    /** 在工厂线程上创建工厂，单元测试里替换掉，不加载 native 库 */
+    static volatile Callable<PeerConnectionFactory> factoryCreator = PeerConnectionFactoryManager::createFactory;
+
+    // 耗时统计，单位毫秒，-1 表示还没有发生
+    private static volatile long initializeMs = -1;
+    private static volatile long createFactoryMs = -1;
+    private static volatile long lastAcquireWaitMs = -1;
+    private static volatile int createCount;
+    private static volatile int warmHits;
+
+    private PeerConnectionFactoryManager() {
+    }
+
+    /**
+     * 在后台线程提前初始化并创建工厂，不增加引用计数，可以重复调用
+     */
+    public static synchronized void warmUp(Context context) {
+        ensureCreating(context);
+    }
+
+    /**
+     * 设置之后创建的工厂使用的音频配置。工厂已被使用时只能等它下次重建才生效
+     */
+    public static synchronized void setAudioConfig(Context context, AudioConfig config) {
+        if (config.equals(audioConfig)) {
+            return;
+        }
+        audioConfig = config;
+        if (factoryFuture != null) {
+            if (refCount == 0) {
+                Log.d(TAG, "audio config changed to " + config + ", recreating warmed factory");
+                disposeAsync(factoryFuture);
+                factoryFuture = null;
+                ensureCreating(context);
+            } else {
+                Log.w(TAG, "audio config " + config + " applies after the factory is recreated");
+            }
+        }
+    }
+
+    /**
+     * 当前工厂的音频配置，工厂还没建好时返回将要使用的配置
+     */
+    public static AudioConfig getActiveAudioConfig() {
+        AudioConfig active = activeAudioConfig;
+        return active != null ? active : audioConfig;
+    }
+
+    public static AudioDeviceMetrics getAudioMetrics() {
+        return audioMetrics;
+    }
+
+    /**
+     * 工厂使用的视频编解码器能力，工厂还没建过时返回 null
+     */
+    public static VideoCodecCapabilities getVideoCodecCapabilities() {
+        return videoCodecCapabilities;
+    }
+
+    /**
+     * 获取共享工厂并增加引用计数，工厂还没建好时会阻塞等待创建完成
+     */
+    public static PeerConnectionFactory acquire(Context context) {
+        Future<PeerConnectionFactory> future;
+        boolean warm;
+        synchronized (PeerConnectionFactoryManager.class) {
+            warm = factoryFuture != null;
+            future = ensureCreating(context);
+            refCount++;
+        }
+        long start = SystemClock.elapsedRealtime();
+        try {
+            PeerConnectionFactory factory = future.get();
+            lastAcquireWaitMs = SystemClock.elapsedRealtime() - start;
+            if (warm) {
+                warmHits++;
+            }
+            Log.d(TAG, "acquire: refCount=" + refCount + " warm=" + warm + " wait=" + lastAcquireWaitMs + "ms");
+            return factory;
+        } catch (ExecutionException e) {
+            synchronized (PeerConnectionFactoryManager.class) {
+                // 失败的 future 不留着，下一次 acquire 重新创建，而不是一直拿到同一个失败
+                if (factoryFuture == future) {
+                    factoryFuture = null;
+                }
+            }
+            release();
+            throw new IllegalStateException("create PeerConnectionFactory failed", e.getCause());
+        } catch (InterruptedException e) {
+            release();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for PeerConnectionFactory", e);
+        }
+    }
+
+    /**
+     * 减少引用计数，归零时在工厂线程上 dispose。调用前需要先关闭由该工厂创建的 PeerConnection
+     */
+    public static synchronized void release() {
+        if (refCount <= 0) {
+            Log.w(TAG, "release without acquire");
+            return;
+        }
+        refCount--;
+        if (refCount == 0 && factoryFuture != null) {
+            disposeAsync(factoryFuture);
+            factoryFuture = null;
+        }
+    }
+
+    private static void disposeAsync(Future<PeerConnectionFactory> future) {
+        // 与创建任务在同一线程串行执行，之后再 acquire 会重新排队创建，不会拿到已 dispose 的实例
+        executor.execute(() -> {
+            try {
+                future.get().dispose();
+                EglContextManager.release(TAG);
+                Log.d(TAG, "factory disposed");
+            } catch (Exception e) {
+                Log.e(TAG, "dispose factory failed", e);
+            }
+        });
+    }
+
+    /**
+     * 等 PeerConnectionFactory.initialize 完成（native 库已加载），不创建工厂也不增加引用计数；
+     * 在工厂线程上排队，不能在工厂线程上调用
+     */
+    public static void awaitInitialized(Context context) throws InterruptedException {
+        Future<?> future;
+        synchronized (PeerConnectionFactoryManager.class) {
+            if (appContext == null) {
+                appContext = context.getApplicationContext();
+            }
+            future = executor.submit(PeerConnectionFactoryManager::initializeOnce);
+        }
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("PeerConnectionFactory.initialize failed", e.getCause());
+        }
+    }
+
+    public static Timings getTimings() {
+        return new Timings(initializeMs, createFactoryMs, lastAcquireWaitMs, createCount, warmHits);
+    }
+
+    private static Future<PeerConnectionFactory> ensureCreating(Context context) {
+        if (appContext == null) {
+            appContext = context.getApplicationContext();
+        }
+        if (factoryFuture == null) {
+            factoryFuture = executor.submit(factoryCreator);
+        }
+        return factoryFuture;
+    }
+
+    /**
+     * 只在工厂线程上调用
+     */
+    private static void initializeOnce() {
+        if (initialized) {
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        PeerConnectionFactory.initialize(
+                PeerConnectionFactory.InitializationOptions.builder(appContext)
+                        .createInitializationOptions());
+        initialized = true;
+        initializeMs = SystemClock.elapsedRealtime() - start;
+    }
+
+    private static PeerConnectionFactory createFactory() {
+        initializeOnce();
+        long start = SystemClock.elapsedRealtime();
+        // 硬件编解码器以根上下文为共享上下文，工厂 dispose 之后才放掉
+        EglBase.Context eglContext = EglContextManager.acquire(TAG);
+        try {
+            return buildFactory(eglContext, start);
+        } catch (RuntimeException e) {
+            EglContextManager.release(TAG);
+            throw e;
+        }
+    }
+
+    private static PeerConnectionFactory buildFactory(EglBase.Context eglContext, long start) {
+        VideoCodecCapabilities capabilities = VideoCodecCapabilities.loadOrProbe(appContext, eglContext);
+        videoCodecCapabilities = capabilities;
+        AudioConfig config = audioConfig;
+        JavaAudioDeviceModule audioDeviceModule =
+                AudioDeviceSetup.createAudioDeviceModule(appContext, config, audioMetrics);
+        PeerConnectionFactory factory = PeerConnectionFactory.builder()
+                .setAudioDeviceModule(audioDeviceModule)
+                .setVideoEncoderFactory(new PreferredVideoEncoderFactory(
+                        new DefaultVideoEncoderFactory(eglContext, true, true), capabilities))
+                .setVideoDecoderFactory(new PreferredVideoDecoderFactory(
+                        new DefaultVideoDecoderFactory(eglContext), capabilities))
+                .createPeerConnectionFactory();
+        // 工厂持有自己的引用
+        audioDeviceModule.release();
+        activeAudioConfig = config;
+        createFactoryMs = SystemClock.elapsedRealtime() - start;
+        createCount++;
+        Log.d(TAG, "factory created: initialize=" + initializeMs + "ms create=" + createFactoryMs + "ms");
+        return factory;
+    }
+
+    public static final class Timings {
+        /** PeerConnectionFactory.initialize 耗时 */
+        public final long initializeMs;
+        /** 最近一次构建工厂（含编解码器工厂）耗时 */
+        public final long createFactoryMs;
+        /** 最近一次 acquire 的等待时间，预热命中时应接近 0 */
+        public final long lastAcquireWaitMs;
+        public final int createCount;
+        public final int warmHits;
+
+        Timings(long initializeMs, long createFactoryMs, long lastAcquireWaitMs, int createCount, int warmHits) {
+            this.initializeMs = initializeMs;
+            this.createFactoryMs = createFactoryMs;
+            this.lastAcquireWaitMs = lastAcquireWaitMs;
+            this.createCount = createCount;
+            this.warmHits = warmHits;
+        }
+
+        @Override
+        public String toString() {
+            return "initialize=" + initializeMs + "ms create=" + createFactoryMs + "ms lastWait="
+                    + lastAcquireWaitMs + "ms creates=" + createCount + " warmHits=" + warmHits;
+        }
+    }
+}
@@ -1,22 +1,297 @@
 package com.example.webrtcdemo.messenger.utils;
 
+import android.util.Log;
+
+import org.webrtc.AudioSource;
+import org.webrtc.AudioTrack;
+import org.webrtc.MediaSource;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoSink;
 import org.webrtc.VideoTrack;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @Author ContentMy
  * @Date 2025/7/8 14:58
- * @Description
+ * @Description 进程内的 track 注册表，按 (sessionId, trackId) 索引，本地 track 按引用计数释放
  */
 public class WebRtcHolder {
-    private static final ConcurrentHashMap<String, VideoTrack> videoTrackMap = new ConcurrentHashMap<>();
 
-    public static void putVideoTrack(String key, VideoTrack track) {
-        videoTrackMap.put(key, track);
+    private static final String TAG = "WebRtcHolder";
+
+    private static final class Entry {
+        final String sessionId;
+        final String trackId;
+        final MediaStreamTrack track;
+        final MediaSource source;
+        final SurfaceTextureHelper textureHelper;
+        final VideoCapturer capturer;
+        /** false 表示 track 由 PeerConnection 持有，只能摘 sink 不能 dispose */
+        final boolean ownsTrack;
+        final Map<VideoSink, Integer> sinks = new HashMap<>();
+        int refCount = 1;
+        boolean producerReleased;
+        /** 以下在 entry 自己的锁里访问 */
+        boolean captureStopped;
+        boolean disposed;
+
+        Entry(String sessionId, String trackId, MediaStreamTrack track, MediaSource source,
+              SurfaceTextureHelper textureHelper, VideoCapturer capturer, boolean ownsTrack) {
+            this.sessionId = sessionId;
+            this.trackId = trackId;
+            this.track = track;
+            this.source = source;
+            this.textureHelper = textureHelper;
+            this.capturer = capturer;
+            this.ownsTrack = ownsTrack;
+        }
+    }
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+
+    private static String key(String sessionId, String trackId) {
+        return sessionId + "/" + trackId;
+    }
+
+    /**
+     * 注册本地采集的视频 track，注册表负责在引用归零时释放 capturer / source / SurfaceTextureHelper
+     */
+    public static void putLocalVideoTrack(String sessionId, String trackId, VideoTrack track,
+                                          MediaSource source, SurfaceTextureHelper helper, VideoCapturer capturer) {
+        put(new Entry(sessionId, trackId, track, source, helper, capturer, true));
+    }
+
+    /**
+     * 注册 PeerConnection 收到的远端视频 track
+     */
+    public static void putRemoteVideoTrack(String sessionId, String trackId, VideoTrack track) {
+        put(new Entry(sessionId, trackId, track, null, null, null, false));
+    }
+
+    public static void putLocalAudioTrack(String sessionId, String trackId, AudioTrack track, AudioSource source) {
+        put(new Entry(sessionId, trackId, track, source, null, null, true));
+    }
+
+    public static void putRemoteAudioTrack(String sessionId, String trackId, AudioTrack track) {
+        put(new Entry(sessionId, trackId, track, null, null, null, false));
+    }
+
+    private static void put(Entry entry) {
+        List<Entry> dead = new ArrayList<>();
+        synchronized (WebRtcHolder.class) {
+            Entry old = entries.put(key(entry.sessionId, entry.trackId), entry);
+            if (old != null) {
+                Log.w(TAG, "replacing track " + key(old.sessionId, old.trackId));
+                releaseProducer(old, dead);
+            }
+        }
+        disposeAll(dead);
+    }
+
+    public static synchronized VideoTrack getVideoTrack(String sessionId, String trackId) {
+        Entry entry = entries.get(key(sessionId, trackId));
+        return entry != null && entry.track instanceof VideoTrack ? (VideoTrack) entry.track : null;
+    }
+
+    public static synchronized AudioTrack getAudioTrack(String sessionId, String trackId) {
+        Entry entry = entries.get(key(sessionId, trackId));
+        return entry != null && entry.track instanceof AudioTrack ? (AudioTrack) entry.track : null;
+    }
+
+    /**
+     * 给视频 track 挂 sink 并增加引用，track 不存在时返回 false
+     */
+    public static synchronized boolean attachSink(String sessionId, String trackId, VideoSink sink) {
+        Entry entry = entries.get(key(sessionId, trackId));
+        if (entry == null || !(entry.track instanceof VideoTrack)) {
+            return false;
+        }
+        Integer count = entry.sinks.get(sink);
+        if (count == null) {
+            ((VideoTrack) entry.track).addSink(sink);
+            entry.sinks.put(sink, 1);
+        } else {
+            entry.sinks.put(sink, count + 1);
+        }
+        entry.refCount++;
+        return true;
+    }
+
+    /**
+     * 摘掉 sink 并减少引用，最后一个引用释放时回收 track 及其资源。对已释放的 track 调用是安全的
+     */
+    public static void detachSink(String sessionId, String trackId, VideoSink sink) {
+        List<Entry> dead = new ArrayList<>();
+        synchronized (WebRtcHolder.class) {
+            Entry entry = entries.get(key(sessionId, trackId));
+            if (entry == null) {
+                return;
+            }
+            Integer count = entry.sinks.get(sink);
+            if (count == null) {
+                return;
+            }
+            if (count == 1) {
+                entry.sinks.remove(sink);
+                ((VideoTrack) entry.track).removeSink(sink);
+            } else {
+                entry.sinks.put(sink, count - 1);
+            }
+            unref(entry, dead);
+        }
+        disposeAll(dead);
+    }
+
+    /**
+     * 生产者放弃某个 track，消费者都摘掉后才真正释放
+     */
+    public static void release(String sessionId, String trackId) {
+        List<Entry> dead = new ArrayList<>();
+        synchronized (WebRtcHolder.class) {
+            Entry entry = entries.get(key(sessionId, trackId));
+            if (entry != null) {
+                releaseProducer(entry, dead);
+            }
+        }
+        disposeAll(dead);
+    }
+
+    /**
+     * 结束整个会话：生产者持有的引用全部释放。远端 track 即将随 PeerConnection 一起销毁，
+     * 所以即使还有消费者也会立即摘掉全部 sink；本地 track 还有消费者时先停采集（释放相机），track 等最后一个 sink 摘掉再释放
+     */
+    public static void releaseSession(String sessionId) {
+        List<Entry> dead = new ArrayList<>();
+        List<Entry> stillAttached = new ArrayList<>();
+        synchronized (WebRtcHolder.class) {
+            List<Entry> session = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                if (entry.sessionId.equals(sessionId)) {
+                    session.add(entry);
+                }
+            }
+            for (Entry entry : session) {
+                releaseProducer(entry, dead);
+                if (entry.capturer != null && !dead.contains(entry)) {
+                    stillAttached.add(entry);
+                }
+            }
+        }
+        for (Entry entry : stillAttached) {
+            Log.d(TAG, "stop capture of " + key(entry.sessionId, entry.trackId) + ", sinks still attached");
+            stopCapture(entry);
+        }
+        disposeAll(dead);
+    }
+
+    public static synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 在类锁里调用，需要释放的 entry 已从表里移除并加入 dead，由调用方在锁外 {@link #disposeAll}
+     */
+    private static void releaseProducer(Entry entry, List<Entry> dead) {
+        if (entry.producerReleased) {
+            return;
+        }
+        entry.producerReleased = true;
+        if (!entry.ownsTrack) {
+            // 不能等消费者：track 的生命周期由 PeerConnection 决定
+            detachAllSinks(entry);
+            remove(entry, dead);
+            return;
+        }
+        unref(entry, dead);
+    }
+
+    private static void unref(Entry entry, List<Entry> dead) {
+        entry.refCount--;
+        if (entry.refCount <= 0) {
+            detachAllSinks(entry);
+            remove(entry, dead);
+        }
+    }
+
+    private static void remove(Entry entry, List<Entry> dead) {
+        String key = key(entry.sessionId, entry.trackId);
+        if (entries.get(key) == entry) {
+            entries.remove(key);
+        }
+        dead.add(entry);
+    }
+
+    private static void detachAllSinks(Entry entry) {
+        if (entry.track instanceof VideoTrack) {
+            Iterator<VideoSink> it = entry.sinks.keySet().iterator();
+            while (it.hasNext()) {
+                ((VideoTrack) entry.track).removeSink(it.next());
+                it.remove();
+            }
+        }
+        entry.refCount = 0;
+    }
+
+    /**
+     * 不持有类锁时调用：停采集要等相机线程，不能让其他线程的 attach / 查询跟着等
+     */
+    private static void disposeAll(List<Entry> dead) {
+        for (Entry entry : dead) {
+            dispose(entry);
+        }
+    }
+
+    private static void stopCapture(Entry entry) {
+        synchronized (entry) {
+            if (entry.captureStopped || entry.disposed) {
+                return;
+            }
+            entry.captureStopped = true;
+            try {
+                entry.capturer.stopCapture();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
-    public static VideoTrack getVideoTrack(String key) {
-        return videoTrackMap.get(key);
+    private static void dispose(Entry entry) {
+        String key = key(entry.sessionId, entry.trackId);
+        if (!entry.ownsTrack) {
+            Log.d(TAG, "unregistered remote track " + key);
+            return;
+        }
+        synchronized (entry) {
+            if (entry.disposed) {
+                return;
+            }
+            entry.disposed = true;
+            if (entry.capturer != null) {
+                if (!entry.captureStopped) {
+                    entry.captureStopped = true;
+                    try {
+                        entry.capturer.stopCapture();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                entry.capturer.dispose();
+            }
+            entry.track.dispose();
+            if (entry.source != null) {
+                entry.source.dispose();
+            }
+            if (entry.textureHelper != null) {
+                entry.textureHelper.dispose();
+            }
+        }
+        Log.d(TAG, "disposed track " + key + ", remaining=" + size());
     }
 }
@@ -0,0 +1,30 @@
+package com.example.webrtcdemo.messenger.videocodec;
+
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoDecoder;
+import org.webrtc.VideoDecoderFactory;
+
+/**
+ * 按 {@link VideoCodecCapabilities} 的顺序报告解码器，硬件实现在前；解码器的创建交给默认工厂。
+ * 只有本端支持解码、不支持编码的编解码器才会按这里的顺序追加到 SDP 里，主要作用是省掉每次的 MediaCodecList 遍历
+ */
+public class PreferredVideoDecoderFactory implements VideoDecoderFactory {
+
+    private final VideoDecoderFactory delegate;
+    private final VideoCodecInfo[] codecs;
+
+    public PreferredVideoDecoderFactory(VideoDecoderFactory delegate, VideoCodecCapabilities capabilities) {
+        this.delegate = delegate;
+        this.codecs = capabilities.getDecoders().toArray(new VideoCodecInfo[0]);
+    }
+
+    @Override
+    public VideoDecoder createDecoder(VideoCodecInfo info) {
+        return delegate.createDecoder(info);
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        return codecs.clone();
+    }
+}
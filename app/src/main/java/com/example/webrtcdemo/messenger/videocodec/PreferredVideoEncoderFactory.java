@@ -0,0 +1,29 @@
+package com.example.webrtcdemo.messenger.videocodec;
+
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoEncoderFactory;
+
+/**
+ * 按 {@link VideoCodecCapabilities} 的顺序报告编码器，硬件实现在前，优先协商到硬件编码
+ */
+public class PreferredVideoEncoderFactory implements VideoEncoderFactory {
+
+    private final VideoEncoderFactory delegate;
+    private final VideoCodecInfo[] codecs;
+
+    public PreferredVideoEncoderFactory(VideoEncoderFactory delegate, VideoCodecCapabilities capabilities) {
+        this.delegate = delegate;
+        this.codecs = capabilities.getEncoders().toArray(new VideoCodecInfo[0]);
+    }
+
+    @Override
+    public VideoEncoder createEncoder(VideoCodecInfo info) {
+        return delegate.createEncoder(info);
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        return codecs.clone();
+    }
+}
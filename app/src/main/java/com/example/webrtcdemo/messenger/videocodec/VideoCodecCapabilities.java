@@ -0,0 +1,254 @@
+package com.example.webrtcdemo.messenger.videocodec;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.DefaultVideoDecoderFactory;
+import org.webrtc.DefaultVideoEncoderFactory;
+import org.webrtc.EglBase;
+import org.webrtc.HardwareVideoDecoderFactory;
+import org.webrtc.HardwareVideoEncoderFactory;
+import org.webrtc.VideoCodecInfo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本机视频编解码器能力，探测一次后按系统指纹和应用安装时间缓存到应用私有目录
+ */
+public final class VideoCodecCapabilities {
+
+    private static final String TAG = "VideoCodecCapabilities";
+
+    private static final String FILE_NAME = "video_codecs.json";
+    private static final String CODEC_NAME = "name";
+    private static final String CODEC_PARAMS = "params";
+    private static final String CODEC_HARDWARE = "hardware";
+
+    /** 硬件实现在前 */
+    private final List<VideoCodecInfo> encoders;
+    private final List<VideoCodecInfo> decoders;
+    private final List<VideoCodecInfo> hardwareEncoders;
+    private final List<VideoCodecInfo> hardwareDecoders;
+    private final boolean fromCache;
+    private final long probeMs;
+
+    VideoCodecCapabilities(List<VideoCodecInfo> encoders, List<VideoCodecInfo> hardwareEncoders,
+                           List<VideoCodecInfo> decoders, List<VideoCodecInfo> hardwareDecoders,
+                           boolean fromCache, long probeMs) {
+        this.encoders = Collections.unmodifiableList(sorted(encoders, hardwareEncoders));
+        this.decoders = Collections.unmodifiableList(sorted(decoders, hardwareDecoders));
+        this.hardwareEncoders = hardwareEncoders;
+        this.hardwareDecoders = hardwareDecoders;
+        this.fromCache = fromCache;
+        this.probeMs = probeMs;
+    }
+
+    /**
+     * 读缓存，没有或 key 不匹配时探测并写回。要在 PeerConnectionFactory.initialize 之后调用（软件编解码器在 native 层）
+     *
+     * @param eglContext 和工厂里编解码器用的同一个
+     */
+    public static VideoCodecCapabilities loadOrProbe(Context context, EglBase.Context eglContext) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        String key = cacheKey(context);
+        long start = SystemClock.elapsedRealtime();
+        VideoCodecCapabilities cached = load(file, key, start);
+        if (cached != null) {
+            Log.d(TAG, "loaded from cache in " + cached.probeMs + "ms: " + cached);
+            return cached;
+        }
+        List<VideoCodecInfo> encoders = Arrays.asList(
+                new DefaultVideoEncoderFactory(eglContext, true, true).getSupportedCodecs());
+        List<VideoCodecInfo> hardwareEncoders = Arrays.asList(
+                new HardwareVideoEncoderFactory(eglContext, true, true).getSupportedCodecs());
+        List<VideoCodecInfo> decoders = Arrays.asList(new DefaultVideoDecoderFactory(eglContext).getSupportedCodecs());
+        List<VideoCodecInfo> hardwareDecoders = Arrays.asList(
+                new HardwareVideoDecoderFactory(eglContext).getSupportedCodecs());
+        VideoCodecCapabilities probed = new VideoCodecCapabilities(encoders, hardwareEncoders, decoders,
+                hardwareDecoders, false, SystemClock.elapsedRealtime() - start);
+        Log.d(TAG, "probed in " + probed.probeMs + "ms: " + probed);
+        probed.store(file, key);
+        return probed;
+    }
+
+    /**
+     * 硬件实现在前的编码器列表
+     */
+    public List<VideoCodecInfo> getEncoders() {
+        return encoders;
+    }
+
+    /**
+     * 硬件实现在前的解码器列表
+     */
+    public List<VideoCodecInfo> getDecoders() {
+        return decoders;
+    }
+
+    public boolean isHardwareEncoder(VideoCodecInfo codec) {
+        return hardwareEncoders.contains(codec);
+    }
+
+    public boolean isHardwareDecoder(VideoCodecInfo codec) {
+        return hardwareDecoders.contains(codec);
+    }
+
+    /**
+     * from_cache / probe_ms（命中缓存时是读文件的耗时）/ encoders / decoders（"VP8", "H264(hw)" 这样的列表，按优先顺序）
+     */
+    public Bundle stats() {
+        Bundle bundle = new Bundle();
+        bundle.putBoolean("from_cache", fromCache);
+        bundle.putLong("probe_ms", probeMs);
+        bundle.putStringArrayList("encoders", describe(encoders, hardwareEncoders));
+        bundle.putStringArrayList("decoders", describe(decoders, hardwareDecoders));
+        return bundle;
+    }
+
+    @Override
+    public String toString() {
+        return "encoders=" + describe(encoders, hardwareEncoders) + " decoders=" + describe(decoders, hardwareDecoders);
+    }
+
+    /**
+     * 硬件实现在前，同一层内保持原来的顺序
+     */
+    static List<VideoCodecInfo> sorted(List<VideoCodecInfo> codecs, List<VideoCodecInfo> hardware) {
+        List<VideoCodecInfo> result = new ArrayList<>(codecs.size());
+        for (VideoCodecInfo codec : codecs) {
+            if (hardware.contains(codec)) {
+                result.add(codec);
+            }
+        }
+        for (VideoCodecInfo codec : codecs) {
+            if (!hardware.contains(codec)) {
+                result.add(codec);
+            }
+        }
+        return result;
+    }
+
+    private static ArrayList<String> describe(List<VideoCodecInfo> codecs, List<VideoCodecInfo> hardware) {
+        ArrayList<String> names = new ArrayList<>(codecs.size());
+        for (VideoCodecInfo codec : codecs) {
+            String profile = codec.params.get(VideoCodecInfo.H264_FMTP_PROFILE_LEVEL_ID);
+            names.add(codec.name + (profile != null ? "/" + profile : "") + (hardware.contains(codec) ? "(hw)" : ""));
+        }
+        return names;
+    }
+
+    private static String cacheKey(Context context) {
+        long installedAt = 0;
+        try {
+            installedAt = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "package info unavailable", e);
+        }
+        return Build.FINGERPRINT + "|" + installedAt;
+    }
+
+    static VideoCodecCapabilities load(File file, String key, long start) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            JSONObject json = new JSONObject(new String(bytes, 0, read, StandardCharsets.UTF_8));
+            if (!key.equals(json.optString("key"))) {
+                Log.d(TAG, "device or app changed, probing again");
+                return null;
+            }
+            List<VideoCodecInfo> encoders = new ArrayList<>();
+            List<VideoCodecInfo> hardwareEncoders = new ArrayList<>();
+            readCodecs(json.getJSONArray("encoders"), encoders, hardwareEncoders);
+            List<VideoCodecInfo> decoders = new ArrayList<>();
+            List<VideoCodecInfo> hardwareDecoders = new ArrayList<>();
+            readCodecs(json.getJSONArray("decoders"), decoders, hardwareDecoders);
+            if (encoders.isEmpty() || decoders.isEmpty()) {
+                return null;
+            }
+            return new VideoCodecCapabilities(encoders, hardwareEncoders, decoders, hardwareDecoders, true,
+                    SystemClock.elapsedRealtime() - start);
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "read " + file + " failed, probing again", e);
+            return null;
+        }
+    }
+
+    private static void readCodecs(JSONArray array, List<VideoCodecInfo> codecs, List<VideoCodecInfo> hardware)
+            throws JSONException {
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            Map<String, String> params = new HashMap<>();
+            JSONObject paramsJson = item.getJSONObject(CODEC_PARAMS);
+            for (Iterator<String> it = paramsJson.keys(); it.hasNext(); ) {
+                String name = it.next();
+                params.put(name, paramsJson.getString(name));
+            }
+            VideoCodecInfo codec = new VideoCodecInfo(item.getString(CODEC_NAME), params);
+            codecs.add(codec);
+            if (item.getBoolean(CODEC_HARDWARE)) {
+                hardware.add(codec);
+            }
+        }
+    }
+
+    private static JSONArray writeCodecs(List<VideoCodecInfo> codecs, List<VideoCodecInfo> hardware)
+            throws JSONException {
+        JSONArray array = new JSONArray();
+        for (VideoCodecInfo codec : codecs) {
+            JSONObject item = new JSONObject();
+            item.put(CODEC_NAME, codec.name);
+            item.put(CODEC_PARAMS, new JSONObject(codec.params));
+            item.put(CODEC_HARDWARE, hardware.contains(codec));
+            array.put(item);
+        }
+        return array;
+    }
+
+    void store(File file, String key) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            JSONObject json = new JSONObject();
+            json.put("key", key);
+            json.put("encoders", writeCodecs(encoders, hardwareEncoders));
+            json.put("decoders", writeCodecs(decoders, hardwareDecoders));
+            out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "write " + tmp + " failed", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.w(TAG, "rename " + tmp + " failed");
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.webrtcdemo.messenger.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * AudioConfig 的配置串解析
+ */
+public class AudioConfigTest {
+
+    @Test
+    public void emptySpecIsDefault() {
+        assertSame(AudioConfig.DEFAULT, AudioConfig.fromSpec(null));
+        assertSame(AudioConfig.DEFAULT, AudioConfig.fromSpec(""));
+    }
+
+    @Test
+    public void unsetOptionsKeepDefaults() {
+        AudioConfig config = AudioConfig.fromSpec("sw_aec, rate=48000");
+        assertEquals(new AudioConfig(true, false, true, 48000), config);
+    }
+
+    @Test
+    public void laterOptionsWin() {
+        AudioConfig config = AudioConfig.fromSpec("normal_latency,sw_ns,hw_ns,low_latency,normal_latency");
+        assertEquals(new AudioConfig(false, true, true, 0), config);
+    }
+
+    @Test
+    public void toStringParsesBack() {
+        AudioConfig config = new AudioConfig(false, false, false, 16000);
+        assertEquals("normal_latency,sw_aec,sw_ns,rate=16000", config.toString());
+        assertEquals(config, AudioConfig.fromSpec(config.toString()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownOptionIsRejected() {
+        AudioConfig.fromSpec("low_latency,aec");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeRateIsRejected() {
+        AudioConfig.fromSpec("rate=-1");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void malformedRateIsRejected() {
+        AudioConfig.fromSpec("rate=48k");
+    }
+}
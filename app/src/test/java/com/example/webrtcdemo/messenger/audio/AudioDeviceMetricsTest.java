@@ -0,0 +1,58 @@
+package com.example.webrtcdemo.messenger.audio;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * AudioDeviceMetrics 的 PCM 电平计算
+ */
+public class AudioDeviceMetricsTest {
+
+    @Test
+    public void silenceIsFloor() {
+        assertEquals(-127, AudioDeviceMetrics.rmsDbfs(new byte[0]), 0);
+        assertEquals(-127, AudioDeviceMetrics.rmsDbfs(new byte[1]), 0);
+        assertEquals(-127, AudioDeviceMetrics.rmsDbfs(new byte[480]), 0);
+    }
+
+    @Test
+    public void fullScaleIsZeroDb() {
+        short[] samples = new short[480];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) -32768;
+        }
+        assertEquals(0, AudioDeviceMetrics.rmsDbfs(pcm(samples)), 1e-9);
+    }
+
+    @Test
+    public void fullScaleSineIsAboutMinusThreeDb() {
+        short[] samples = new short[480];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) Math.round(32767 * Math.sin(2 * Math.PI * i / 48));
+        }
+        assertEquals(-3.01, AudioDeviceMetrics.rmsDbfs(pcm(samples)), 0.01);
+    }
+
+    @Test
+    public void halvingAmplitudeDropsSixDb() {
+        short[] loud = new short[480];
+        short[] quiet = new short[480];
+        for (int i = 0; i < loud.length; i++) {
+            loud[i] = (short) (i % 2 == 0 ? 8000 : -8000);
+            quiet[i] = (short) (loud[i] / 2);
+        }
+        double delta = AudioDeviceMetrics.rmsDbfs(pcm(loud)) - AudioDeviceMetrics.rmsDbfs(pcm(quiet));
+        assertEquals(6.02, delta, 0.01);
+    }
+
+    /** 16bit 小端 */
+    private static byte[] pcm(short[] samples) {
+        byte[] data = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            data[2 * i] = (byte) samples[i];
+            data[2 * i + 1] = (byte) (samples[i] >> 8);
+        }
+        return data;
+    }
+}
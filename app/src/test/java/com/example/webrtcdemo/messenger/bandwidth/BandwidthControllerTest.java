@@ -0,0 +1,81 @@
+package com.example.webrtcdemo.messenger.bandwidth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtpParameters.DegradationPreference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BandwidthController 的 setBitrate 下发规则和上限合并
+ */
+public class BandwidthControllerTest {
+
+    /** 只记录 setBitrate 的参数，不加载 native 库 */
+    private static final class FakePeerConnection extends PeerConnection {
+        final List<List<Integer>> calls = new ArrayList<>();
+        boolean result = true;
+
+        FakePeerConnection() {
+            super(() -> 0L);
+        }
+
+        @Override
+        public boolean setBitrate(Integer min, Integer current, Integer max) {
+            calls.add(Arrays.asList(min, current, max));
+            return result;
+        }
+    }
+
+    private final FakePeerConnection peerConnection = new FakePeerConnection();
+
+    @Test
+    public void startBitrateOnlyOnFirstCall() {
+        BandwidthLimits limits = limits(100_000, 500_000, 2_000_000);
+        assertTrue(BandwidthController.applyBitrate(peerConnection, limits, null));
+        assertEquals(Arrays.asList(100_000, 500_000, 2_000_000), peerConnection.calls.get(0));
+
+        BandwidthLimits lowered = limits(100_000, 500_000, 1_000_000);
+        assertTrue(BandwidthController.applyBitrate(peerConnection, lowered, limits));
+        assertEquals(Arrays.asList(100_000, null, 1_000_000), peerConnection.calls.get(1));
+    }
+
+    @Test
+    public void unchangedBoundsAreSkipped() {
+        BandwidthLimits applied = limits(100_000, 500_000, 2_000_000);
+        // 只改了起始值或帧率，不需要 setBitrate
+        assertTrue(BandwidthController.applyBitrate(peerConnection, limits(100_000, 800_000, 2_000_000), applied));
+        assertTrue(peerConnection.calls.isEmpty());
+    }
+
+    @Test
+    public void zeroMeansUnset() {
+        assertTrue(BandwidthController.applyBitrate(peerConnection, BandwidthLimits.DEFAULT, null));
+        assertEquals(Arrays.asList(null, null, null), peerConnection.calls.get(0));
+    }
+
+    @Test
+    public void failureIsReported() {
+        peerConnection.result = false;
+        assertFalse(BandwidthController.applyBitrate(peerConnection, limits(0, 0, 1_000_000), null));
+    }
+
+    @Test
+    public void lowerTreatsZeroAsUnlimited() {
+        assertEquals(0, BandwidthController.lower(0, 0));
+        assertEquals(500, BandwidthController.lower(0, 500));
+        assertEquals(500, BandwidthController.lower(500, 0));
+        assertEquals(300, BandwidthController.lower(500, 300));
+        assertEquals(300, BandwidthController.lower(300, 500));
+    }
+
+    private static BandwidthLimits limits(int min, int start, int max) {
+        return new BandwidthLimits(min, start, max, 0, DegradationPreference.BALANCED);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.webrtcdemo.messenger.bandwidth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.webrtc.RtpParameters.DegradationPreference;
+
+/**
+ * BandwidthLimits 的合并规则和取值校验
+ */
+public class BandwidthLimitsTest {
+
+    private static final BandwidthLimits BASE =
+            new BandwidthLimits(100_000, 300_000, 1_000_000, 30, DegradationPreference.MAINTAIN_FRAMERATE);
+
+    @Test
+    public void missingValuesKeepCurrent() {
+        BandwidthLimits merged = BASE.merge(null, null, 2_000_000, null, null);
+        assertEquals(100_000, merged.minBitrateBps);
+        assertEquals(300_000, merged.startBitrateBps);
+        assertEquals(2_000_000, merged.maxBitrateBps);
+        assertEquals(30, merged.maxFramerate);
+        assertSame(DegradationPreference.MAINTAIN_FRAMERATE, merged.degradation);
+    }
+
+    @Test
+    public void zeroRemovesLimit() {
+        BandwidthLimits merged = BASE.merge(0, 0, 0, 0, null);
+        assertEquals("min=0 start=0 max=0 fps=0 degradation=maintain_framerate", merged.toString());
+        // 不限上限时 start 只受下限约束
+        assertEquals(5_000_000, BASE.merge(null, 5_000_000, 0, null, null).startBitrateBps);
+    }
+
+    @Test
+    public void degradationIsCaseInsensitive() {
+        assertSame(DegradationPreference.MAINTAIN_RESOLUTION, BASE.merge(null, null, null, null, "maintain_resolution").degradation);
+        assertSame(DegradationPreference.BALANCED, BASE.merge(null, null, null, null, "Balanced").degradation);
+        assertEquals("balanced", BandwidthLimits.nameOf(DegradationPreference.BALANCED));
+        assertNull(BandwidthLimits.nameOf(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDegradationIsRejected() {
+        BASE.merge(null, null, null, null, "maintain_quality");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeValueIsRejected() {
+        BASE.merge(null, null, null, -1, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void minAboveMaxIsRejected() {
+        // 和当前值合并之后再检查：max 还是 1Mbps
+        BASE.merge(1_500_000, 0, null, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void startBelowMinIsRejected() {
+        BASE.merge(null, 50_000, null, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void startAboveMaxIsRejected() {
+        BASE.merge(null, null, 200_000, null, null);
+    }
+
+    @Test
+    public void defaultHasNoLimits() {
+        assertEquals("min=0 start=0 max=0 fps=0 degradation=maintain_framerate", BandwidthLimits.DEFAULT.toString());
+    }
+}
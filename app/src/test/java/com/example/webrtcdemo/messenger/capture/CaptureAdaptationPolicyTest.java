@@ -0,0 +1,136 @@
+package com.example.webrtcdemo.messenger.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.example.webrtcdemo.messenger.capture.CaptureAdaptationPolicy.Level;
+import com.example.webrtcdemo.messenger.capture.CaptureAdaptationPolicy.Sample;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * CaptureAdaptationPolicy 的档位表、降档 / 升档的连续周期要求、冷却期和震荡惩罚
+ */
+public class CaptureAdaptationPolicyTest {
+
+    private static final int[][] HD_CAMERA = {{1280, 720, 30}, {640, 480, 30}};
+
+    @Test
+    public void ladderIsLimitedByCameraFormats() {
+        List<Level> ladder = CaptureAdaptationPolicy.buildLadder(HD_CAMERA);
+        assertEquals("[1280x720@30, 960x540@30, 640x480@30, 640x480@20, 480x360@15, 320x240@15]",
+                ladder.toString());
+    }
+
+    @Test
+    public void tinyCameraUsesItsSmallestFormat() {
+        List<Level> ladder = CaptureAdaptationPolicy.buildLadder(new int[][]{{176, 144, 15}, {200, 150, 60}});
+        assertEquals("[176x144@15]", ladder.toString());
+    }
+
+    @Test
+    public void startIndexIsHighestLevelWithinPixelRate() {
+        List<Level> ladder = CaptureAdaptationPolicy.buildLadder(HD_CAMERA);
+        assertEquals(0, CaptureAdaptationPolicy.startIndexFor(ladder, Long.MAX_VALUE));
+        assertEquals(2, CaptureAdaptationPolicy.startIndexFor(ladder, 640L * 480 * 30));
+        assertEquals(ladder.size() - 1, CaptureAdaptationPolicy.startIndexFor(ladder, 1));
+    }
+
+    @Test
+    public void sustainedOveruseStepsDownThenCoolsDown() {
+        CaptureAdaptationPolicy policy = policy(0);
+        assertNull(policy.onSample(busy()));
+        assertEquals("960x540@30", String.valueOf(policy.onSample(busy())));
+        for (int i = 0; i < CaptureAdaptationPolicy.COOLDOWN_TICKS; i++) {
+            assertNull(policy.onSample(busy()));
+        }
+        assertNull(policy.onSample(busy()));
+        assertEquals("640x480@30", String.valueOf(policy.onSample(busy())));
+    }
+
+    @Test
+    public void singleOveruseSpikeIsIgnored() {
+        CaptureAdaptationPolicy policy = policy(0);
+        for (int i = 0; i < 10; i++) {
+            assertNull(policy.onSample(busy()));
+            assertNull(policy.onSample(idle(30)));
+        }
+        assertEquals(0, indexOf(policy));
+    }
+
+    @Test
+    public void lowFpsUnderBandwidthLimitIsNotOveruse() {
+        CaptureAdaptationPolicy policy = policy(0);
+        Sample sample = idle(30);
+        sample.encodedFps = 10;
+        sample.limitation = CaptureAdaptationPolicy.LIMITATION_BANDWIDTH;
+        for (int i = 0; i < 50; i++) {
+            assertNull(policy.onSample(sample));
+        }
+        sample.limitation = CaptureAdaptationPolicy.LIMITATION_NONE;
+        assertNull(policy.onSample(sample));
+        assertEquals("960x540@30", String.valueOf(policy.onSample(sample)));
+    }
+
+    @Test
+    public void sustainedUnderuseStepsUp() {
+        CaptureAdaptationPolicy policy = policy(2);
+        assertEquals(CaptureAdaptationPolicy.INITIAL_UP_HOLD_TICKS, ticksUntilChange(policy, idle(30)));
+        assertEquals(1, indexOf(policy));
+    }
+
+    @Test
+    public void missingMetricsDoNotCountAsIdle() {
+        CaptureAdaptationPolicy policy = policy(2);
+        Sample sample = new Sample();
+        sample.encodedFps = 30;
+        for (int i = 0; i < 50; i++) {
+            assertNull(policy.onSample(sample));
+        }
+    }
+
+    @Test
+    public void fallingBackSoonAfterUpgradeDoublesTheHold() {
+        CaptureAdaptationPolicy policy = policy(1);
+        assertEquals(CaptureAdaptationPolicy.INITIAL_UP_HOLD_TICKS, ticksUntilChange(policy, idle(30)));
+        assertEquals(CaptureAdaptationPolicy.COOLDOWN_TICKS + CaptureAdaptationPolicy.DOWN_TICKS,
+                ticksUntilChange(policy, busy()));
+        assertEquals(1, indexOf(policy));
+
+        assertEquals(CaptureAdaptationPolicy.COOLDOWN_TICKS + 2 * CaptureAdaptationPolicy.INITIAL_UP_HOLD_TICKS,
+                ticksUntilChange(policy, idle(30)));
+    }
+
+    private static CaptureAdaptationPolicy policy(int startIndex) {
+        return new CaptureAdaptationPolicy(CaptureAdaptationPolicy.buildLadder(HD_CAMERA), startIndex);
+    }
+
+    private static Sample busy() {
+        Sample sample = new Sample();
+        sample.cpuLoad = 0.95;
+        return sample;
+    }
+
+    private static Sample idle(int fps) {
+        Sample sample = new Sample();
+        sample.cpuLoad = 0.2;
+        sample.encodeMsPerFrame = 2;
+        sample.encodedFps = fps;
+        return sample;
+    }
+
+    private static int indexOf(CaptureAdaptationPolicy policy) {
+        return policy.getLadder().indexOf(policy.current());
+    }
+
+    private static int ticksUntilChange(CaptureAdaptationPolicy policy, Sample sample) {
+        for (int ticks = 1; ticks <= 1000; ticks++) {
+            if (policy.onSample(sample) != null) {
+                return ticks;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.webrtcdemo.messenger.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.webrtc.CameraEnumerationAndroid;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Y4mFileCapturer 的文件头 / 帧索引，以及 CaptureSource 按字符串选来源
+ */
+public class Y4mFileCapturerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void indexesCompleteFramesOnly() throws IOException {
+        // 5x3：Y 15 字节，U / V 各 3x2 = 6 字节
+        File file = y4m("YUV4MPEG2 W5 H3 F30000:1001 Ip A1:1 C420jpeg", 3, 21, "FRAME");
+        Y4mFileCapturer capturer = new Y4mFileCapturer(file.getPath());
+
+        assertEquals(3, capturer.getFrameCount());
+        List<CameraEnumerationAndroid.CaptureFormat> formats = capturer.getSupportedFormats();
+        assertEquals(1, formats.size());
+        assertEquals(5, formats.get(0).width);
+        assertEquals(3, formats.get(0).height);
+        assertEquals(30_000, formats.get(0).framerate.max);
+    }
+
+    @Test
+    public void frameHeadersMayCarryParameters() throws IOException {
+        File file = y4m("YUV4MPEG2 W4 H2 C420", 2, 0, "FRAME Ixyz");
+        Y4mFileCapturer capturer = new Y4mFileCapturer(file.getPath());
+        assertEquals(2, capturer.getFrameCount());
+        // 文件头没写帧率时按 30
+        assertEquals(30_000, capturer.getSupportedFormats().get(0).framerate.max);
+    }
+
+    @Test
+    public void rejectsUnsupportedFiles() throws IOException {
+        assertRejected(y4m("YUV4MPEG1 W4 H2", 1, 0, "FRAME"));
+        assertRejected(y4m("YUV4MPEG2 W4 H2 C422", 1, 0, "FRAME"));
+        assertRejected(y4m("YUV4MPEG2 W4", 1, 0, "FRAME"));
+        assertRejected(y4m("YUV4MPEG2 W4 H2", 1, 0, "FRAMX"));
+        // 只有一帧且不完整
+        assertRejected(y4m("YUV4MPEG2 W4 H2", 0, 5, "FRAME"));
+        assertRejected(new File(folder.getRoot(), "missing.y4m"));
+    }
+
+    @Test
+    public void captureSourceParsesSpecs() throws IOException {
+        File file = y4m("YUV4MPEG2 W4 H2 F15:1", 1, 0, "FRAME");
+        CaptureSource y4m = CaptureSource.open(null, "y4m:" + file.getPath());
+        assertTrue(y4m.capturer instanceof Y4mFileCapturer);
+        assertEquals(15_000, y4m.formats.get(0).framerate.max);
+
+        CaptureSource synthetic = CaptureSource.open(null, "synthetic:0.5:320x240@15");
+        assertTrue(synthetic.capturer instanceof SyntheticVideoCapturer);
+        assertEquals("synthetic:0.5", synthetic.description);
+        assertEquals(1, synthetic.formats.size());
+        assertEquals(320, synthetic.formats.get(0).width);
+        assertEquals(15_000, synthetic.formats.get(0).framerate.max);
+
+        CaptureSource defaults = CaptureSource.open(null, "synthetic");
+        assertEquals(SyntheticVideoCapturer.getSupportedFormats().size(), defaults.formats.size());
+
+        assertNull(CaptureSource.open(null, "synthetic:abc"));
+        assertNull(CaptureSource.open(null, "y4m:" + new File(folder.getRoot(), "missing.y4m")));
+        assertNull(CaptureSource.open(null, "screen"));
+    }
+
+    private static void assertRejected(File file) {
+        try {
+            new Y4mFileCapturer(file.getPath());
+            fail("expected " + file + " to be rejected");
+        } catch (IOException expected) {
+            // 格式不支持
+        }
+    }
+
+    /**
+     * frames 个完整帧，后面再跟一个只有 partialBytes 字节像素的帧头（0 表示没有）
+     */
+    private File y4m(String header, int frames, int partialBytes, String frameHeader) throws IOException {
+        int width = 0;
+        int height = 0;
+        for (String field : header.split(" ")) {
+            if (field.startsWith("W")) {
+                width = Integer.parseInt(field.substring(1));
+            } else if (field.startsWith("H")) {
+                height = Integer.parseInt(field.substring(1));
+            }
+        }
+        int frameSize = width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write((header + "\n").getBytes(StandardCharsets.US_ASCII));
+        for (int i = 0; i < frames; i++) {
+            out.write((frameHeader + "\n").getBytes(StandardCharsets.US_ASCII));
+            for (int b = 0; b < frameSize; b++) {
+                out.write(i);
+            }
+        }
+        if (partialBytes > 0) {
+            out.write((frameHeader + "\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[Math.min(partialBytes, frameSize - 1)]);
+        }
+        File file = folder.newFile();
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            out.writeTo(stream);
+        }
+        return file;
+    }
+}
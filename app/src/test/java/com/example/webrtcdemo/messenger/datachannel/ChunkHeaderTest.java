@@ -0,0 +1,82 @@
+package com.example.webrtcdemo.messenger.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ChunkHeader 的编解码、读取时的字段校验和分块数
+ */
+public class ChunkHeaderTest {
+
+    @Test
+    public void roundTrips() {
+        ChunkHeader header = header(ChunkHeader.TYPE_FILE, 3, 7);
+        header.transferId = 0x12345678;
+        header.sendTimeNanos = Long.MAX_VALUE - 1;
+        ByteBuffer buffer = ByteBuffer.allocate(ChunkHeader.SIZE + 10);
+        header.write(buffer);
+        assertEquals(ChunkHeader.SIZE, buffer.position());
+        buffer.position(buffer.position() + 10);
+        buffer.flip();
+
+        ChunkHeader read = new ChunkHeader();
+        assertTrue(read.read(buffer));
+        assertEquals(ChunkHeader.TYPE_FILE, read.type);
+        assertEquals(0x12345678, read.transferId);
+        assertEquals(3, read.index);
+        assertEquals(7, read.count);
+        assertEquals(Long.MAX_VALUE - 1, read.sendTimeNanos);
+        assertEquals(10, buffer.remaining());
+    }
+
+    @Test
+    public void rejectsShortBuffer() {
+        ByteBuffer buffer = encode(header(ChunkHeader.TYPE_MESSAGE, 0, 1), 0);
+        buffer.limit(ChunkHeader.SIZE - 1);
+        assertFalse(new ChunkHeader().read(buffer));
+    }
+
+    @Test
+    public void rejectsInvalidFields() {
+        assertFalse(new ChunkHeader().read(encode(header((byte) 3, 0, 1), 0)));
+        assertFalse(new ChunkHeader().read(encode(header(ChunkHeader.TYPE_MESSAGE, 0, 0), 0)));
+        assertFalse(new ChunkHeader().read(encode(header(ChunkHeader.TYPE_MESSAGE, 1, 1), 0)));
+        assertFalse(new ChunkHeader().read(encode(header(ChunkHeader.TYPE_MESSAGE, -1, 1), 0)));
+        assertFalse(new ChunkHeader().read(encode(header(ChunkHeader.TYPE_MESSAGE, 0, -5), 0)));
+    }
+
+    @Test
+    public void payloadIsLimitedToOneMessage() {
+        assertTrue(new ChunkHeader().read(encode(header(ChunkHeader.TYPE_FILE, 0, 1), ChunkHeader.MAX_PAYLOAD)));
+        assertFalse(new ChunkHeader().read(encode(header(ChunkHeader.TYPE_FILE, 0, 1), ChunkHeader.MAX_PAYLOAD + 1)));
+    }
+
+    @Test
+    public void chunkCountRoundsUp() {
+        assertEquals(1, ChunkHeader.chunkCount(0));
+        assertEquals(1, ChunkHeader.chunkCount(ChunkHeader.MAX_PAYLOAD));
+        assertEquals(2, ChunkHeader.chunkCount(ChunkHeader.MAX_PAYLOAD + 1));
+        assertEquals(65_536, ChunkHeader.chunkCount(65_536L * ChunkHeader.MAX_PAYLOAD));
+    }
+
+    private static ChunkHeader header(byte type, int index, int count) {
+        ChunkHeader header = new ChunkHeader();
+        header.type = type;
+        header.index = index;
+        header.count = count;
+        return header;
+    }
+
+    private static ByteBuffer encode(ChunkHeader header, int payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(ChunkHeader.SIZE + payload);
+        header.write(buffer);
+        buffer.position(buffer.capacity());
+        buffer.flip();
+        return buffer;
+    }
+}
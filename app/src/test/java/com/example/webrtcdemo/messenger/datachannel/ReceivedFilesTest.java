@@ -0,0 +1,73 @@
+package com.example.webrtcdemo.messenger.datachannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * ReceivedFiles 的文件名清洗和过期清理
+ */
+public class ReceivedFilesTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void safeNameReplacesPathCharacters() {
+        assertEquals("peer-1_bulk.bin", ReceivedFiles.safeName("peer-1_bulk.bin"));
+        assertEquals(".._.._etc_passwd", ReceivedFiles.safeName("../../etc/passwd"));
+        assertEquals("a_b_c__", ReceivedFiles.safeName("a b\\c:文"));
+    }
+
+    @Test
+    public void safeNameIsTruncated() {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            name.append('x');
+        }
+        assertEquals(48, ReceivedFiles.safeName(name.toString()).length());
+    }
+
+    @Test
+    public void pruneDeletesExpiredFiles() throws IOException {
+        File fresh = file("fresh.bin", 0);
+        File expired = file("expired.bin", ReceivedFiles.MAX_AGE_MS + 60_000);
+        File partial = file("incoming" + ReceivedFiles.PART_SUFFIX, ReceivedFiles.MAX_AGE_MS + 60_000);
+        assertTrue(new File(folder.getRoot(), "sub").mkdir());
+
+        ReceivedFiles.prune(folder.getRoot(), false);
+        assertTrue(fresh.exists());
+        assertFalse(expired.exists());
+        // 可能还在写，不动
+        assertTrue(partial.exists());
+        assertTrue(new File(folder.getRoot(), "sub").exists());
+    }
+
+    @Test
+    public void prunesPartialFilesWhenIdle() throws IOException {
+        File fresh = file("fresh.bin", 0);
+        File partial = file("incoming" + ReceivedFiles.PART_SUFFIX, 0);
+
+        ReceivedFiles.prune(folder.getRoot(), true);
+        assertTrue(fresh.exists());
+        assertFalse(partial.exists());
+    }
+
+    @Test
+    public void missingDirectoryIsIgnored() {
+        ReceivedFiles.prune(new File(folder.getRoot(), "missing"), true);
+    }
+
+    private File file(String name, long ageMs) throws IOException {
+        File file = folder.newFile(name);
+        assertTrue(file.setLastModified(System.currentTimeMillis() - ageMs));
+        return file;
+    }
+}
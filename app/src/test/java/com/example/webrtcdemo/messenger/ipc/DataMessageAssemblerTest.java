@@ -0,0 +1,124 @@
+package com.example.webrtcdemo.messenger.ipc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DataMessageAssembler 的分片拼接、交错通道和各种对不上的分片
+ */
+public class DataMessageAssemblerTest {
+
+    private static final int FRAGMENT = 64 * 1024;
+
+    private final List<String> keys = new ArrayList<>();
+    private final List<byte[]> messages = new ArrayList<>();
+    private final DataMessageAssembler assembler = new DataMessageAssembler(256 * 1024, (peer, label, data) -> {
+        keys.add(peer + "/" + label);
+        messages.add(data);
+    });
+
+    @Test
+    public void singleFragmentIsDeliveredWithoutCopy() {
+        byte[] data = payload(100);
+        assertTrue(assembler.onFragment("a", "chat", 1, 0, data.length, data));
+        assertEquals(1, messages.size());
+        assertSame(data, messages.get(0));
+    }
+
+    @Test
+    public void emptyMessageIsDelivered() {
+        assertTrue(assembler.onFragment("a", "chat", 1, 0, 0, new byte[0]));
+        assertEquals(1, messages.size());
+        assertEquals(0, messages.get(0).length);
+    }
+
+    @Test
+    public void reassemblesFragments() {
+        byte[] data = payload(256 * 1024);
+        feed("a", "bulk", 7, data);
+        assertEquals(1, messages.size());
+        assertArrayEquals(data, messages.get(0));
+    }
+
+    @Test
+    public void interleavedChannelsAreKeptApart() {
+        byte[] first = payload(FRAGMENT + 10);
+        byte[] second = payload(2 * FRAGMENT + 1);
+        assertTrue(assembler.onFragment("a", "bulk", 1, 0, first.length, Arrays.copyOfRange(first, 0, FRAGMENT)));
+        assertTrue(assembler.onFragment("b", "bulk", 2, 0, second.length, Arrays.copyOfRange(second, 0, FRAGMENT)));
+        assertTrue(assembler.onFragment("a", "bulk", 1, FRAGMENT, first.length,
+                Arrays.copyOfRange(first, FRAGMENT, first.length)));
+        assertTrue(assembler.onFragment("b", "bulk", 2, FRAGMENT, second.length,
+                Arrays.copyOfRange(second, FRAGMENT, 2 * FRAGMENT)));
+        assertTrue(assembler.onFragment("b", "bulk", 2, 2 * FRAGMENT, second.length,
+                Arrays.copyOfRange(second, 2 * FRAGMENT, second.length)));
+
+        assertEquals(Arrays.asList("a/bulk", "b/bulk"), keys);
+        assertArrayEquals(first, messages.get(0));
+        assertArrayEquals(second, messages.get(1));
+    }
+
+    @Test
+    public void newMessageDropsUnfinishedOne() {
+        byte[] data = payload(2 * FRAGMENT);
+        assertTrue(assembler.onFragment("a", "bulk", 1, 0, data.length, Arrays.copyOfRange(data, 0, FRAGMENT)));
+        feed("a", "bulk", 2, data);
+
+        assertEquals(1, messages.size());
+        assertEquals(1, assembler.getDroppedCount());
+        // 旧消息后面的分片不再被接受
+        assertFalse(assembler.onFragment("a", "bulk", 1, FRAGMENT, data.length, new byte[FRAGMENT]));
+    }
+
+    @Test
+    public void rejectsGapsAndMismatches() {
+        byte[] data = payload(3 * FRAGMENT);
+        assertTrue(assembler.onFragment("a", "bulk", 1, 0, data.length, Arrays.copyOfRange(data, 0, FRAGMENT)));
+        assertFalse(assembler.onFragment("a", "bulk", 1, 2 * FRAGMENT, data.length, new byte[FRAGMENT]));
+        assertEquals(1, assembler.getDroppedCount());
+
+        assertTrue(assembler.onFragment("a", "bulk", 2, 0, data.length, Arrays.copyOfRange(data, 0, FRAGMENT)));
+        assertFalse(assembler.onFragment("a", "bulk", 3, FRAGMENT, data.length, new byte[FRAGMENT]));
+
+        assertTrue(assembler.onFragment("a", "bulk", 4, 0, data.length, Arrays.copyOfRange(data, 0, FRAGMENT)));
+        assertFalse(assembler.onFragment("a", "bulk", 4, FRAGMENT, data.length, new byte[3 * FRAGMENT]));
+
+        assertFalse(assembler.onFragment("a", "bulk", 5, FRAGMENT, data.length, new byte[FRAGMENT]));
+        assertEquals(0, messages.size());
+    }
+
+    @Test
+    public void rejectsOversizedMessages() {
+        assertFalse(assembler.onFragment("a", "bulk", 1, 0, 256 * 1024 + 1, new byte[FRAGMENT]));
+        assertFalse(assembler.onFragment("a", "bulk", 2, 0, 10, new byte[11]));
+        assertFalse(assembler.onFragment("a", "bulk", 3, 0, -1, new byte[0]));
+        assertEquals(0, messages.size());
+    }
+
+    private void feed(String peer, String label, int messageId, byte[] data) {
+        int offset = 0;
+        do {
+            int n = Math.min(FRAGMENT, data.length - offset);
+            assertTrue(assembler.onFragment(peer, label, messageId, offset, data.length,
+                    Arrays.copyOfRange(data, offset, offset + n)));
+            offset += n;
+        } while (offset < data.length);
+    }
+
+    private static byte[] payload(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.webrtcdemo.messenger.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SharedFrameRing 的写入、取最新帧、占槽和头部校验，写端和读端各自持有同一块内存的视图
+ */
+public class SharedFrameRingTest {
+
+    private static final int MAX_WIDTH = 8;
+    private static final int MAX_HEIGHT = 6;
+
+    private final ByteBuffer memory = ByteBuffer.allocateDirect(
+            SharedFrameRing.sizeFor(3, MAX_WIDTH, MAX_HEIGHT));
+    private final SharedFrameRing writer = SharedFrameRing.create(memory, 3, MAX_WIDTH, MAX_HEIGHT);
+    private final SharedFrameRing reader = SharedFrameRing.attach(memory.duplicate());
+
+    @Test
+    public void paddedStridesAreStoredTightly() {
+        int width = 5;
+        int height = 3;
+        assertEquals(1, write(width, height, 7, width + 3));
+
+        int slot = reader.acquireLatest();
+        assertTrue(slot >= 0);
+        assertEquals(width, reader.width(slot));
+        assertEquals(height, reader.height(slot));
+        assertEquals(90, reader.rotation(slot));
+        assertEquals(7000, reader.timestampNs(slot));
+        assertEquals(1, reader.frameSeq(slot));
+
+        assertPlane(reader.plane(slot, 0), width, height, 7);
+        assertPlane(reader.plane(slot, 1), 3, 2, 7 + 100);
+        assertPlane(reader.plane(slot, 2), 3, 2, 7 + 200);
+        assertEquals(3, SharedFrameRing.planeStride(width, 1));
+        reader.release(slot);
+    }
+
+    @Test
+    public void readerTakesOnlyTheLatestNewFrame() {
+        assertEquals(-1, reader.acquireLatest());
+        write(4, 4, 1, 4);
+        int slot = reader.acquireLatest();
+        reader.release(slot);
+        assertEquals(-1, reader.acquireLatest());
+
+        write(4, 4, 2, 4);
+        write(4, 4, 3, 4);
+        write(4, 4, 4, 4);
+        slot = reader.acquireLatest();
+        assertEquals(4, reader.frameSeq(slot));
+        assertEquals(2, reader.getReaderDropped());
+        reader.release(slot);
+    }
+
+    @Test
+    public void heldSlotIsNotOverwritten() {
+        write(4, 4, 1, 4);
+        int held = reader.acquireLatest();
+        for (int i = 2; i <= 10; i++) {
+            assertEquals(i, write(4, 4, i, 4));
+        }
+        assertEquals(1, reader.frameSeq(held));
+        assertPlane(reader.plane(held, 0), 4, 4, 1);
+        reader.release(held);
+
+        int slot = reader.acquireLatest();
+        assertNotEquals(held, slot);
+        assertEquals(10, reader.frameSeq(slot));
+        reader.release(slot);
+    }
+
+    @Test
+    public void oversizedFrameIsDropped() {
+        assertEquals(-1, write(MAX_WIDTH * 2, MAX_HEIGHT * 2, 1, MAX_WIDTH * 2));
+        assertEquals(1, writer.getWriterDropped());
+        assertEquals(1, reader.getWriterDropped());
+        assertEquals(-1, reader.acquireLatest());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void attachRejectsUninitializedMemory() {
+        SharedFrameRing.attach(ByteBuffer.allocateDirect(SharedFrameRing.sizeFor(3, MAX_WIDTH, MAX_HEIGHT)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void attachRejectsSlotsBeyondTheBuffer() {
+        ByteBuffer copy = ByteBuffer.allocateDirect(SharedFrameRing.HEADER_SIZE + 64);
+        ByteBuffer header = memory.duplicate();
+        header.limit(SharedFrameRing.HEADER_SIZE);
+        copy.put(header);
+        SharedFrameRing.attach(copy);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createRejectsSingleSlot() {
+        SharedFrameRing.create(ByteBuffer.allocateDirect(4096), 1, MAX_WIDTH, MAX_HEIGHT);
+    }
+
+    /**
+     * 每个平面的第 row 行第 col 列写入 base + row * 10 + col，U / V 平面的 base 分别加 100 / 200
+     */
+    private long write(int width, int height, int value, int strideY) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int strideC = chromaWidth + 1;
+        return writer.write(width, height, 90, value * 1000L,
+                fill(width, height, strideY, value), strideY,
+                fill(chromaWidth, chromaHeight, strideC, value + 100), strideC,
+                fill(chromaWidth, chromaHeight, strideC, value + 200), strideC);
+    }
+
+    private static ByteBuffer fill(int width, int height, int stride, int base) {
+        ByteBuffer plane = ByteBuffer.allocateDirect(stride * height);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < stride; col++) {
+                plane.put(row * stride + col, (byte) (col < width ? base + row * 10 + col : -1));
+            }
+        }
+        return plane;
+    }
+
+    private static void assertPlane(ByteBuffer plane, int width, int height, int base) {
+        assertEquals(width * height, plane.remaining());
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                assertEquals((byte) (base + row * 10 + col), plane.get(row * width + col));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.webrtcdemo.messenger.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.webrtc.PeerConnection;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RtcProfile 的名字查找、ICE 服务器解析和生成的 RTCConfiguration
+ */
+public class RtcProfileTest {
+
+    @Test
+    public void lookupByTag() {
+        for (RtcProfile profile : RtcProfile.values()) {
+            assertSame(profile, RtcProfile.fromName(profile.tag, RtcProfile.LAN));
+            assertEquals(profile.tag, profile.toString());
+        }
+        assertSame(RtcProfile.RELAY_ONLY, RtcProfile.fromName("relay", RtcProfile.MOBILE));
+    }
+
+    @Test
+    public void emptyNameIsDefault() {
+        assertSame(RtcProfile.MOBILE, RtcProfile.fromName(null, RtcProfile.MOBILE));
+        assertSame(RtcProfile.LOOPBACK, RtcProfile.fromName("", RtcProfile.LOOPBACK));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownNameIsRejected() {
+        // 按 tag 查，不认枚举名
+        RtcProfile.fromName("RELAY_ONLY", RtcProfile.MOBILE);
+    }
+
+    @Test
+    public void parsesIceServers() {
+        List<PeerConnection.IceServer> servers = RtcProfile.parseIceServers(
+                " stun:stun.example.com:19302 ;;turn:turn.example.com:3478?transport=udp|user|secret;turns:t.example.com||");
+        assertEquals(3, servers.size());
+        assertEquals(Collections.singletonList("stun:stun.example.com:19302"), servers.get(0).urls);
+        assertEquals("turn:turn.example.com:3478?transport=udp", servers.get(1).urls.get(0));
+        assertEquals("user", servers.get(1).username);
+        assertEquals("secret", servers.get(1).password);
+        assertEquals("", servers.get(2).username);
+
+        assertTrue(RtcProfile.parseIceServers(null).isEmpty());
+        assertTrue(RtcProfile.parseIceServers("").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void credentialsNeedBothFields() {
+        RtcProfile.parseIceServers("turn:turn.example.com|user");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void urlSchemeIsChecked() {
+        RtcProfile.parseIceServers("stun:ok.example.com;https://turn.example.com");
+    }
+
+    @Test
+    public void configurationFollowsProfile() {
+        List<PeerConnection.IceServer> servers = RtcProfile.parseIceServers("stun:stun.example.com");
+
+        PeerConnection.RTCConfiguration lan = RtcProfile.LAN.createConfiguration(servers);
+        assertEquals(servers, lan.iceServers);
+        assertEquals(PeerConnection.BundlePolicy.MAXBUNDLE, lan.bundlePolicy);
+        assertEquals(PeerConnection.RtcpMuxPolicy.REQUIRE, lan.rtcpMuxPolicy);
+        assertEquals(1, lan.iceCandidatePoolSize);
+        assertEquals(PeerConnection.TcpCandidatePolicy.DISABLED, lan.tcpCandidatePolicy);
+        assertEquals(PeerConnection.CandidateNetworkPolicy.LOW_COST, lan.candidateNetworkPolicy);
+        assertEquals(1000, lan.iceConnectionReceivingTimeout);
+
+        PeerConnection.RTCConfiguration mobile = RtcProfile.MOBILE.createConfiguration(servers);
+        assertEquals(PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY, mobile.continualGatheringPolicy);
+        assertEquals(PeerConnection.TcpCandidatePolicy.ENABLED, mobile.tcpCandidatePolicy);
+        assertEquals(2000, mobile.iceBackupCandidatePairPingInterval);
+
+        PeerConnection.RTCConfiguration relay = RtcProfile.RELAY_ONLY.createConfiguration(servers);
+        assertEquals(PeerConnection.IceTransportsType.RELAY, relay.iceTransportsType);
+    }
+
+    @Test
+    public void loopbackIgnoresIceServers() {
+        List<PeerConnection.IceServer> servers = RtcProfile.parseIceServers("stun:a.example.com;stun:b.example.com");
+        PeerConnection.RTCConfiguration loopback = RtcProfile.LOOPBACK.createConfiguration(servers);
+        assertTrue(loopback.iceServers.isEmpty());
+        assertEquals(PeerConnection.ContinualGatheringPolicy.GATHER_ONCE, loopback.continualGatheringPolicy);
+
+        // 配置里的列表是拷贝，不受调用方后续修改影响
+        PeerConnection.RTCConfiguration mobile = RtcProfile.MOBILE.createConfiguration(servers);
+        assertEquals(Arrays.asList(servers.get(0), servers.get(1)), mobile.iceServers);
+        servers.clear();
+        assertEquals(2, mobile.iceServers.size());
+    }
+}
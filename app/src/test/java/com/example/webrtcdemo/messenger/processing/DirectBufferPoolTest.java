@@ -0,0 +1,97 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * DirectBufferPool 的分桶复用、每桶上限、总量淘汰和统计
+ */
+public class DirectBufferPoolTest {
+
+    private static final int PAGE = DirectBufferPool.ALIGNMENT;
+
+    @Test
+    public void buffersAreRoundedToBucketsAndReused() {
+        DirectBufferPool pool = new DirectBufferPool(4, 1 << 20);
+        ByteBuffer first = pool.acquire(100);
+        assertTrue(first.isDirect());
+        assertEquals(PAGE, first.capacity());
+        assertEquals(0, first.position());
+        assertEquals(100, first.limit());
+        pool.release(first);
+
+        ByteBuffer second = pool.acquire(PAGE);
+        assertSame(first, second);
+        assertEquals(PAGE, second.limit());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getOutstanding());
+        assertEquals(0, pool.getPooledBytes());
+
+        assertNotSame(second, pool.acquire(PAGE + 1));
+        assertEquals(2, pool.getMisses());
+    }
+
+    @Test
+    public void bucketKeepsAtMostMaxBuffers() {
+        DirectBufferPool pool = new DirectBufferPool(2, 1 << 20);
+        ByteBuffer a = pool.acquire(PAGE);
+        ByteBuffer b = pool.acquire(PAGE);
+        ByteBuffer c = pool.acquire(PAGE);
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+
+        assertEquals(1, pool.getDropped());
+        assertEquals(2L * PAGE, pool.getPooledBytes());
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    @Test
+    public void leastRecentlyUsedBucketIsEvicted() {
+        DirectBufferPool pool = new DirectBufferPool(4, 3L * PAGE);
+        ByteBuffer small = pool.acquire(PAGE);
+        ByteBuffer large = pool.acquire(2 * PAGE);
+        pool.release(small);
+        pool.release(large);
+        assertEquals(3L * PAGE, pool.getPooledBytes());
+
+        ByteBuffer other = pool.acquire(3 * PAGE);
+        pool.release(other);
+        // 放 3 页需要把另外两个桶都淘汰
+        assertEquals(3L * PAGE, pool.getPooledBytes());
+        assertSame(other, pool.acquire(3 * PAGE));
+        assertNotSame(small, pool.acquire(PAGE));
+    }
+
+    @Test
+    public void foreignAndOversizedBuffersAreDropped() {
+        DirectBufferPool pool = new DirectBufferPool(4, 2L * PAGE);
+        pool.acquire(PAGE);
+        pool.release(ByteBuffer.allocate(PAGE));
+        pool.acquire(PAGE);
+        pool.release(ByteBuffer.allocateDirect(PAGE + 1));
+        ByteBuffer big = pool.acquire(3 * PAGE);
+        pool.release(big);
+
+        assertEquals(3, pool.getDropped());
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void trimDropsFreeBuffers() {
+        DirectBufferPool pool = new DirectBufferPool(4, 1 << 20);
+        ByteBuffer buffer = pool.acquire(PAGE);
+        pool.release(buffer);
+        pool.trim();
+
+        assertEquals(0, pool.getPooledBytes());
+        assertNotSame(buffer, pool.acquire(PAGE));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * I420BufferPool / PooledI420Buffer 的平面布局、引用计数回收和拷贝
+ */
+public class I420BufferPoolTest {
+
+    private final I420BufferPool pool = new I420BufferPool();
+
+    @Test
+    public void planesAreLaidOutBackToBack() {
+        PooledI420Buffer buffer = pool.acquire(5, 3);
+        assertEquals(5, buffer.getStrideY());
+        assertEquals(3, buffer.getStrideU());
+        assertEquals(15, buffer.getDataY().remaining());
+        assertEquals(6, buffer.getDataU().remaining());
+        assertEquals(6, buffer.getDataV().remaining());
+        assertEquals(15, buffer.getOffsetU());
+        assertEquals(21, buffer.getOffsetV());
+        assertEquals(27, PooledI420Buffer.frameSize(5, 3));
+        buffer.release();
+    }
+
+    @Test
+    public void lastReleaseReturnsMemoryToThePool() {
+        PooledI420Buffer buffer = pool.acquire(64, 48);
+        ByteBuffer data = buffer.data();
+        buffer.retain();
+        assertFalse(buffer.isExclusive());
+
+        buffer.release();
+        assertTrue(buffer.isExclusive());
+        assertEquals(1, pool.getMemoryPool().getOutstanding());
+        buffer.release();
+        assertEquals(0, pool.getMemoryPool().getOutstanding());
+
+        PooledI420Buffer again = pool.acquire(64, 48);
+        assertSame(buffer, again);
+        assertSame(data, again.data());
+        assertEquals(1, pool.getMemoryPool().getHits());
+        again.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void overReleaseIsRejected() {
+        PooledI420Buffer buffer = pool.acquire(16, 16);
+        buffer.release();
+        buffer.release();
+    }
+
+    @Test
+    public void toI420AddsAReference() {
+        PooledI420Buffer buffer = pool.acquire(16, 16);
+        assertSame(buffer, buffer.toI420());
+        buffer.release();
+        assertTrue(buffer.isExclusive());
+        buffer.release();
+    }
+
+    @Test
+    public void copyOfCopiesEveryPlane() {
+        PooledI420Buffer src = pool.acquire(7, 5);
+        fill(src.getDataY(), 1);
+        fill(src.getDataU(), 2);
+        fill(src.getDataV(), 3);
+
+        PooledI420Buffer copy = pool.copyOf(src);
+        assertEquals(7, copy.getWidth());
+        assertEquals(5, copy.getHeight());
+        assertEquals(src.getDataY(), copy.getDataY());
+        assertEquals(src.getDataU(), copy.getDataU());
+        assertEquals(src.getDataV(), copy.getDataV());
+        src.release();
+        copy.release();
+    }
+
+    private static void fill(ByteBuffer plane, int seed) {
+        for (int i = 0; i < plane.remaining(); i++) {
+            plane.put(i, (byte) (seed * 50 + i));
+        }
+    }
+}
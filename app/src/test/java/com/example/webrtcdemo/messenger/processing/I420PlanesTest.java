@@ -0,0 +1,84 @@
+package com.example.webrtcdemo.messenger.processing;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * I420Planes 的带步长拷贝和点阵数字
+ */
+public class I420PlanesTest {
+
+    private static final byte WHITE = (byte) 235;
+    private static final byte BLACK = (byte) 16;
+
+    private final I420Planes planes = new I420Planes();
+
+    @Test
+    public void copiesRowsBetweenStrides() {
+        ByteBuffer src = ByteBuffer.allocateDirect(3 + 4 * 8);
+        for (int i = 0; i < src.capacity(); i++) {
+            src.put(i, (byte) i);
+        }
+        ByteBuffer dst = ByteBuffer.allocate(2 + 3 * 5);
+        planes.copyPlane(src, 3, 8, dst, 2, 5, 4, 3);
+
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 5; col++) {
+                byte expected = col < 4 ? (byte) (3 + row * 8 + col) : 0;
+                assertEquals(expected, dst.get(2 + row * 5 + col));
+            }
+        }
+        assertEquals(0, dst.get(0));
+    }
+
+    @Test
+    public void drawsDigitGlyph() {
+        int width = 12;
+        int height = 9;
+        ByteBuffer plane = ByteBuffer.allocate(width * height);
+        planes.drawNumber(plane, width, width, height, 1, 1, 7, 1);
+
+        // "7" 的点阵：第一行 111，之后四行 001，外面一圈黑底，盒子宽 4 + 1、高 7
+        String[] expected = {
+                "............",
+                ".#####......",
+                ".#WWW#......",
+                ".###W#......",
+                ".###W#......",
+                ".###W#......",
+                ".###W#......",
+                ".#####......",
+                "............",
+        };
+        assertEquals(String.join("\n", expected), render(plane, width, height));
+    }
+
+    @Test
+    public void clipsAtPlaneEdges() {
+        int width = 6;
+        int height = 4;
+        ByteBuffer plane = ByteBuffer.allocate(width * height);
+        planes.drawNumber(plane, width, width, height, 3, 1, 1234567890L, 2);
+        planes.drawNumber(plane, width, width, height, width, 0, 1, 1);
+
+        assertEquals(0, plane.get(0));
+        assertEquals(BLACK, plane.get(width + 3));
+    }
+
+    private static String render(ByteBuffer plane, int width, int height) {
+        StringBuilder sb = new StringBuilder();
+        for (int y = 0; y < height; y++) {
+            if (y > 0) {
+                sb.append('\n');
+            }
+            for (int x = 0; x < width; x++) {
+                byte v = plane.get(y * width + x);
+                sb.append(v == WHITE ? 'W' : v == BLACK ? '#' : '.');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.webrtcdemo.messenger.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.webrtcdemo.messenger.service.PeerSession.Role;
+
+import org.junit.Test;
+import org.webrtc.IceCandidate;
+import org.webrtc.PeerConnection.AdapterType;
+import org.webrtc.PeerConnection.IceConnectionState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IceRecovery 的重启时机、指数退避、次数上限和网络切换处理
+ */
+public class IceRecoveryTest {
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final List<String> events = new ArrayList<>();
+    private final CallbackDispatcher dispatcher = new CallbackDispatcher() {
+        @Override
+        public void postState(String type, String peerId, String value) {
+            events.add(type + "=" + value);
+        }
+    };
+    private final List<String> restarts = new ArrayList<>();
+    private boolean restartAccepted = true;
+    private String gaveUp;
+    private final IceRecovery.Restarter restarter = new IceRecovery.Restarter() {
+        @Override
+        public boolean restartIce(PeerSession session) {
+            restarts.add(session.key);
+            return restartAccepted;
+        }
+
+        @Override
+        public void giveUp(PeerSession session, String reason) {
+            gaveUp = reason;
+        }
+    };
+    private long nowMs = 10_000;
+    private final IceRecovery recovery = new IceRecovery(scheduler, dispatcher, restarter, () -> nowMs);
+
+    @Test
+    public void backoffDoublesUpToLimit() {
+        assertEquals(1000, IceRecovery.backoff(1));
+        assertEquals(2000, IceRecovery.backoff(2));
+        assertEquals(4000, IceRecovery.backoff(3));
+        assertEquals(8000, IceRecovery.backoff(4));
+        assertEquals(8000, IceRecovery.backoff(5));
+        assertEquals(8000, IceRecovery.backoff(100));
+    }
+
+    @Test
+    public void disconnectWaitsForGracePeriod() {
+        PeerSession session = connected(Role.OFFERER);
+        recovery.onIceStateChanged(session, IceConnectionState.DISCONNECTED);
+        assertEquals(nowMs, session.disconnectedAtMs);
+        assertEquals(IceRecovery.DISCONNECTED_GRACE_MS, scheduler.nextDelay());
+
+        // 宽限期内恢复就不重启
+        nowMs += 500;
+        recovery.onIceStateChanged(session, IceConnectionState.CONNECTED);
+        assertTrue(scheduler.isIdle());
+        assertTrue(restarts.isEmpty());
+        assertEquals(1, session.reconnects);
+        assertEquals(500, session.lastReconnectMs);
+        assertEquals(Collections.singletonList("reconnect_ms=500"), events);
+    }
+
+    @Test
+    public void answererNeverRestarts() {
+        PeerSession session = connected(Role.ANSWERER);
+        recovery.onIceStateChanged(session, IceConnectionState.DISCONNECTED);
+        recovery.onIceStateChanged(session, IceConnectionState.FAILED);
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void failureRestartsImmediatelyThenBacksOff() {
+        PeerSession session = connected(Role.OFFERER);
+        recovery.onIceStateChanged(session, IceConnectionState.FAILED);
+        assertEquals(0, scheduler.nextDelay());
+        scheduler.runNext();
+        assertEquals(1, session.restartAttempts);
+        assertEquals(1, session.iceRestarts);
+        assertEquals(Collections.singletonList("ice_restart=1"), events);
+        assertEquals(IceRecovery.RESTART_TIMEOUT_MS, scheduler.nextDelay());
+
+        // 重启过程中又失败，按退避等待
+        recovery.onIceStateChanged(session, IceConnectionState.FAILED);
+        assertEquals(1, scheduler.pending());
+        assertEquals(IceRecovery.backoff(1), scheduler.nextDelay());
+        scheduler.runNext();
+        recovery.onIceStateChanged(session, IceConnectionState.FAILED);
+        assertEquals(IceRecovery.backoff(2), scheduler.nextDelay());
+
+        nowMs += 7000;
+        recovery.onIceStateChanged(session, IceConnectionState.COMPLETED);
+        assertEquals(0, session.restartAttempts);
+        assertEquals(2, session.iceRestarts);
+        assertEquals(7000, session.lastReconnectMs);
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        PeerSession session = connected(Role.OFFERER);
+        recovery.onIceStateChanged(session, IceConnectionState.FAILED);
+        for (int i = 0; i < IceRecovery.MAX_RESTART_ATTEMPTS; i++) {
+            scheduler.runNext();
+        }
+        assertEquals(IceRecovery.MAX_RESTART_ATTEMPTS, restarts.size());
+        assertNull(gaveUp);
+
+        scheduler.runNext();
+        assertEquals(IceRecovery.MAX_RESTART_ATTEMPTS, restarts.size());
+        assertTrue(gaveUp.contains(String.valueOf(IceRecovery.MAX_RESTART_ATTEMPTS)));
+        assertTrue(scheduler.isIdle());
+
+        // 放弃之后的 FAILED 不再安排重启
+        session.negotiation = NegotiationState.FAILED;
+        recovery.onIceStateChanged(session, IceConnectionState.FAILED);
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void busyNegotiationIsRetriedWithoutCounting() {
+        PeerSession session = connected(Role.OFFERER);
+        restartAccepted = false;
+        recovery.onIceStateChanged(session, IceConnectionState.FAILED);
+        scheduler.runNext();
+        assertEquals(1, restarts.size());
+        assertEquals(0, session.restartAttempts);
+        assertTrue(events.isEmpty());
+        assertEquals(IceRecovery.RESTART_TIMEOUT_MS, scheduler.nextDelay());
+    }
+
+    @Test
+    public void closedSessionIsNotRestarted() {
+        PeerSession session = connected(Role.OFFERER);
+        recovery.onIceStateChanged(session, IceConnectionState.DISCONNECTED);
+        session.negotiation = NegotiationState.CLOSED;
+        scheduler.runNext();
+        assertTrue(restarts.isEmpty());
+        recovery.onIceStateChanged(session, IceConnectionState.FAILED);
+        assertTrue(scheduler.isIdle());
+    }
+
+    @Test
+    public void waitsForNetworkAndRestartsOnNewOne() {
+        PeerSession offerer = connected(Role.OFFERER);
+        PeerSession answerer = connected(Role.ANSWERER);
+        List<PeerSession> sessions = Arrays.asList(offerer, answerer);
+
+        recovery.onNetworkLost(sessions);
+        assertEquals(nowMs, offerer.disconnectedAtMs);
+        assertEquals(nowMs, answerer.disconnectedAtMs);
+        offerer.iceState = IceConnectionState.DISCONNECTED;
+        recovery.onIceStateChanged(offerer, IceConnectionState.DISCONNECTED);
+        scheduler.runNext();
+        assertTrue(restarts.isEmpty());
+
+        offerer.restartAttempts = 3;
+        recovery.onNetworkChanged(sessions, "cellular");
+        assertEquals(0, offerer.restartAttempts);
+        assertEquals(1, scheduler.pending());
+        assertEquals(0, scheduler.nextDelay());
+        scheduler.runNext();
+        assertEquals(Collections.singletonList(offerer.key), restarts);
+    }
+
+    @Test
+    public void connectionOnUnchangedNetworkIsKept() {
+        PeerSession wifi = connected(Role.OFFERER);
+        wifi.selectedNetwork = "wifi";
+        PeerSession loopback = connected(Role.OFFERER);
+        loopback.selectedNetwork = "loopback";
+
+        recovery.onNetworkLost(Collections.singletonList(loopback));
+        recovery.onNetworkChanged(Arrays.asList(wifi, loopback), "wifi");
+        assertEquals(0, wifi.disconnectedAtMs);
+        assertEquals(0, loopback.disconnectedAtMs);
+        assertTrue(scheduler.isIdle());
+
+        recovery.onNetworkChanged(Collections.singletonList(wifi), "cellular");
+        assertEquals(nowMs, wifi.disconnectedAtMs);
+        assertFalse(scheduler.isIdle());
+    }
+
+    @Test
+    public void candidateNetworkAndType() {
+        assertEquals("wifi", IceRecovery.networkOf(AdapterType.WIFI));
+        assertEquals("cellular", IceRecovery.networkOf(AdapterType.CELLULAR));
+        assertEquals("vpn", IceRecovery.networkOf(AdapterType.VPN));
+        assertEquals("loopback", IceRecovery.networkOf(AdapterType.LOOPBACK));
+        assertEquals("other", IceRecovery.networkOf(AdapterType.UNKNOWN));
+        assertEquals("other", IceRecovery.networkOf((AdapterType) null));
+        // 公开构造函数不带网卡类型
+        assertEquals("other", IceRecovery.networkOf(candidate("typ host")));
+        assertEquals("other", IceRecovery.networkOf((IceCandidate) null));
+
+        assertEquals("srflx", IceRecovery.typeOf(candidate(
+                "candidate:1 1 udp 1686052607 203.0.113.5 50000 typ srflx raddr 10.0.0.2 rport 50000")));
+        assertEquals("unknown", IceRecovery.typeOf(candidate("candidate:1 1 udp 1 10.0.0.2 50000 typ")));
+        assertEquals("unknown", IceRecovery.typeOf(null));
+    }
+
+    private static PeerSession connected(Role role) {
+        PeerSession session = new PeerSession("peer", role);
+        session.negotiation = NegotiationState.CONNECTED;
+        session.iceState = IceConnectionState.CONNECTED;
+        return session;
+    }
+
+    private static IceCandidate candidate(String sdp) {
+        return new IceCandidate("0", 0, sdp);
+    }
+
+    /** 不开线程，测试里手动执行到期的任务 */
+    private static final class ManualScheduler extends ScheduledThreadPoolExecutor {
+
+        private final List<Task> tasks = new ArrayList<>();
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            Task task = new Task(command, unit.toMillis(delay));
+            tasks.add(task);
+            return task;
+        }
+
+        int pending() {
+            tasks.removeIf(Task::isCancelled);
+            return tasks.size();
+        }
+
+        boolean isIdle() {
+            return pending() == 0;
+        }
+
+        long nextDelay() {
+            assertEquals(1, pending());
+            return tasks.get(0).delayMs;
+        }
+
+        void runNext() {
+            assertEquals(1, pending());
+            Task task = tasks.remove(0);
+            task.done = true;
+            task.command.run();
+        }
+    }
+
+    private static final class Task implements ScheduledFuture<Object> {
+        final Runnable command;
+        final long delayMs;
+        boolean cancelled;
+        boolean done;
+
+        Task(Runnable command, long delayMs) {
+            this.command = command;
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(delayMs, o.getDelay(TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+}
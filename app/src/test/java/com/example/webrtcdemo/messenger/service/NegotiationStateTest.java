@@ -0,0 +1,95 @@
+package com.example.webrtcdemo.messenger.service;
+
+import static com.example.webrtcdemo.messenger.service.NegotiationState.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * NegotiationState 的迁移表和各个状态查询
+ */
+public class NegotiationStateTest {
+
+    @Test
+    public void offererPath() {
+        walk(NEW, CREATING_OFFER, HAVE_LOCAL_OFFER, SETTING_REMOTE_ANSWER, STABLE, CONNECTED);
+    }
+
+    @Test
+    public void answererPath() {
+        walk(NEW, SETTING_REMOTE_OFFER, HAVE_REMOTE_OFFER, CREATING_ANSWER, STABLE, CONNECTED);
+    }
+
+    @Test
+    public void iceRestartAfterFailure() {
+        walk(CONNECTED, FAILED, CREATING_OFFER, HAVE_LOCAL_OFFER);
+        walk(FAILED, SETTING_REMOTE_OFFER);
+    }
+
+    @Test
+    public void cannotSkipSteps() {
+        assertFalse(NEW.canMoveTo(HAVE_LOCAL_OFFER));
+        assertFalse(NEW.canMoveTo(STABLE));
+        assertFalse(NEW.canMoveTo(CONNECTED));
+        assertFalse(CREATING_OFFER.canMoveTo(SETTING_REMOTE_ANSWER));
+        assertFalse(HAVE_LOCAL_OFFER.canMoveTo(STABLE));
+        assertFalse(SETTING_REMOTE_OFFER.canMoveTo(CREATING_ANSWER));
+        assertFalse(HAVE_REMOTE_OFFER.canMoveTo(STABLE));
+        assertFalse(FAILED.canMoveTo(CONNECTED));
+        assertFalse(STABLE.canMoveTo(NEW));
+    }
+
+    @Test
+    public void offerOnlyStartsWhenIdle() {
+        assertEquals(EnumSet.of(NEW, STABLE, CONNECTED, FAILED), matching(s -> s.canMoveTo(CREATING_OFFER)));
+        assertEquals(EnumSet.of(NEW, STABLE, CONNECTED, FAILED), matching(s -> s.canMoveTo(SETTING_REMOTE_OFFER)));
+    }
+
+    @Test
+    public void closedIsTerminal() {
+        for (NegotiationState state : values()) {
+            assertFalse(state.name(), CLOSED.canMoveTo(state));
+            if (state != CLOSED) {
+                assertTrue(state.name(), state.canMoveTo(CLOSED));
+            }
+        }
+    }
+
+    @Test
+    public void failedIsReachableOnce() {
+        for (NegotiationState state : values()) {
+            assertEquals(state.name(), state != FAILED && state != CLOSED, state.canMoveTo(FAILED));
+        }
+    }
+
+    @Test
+    public void queries() {
+        assertEquals(EnumSet.of(STABLE, CONNECTED, FAILED), matching(NegotiationState::canRenegotiate));
+        assertEquals(EnumSet.of(HAVE_REMOTE_OFFER, CREATING_ANSWER, STABLE, CONNECTED),
+                matching(NegotiationState::hasRemoteDescription));
+        assertEquals(EnumSet.of(HAVE_LOCAL_OFFER, SETTING_REMOTE_ANSWER, STABLE, CONNECTED),
+                matching(NegotiationState::hasSentLocalDescription));
+    }
+
+    private static void walk(NegotiationState... path) {
+        for (int i = 1; i < path.length; i++) {
+            assertTrue(path[i - 1] + " -> " + path[i], path[i - 1].canMoveTo(path[i]));
+        }
+    }
+
+    private static Set<NegotiationState> matching(Predicate<NegotiationState> query) {
+        Set<NegotiationState> result = EnumSet.noneOf(NegotiationState.class);
+        for (NegotiationState state : values()) {
+            if (query.test(state)) {
+                result.add(state);
+            }
+        }
+        return result;
+    }
+}
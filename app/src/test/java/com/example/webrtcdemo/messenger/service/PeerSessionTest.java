@@ -0,0 +1,60 @@
+package com.example.webrtcdemo.messenger.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.example.webrtcdemo.messenger.service.PeerSession.Role;
+
+import org.junit.Test;
+
+/**
+ * PeerSession 的 session key：信令按它路由到同一 peerId 的另一侧连接
+ */
+public class PeerSessionTest {
+
+    @Test
+    public void keyRoundTrips() {
+        for (Role role : Role.values()) {
+            String key = PeerSession.key("alice", role);
+            assertEquals(role, PeerSession.roleOf(key));
+            assertEquals("alice", PeerSession.peerIdOf(key));
+        }
+        assertEquals("alice:offerer", new PeerSession("alice", Role.OFFERER).key);
+    }
+
+    @Test
+    public void peerIdMayContainSeparator() {
+        String key = PeerSession.key("room:7", Role.ANSWERER);
+        assertEquals(Role.ANSWERER, PeerSession.roleOf(key));
+        assertEquals("room:7", PeerSession.peerIdOf(key));
+    }
+
+    @Test
+    public void counterpartKeyUsesOppositeRole() {
+        String from = PeerSession.key("bob", Role.OFFERER);
+        Role role = PeerSession.roleOf(from);
+        assertEquals("bob:answerer", PeerSession.key(PeerSession.peerIdOf(from), role.opposite()));
+        assertEquals(Role.OFFERER, Role.ANSWERER.opposite());
+    }
+
+    @Test
+    public void malformedKeyHasNoRole() {
+        assertNull(PeerSession.roleOf(null));
+        assertNull(PeerSession.roleOf("bob"));
+        assertNull(PeerSession.roleOf("bob:viewer"));
+        assertEquals("bob", PeerSession.peerIdOf("bob"));
+    }
+
+    @Test
+    public void disposeClosesNegotiationAndDropsPendingCandidates() {
+        PeerSession session = new PeerSession("alice", Role.OFFERER);
+        session.negotiation = NegotiationState.STABLE;
+        session.pendingLocalCandidates.add(null);
+        session.pendingRemoteCandidates.add(null);
+
+        session.dispose();
+        assertEquals(NegotiationState.CLOSED, session.negotiation);
+        assertEquals(0, session.pendingLocalCandidates.size());
+        assertEquals(0, session.pendingRemoteCandidates.size());
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.webrtcdemo.messenger.signaling;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import okio.ByteString;
+
+/**
+ * 极简 WebSocket 信令中继，只监听 localhost，把收到的帧原样转发给其他连接。
+ * 只在单元测试里用，替代真实信令服务器，不打进 APK
+ */
+public class LocalSignalingRelay {
+
+    private static final String WS_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_BINARY = 0x2;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+    private static final int MAX_FRAME_SIZE = 1 << 20;
+
+    private final int requestedPort;
+    private final boolean echoToSender;
+    private final CopyOnWriteArrayList<Connection> connections = new CopyOnWriteArrayList<>();
+
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+
+    /**
+     * @param port         0 表示随机端口，启动后通过 {@link #getPort()} 获取
+     * @param echoToSender 是否同时回送给发送方，单机同时跑两端 PeerConnection 时需要打开
+     */
+    public LocalSignalingRelay(int port, boolean echoToSender) {
+        this.requestedPort = port;
+        this.echoToSender = echoToSender;
+    }
+
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        serverSocket = new ServerSocket(requestedPort, 16, InetAddress.getLoopbackAddress());
+        acceptThread = new Thread(this::acceptLoop, "SignalingRelay-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public synchronized int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
+    }
+
+    public String getUrl() {
+        return "ws://127.0.0.1:" + getPort() + "/";
+    }
+
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        closeQuietly(serverSocket);
+        serverSocket = null;
+        for (Connection c : connections) {
+            c.close();
+        }
+        connections.clear();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    private void acceptLoop() {
+        ServerSocket server;
+        synchronized (this) {
+            server = serverSocket;
+        }
+        while (server != null && !server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                Thread t = new Thread(connection, "SignalingRelay-conn");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                // stop() 关闭 ServerSocket 时会走到这里
+                return;
+            }
+        }
+    }
+
+    private void broadcast(Connection from, int opcode, byte[] payload) {
+        for (Connection c : connections) {
+            if (c != from || echoToSender) {
+                c.sendFrame(opcode, payload);
+            }
+        }
+    }
+
+    private final class Connection implements Runnable {
+        private final Socket socket;
+        private OutputStream out;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                out = socket.getOutputStream();
+                if (!handshake(in)) {
+                    close();
+                    return;
+                }
+                connections.add(this);
+                readLoop(in);
+            } catch (IOException ignored) {
+                // 对端断开
+            } finally {
+                connections.remove(this);
+                close();
+            }
+        }
+
+        private boolean handshake(InputStream in) throws IOException {
+            String key = null;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.US)
+                        .equals("sec-websocket-key")) {
+                    key = line.substring(colon + 1).trim();
+                }
+            }
+            if (key == null) {
+                return false;
+            }
+            String accept = ByteString.encodeUtf8(key + WS_GUID).sha1().base64();
+            String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n";
+            synchronized (this) {
+                out.write(response.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+            return true;
+        }
+
+        private void readLoop(InputStream in) throws IOException {
+            while (true) {
+                int b0 = readByte(in);
+                int b1 = readByte(in);
+                int opcode = b0 & 0x0F;
+                boolean masked = (b1 & 0x80) != 0;
+                long length = b1 & 0x7F;
+                if (length == 126) {
+                    length = (readByte(in) << 8) | readByte(in);
+                } else if (length == 127) {
+                    length = 0;
+                    for (int i = 0; i < 8; i++) {
+                        length = (length << 8) | readByte(in);
+                    }
+                }
+                if (length > MAX_FRAME_SIZE) {
+                    throw new IOException("frame too large: " + length);
+                }
+                byte[] mask = new byte[4];
+                if (masked) {
+                    readFully(in, mask);
+                }
+                byte[] payload = new byte[(int) length];
+                readFully(in, payload);
+                if (masked) {
+                    for (int i = 0; i < payload.length; i++) {
+                        payload[i] ^= mask[i & 3];
+                    }
+                }
+                // 信令消息都很小，这里不处理分片帧
+                switch (opcode) {
+                    case OPCODE_TEXT:
+                    case OPCODE_BINARY:
+                        broadcast(this, opcode, payload);
+                        break;
+                    case OPCODE_PING:
+                        sendFrame(OPCODE_PONG, payload);
+                        break;
+                    case OPCODE_CLOSE:
+                        sendFrame(OPCODE_CLOSE, payload);
+                        return;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        synchronized void sendFrame(int opcode, byte[] payload) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.write(0x80 | opcode);
+                int len = payload.length;
+                if (len < 126) {
+                    out.write(len);
+                } else if (len <= 0xFFFF) {
+                    out.write(126);
+                    out.write(len >>> 8);
+                    out.write(len & 0xFF);
+                } else {
+                    out.write(127);
+                    for (int i = 7; i >= 0; i--) {
+                        out.write(i >= 4 ? 0 : (len >>> (8 * i)) & 0xFF);
+                    }
+                }
+                out.write(payload);
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            closeQuietly(socket);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                break;
+            }
+            if (c != '\r') {
+                sb.append((char) c);
+            }
+        }
+        if (c == -1) {
+            throw new EOFException();
+        }
+        return sb.toString();
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private static void readFully(InputStream in, byte[] buf) throws IOException {
+        int off = 0;
+        while (off < buf.length) {
+            int n = in.read(buf, off, buf.length - off);
+            if (n == -1) {
+                throw new EOFException();
+            }
+            off += n;
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.webrtcdemo.messenger.signaling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * LoopbackTransport 的回送顺序、缓冲区拷贝和关闭
+ */
+public class LoopbackTransportTest {
+
+    @Test
+    public void echoesFramesInOrder() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport();
+        RecordingListener listener = new RecordingListener();
+        transport.connect(listener);
+        assertTrue(listener.awaitOpen());
+
+        byte[] buffer = new byte[4];
+        for (int i = 0; i < 100; i++) {
+            buffer[1] = (byte) i;
+            buffer[2] = (byte) (i * 3);
+            assertTrue(transport.send(buffer, 1, 2, true));
+        }
+        for (int i = 0; i < 100; i++) {
+            // 发送方复用缓冲区，回送的是发送时的内容
+            assertArrayEquals(new byte[]{(byte) i, (byte) (i * 3)}, listener.nextMessage());
+        }
+        transport.close();
+    }
+
+    @Test
+    public void closeReportsOnceAndRejectsSends() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport();
+        RecordingListener listener = new RecordingListener();
+        transport.connect(listener);
+        assertTrue(listener.awaitOpen());
+
+        transport.close();
+        assertTrue(listener.awaitClosed());
+        assertNull(listener.closeCause);
+        byte[] data = {1};
+        assertFalse(transport.send(data, 0, 1, true));
+        transport.close();
+        assertEquals(1, listener.closeCount.get());
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.webrtcdemo.messenger.signaling;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的 SignalingTransport.Listener，记录回调次数和收到的帧
+ */
+class RecordingListener implements SignalingTransport.Listener {
+
+    static final long TIMEOUT_MS = 5000;
+
+    final CountDownLatch opened = new CountDownLatch(1);
+    final CountDownLatch closed = new CountDownLatch(1);
+    final AtomicInteger openCount = new AtomicInteger();
+    final AtomicInteger closeCount = new AtomicInteger();
+    final BlockingQueue<byte[]> messages = new LinkedBlockingQueue<>();
+    volatile Throwable closeCause;
+
+    /** onOpen 里要立刻执行的动作，模拟 SignalingClient 在 onOpen 里补发积压的消息 */
+    volatile Runnable onOpenAction;
+
+    @Override
+    public void onOpen() {
+        openCount.incrementAndGet();
+        Runnable action = onOpenAction;
+        if (action != null) {
+            action.run();
+        }
+        opened.countDown();
+    }
+
+    @Override
+    public void onMessage(byte[] data, int offset, int length) {
+        messages.add(Arrays.copyOfRange(data, offset, offset + length));
+    }
+
+    @Override
+    public void onClosed(Throwable cause) {
+        closeCause = cause;
+        closeCount.incrementAndGet();
+        closed.countDown();
+    }
+
+    boolean awaitOpen() throws InterruptedException {
+        return opened.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    boolean awaitClosed() throws InterruptedException {
+        return closed.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    byte[] nextMessage() throws InterruptedException {
+        return messages.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    String nextText() throws InterruptedException {
+        byte[] data = nextMessage();
+        return data != null ? new String(data, StandardCharsets.UTF_8) : null;
+    }
+}
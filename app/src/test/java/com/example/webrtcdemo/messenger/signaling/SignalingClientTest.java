@@ -0,0 +1,227 @@
+package com.example.webrtcdemo.messenger.signaling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.webrtcdemo.messenger.signaling.codec.BinarySignalingCodec;
+import com.example.webrtcdemo.messenger.signaling.codec.SignalingMessage;
+
+import org.junit.After;
+import org.junit.Test;
+import org.webrtc.IceCandidate;
+import org.webrtc.SessionDescription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SignalingClient 的 candidate 合并、断线补发和接收去重
+ */
+public class SignalingClientTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final FakeTransport transport = new FakeTransport();
+    private final SignalingClient client = new SignalingClient(transport);
+    private final BinarySignalingCodec decoder = new BinarySignalingCodec();
+
+    @After
+    public void tearDown() {
+        client.close();
+        decoder.release();
+    }
+
+    @Test
+    public void candidatesOfOnePeerAreBatched() throws Exception {
+        client.setIceBatchWindowMs(60_000);
+        connect();
+        for (int i = 0; i < 3; i++) {
+            client.sendIceCandidate("a", candidate(i));
+        }
+        client.sendIceCandidate("b", candidate(9));
+        client.flushIceCandidates("a");
+
+        SignalingMessage msg = nextSent();
+        assertEquals(SignalingMessage.TYPE_CANDIDATES, msg.type);
+        assertEquals("a", msg.peer);
+        assertEquals(3, msg.candidateCount);
+        for (int i = 0; i < 3; i++) {
+            assertEquals("candidate:" + i, msg.candidateSdps[i]);
+            assertEquals(i, msg.candidateMLineIndexes[i]);
+        }
+        // b 的批次还在等窗口
+        assertNull(transport.sent.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void batchIsSentWhenWindowExpires() throws Exception {
+        client.setIceBatchWindowMs(20);
+        connect();
+        client.sendIceCandidate("a", candidate(0));
+        client.sendIceCandidate("a", candidate(1));
+
+        SignalingMessage msg = nextSent();
+        assertEquals(2, msg.candidateCount);
+    }
+
+    @Test
+    public void zeroWindowSendsEachCandidate() throws Exception {
+        client.setIceBatchWindowMs(0);
+        connect();
+        client.sendIceCandidate("a", candidate(0));
+        client.sendIceCandidate("a", candidate(1));
+
+        assertEquals(1, nextSent().candidateCount);
+        assertEquals(1, nextSent().candidateCount);
+    }
+
+    @Test
+    public void pendingMessagesAreSentOnOpen() throws Exception {
+        client.sendOffer("a", new SessionDescription(SessionDescription.Type.OFFER, "v=0 offer"));
+        client.sendAnswer("b", new SessionDescription(SessionDescription.Type.ANSWER, "v=0 answer"));
+        connect();
+
+        SignalingMessage offer = nextSent();
+        assertEquals(SignalingMessage.TYPE_OFFER, offer.type);
+        assertEquals("v=0 offer", offer.sdp);
+        assertEquals(1, offer.seq);
+        SignalingMessage answer = nextSent();
+        assertEquals(SignalingMessage.TYPE_ANSWER, answer.type);
+        assertEquals(2, answer.seq);
+    }
+
+    @Test
+    public void recentMessagesAreResentAfterReconnect() throws Exception {
+        connect();
+        for (int i = 0; i < 3; i++) {
+            client.sendOffer("a", new SessionDescription(SessionDescription.Type.OFFER, "sdp" + i));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, nextSent().seq);
+        }
+
+        transport.open = false;
+        transport.listener.onClosed(new RuntimeException("dropped"));
+        // 断线期间产生的消息排在补发的后面
+        client.sendOffer("a", new SessionDescription(SessionDescription.Type.OFFER, "sdp3"));
+        assertTrue(transport.connects.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        transport.open = true;
+        transport.listener.onOpen();
+
+        for (int i = 0; i < 4; i++) {
+            SignalingMessage msg = nextSent();
+            assertEquals(i + 1, msg.seq);
+            assertEquals("sdp" + i, msg.sdp);
+        }
+    }
+
+    @Test
+    public void duplicateMessagesAreDropped() throws Exception {
+        RecordingCallback callback = new RecordingCallback();
+        client.setCallback(callback);
+        connect();
+
+        byte[] first = encode("remote", 1, "offer-1");
+        byte[] second = encode("remote", 2, "offer-2");
+        transport.listener.onMessage(first, 0, first.length);
+        transport.listener.onMessage(first, 0, first.length);
+        transport.listener.onMessage(second, 0, second.length);
+        transport.listener.onMessage(first, 0, first.length);
+        // 另一个发送方的 seq 单独计算
+        byte[] other = encode("other", 1, "offer-3");
+        transport.listener.onMessage(other, 0, other.length);
+
+        assertTrue(callback.received.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(Arrays.asList("offer-1", "offer-2", "offer-3"), callback.offers);
+    }
+
+    private void connect() throws InterruptedException {
+        client.connect();
+        assertTrue(transport.connects.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        transport.open = true;
+        transport.listener.onOpen();
+    }
+
+    private SignalingMessage nextSent() throws Exception {
+        byte[] frame = transport.sent.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(frame);
+        SignalingMessage msg = new SignalingMessage();
+        decoder.decode(frame, 0, frame.length, msg);
+        return msg;
+    }
+
+    private static byte[] encode(String from, long seq, String sdp) {
+        BinarySignalingCodec codec = new BinarySignalingCodec();
+        SignalingMessage msg = new SignalingMessage();
+        msg.type = SignalingMessage.TYPE_OFFER;
+        msg.from = from;
+        msg.seq = seq;
+        msg.peer = "p";
+        msg.sdp = sdp;
+        int length = codec.encode(msg);
+        byte[] frame = Arrays.copyOf(codec.buffer(), length);
+        codec.release();
+        return frame;
+    }
+
+    private static IceCandidate candidate(int index) {
+        return new IceCandidate("mid" + index, index, "candidate:" + index);
+    }
+
+    /**
+     * 由测试控制连接建立和断开的传输，记录发出的帧
+     */
+    private static final class FakeTransport implements SignalingTransport {
+        final Semaphore connects = new Semaphore(0);
+        final BlockingQueue<byte[]> sent = new LinkedBlockingQueue<>();
+        volatile Listener listener;
+        volatile boolean open;
+
+        @Override
+        public void connect(Listener listener) {
+            this.listener = listener;
+            connects.release();
+        }
+
+        @Override
+        public boolean send(byte[] data, int offset, int length, boolean binary) {
+            if (!open) {
+                return false;
+            }
+            sent.add(Arrays.copyOfRange(data, offset, offset + length));
+            return true;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    private static final class RecordingCallback implements SignalingClient.Callback {
+        final List<String> offers = new ArrayList<>();
+        final CountDownLatch received = new CountDownLatch(3);
+
+        @Override
+        public void onOfferReceived(String peerId, SessionDescription offer) {
+            offers.add(offer.description);
+            received.countDown();
+        }
+
+        @Override
+        public void onAnswerReceived(String peerId, SessionDescription answer) {
+        }
+
+        @Override
+        public void onIceCandidatesReceived(String peerId, List<IceCandidate> candidates) {
+        }
+    }
+}
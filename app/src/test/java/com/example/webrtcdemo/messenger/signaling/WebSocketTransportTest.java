@@ -0,0 +1,176 @@
+package com.example.webrtcdemo.messenger.signaling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WebSocketTransport 连到本机的 LocalSignalingRelay 上测试收发、重连和迟到回调
+ */
+public class WebSocketTransportTest {
+
+    private LocalSignalingRelay relay;
+    private final List<WebSocketTransport> transports = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        relay = new LocalSignalingRelay(0, false);
+        relay.start();
+    }
+
+    @After
+    public void tearDown() {
+        for (WebSocketTransport transport : transports) {
+            transport.close();
+        }
+        relay.stop();
+    }
+
+    @Test
+    public void relaysBinaryAndTextFrames() throws Exception {
+        RecordingListener a = new RecordingListener();
+        RecordingListener b = new RecordingListener();
+        WebSocketTransport ta = connect(a);
+        connect(b);
+        awaitConnections(2);
+
+        byte[] binary = {1, 2, 3, 0, (byte) 0xFF};
+        byte[] framed = new byte[binary.length + 4];
+        System.arraycopy(binary, 0, framed, 2, binary.length);
+        assertTrue(ta.send(framed, 2, binary.length, true));
+        assertArrayEquals(binary, b.nextMessage());
+
+        byte[] text = "{\"type\":\"offer\",\"sdp\":\"信令\"}".getBytes(StandardCharsets.UTF_8);
+        assertTrue(ta.send(text, 0, text.length, false));
+        assertArrayEquals(text, b.nextMessage());
+
+        assertNull("relay must not echo to the sender", a.messages.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void sendFromOnOpenIsDelivered() throws Exception {
+        RecordingListener receiver = new RecordingListener();
+        connect(receiver);
+        awaitConnections(1);
+
+        // 回调可能早于 connect 返回，onOpen 里立刻发送也要能发出去
+        RecordingListener sender = new RecordingListener();
+        AtomicBoolean sent = new AtomicBoolean();
+        WebSocketTransport[] holder = new WebSocketTransport[1];
+        sender.onOpenAction = () -> {
+            byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+            WebSocketTransport transport;
+            synchronized (holder) {
+                transport = holder[0];
+            }
+            if (transport != null) {
+                sent.set(transport.send(data, 0, data.length, false));
+            }
+        };
+        WebSocketTransport transport = new WebSocketTransport(relay.getUrl());
+        transports.add(transport);
+        synchronized (holder) {
+            holder[0] = transport;
+            transport.connect(sender);
+        }
+        assertTrue(sender.awaitOpen());
+        assertTrue(sent.get());
+        assertEquals("hello", receiver.nextText());
+    }
+
+    @Test
+    public void everyConnectionDeliversOpen() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            RecordingListener listener = new RecordingListener();
+            WebSocketTransport transport = connect(listener);
+            assertTrue("connection " + i + " lost onOpen", listener.awaitOpen());
+            transport.close();
+        }
+    }
+
+    @Test
+    public void closedConnectionStopsCallbacks() throws Exception {
+        RecordingListener first = new RecordingListener();
+        WebSocketTransport transport = connect(first);
+        assertTrue(first.awaitOpen());
+        transport.close();
+        byte[] data = {1};
+        assertFalse(transport.send(data, 0, 1, true));
+
+        RecordingListener second = new RecordingListener();
+        transport.connect(second);
+        assertTrue(second.awaitOpen());
+
+        RecordingListener other = new RecordingListener();
+        WebSocketTransport peer = connect(other);
+        assertTrue(other.awaitOpen());
+        awaitConnections(2);
+        assertTrue(peer.send(data, 0, 1, true));
+        assertArrayEquals(data, second.nextMessage());
+
+        assertEquals(1, first.openCount.get());
+        assertEquals(0, first.closeCount.get());
+        assertTrue(first.messages.isEmpty());
+    }
+
+    @Test
+    public void relayStopReportsClosed() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        WebSocketTransport transport = connect(listener);
+        assertTrue(listener.awaitOpen());
+        relay.stop();
+        assertTrue(listener.awaitClosed());
+        assertEquals(1, listener.closeCount.get());
+        assertNotNull(listener.closeCause);
+        byte[] data = {1};
+        assertFalse(transport.send(data, 0, 1, true));
+    }
+
+    @Test
+    public void echoRelayReturnsOwnFrames() throws Exception {
+        relay.stop();
+        relay = new LocalSignalingRelay(0, true);
+        relay.start();
+        RecordingListener listener = new RecordingListener();
+        WebSocketTransport transport = connect(listener);
+        awaitConnections(1);
+        byte[] data = new byte[70000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        assertTrue(transport.send(data, 0, data.length, true));
+        assertArrayEquals(data, listener.nextMessage());
+    }
+
+    private WebSocketTransport connect(RecordingListener listener) {
+        WebSocketTransport transport = new WebSocketTransport(relay.getUrl());
+        transports.add(transport);
+        transport.connect(listener);
+        return transport;
+    }
+
+    /**
+     * 中继在握手之后才把连接加入转发列表，发送前要等它登记完
+     */
+    private void awaitConnections(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RecordingListener.TIMEOUT_MS;
+        while (relay.getConnectionCount() < count) {
+            assertTrue("relay has " + relay.getConnectionCount() + " connections",
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
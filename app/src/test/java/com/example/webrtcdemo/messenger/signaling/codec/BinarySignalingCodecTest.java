@@ -0,0 +1,324 @@
+package com.example.webrtcdemo.messenger.signaling.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * BinarySignalingCodec 的往返和畸形帧测试
+ */
+public class BinarySignalingCodecTest {
+
+    private BinarySignalingCodec codec;
+    private BinarySignalingCodec decoder;
+
+    @Before
+    public void setUp() {
+        codec = new BinarySignalingCodec();
+        decoder = new BinarySignalingCodec();
+    }
+
+    @After
+    public void tearDown() {
+        codec.release();
+        decoder.release();
+    }
+
+    @Test
+    public void offerRoundTripCompressed() throws Exception {
+        SignalingMessage offer = description(SignalingMessage.TYPE_OFFER, sampleSdp());
+        int length = codec.encode(offer);
+        assertTrue("a 2KB+ SDP should be deflated", length < offer.sdp.length() / 2);
+
+        SignalingMessage decoded = roundTrip(offer);
+        assertDescription(offer, decoded);
+    }
+
+    @Test
+    public void offerRoundTripUncompressed() throws Exception {
+        BinarySignalingCodec plain = new BinarySignalingCodec(false);
+        try {
+            SignalingMessage offer = description(SignalingMessage.TYPE_OFFER, sampleSdp());
+            int length = plain.encode(offer);
+            assertTrue(length > offer.sdp.length());
+
+            SignalingMessage decoded = new SignalingMessage();
+            decoder.decode(plain.buffer(), 0, length, decoded);
+            assertDescription(offer, decoded);
+        } finally {
+            plain.release();
+        }
+    }
+
+    @Test
+    public void shortSdpIsNotCompressed() throws Exception {
+        SignalingMessage answer = description(SignalingMessage.TYPE_ANSWER, "v=0\r\ns=-\r\n");
+        codec.encode(answer);
+        assertEquals(0, codec.buffer()[2]);
+        assertDescription(answer, roundTrip(answer));
+    }
+
+    @Test
+    public void answerRoundTripWithNonAsciiSdp() throws Exception {
+        SignalingMessage answer = description(SignalingMessage.TYPE_ANSWER,
+                sampleSdp() + "a=x-label:摄像头 📷 é\r\n");
+        answer.peer = null;
+        assertDescription(answer, roundTrip(answer));
+    }
+
+    @Test
+    public void candidateBatchRoundTrip() throws Exception {
+        SignalingMessage batch = new SignalingMessage();
+        batch.type = SignalingMessage.TYPE_CANDIDATES;
+        batch.from = "client-a";
+        batch.seq = 1L << 40;
+        batch.peer = "peer-1:offerer";
+        for (int i = 0; i < 20; i++) {
+            batch.addCandidate(i % 3 == 0 ? null : "0", i, candidate(i));
+        }
+
+        SignalingMessage decoded = roundTrip(batch);
+        assertEquals(batch.type, decoded.type);
+        assertEquals(batch.seq, decoded.seq);
+        assertEquals(batch.candidateCount, decoded.candidateCount);
+        for (int i = 0; i < batch.candidateCount; i++) {
+            assertEquals(batch.candidateMids[i], decoded.candidateMids[i]);
+            assertEquals(batch.candidateMLineIndexes[i], decoded.candidateMLineIndexes[i]);
+            assertEquals(batch.candidateSdps[i], decoded.candidateSdps[i]);
+        }
+    }
+
+    @Test
+    public void emptyCandidateBatchRoundTrip() throws Exception {
+        SignalingMessage batch = new SignalingMessage();
+        batch.type = SignalingMessage.TYPE_CANDIDATES;
+        batch.from = "client-a";
+        assertEquals(0, roundTrip(batch).candidateCount);
+    }
+
+    @Test
+    public void decodeReusesMessage() throws Exception {
+        SignalingMessage batch = new SignalingMessage();
+        batch.type = SignalingMessage.TYPE_CANDIDATES;
+        batch.from = "client-a";
+        batch.addCandidate("0", 0, candidate(0));
+        SignalingMessage out = new SignalingMessage();
+        decoder.decode(copy(codec.encode(batch)), 0, codec.encode(batch), out);
+
+        SignalingMessage offer = description(SignalingMessage.TYPE_OFFER, sampleSdp());
+        int length = codec.encode(offer);
+        decoder.decode(copy(length), 0, length, out);
+        assertEquals(0, out.candidateCount);
+        assertEquals(offer.sdp, out.sdp);
+    }
+
+    @Test
+    public void decodeAtOffset() throws Exception {
+        SignalingMessage offer = description(SignalingMessage.TYPE_OFFER, sampleSdp());
+        int length = codec.encode(offer);
+        byte[] framed = new byte[length + 10];
+        System.arraycopy(codec.buffer(), 0, framed, 7, length);
+        SignalingMessage decoded = new SignalingMessage();
+        decoder.decode(framed, 7, length, decoded);
+        assertDescription(offer, decoded);
+    }
+
+    @Test
+    public void rejectsUnknownVersion() {
+        int length = codec.encode(description(SignalingMessage.TYPE_OFFER, "v=0"));
+        byte[] frame = copy(length);
+        frame[0] = 2;
+        assertMalformed(frame);
+    }
+
+    @Test
+    public void rejectsUnknownType() {
+        int length = codec.encode(description(SignalingMessage.TYPE_OFFER, "v=0"));
+        byte[] frame = copy(length);
+        frame[1] = 42;
+        assertMalformed(frame);
+    }
+
+    @Test
+    public void rejectsEveryTruncation() {
+        SignalingMessage batch = new SignalingMessage();
+        batch.type = SignalingMessage.TYPE_CANDIDATES;
+        batch.from = "client-a";
+        batch.peer = "peer-1:offerer";
+        batch.addCandidate("0", 0, candidate(0));
+        batch.addCandidate(null, 1, candidate(1));
+        byte[] candidates = copy(codec.encode(batch));
+        byte[] offer = copy(codec.encode(description(SignalingMessage.TYPE_OFFER, sampleSdp())));
+        for (byte[] frame : new byte[][]{candidates, offer}) {
+            for (int length = 0; length < frame.length; length++) {
+                assertMalformed(Arrays.copyOf(frame, length));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsHugeCandidateCountWithoutAllocating() {
+        ByteArrayOutputStream frame = header(SignalingMessage.TYPE_CANDIDATES, 0);
+        writeVarint(frame, 1 << 20);
+        assertMalformed(frame.toByteArray());
+    }
+
+    @Test
+    public void rejectsCandidateCountAboveLimit() {
+        ByteArrayOutputStream frame = header(SignalingMessage.TYPE_CANDIDATES, 0);
+        int count = BinarySignalingCodec.MAX_CANDIDATES + 1;
+        writeVarint(frame, count);
+        for (int i = 0; i < count; i++) {
+            // sdpMid=null, index=0, candidate=""
+            frame.write(0);
+            frame.write(0);
+            frame.write(0);
+        }
+        assertMalformed(frame.toByteArray());
+    }
+
+    @Test
+    public void rejectsOversizedLength() {
+        ByteArrayOutputStream frame = header(SignalingMessage.TYPE_OFFER, 0);
+        writeVarint(frame, (1 << 20) + 1);
+        assertMalformed(frame.toByteArray());
+    }
+
+    @Test
+    public void rejectsOverlongVarint() {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(BinarySignalingCodec.VERSION);
+        frame.write(SignalingMessage.TYPE_OFFER);
+        frame.write(0);
+        for (int i = 0; i < 11; i++) {
+            frame.write(0xFF);
+        }
+        assertMalformed(frame.toByteArray());
+    }
+
+    @Test
+    public void rejectsImplausibleDeflateRatio() {
+        ByteArrayOutputStream frame = header(SignalingMessage.TYPE_OFFER, 1);
+        writeVarint(frame, 1 << 20);
+        writeVarint(frame, 4);
+        frame.write(1);
+        frame.write(2);
+        frame.write(3);
+        frame.write(4);
+        assertMalformed(frame.toByteArray());
+    }
+
+    @Test
+    public void rejectsCorruptDeflatedSdp() {
+        SignalingMessage offer = description(SignalingMessage.TYPE_OFFER, sampleSdp());
+        byte[] frame = copy(codec.encode(offer));
+        for (int i = frame.length - 40; i < frame.length; i++) {
+            frame[i] ^= 0x5A;
+        }
+        assertMalformed(frame);
+    }
+
+    @Test
+    public void decoderStillWorksAfterMalformedFrame() throws Exception {
+        assertMalformed(new byte[]{1, 1, 1, 0, 1, 'a', 0, (byte) 0x80});
+        SignalingMessage offer = description(SignalingMessage.TYPE_OFFER, sampleSdp());
+        assertDescription(offer, roundTrip(offer));
+    }
+
+    private SignalingMessage roundTrip(SignalingMessage message) throws SignalingCodecException {
+        int length = codec.encode(message);
+        SignalingMessage decoded = new SignalingMessage();
+        decoder.decode(copy(length), 0, length, decoded);
+        return decoded;
+    }
+
+    private byte[] copy(int length) {
+        return Arrays.copyOf(codec.buffer(), length);
+    }
+
+    private void assertMalformed(byte[] frame) {
+        try {
+            decoder.decode(frame, 0, frame.length, new SignalingMessage());
+            fail("accepted malformed frame " + Arrays.toString(frame));
+        } catch (SignalingCodecException expected) {
+            // ok
+        }
+    }
+
+    private static void assertDescription(SignalingMessage expected, SignalingMessage actual) {
+        assertEquals(expected.type, actual.type);
+        assertEquals(expected.from, actual.from);
+        assertEquals(expected.seq, actual.seq);
+        assertEquals(expected.peer, actual.peer);
+        assertEquals(expected.sdp, actual.sdp);
+        assertArrayEquals(expected.sdp.getBytes(java.nio.charset.StandardCharsets.UTF_8),
+                actual.sdp.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    private static ByteArrayOutputStream header(byte type, int flags) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(BinarySignalingCodec.VERSION);
+        frame.write(type);
+        frame.write(flags);
+        writeVarint(frame, 1);
+        // from = "a"
+        writeVarint(frame, 1);
+        frame.write('a');
+        // peer = null
+        writeVarint(frame, 0);
+        return frame;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static SignalingMessage description(byte type, String sdp) {
+        SignalingMessage message = new SignalingMessage();
+        message.type = type;
+        message.from = "client-a";
+        message.seq = 7;
+        message.peer = "peer-1:offerer";
+        message.sdp = sdp;
+        return message;
+    }
+
+    static String candidate(int i) {
+        return "candidate:" + (842163049 + i) + " 1 udp 1677729535 203.0.113." + (i % 250)
+                + " " + (50000 + i) + " typ srflx raddr 192.168.1." + (i % 250) + " rport " + (40000 + i)
+                + " generation 0 ufrag sX3a network-id 3 network-cost 10";
+    }
+
+    static String sampleSdp() {
+        StringBuilder sdp = new StringBuilder("v=0\r\no=- 4611731400430051336 2 IN IP4 127.0.0.1\r\ns=-\r\nt=0 0\r\n"
+                + "a=group:BUNDLE 0 1 2\r\na=msid-semantic: WMS local\r\n");
+        String[] kinds = {"audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126",
+                "video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 102 121 127 120 125 107 108 109 124 119 123"};
+        for (int m = 0; m < kinds.length; m++) {
+            sdp.append("m=").append(kinds[m]).append("\r\nc=IN IP4 0.0.0.0\r\na=rtcp:9 IN IP4 0.0.0.0\r\n")
+                    .append("a=ice-ufrag:sX3a\r\na=ice-pwd:8o5Q2cZ6RfhmH7lVmuQ0Fv7u\r\na=ice-options:trickle\r\n")
+                    .append("a=fingerprint:sha-256 4F:2B:8A:77:1C:9E:0D:51:A6:33:E0:BC:49:5E:12:7D:"
+                            + "93:AA:0F:C2:61:38:D4:8E:75:19:B0:6F:2C:E3:44:8D\r\n")
+                    .append("a=setup:actpass\r\na=mid:").append(m).append("\r\na=sendrecv\r\na=rtcp-mux\r\n");
+            for (int pt = 96; pt < 110; pt++) {
+                sdp.append("a=rtpmap:").append(pt).append(" VP8/90000\r\na=rtcp-fb:").append(pt)
+                        .append(" goog-remb\r\na=rtcp-fb:").append(pt).append(" transport-cc\r\na=rtcp-fb:")
+                        .append(pt).append(" nack pli\r\n");
+            }
+        }
+        return sdp.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.webrtcdemo.messenger.simulcast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.webrtc.RtpParameters;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * SimulcastController 的编码列表、按观看高度选层和层开关
+ */
+public class SimulcastControllerTest {
+
+    private final SimulcastController controller = new SimulcastController(SimulcastController.DEFAULT_LAYERS);
+
+    @Test
+    public void encodingsFollowLayers() {
+        List<RtpParameters.Encoding> encodings = controller.buildEncodings();
+        assertEquals(3, encodings.size());
+        RtpParameters.Encoding quarter = encodings.get(2);
+        assertEquals("q", quarter.rid);
+        assertTrue(quarter.active);
+        assertEquals(4.0, quarter.scaleResolutionDownBy, 0);
+        assertEquals(150_000, (int) quarter.maxBitrateBps);
+        assertEquals(15, (int) quarter.maxFramerate);
+
+        assertEquals(2.0, controller.getLayer("h").scaleResolutionDownBy, 0);
+        assertNull(controller.getLayer("x"));
+    }
+
+    @Test
+    public void keepsSmallestSufficientLayerAndBelow() {
+        assertEquals(Arrays.asList("f", "h", "q"), controller.layersForHeight(720, 720));
+        assertEquals(Arrays.asList("h", "q"), controller.layersForHeight(360, 720));
+        assertEquals(Arrays.asList("h", "q"), controller.layersForHeight(300, 720));
+        assertEquals(Arrays.asList("q"), controller.layersForHeight(180, 720));
+        assertEquals(Arrays.asList("q"), controller.layersForHeight(90, 720));
+        // 没有哪层够高时全部保留
+        assertEquals(Arrays.asList("f", "h", "q"), controller.layersForHeight(1080, 720));
+    }
+
+    @Test
+    public void applyActiveReportsChanges() {
+        List<RtpParameters.Encoding> encodings = controller.buildEncodings();
+        assertTrue(SimulcastController.applyActive(encodings, new HashSet<>(Arrays.asList("h", "q"))));
+        assertFalse(encodings.get(0).active);
+        assertTrue(encodings.get(1).active);
+        assertTrue(encodings.get(2).active);
+
+        assertFalse(SimulcastController.applyActive(encodings, new HashSet<>(Arrays.asList("h", "q"))));
+    }
+
+    @Test
+    public void detachedControllerDoesNothing() {
+        assertFalse(controller.setActiveLayers(Collections.singletonList("f")));
+        assertFalse(controller.limitToHeight(360, 720));
+        assertEquals(0, controller.activeLayerCount());
+    }
+}
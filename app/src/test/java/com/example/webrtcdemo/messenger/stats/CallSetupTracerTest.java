@@ -0,0 +1,95 @@
+package com.example.webrtcdemo.messenger.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.webrtcdemo.messenger.stats.CallSetupTracer.Phase;
+import com.example.webrtcdemo.messenger.stats.CallSetupTracer.PhaseStats;
+
+import org.junit.Test;
+
+/**
+ * CallSetupTracer 的打点、归档和分位数
+ */
+public class CallSetupTracerTest {
+
+    private static final long MS = 1_000_000;
+    private static final double DELTA = 1e-9;
+
+    private final CallSetupTracer tracer = new CallSetupTracer();
+
+    @Test
+    public void marksBeforeBeginCallAreIgnored() {
+        tracer.mark(Phase.ICE_CONNECTED, 10 * MS);
+        PhaseStats stats = tracer.stats(Phase.ICE_CONNECTED);
+        assertEquals(-1, stats.lastMs, DELTA);
+        assertEquals(0, stats.count);
+        assertEquals(-1, stats.p50Ms, DELTA);
+    }
+
+    @Test
+    public void currentCallIsReportedBeforeCommit() {
+        tracer.beginCall(1000 * MS);
+        tracer.mark(Phase.OFFER_CREATED, 1012 * MS);
+        // 重复打点保留第一次
+        tracer.mark(Phase.OFFER_CREATED, 1500 * MS);
+
+        assertEquals(12, tracer.stats(Phase.OFFER_CREATED).lastMs, DELTA);
+        assertEquals(-1, tracer.stats(Phase.ICE_CONNECTED).lastMs, DELTA);
+        assertEquals(0, tracer.stats(Phase.OFFER_CREATED).count);
+    }
+
+    @Test
+    public void firstFrameRenderedCommitsTheCall() {
+        tracer.beginCall(1000 * MS);
+        tracer.mark(Phase.ICE_CONNECTED, 1100 * MS);
+        tracer.mark(Phase.FIRST_FRAME_RENDERED, 1250 * MS);
+        // 归档后到下一次 beginCall 之前的打点不算
+        tracer.mark(Phase.ICE_CHECKING, 1300 * MS);
+
+        PhaseStats rendered = tracer.stats(Phase.FIRST_FRAME_RENDERED);
+        assertEquals(250, rendered.lastMs, DELTA);
+        assertEquals(1, rendered.count);
+        assertEquals(250, rendered.p99Ms, DELTA);
+        assertEquals(0, tracer.stats(Phase.ICE_CHECKING).count);
+        assertEquals(-1, tracer.stats(Phase.ICE_CHECKING).lastMs, DELTA);
+    }
+
+    @Test
+    public void percentilesSkipCallsThatMissedThePhase() {
+        for (int i = 1; i <= 10; i++) {
+            long start = i * 10_000 * MS;
+            tracer.beginCall(start);
+            tracer.mark(Phase.ICE_CONNECTED, start + i * 10 * MS);
+            if (i % 2 == 0) {
+                tracer.mark(Phase.FIRST_FRAME_DECODED, start + i * MS);
+            }
+        }
+        // 最后一次通话在下一次 beginCall 时归档
+        tracer.beginCall(1_000_000 * MS);
+
+        PhaseStats connected = tracer.stats(Phase.ICE_CONNECTED);
+        assertEquals(10, connected.count);
+        assertEquals(50, connected.p50Ms, DELTA);
+        assertEquals(90, connected.p90Ms, DELTA);
+        assertEquals(100, connected.p99Ms, DELTA);
+
+        PhaseStats decoded = tracer.stats(Phase.FIRST_FRAME_DECODED);
+        assertEquals(5, decoded.count);
+        assertEquals(6, decoded.p50Ms, DELTA);
+        assertEquals(10, decoded.p99Ms, DELTA);
+    }
+
+    @Test
+    public void historyKeepsTheLatestCalls() {
+        for (int i = 0; i < 100; i++) {
+            long start = (i + 1) * 10_000 * MS;
+            tracer.beginCall(start);
+            tracer.mark(Phase.FIRST_FRAME_RENDERED, start + i * MS);
+        }
+        PhaseStats rendered = tracer.stats(Phase.FIRST_FRAME_RENDERED);
+        assertEquals(64, rendered.count);
+        assertEquals(99, rendered.lastMs, DELTA);
+        // 保留的是 36..99
+        assertEquals(67, rendered.p50Ms, DELTA);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.webrtcdemo.messenger.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * FrameStatsRecorder 的窗口、帧间隔直方图和分辨率 / 旋转变化计数
+ */
+public class FrameStatsRecorderTest {
+
+    private static final long MS = 1_000_000;
+    private static final double DELTA = 1e-6;
+
+    private final FrameStatsRecorder recorder = new FrameStatsRecorder(1000);
+
+    @Test
+    public void windowExpiresAfterPublishInterval() {
+        long t = 0;
+        for (int i = 0; i < 30; i++) {
+            assertFalse(recorder.record(t, 640, 480, 0));
+            t += 34 * MS;
+        }
+        assertTrue(recorder.record(t, 640, 480, 0));
+
+        FrameStatsSnapshot snapshot = recorder.publish("local", t);
+        assertEquals("local", snapshot.label);
+        assertEquals(31, snapshot.totalFrames);
+        assertEquals(31, snapshot.windowFrames);
+        assertEquals(31 * 1000.0 / 1020, snapshot.fps, DELTA);
+        assertEquals(34, snapshot.avgIntervalMs, DELTA);
+        assertEquals(34, snapshot.maxIntervalMs, DELTA);
+        // 34ms 落在 [30, 40) 桶
+        assertEquals(30, snapshot.intervalHistogram[3]);
+    }
+
+    @Test
+    public void intervalsAreBucketedByUpperBound() {
+        long[] intervalsMs = {5, 10, 19, 45, 120, 250, 1000};
+        long t = 0;
+        recorder.record(t, 320, 240, 0);
+        for (long interval : intervalsMs) {
+            t += interval * MS;
+            recorder.record(t, 320, 240, 0);
+        }
+
+        FrameStatsSnapshot snapshot = recorder.publish("remote", t);
+        assertArrayEquals(new int[]{1, 2, 0, 0, 1, 0, 0, 1, 0, 2}, snapshot.intervalHistogram);
+        assertEquals(1000, snapshot.maxIntervalMs, DELTA);
+        assertEquals(FrameStatsRecorder.BUCKET_COUNT, snapshot.intervalHistogram.length);
+    }
+
+    @Test
+    public void publishStartsNewWindowButKeepsTotals() {
+        recorder.record(0, 640, 480, 0);
+        recorder.record(20 * MS, 640, 480, 0);
+        recorder.publish("local", 20 * MS);
+
+        recorder.record(60 * MS, 640, 480, 0);
+        FrameStatsSnapshot snapshot = recorder.publish("local", 120 * MS);
+        assertEquals(3, snapshot.totalFrames);
+        assertEquals(1, snapshot.windowFrames);
+        assertEquals(40, snapshot.maxIntervalMs, DELTA);
+        assertEquals(1, snapshot.intervalHistogram[4]);
+        assertEquals(1, sum(snapshot.intervalHistogram));
+    }
+
+    @Test
+    public void countsResolutionAndRotationChanges() {
+        recorder.record(0, 640, 480, 0);
+        recorder.record(MS, 640, 480, 0);
+        recorder.record(2 * MS, 1280, 720, 0);
+        recorder.record(3 * MS, 1280, 720, 90);
+        recorder.record(4 * MS, 640, 480, 270);
+
+        FrameStatsSnapshot snapshot = recorder.publish("local", 4 * MS);
+        assertEquals(640, snapshot.width);
+        assertEquals(480, snapshot.height);
+        assertEquals(270, snapshot.rotation);
+        // 第一帧只是确定初始值，不算变化
+        assertEquals(2, snapshot.resolutionChanges);
+        assertEquals(2, snapshot.rotationChanges);
+    }
+
+    @Test
+    public void emptyWindowHasZeroRates() {
+        FrameStatsSnapshot snapshot = recorder.publish("local", 0);
+        assertEquals(0, snapshot.totalFrames);
+        assertEquals(0, snapshot.fps, DELTA);
+        assertEquals(0, snapshot.avgIntervalMs, DELTA);
+    }
+
+    private static int sum(int[] values) {
+        int total = 0;
+        for (int v : values) {
+            total += v;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.webrtcdemo.messenger.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * StatsRingBuffer 的写满覆盖和按时间顺序拷贝
+ */
+public class StatsRingBufferTest {
+
+    private static final double DELTA = 0;
+
+    private final StatsRingBuffer buffer = new StatsRingBuffer(4);
+
+    @Test
+    public void emptyBufferHasNoLatest() {
+        assertEquals(0, buffer.size());
+        assertTrue(Double.isNaN(buffer.latest(StatsRingBuffer.COL_RTT_MS)));
+        assertEquals(0, buffer.copyLatest(10, output(4)));
+    }
+
+    @Test
+    public void copiesOldestFirstBeforeWrapping() {
+        append(1);
+        append(2);
+        append(3);
+
+        double[][] out = output(4);
+        assertEquals(3, buffer.copyLatest(10, out));
+        assertEquals(3, buffer.size());
+        assertColumn(out, 3, 1, 2, 3);
+        assertEquals(3, buffer.latest(StatsRingBuffer.COL_TIMESTAMP_MS), DELTA);
+    }
+
+    @Test
+    public void overwritesOldestWhenFull() {
+        for (int i = 1; i <= 10; i++) {
+            append(i);
+        }
+        assertEquals(4, buffer.size());
+        assertEquals(4, buffer.capacity());
+
+        double[][] out = output(4);
+        assertEquals(4, buffer.copyLatest(10, out));
+        assertColumn(out, 4, 7, 8, 9, 10);
+        assertEquals(10 * (StatsRingBuffer.COL_RTT_MS + 1), out[StatsRingBuffer.COL_RTT_MS][3], DELTA);
+    }
+
+    @Test
+    public void copyIsLimitedByRequestAndOutputLength() {
+        for (int i = 1; i <= 6; i++) {
+            append(i);
+        }
+        double[][] out = output(4);
+        assertEquals(2, buffer.copyLatest(2, out));
+        assertColumn(out, 2, 5, 6);
+
+        double[][] small = output(3);
+        assertEquals(3, buffer.copyLatest(10, small));
+        assertColumn(small, 3, 4, 5, 6);
+    }
+
+    @Test
+    public void missingMetricsStayNaN() {
+        double[] row = new double[StatsRingBuffer.COLUMN_COUNT];
+        Arrays.fill(row, Double.NaN);
+        row[StatsRingBuffer.COL_TIMESTAMP_MS] = 1;
+        buffer.append(row);
+
+        assertTrue(Double.isNaN(buffer.latest(StatsRingBuffer.COL_JITTER_MS)));
+        assertEquals(StatsRingBuffer.COLUMN_COUNT, StatsRingBuffer.COLUMN_NAMES.length);
+    }
+
+    private void append(int value) {
+        double[] row = new double[StatsRingBuffer.COLUMN_COUNT];
+        for (int c = 0; c < row.length; c++) {
+            row[c] = value * (c + 1);
+        }
+        buffer.append(row);
+    }
+
+    private static double[][] output(int length) {
+        return new double[StatsRingBuffer.COLUMN_COUNT][length];
+    }
+
+    private static void assertColumn(double[][] out, int n, double... timestamps) {
+        assertEquals(n, timestamps.length);
+        for (int i = 0; i < n; i++) {
+            assertEquals(timestamps[i], out[StatsRingBuffer.COL_TIMESTAMP_MS][i], DELTA);
+            assertEquals(timestamps[i] * (StatsRingBuffer.COL_SEND_KBPS + 1),
+                    out[StatsRingBuffer.COL_SEND_KBPS][i], DELTA);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.webrtcdemo.messenger.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.EglBase;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * EglContextManager 按 owner 的引用计数和根上下文的创建 / 释放；EglBase 用动态代理代替
+ */
+public class EglContextManagerTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private Supplier<EglBase> originalCreator;
+    private int createsBefore;
+
+    @Before
+    public void setUp() {
+        originalCreator = EglContextManager.eglCreator;
+        EglContextManager.eglCreator = this::fakeEglBase;
+        createsBefore = EglContextManager.getCreateCount();
+    }
+
+    @After
+    public void tearDown() {
+        EglContextManager.eglCreator = originalCreator;
+        assertEquals("{}", EglContextManager.describeOwners());
+    }
+
+    @Test
+    public void rootIsSharedUntilLastRelease() {
+        EglBase.Context first = EglContextManager.acquire("service");
+        EglBase.Context second = EglContextManager.acquire("activity");
+        assertSame(first, second);
+        assertEquals(2, EglContextManager.getRefCount());
+        assertEquals(createsBefore + 1, EglContextManager.getCreateCount());
+
+        EglContextManager.release("service");
+        assertEquals(1, EglContextManager.getRefCount());
+        assertEquals(0, count("release"));
+
+        EglContextManager.release("activity");
+        assertEquals(0, EglContextManager.getRefCount());
+        assertEquals(1, count("release"));
+    }
+
+    @Test
+    public void sameOwnerCanAcquireTwice() {
+        EglContextManager.acquire("service");
+        EglContextManager.acquire("service");
+        assertEquals("{service=2}", EglContextManager.describeOwners());
+
+        EglContextManager.release("service");
+        assertEquals("{service=1}", EglContextManager.describeOwners());
+        assertEquals(0, count("release"));
+        EglContextManager.release("service");
+        assertEquals(1, count("release"));
+    }
+
+    @Test
+    public void unknownOwnerReleaseIsIgnored() {
+        EglContextManager.acquire("service");
+        EglContextManager.release("activity");
+        assertEquals(1, EglContextManager.getRefCount());
+        assertEquals(0, count("release"));
+        EglContextManager.release("service");
+    }
+
+    @Test
+    public void reacquireAfterReleaseCreatesNewRoot() {
+        EglBase.Context first = EglContextManager.acquire("service");
+        EglContextManager.release("service");
+        EglBase.Context second = EglContextManager.acquire("service");
+        EglContextManager.release("service");
+
+        assertNotSame(first, second);
+        assertEquals(createsBefore + 2, EglContextManager.getCreateCount());
+        assertEquals(2, count("release"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sharedContextNeedsRoot() {
+        EglContextManager.createShared(EglBase.CONFIG_PLAIN);
+    }
+
+    private EglBase fakeEglBase() {
+        EglBase.Context context = (EglBase.Context) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{EglBase.Context.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getNativeEglContext")) {
+                        return 0L;
+                    }
+                    return method.getDeclaringClass() == Object.class ? objectMethod(proxy, method.getName(), args) : null;
+                });
+        return (EglBase) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{EglBase.class},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return objectMethod(proxy, method.getName(), args);
+                    }
+                    calls.add(method.getName());
+                    return method.getName().equals("getEglBaseContext") ? context : null;
+                });
+    }
+
+    private static Object objectMethod(Object proxy, String name, Object[] args) {
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "fake";
+        }
+    }
+
+    private int count(String method) {
+        int n = 0;
+        for (String call : calls) {
+            if (call.equals(method)) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
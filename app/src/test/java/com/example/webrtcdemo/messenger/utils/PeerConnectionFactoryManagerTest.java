@@ -0,0 +1,104 @@
+package com.example.webrtcdemo.messenger.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.PeerConnectionFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PeerConnectionFactoryManager 的共享、预热和创建失败后的重试；测试里工厂用 null 代替
+ */
+public class PeerConnectionFactoryManagerTest {
+
+    private final Context context = new ContextWrapper(null);
+    private final AtomicInteger creates = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private Callable<PeerConnectionFactory> originalCreator;
+    private int acquired;
+
+    @Before
+    public void setUp() {
+        originalCreator = PeerConnectionFactoryManager.factoryCreator;
+        PeerConnectionFactoryManager.factoryCreator = () -> {
+            creates.incrementAndGet();
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("no native library");
+            }
+            return null;
+        };
+    }
+
+    @After
+    public void tearDown() {
+        while (acquired > 0) {
+            release();
+        }
+        PeerConnectionFactoryManager.factoryCreator = originalCreator;
+    }
+
+    @Test
+    public void factoryIsSharedUntilLastRelease() {
+        acquire();
+        acquire();
+        assertEquals(1, creates.get());
+
+        release();
+        acquire();
+        assertEquals(1, creates.get());
+
+        release();
+        release();
+        acquire();
+        assertEquals(2, creates.get());
+    }
+
+    @Test
+    public void warmedFactoryIsUsedByAcquire() {
+        int warmHits = PeerConnectionFactoryManager.getTimings().warmHits;
+        PeerConnectionFactoryManager.warmUp(context);
+        PeerConnectionFactoryManager.warmUp(context);
+        acquire();
+
+        assertEquals(1, creates.get());
+        assertEquals(warmHits + 1, PeerConnectionFactoryManager.getTimings().warmHits);
+    }
+
+    @Test
+    public void failedCreationIsRetriedOnNextAcquire() {
+        failuresLeft.set(1);
+        try {
+            PeerConnectionFactoryManager.acquire(context);
+            fail("expected creation failure");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        acquire();
+        assertEquals(2, creates.get());
+        // 失败时引用计数已经还回去，这里只需要一次 release 就会 dispose
+        release();
+        acquire();
+        assertEquals(3, creates.get());
+    }
+
+    private void acquire() {
+        assertNull(PeerConnectionFactoryManager.acquire(context));
+        acquired++;
+    }
+
+    private void release() {
+        PeerConnectionFactoryManager.release();
+        acquired--;
+    }
+}
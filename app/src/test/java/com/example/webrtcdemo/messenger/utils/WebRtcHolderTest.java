@@ -0,0 +1,201 @@
+package com.example.webrtcdemo.messenger.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Test;
+import org.webrtc.CapturerObserver;
+import org.webrtc.MediaSource;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoSink;
+import org.webrtc.VideoTrack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WebRtcHolder 的引用计数、按会话释放和远端 track 的处理，track / source / capturer 都是不碰 native 的替身
+ */
+public class WebRtcHolderTest {
+
+    private static final String SESSION = "session";
+
+    private final VideoSink sink = frame -> { };
+    private final VideoSink otherSink = frame -> { };
+
+    @After
+    public void tearDown() {
+        WebRtcHolder.releaseSession(SESSION);
+    }
+
+    @Test
+    public void localTrackIsDisposedAfterProducerAndLastSink() {
+        FakeVideoTrack track = new FakeVideoTrack();
+        FakeSource source = new FakeSource();
+        FakeCapturer capturer = new FakeCapturer();
+        WebRtcHolder.putLocalVideoTrack(SESSION, "local", track, source, null, capturer);
+
+        assertTrue(WebRtcHolder.attachSink(SESSION, "local", sink));
+        WebRtcHolder.release(SESSION, "local");
+        assertSame(track, WebRtcHolder.getVideoTrack(SESSION, "local"));
+        assertFalse(track.disposed);
+
+        WebRtcHolder.detachSink(SESSION, "local", sink);
+        assertNull(WebRtcHolder.getVideoTrack(SESSION, "local"));
+        assertTrue(track.sinks.isEmpty());
+        assertTrue(track.disposed);
+        assertTrue(source.disposed);
+        assertEquals(1, capturer.stops);
+        assertTrue(capturer.disposed);
+    }
+
+    @Test
+    public void sameSinkIsAddedOnceAndCounted() {
+        FakeVideoTrack track = new FakeVideoTrack();
+        WebRtcHolder.putLocalVideoTrack(SESSION, "local", track, null, null, null);
+
+        WebRtcHolder.attachSink(SESSION, "local", sink);
+        WebRtcHolder.attachSink(SESSION, "local", sink);
+        WebRtcHolder.attachSink(SESSION, "local", otherSink);
+        assertEquals(2, track.sinks.size());
+
+        WebRtcHolder.detachSink(SESSION, "local", sink);
+        assertTrue(track.sinks.contains(sink));
+        WebRtcHolder.detachSink(SESSION, "local", sink);
+        assertFalse(track.sinks.contains(sink));
+        // 多出来的 detach 不影响别的引用
+        WebRtcHolder.detachSink(SESSION, "local", sink);
+        WebRtcHolder.release(SESSION, "local");
+        assertFalse(track.disposed);
+
+        WebRtcHolder.detachSink(SESSION, "local", otherSink);
+        assertTrue(track.disposed);
+    }
+
+    @Test
+    public void releaseSessionStopsCaptureButKeepsAttachedTrack() {
+        FakeVideoTrack track = new FakeVideoTrack();
+        FakeCapturer capturer = new FakeCapturer();
+        WebRtcHolder.putLocalVideoTrack(SESSION, "local", track, null, null, capturer);
+        WebRtcHolder.attachSink(SESSION, "local", sink);
+
+        WebRtcHolder.releaseSession(SESSION);
+        assertEquals(1, capturer.stops);
+        assertFalse(capturer.disposed);
+        assertFalse(track.disposed);
+
+        WebRtcHolder.detachSink(SESSION, "local", sink);
+        assertEquals(1, capturer.stops);
+        assertTrue(capturer.disposed);
+        assertTrue(track.disposed);
+    }
+
+    @Test
+    public void remoteTrackIsUnregisteredButNotDisposed() {
+        FakeVideoTrack track = new FakeVideoTrack();
+        WebRtcHolder.putRemoteVideoTrack(SESSION, "remote", track);
+        WebRtcHolder.attachSink(SESSION, "remote", sink);
+
+        WebRtcHolder.releaseSession(SESSION);
+        assertNull(WebRtcHolder.getVideoTrack(SESSION, "remote"));
+        assertTrue(track.sinks.isEmpty());
+        assertFalse(track.disposed);
+        // 界面稍后摘 sink 是安全的
+        WebRtcHolder.detachSink(SESSION, "remote", sink);
+    }
+
+    @Test
+    public void replacingTrackReleasesTheOldOne() {
+        FakeVideoTrack first = new FakeVideoTrack();
+        FakeVideoTrack second = new FakeVideoTrack();
+        WebRtcHolder.putLocalVideoTrack(SESSION, "local", first, null, null, null);
+        WebRtcHolder.putLocalVideoTrack(SESSION, "local", second, null, null, null);
+
+        assertTrue(first.disposed);
+        assertSame(second, WebRtcHolder.getVideoTrack(SESSION, "local"));
+        assertNull(WebRtcHolder.getAudioTrack(SESSION, "local"));
+    }
+
+    @Test
+    public void unknownTrackCannotBeAttached() {
+        assertFalse(WebRtcHolder.attachSink(SESSION, "missing", sink));
+        WebRtcHolder.detachSink(SESSION, "missing", sink);
+        WebRtcHolder.release(SESSION, "missing");
+    }
+
+    private static final class FakeVideoTrack extends VideoTrack {
+        final List<VideoSink> sinks = new ArrayList<>();
+        boolean disposed;
+
+        FakeVideoTrack() {
+            super(1);
+        }
+
+        @Override
+        public void addSink(VideoSink sink) {
+            sinks.add(sink);
+        }
+
+        @Override
+        public void removeSink(VideoSink sink) {
+            sinks.remove(sink);
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+        }
+    }
+
+    private static final class FakeSource extends MediaSource {
+        boolean disposed;
+
+        FakeSource() {
+            super(1);
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+        }
+    }
+
+    private static final class FakeCapturer implements VideoCapturer {
+        int stops;
+        boolean disposed;
+
+        @Override
+        public void initialize(SurfaceTextureHelper helper, Context context, CapturerObserver observer) {
+        }
+
+        @Override
+        public void startCapture(int width, int height, int framerate) {
+        }
+
+        @Override
+        public void stopCapture() {
+            stops++;
+        }
+
+        @Override
+        public void changeCaptureFormat(int width, int height, int framerate) {
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+        }
+
+        @Override
+        public boolean isScreencast() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.webrtcdemo.messenger.videocodec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.webrtc.VideoCodecInfo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * VideoCodecCapabilities 的硬件优先排序和缓存文件读写
+ */
+public class VideoCodecCapabilitiesTest {
+
+    private static final VideoCodecInfo VP8 = codec("VP8");
+    private static final VideoCodecInfo VP9 = codec("VP9");
+    private static final VideoCodecInfo H264_HIGH = codec("H264", "640c1f");
+    private static final VideoCodecInfo H264_BASELINE = codec("H264", "42e01f");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void hardwareCodecsComeFirstInOriginalOrder() {
+        List<VideoCodecInfo> all = Arrays.asList(VP8, VP9, H264_HIGH, H264_BASELINE);
+        assertEquals(Arrays.asList(H264_HIGH, H264_BASELINE, VP8, VP9),
+                VideoCodecCapabilities.sorted(all, Arrays.asList(H264_BASELINE, H264_HIGH)));
+        assertEquals(Arrays.asList(VP9, VP8, H264_HIGH, H264_BASELINE),
+                VideoCodecCapabilities.sorted(all, Collections.singletonList(VP9)));
+        assertEquals(all, VideoCodecCapabilities.sorted(all, Collections.emptyList()));
+    }
+
+    @Test
+    public void onlyListedCodecIsHardware() {
+        VideoCodecCapabilities capabilities = new VideoCodecCapabilities(
+                Arrays.asList(VP8, H264_HIGH), Collections.singletonList(H264_HIGH),
+                Arrays.asList(VP8, VP9), Collections.singletonList(VP9), false, 0);
+        assertEquals(Arrays.asList(H264_HIGH, VP8), capabilities.getEncoders());
+        assertEquals(Arrays.asList(VP9, VP8), capabilities.getDecoders());
+        assertTrue(capabilities.isHardwareEncoder(codec("H264", "640c1f")));
+        assertFalse(capabilities.isHardwareEncoder(H264_BASELINE));
+        assertFalse(capabilities.isHardwareDecoder(VP8));
+        assertEquals("encoders=[H264/640c1f(hw), VP8] decoders=[VP9(hw), VP8]", capabilities.toString());
+    }
+
+    @Test
+    public void cacheRoundTrips() {
+        File file = new File(folder.getRoot(), "codecs.json");
+        new VideoCodecCapabilities(
+                Arrays.asList(VP8, H264_BASELINE, H264_HIGH), Arrays.asList(H264_HIGH, H264_BASELINE),
+                Arrays.asList(VP8, VP9, H264_HIGH), Collections.singletonList(H264_HIGH), false, 0)
+                .store(file, "device|1");
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        VideoCodecCapabilities loaded = VideoCodecCapabilities.load(file, "device|1", 0);
+        assertNotNull(loaded);
+        assertEquals(Arrays.asList(H264_BASELINE, H264_HIGH, VP8), loaded.getEncoders());
+        assertEquals(Arrays.asList(H264_HIGH, VP8, VP9), loaded.getDecoders());
+        assertTrue(loaded.isHardwareEncoder(H264_BASELINE));
+        assertFalse(loaded.isHardwareDecoder(VP9));
+        assertEquals("640c1f", loaded.getDecoders().get(0).params.get(VideoCodecInfo.H264_FMTP_PROFILE_LEVEL_ID));
+    }
+
+    @Test
+    public void changedKeyOrBrokenFileProbesAgain() throws IOException {
+        File file = new File(folder.getRoot(), "codecs.json");
+        assertNull(VideoCodecCapabilities.load(file, "device|1", 0));
+
+        new VideoCodecCapabilities(Collections.singletonList(VP8), Collections.emptyList(),
+                Collections.singletonList(VP8), Collections.emptyList(), false, 0).store(file, "device|1");
+        // 系统升级或应用更新后 key 变了
+        assertNull(VideoCodecCapabilities.load(file, "device|2", 0));
+
+        write(file, "{\"key\":\"device|1\",\"encoders\":[],\"decoders\":[]}");
+        assertNull(VideoCodecCapabilities.load(file, "device|1", 0));
+        write(file, "{\"key\":\"device|1\",\"encoders\":[{\"name\":\"VP8\"}]");
+        assertNull(VideoCodecCapabilities.load(file, "device|1", 0));
+    }
+
+    private static VideoCodecInfo codec(String name) {
+        return new VideoCodecInfo(name, new HashMap<>());
+    }
+
+    private static VideoCodecInfo codec(String name, String profileLevelId) {
+        Map<String, String> params = new HashMap<>();
+        params.put(VideoCodecInfo.H264_FMTP_PROFILE_LEVEL_ID, profileLevelId);
+        params.put("packetization-mode", "1");
+        return new VideoCodecInfo(name, params);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
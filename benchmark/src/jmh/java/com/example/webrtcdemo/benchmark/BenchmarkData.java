@@ -0,0 +1,109 @@
+package com.example.webrtcdemo.benchmark;
+
+import com.example.webrtcdemo.messenger.signaling.codec.SignalingMessage;
+
+/**
+ * 基准测试用的固定输入，内容和长度接近真实通话里抓到的消息
+ */
+final class BenchmarkData {
+
+    private static final String FROM = "3f1c2a9e-5b7d-4e61-9c0a-8d2f4b6e1a73";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 一路视频 + 一路音频的 Unified Plan offer，约 4KB
+     */
+    static String offerSdp() {
+        StringBuilder sdp = new StringBuilder(4096)
+                .append("v=0\r\n")
+                .append("o=- 4611731400430051336 2 IN IP4 127.0.0.1\r\n")
+                .append("s=-\r\n")
+                .append("t=0 0\r\n")
+                .append("a=group:BUNDLE 0 1\r\n")
+                .append("a=extmap-allow-mixed\r\n")
+                .append("a=msid-semantic: WMS localStream\r\n")
+                .append("m=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 127 124 125\r\n")
+                .append("c=IN IP4 0.0.0.0\r\n")
+                .append("a=rtcp:9 IN IP4 0.0.0.0\r\n")
+                .append("a=ice-ufrag:Xk9f\r\n")
+                .append("a=ice-pwd:7tqQ1n0RyH8bS2p4c5vW9zLm\r\n")
+                .append("a=ice-options:trickle renomination\r\n")
+                .append("a=fingerprint:sha-256 6B:8B:F0:65:5F:78:E2:51:3B:AC:6F:F3:3F:46:1B:35:")
+                .append("DC:B8:5F:64:1A:24:C2:43:F0:A1:58:D0:A1:2C:19:08\r\n")
+                .append("a=setup:actpass\r\n")
+                .append("a=mid:0\r\n")
+                .append("a=extmap:1 urn:ietf:params:rtp-hdrext:toffset\r\n")
+                .append("a=extmap:2 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\r\n")
+                .append("a=extmap:3 urn:3gpp:video-orientation\r\n")
+                .append("a=extmap:4 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01\r\n")
+                .append("a=extmap:5 http://www.webrtc.org/experiments/rtp-hdrext/playout-delay\r\n")
+                .append("a=sendonly\r\n")
+                .append("a=msid:localStream localTrack\r\n")
+                .append("a=rtcp-mux\r\n")
+                .append("a=rtcp-rsize\r\n");
+        String[] codecs = {"VP8", "VP9", "H264", "AV1X", "red", "ulpfec"};
+        int pt = 96;
+        for (String codec : codecs) {
+            sdp.append("a=rtpmap:").append(pt).append(' ').append(codec).append("/90000\r\n")
+                    .append("a=rtcp-fb:").append(pt).append(" goog-remb\r\n")
+                    .append("a=rtcp-fb:").append(pt).append(" transport-cc\r\n")
+                    .append("a=rtcp-fb:").append(pt).append(" ccm fir\r\n")
+                    .append("a=rtcp-fb:").append(pt).append(" nack\r\n")
+                    .append("a=rtcp-fb:").append(pt).append(" nack pli\r\n")
+                    .append("a=rtpmap:").append(pt + 1).append(" rtx/90000\r\n")
+                    .append("a=fmtp:").append(pt + 1).append(" apt=").append(pt).append("\r\n");
+            pt += 2;
+        }
+        sdp.append("a=ssrc-group:FID 1872361723 3481209934\r\n")
+                .append("a=ssrc:1872361723 cname:b2LrQk1zT0aVgJmU\r\n")
+                .append("a=ssrc:1872361723 msid:localStream localTrack\r\n")
+                .append("a=ssrc:3481209934 cname:b2LrQk1zT0aVgJmU\r\n")
+                .append("a=ssrc:3481209934 msid:localStream localTrack\r\n")
+                .append("m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 102 0 8 106 105 13 110 112 113 126\r\n")
+                .append("c=IN IP4 0.0.0.0\r\n")
+                .append("a=ice-ufrag:Xk9f\r\n")
+                .append("a=ice-pwd:7tqQ1n0RyH8bS2p4c5vW9zLm\r\n")
+                .append("a=mid:1\r\n")
+                .append("a=rtpmap:111 opus/48000/2\r\n")
+                .append("a=rtcp-fb:111 transport-cc\r\n")
+                .append("a=fmtp:111 minptime=10;useinbandfec=1\r\n")
+                .append("a=rtpmap:103 ISAC/16000\r\n")
+                .append("a=rtpmap:104 ISAC/32000\r\n")
+                .append("a=rtpmap:9 G722/8000\r\n")
+                .append("a=rtpmap:0 PCMU/8000\r\n")
+                .append("a=rtpmap:8 PCMA/8000\r\n")
+                .append("a=rtpmap:106 CN/32000\r\n")
+                .append("a=rtpmap:105 CN/16000\r\n")
+                .append("a=rtpmap:13 CN/8000\r\n")
+                .append("a=rtpmap:110 telephone-event/48000\r\n")
+                .append("a=rtpmap:126 telephone-event/8000\r\n");
+        return sdp.toString();
+    }
+
+    static SignalingMessage offerMessage() {
+        SignalingMessage message = new SignalingMessage();
+        message.type = SignalingMessage.TYPE_OFFER;
+        message.from = FROM;
+        message.seq = 1;
+        message.peer = "peer-1:offerer";
+        message.sdp = offerSdp();
+        return message;
+    }
+
+    static SignalingMessage candidatesMessage(int count) {
+        SignalingMessage message = new SignalingMessage();
+        message.type = SignalingMessage.TYPE_CANDIDATES;
+        message.from = FROM;
+        message.seq = 2;
+        message.peer = "peer-1:offerer";
+        for (int i = 0; i < count; i++) {
+            message.addCandidate(i % 2 == 0 ? "0" : "1", i % 2,
+                    "candidate:" + (842163049 + i) + " 1 udp 1677729535 192.168.1." + (10 + i) + " "
+                            + (50000 + i) + " typ srflx raddr 10.0.2.15 rport " + (40000 + i)
+                            + " generation 0 ufrag Xk9f network-cost 10");
+        }
+        return message;
+    }
+}
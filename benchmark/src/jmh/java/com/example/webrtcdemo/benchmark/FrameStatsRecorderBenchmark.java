@@ -0,0 +1,52 @@
+package com.example.webrtcdemo.benchmark;
+
+import com.example.webrtcdemo.messenger.stats.FrameStatsRecorder;
+import com.example.webrtcdemo.messenger.stats.FrameStatsSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FrameStatsSink 每帧调用的 record，以及窗口到期时的 publish。
+ * 帧时间戳按 30fps 加少量抖动模拟，每 60 帧发布一次（2s 窗口）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FrameStatsRecorderBenchmark {
+
+    private static final long FRAME_INTERVAL_NS = 33_333_333L;
+
+    private FrameStatsRecorder recorder;
+    private long nowNs;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        recorder = new FrameStatsRecorder(2000);
+        nowNs = 1_000_000_000L;
+    }
+
+    @Benchmark
+    public boolean record() {
+        // 每 7 帧有一帧晚到 15ms，直方图不会只落在同一个桶里
+        nowNs += FRAME_INTERVAL_NS + ((++frame % 7) == 0 ? 15_000_000L : 0);
+        return recorder.record(nowNs, 1280, 720, 90);
+    }
+
+    @Benchmark
+    public FrameStatsSnapshot recordAndPublish() {
+        nowNs += FRAME_INTERVAL_NS;
+        if (recorder.record(nowNs, 1280, 720, 90)) {
+            return recorder.publish("bench", nowNs);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.webrtcdemo.benchmark;
+
+import com.example.webrtcdemo.messenger.processing.DirectBufferPool;
+import com.example.webrtcdemo.messenger.processing.I420Planes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 采集处理流水线的像素热点：每帧 allocateDirect 和从池里取还的对比，以及拷贝 / 叠加时间戳的单帧耗时。
+ * 池化路径在 gc 分析器里的分配量应当是 0；缩放走 libyuv（JavaI420Buffer.cropAndScale），JVM 上没有，不在这里测
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class I420ProcessingBenchmark {
+
+    @Param({"640x480", "1280x720"})
+    public String size;
+
+    private final DirectBufferPool pool = new DirectBufferPool(8, 32L * 1024 * 1024);
+    private final I420Planes planes = new I420Planes();
+    private int width;
+    private int height;
+    private int frameSize;
+    private ByteBuffer source;
+    private ByteBuffer target;
+    private long value;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+        frameSize = width * height * 3 / 2;
+        source = ByteBuffer.allocateDirect(width * height);
+        for (int i = 0; i < width * height; i++) {
+            source.put(i, (byte) (i * 31));
+        }
+        target = ByteBuffer.allocateDirect(width * height);
+    }
+
+    @Benchmark
+    public int allocateDirect() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(frameSize);
+        return buffer.capacity();
+    }
+
+    @Benchmark
+    public int pooled() {
+        ByteBuffer buffer = pool.acquire(frameSize);
+        int capacity = buffer.capacity();
+        pool.release(buffer);
+        return capacity;
+    }
+
+    @Benchmark
+    public ByteBuffer copyLuma() {
+        planes.copyPlane(source, 0, width, target, 0, width, width, height);
+        return target;
+    }
+
+    @Benchmark
+    public ByteBuffer drawTimestamp() {
+        planes.drawNumber(source, width, width, height, 8, 8, value += 33, 2);
+        return source;
+    }
+}
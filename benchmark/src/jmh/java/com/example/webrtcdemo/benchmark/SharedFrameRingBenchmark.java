@@ -0,0 +1,69 @@
+package com.example.webrtcdemo.benchmark;
+
+import com.example.webrtcdemo.messenger.ipc.SharedFrameRing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 跨进程帧通道的一帧：写端把 I420 三个平面拷进共享内存环，读端占住最新帧再释放。
+ * 环用 direct ByteBuffer 代替 SharedMemory 的映射，拷贝和内存屏障的开销是一样的
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SharedFrameRingBenchmark {
+
+    @Param({"640x480", "1280x720"})
+    public String size;
+
+    private SharedFrameRing writer;
+    private SharedFrameRing reader;
+    private int width;
+    private int height;
+    private ByteBuffer y;
+    private ByteBuffer u;
+    private ByteBuffer v;
+    private long timestampNs;
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+        ByteBuffer memory = ByteBuffer.allocateDirect(SharedFrameRing.sizeFor(4, width, height));
+        writer = SharedFrameRing.create(memory, 4, width, height);
+        reader = SharedFrameRing.attach(memory.duplicate());
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        y = ByteBuffer.allocateDirect(width * height);
+        u = ByteBuffer.allocateDirect(chromaWidth * chromaHeight);
+        v = ByteBuffer.allocateDirect(chromaWidth * chromaHeight);
+    }
+
+    @Benchmark
+    public long write() {
+        return writer.write(width, height, 0, timestampNs += 33_333_333L,
+                y, width, u, (width + 1) / 2, v, (width + 1) / 2);
+    }
+
+    @Benchmark
+    public int writeAndRead() {
+        writer.write(width, height, 0, timestampNs += 33_333_333L,
+                y, width, u, (width + 1) / 2, v, (width + 1) / 2);
+        int slot = reader.acquireLatest();
+        if (slot >= 0) {
+            reader.release(slot);
+        }
+        return slot;
+    }
+}
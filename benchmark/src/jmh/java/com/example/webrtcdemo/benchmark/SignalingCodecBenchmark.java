@@ -0,0 +1,74 @@
+package com.example.webrtcdemo.benchmark;
+
+import com.example.webrtcdemo.messenger.signaling.codec.BinarySignalingCodec;
+import com.example.webrtcdemo.messenger.signaling.codec.JsonSignalingCodec;
+import com.example.webrtcdemo.messenger.signaling.codec.SignalingCodec;
+import com.example.webrtcdemo.messenger.signaling.codec.SignalingCodecException;
+import com.example.webrtcdemo.messenger.signaling.codec.SignalingMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SignalingClient 收发路径上的编解码：每种编码器分别测一条带完整 SDP 的 offer 和一批 8 个 candidate。
+ * encode 测的是入队后发送前的耗时，decode 测的是收到消息到回调前的耗时
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SignalingCodecBenchmark {
+
+    @Param({"binary", "binary-deflate", "json"})
+    public String codec;
+
+    @Param({"offer", "candidates"})
+    public String message;
+
+    private SignalingCodec encoder;
+    private SignalingCodec decoder;
+    private SignalingMessage source;
+    private final SignalingMessage decoded = new SignalingMessage();
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        encoder = createCodec(codec);
+        decoder = createCodec(codec);
+        source = "offer".equals(message) ? BenchmarkData.offerMessage() : BenchmarkData.candidatesMessage(8);
+        int length = encoder.encode(source);
+        encoded = Arrays.copyOf(encoder.buffer(), length);
+    }
+
+    private static SignalingCodec createCodec(String name) {
+        switch (name) {
+            case "binary":
+                return new BinarySignalingCodec(false);
+            case "binary-deflate":
+                return new BinarySignalingCodec(true);
+            case "json":
+                return new JsonSignalingCodec();
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    @Benchmark
+    public int encode() {
+        return encoder.encode(source);
+    }
+
+    @Benchmark
+    public SignalingMessage decode() throws SignalingCodecException {
+        decoder.decode(encoded, 0, encoded.length, decoded);
+        return decoded;
+    }
+}
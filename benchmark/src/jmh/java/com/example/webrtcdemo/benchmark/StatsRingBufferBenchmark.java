@@ -0,0 +1,60 @@
+package com.example.webrtcdemo.benchmark;
+
+import com.example.webrtcdemo.messenger.stats.StatsRingBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RtcStatsCollector 每个周期的 append，以及 getStatsHistory 导出时的 copyLatest
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StatsRingBufferBenchmark {
+
+    /** 和 WebRtcService 里的历史长度一致（5 分钟） */
+    @Param({"300"})
+    public int capacity;
+
+    @Param({"60", "300"})
+    public int exportSamples;
+
+    private StatsRingBuffer buffer;
+    private final double[] row = new double[StatsRingBuffer.COLUMN_COUNT];
+    private double[][] out;
+
+    @Setup
+    public void setUp() {
+        buffer = new StatsRingBuffer(capacity);
+        for (int i = 0; i < capacity; i++) {
+            fillRow(i);
+            buffer.append(row);
+        }
+        out = new double[StatsRingBuffer.COLUMN_COUNT][exportSamples];
+    }
+
+    private void fillRow(int i) {
+        for (int c = 0; c < row.length; c++) {
+            row[c] = i * 31 + c;
+        }
+    }
+
+    @Benchmark
+    public void append() {
+        buffer.append(row);
+    }
+
+    @Benchmark
+    public int copyLatest() {
+        return buffer.copyLatest(exportSamples, out);
+    }
+}